@@ -0,0 +1,81 @@
+package eu.europeana.iiif.service;
+
+import eu.europeana.iiif.ExampleData;
+import eu.europeana.iiif.ExampleRecords;
+import eu.europeana.iiif.model.ManifestModel;
+import eu.europeana.iiif.model.WebResource;
+import eu.europeana.iiif.model.info.FulltextSummaryAnnoPage;
+import eu.europeana.iiif.model.info.FulltextSummaryCanvas;
+import eu.europeana.iiif.model.info.FulltextSummaryManifest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Corpus of representative Record API responses used by the benchmarks. The records are derived from the example
+ * records used in the unit tests ({@link ExampleData}), but scaled up or altered where needed to resemble the different
+ * kinds of records we get in production (see {@link ExampleRecords}).
+ */
+public enum BenchmarkRecords {
+
+    /** newspaper issue with a single page image */
+    SMALL_IMAGE,
+    /** EUScreen video item, for which the canvas refers to the EUScreen website */
+    AV_EUSCREEN,
+    /** newspaper with 5000 page images */
+    NEWSPAPER_5K,
+    /** record with titles, descriptions and metadata in all 24 EU languages */
+    MULTILINGUAL;
+
+    private static final String NEWSPAPER_ID = ExampleData.EXAMPLE_RECORD_PARENT_ID;
+    private static final int NEWSPAPER_PAGES = 5000;
+
+    /**
+     * @return Record API response (json) of this record
+     */
+    public String getJson() {
+        switch (this) {
+            case SMALL_IMAGE:
+                return ExampleRecords.newspaper(NEWSPAPER_ID, 1);
+            case AV_EUSCREEN:
+                return ExampleRecords.euScreenVideo();
+            case NEWSPAPER_5K:
+                return ExampleRecords.newspaper(NEWSPAPER_ID, NEWSPAPER_PAGES);
+            case MULTILINGUAL:
+                return ExampleData.EXAMPLE_RECORD_MULTILINGUAL_RESPONSE;
+            default:
+                throw new IllegalStateException("Unknown record " + this);
+        }
+    }
+
+    /**
+     * Generates a Full-Text API summary that has an original and a translated annotation page for every page image of
+     * the provided record (if the record has page images)
+     * @param model the parsed record
+     * @return full-text summary of the record
+     */
+    public static FulltextSummaryManifest getFullTextSummary(ManifestModel model) {
+        String[] parts = model.getEuropeanaId().split("/");
+        FulltextSummaryManifest result = new FulltextSummaryManifest(parts[1], parts[2]);
+        for (String imageId : getPageImages(model)) {
+            String pageId = GenerateUtils.derivePageId(imageId);
+            String canvasId = "https://iiif.europeana.eu/presentation" + model.getEuropeanaId() + "/canvas/" + pageId;
+            FulltextSummaryCanvas canvas = new FulltextSummaryCanvas(canvasId);
+            canvas.setOriginalLanguage("et");
+            String annoPageId = "https://iiif.europeana.eu/presentation" + model.getEuropeanaId() + "/annopage/" + pageId;
+            canvas.addFTSummaryAnnoPage(new FulltextSummaryAnnoPage(annoPageId + "?lang=et", "et", true, null));
+            canvas.addFTSummaryAnnoPage(new FulltextSummaryAnnoPage(annoPageId + "?lang=en", "en", false, null));
+            result.addCanvas(canvas);
+        }
+        return result;
+    }
+
+    private static List<String> getPageImages(ManifestModel model) {
+        List<String> result = new ArrayList<>();
+        for (WebResource wr : EdmManifestUtils.getSortedWebResources(model.getEuropeanaId(),
+                model.getIsShownBy(), model.getJsonDoc())) {
+            result.add((String) wr.get(EdmManifestUtils.ABOUT));
+        }
+        return result;
+    }
+}
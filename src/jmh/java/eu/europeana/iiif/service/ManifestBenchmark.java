@@ -0,0 +1,144 @@
+package eu.europeana.iiif.service;
+
+import eu.europeana.iiif.config.AppConfig;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.config.MediaTypes;
+import eu.europeana.iiif.config.SerializationConfig;
+import eu.europeana.iiif.exception.RecordParseException;
+import eu.europeana.iiif.model.LanguageFilter;
+import eu.europeana.iiif.model.ManifestModel;
+import eu.europeana.iiif.model.ManifestProjection;
+import eu.europeana.iiif.model.info.FulltextSummaryManifest;
+import eu.europeana.iiif.model.v2.ManifestV2;
+import eu.europeana.iiif.model.v3.ManifestV3;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the different stages of generating a manifest (parsing the record, mapping to a v2 or v3 manifest, adding
+ * full-text links and serializing) for each record in the {@link BenchmarkRecords} corpus. No Record API or Full-Text
+ * API requests are done, so only the cpu and memory used by the Manifest API itself are measured.
+ *
+ * Run with mvn -P benchmark test-compile exec:exec (the gc profiler is enabled by default, so the allocation rate per
+ * operation is reported as gc.alloc.rate.norm)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ManifestBenchmark {
+
+    @Param({"SMALL_IMAGE", "AV_EUSCREEN", "NEWSPAPER_5K", "MULTILINGUAL"})
+    private BenchmarkRecords record;
+
+    private AnnotationConfigApplicationContext context;
+    private ManifestSettings settings;
+    private MediaTypes mediaTypes;
+    private ManifestService manifestService;
+
+    private String json;
+    private ManifestModel model;
+    private ManifestV2 manifestV2;
+    private ManifestV3 manifestV3;
+    private FulltextSummaryManifest fullTextSummary;
+
+    /**
+     * Loads the application settings and media types and prepares the input of all benchmarks
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new AnnotationConfigApplicationContext(ManifestSettings.class, SerializationConfig.class,
+                AppConfig.class, ManifestCache.class, ManifestService.class);
+        settings = context.getBean(ManifestSettings.class);
+        mediaTypes = context.getBean(MediaTypes.class);
+        manifestService = context.getBean(ManifestService.class);
+
+        json = record.getJson();
+        model = manifestService.createManifestModel(json);
+        manifestV2 = EdmManifestMappingV2.getManifestV2(settings, mediaTypes, model.getJsonDoc(),
+                ManifestProjection.FULL, LanguageFilter.ALL);
+        manifestV3 = EdmManifestMappingV3.getManifestV3(settings, mediaTypes, model,
+                ManifestProjection.FULL, LanguageFilter.ALL, 0);
+        fullTextSummary = BenchmarkRecords.getFullTextSummary(model);
+    }
+
+    /**
+     * Closes the application context
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * @return Record API response parsed into a json document
+     */
+    @Benchmark
+    public ManifestModel parseRecord() {
+        return manifestService.createManifestModel(json);
+    }
+
+    /**
+     * @return IIIF v2 manifest mapped from the parsed record
+     */
+    @Benchmark
+    public ManifestV2 mapManifestV2() {
+        return EdmManifestMappingV2.getManifestV2(settings, mediaTypes, model.getJsonDoc(),
+                ManifestProjection.FULL, LanguageFilter.ALL);
+    }
+
+    /**
+     * @return IIIF v3 manifest mapped from the parsed record
+     */
+    @Benchmark
+    public ManifestV3 mapManifestV3() {
+        return EdmManifestMappingV3.getManifestV3(settings, mediaTypes, model,
+                ManifestProjection.FULL, LanguageFilter.ALL, 0);
+    }
+
+    /**
+     * Adding full-text links overwrites the links of the previous invocation, so the same manifest can be reused
+     * @return IIIF v2 manifest with full-text links
+     */
+    @Benchmark
+    public ManifestV2 linkFullTextV2() {
+        if (manifestV2.getSequences() != null && manifestV2.getSequences().length > 0) {
+            manifestService.addFullTextSummaryV2(manifestV2.getEuropeanaId(), manifestV2.getSequences()[0].getCanvases(),
+                    manifestService.createSummaryCanvasMap(fullTextSummary));
+        }
+        return manifestV2;
+    }
+
+    /**
+     * Adding full-text links overwrites the links of the previous invocation, so the same manifest can be reused
+     * @return IIIF v3 manifest with full-text links
+     */
+    @Benchmark
+    public ManifestV3 linkFullTextV3() {
+        manifestService.addFullTextSummaryV3(manifestV3.getEuropeanaId(), manifestV3.getItems(),
+                manifestService.createSummaryCanvasMap(fullTextSummary));
+        return manifestV3;
+    }
+
+    /**
+     * @return IIIF v2 manifest serialized to JSON-LD
+     * @throws RecordParseException when the manifest can't be serialized
+     */
+    @Benchmark
+    public String serializeManifestV2() throws RecordParseException {
+        return manifestService.serializeManifest(manifestV2);
+    }
+
+    /**
+     * @return IIIF v3 manifest serialized to JSON-LD
+     * @throws RecordParseException when the manifest can't be serialized
+     */
+    @Benchmark
+    public String serializeManifestV3() throws RecordParseException {
+        return manifestService.serializeManifest(manifestV3);
+    }
+}
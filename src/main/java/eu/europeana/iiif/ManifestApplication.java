@@ -11,7 +11,7 @@ import org.springframework.context.annotation.PropertySource;
  * @author Patrick Ehlert
  * Created on 6-12-2017
  */
-@SpringBootApplication(scanBasePackages = {"eu.europeana.iiif", "eu.europeana.api"})  // needed to find EuropeanaApiErrorController in api-commons
+@SpringBootApplication(scanBasePackages = {"eu.europeana.iiif"}) // api-commons is scanned by ApiCommonsConfig
 @PropertySource(value = "classpath:build.properties", ignoreResourceNotFound = true)
 public class ManifestApplication extends SpringBootServletInitializer {
 
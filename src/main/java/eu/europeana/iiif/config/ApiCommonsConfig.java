@@ -0,0 +1,16 @@
+package eu.europeana.iiif.config;
+
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Loads the components of api-commons (e.g. EuropeanaApiErrorController). These are all built for the servlet stack, so
+ * they are not loaded when running with the 'reactive' profile (errors are then handled by the ReactiveExceptionHandler).
+ * Only the exception classes of api-commons are used by the reactive variant.
+ */
+@Configuration
+@Profile("!reactive")
+@ComponentScan("eu.europeana.api")
+public class ApiCommonsConfig {
+}
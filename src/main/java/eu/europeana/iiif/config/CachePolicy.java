@@ -0,0 +1,127 @@
+package eu.europeana.iiif.config;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.CacheControl;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Caching policy for the different classes of responses. A policy is configured as a list of Cache-Control directives
+ * (e.g. 'max-age=300, s-maxage=86400, stale-while-revalidate=300, stale-if-error=86400') and is validated and
+ * normalized when the application starts.
+ */
+public final class CachePolicy {
+
+    /**
+     * The classes of responses that can have a different caching policy
+     */
+    public enum ResponseClass {
+        /** complete response */
+        NORMAL,
+        /** response that lacks full-text links because the Full-Text API couldn't be reached */
+        DEGRADED,
+        /** error response */
+        ERROR
+    }
+
+    /** used when a policy is not set or is invalid */
+    public static final String DEFAULT_CACHE_CONTROL = "no-cache";
+
+    private static final Logger LOG = LogManager.getLogger(CachePolicy.class);
+
+    private CachePolicy() {
+        // empty constructor to prevent initialization
+    }
+
+    /**
+     * Converts a configured caching policy into a Cache-Control header value. Supported directives are max-age,
+     * s-maxage, stale-while-revalidate, stale-if-error (all in seconds), public, private, no-cache, no-store and
+     * must-revalidate.
+     * @param policy comma-separated list of Cache-Control directives
+     * @return the Cache-Control header value, or 'no-cache' if the policy is empty or invalid
+     */
+    public static String toCacheControl(String policy) {
+        if (StringUtils.isBlank(policy)) {
+            return DEFAULT_CACHE_CONTROL;
+        }
+        try {
+            CacheControl cacheControl = CacheControl.empty();
+            Duration maxAge = null;
+            boolean noCache = false;
+            boolean noStore = false;
+            for (String directive : policy.split(",")) {
+                String[] parts = directive.trim().toLowerCase(Locale.ROOT).split("=", 2);
+                switch (parts[0]) {
+                    case "max-age":
+                        maxAge = parseSeconds(parts);
+                        break;
+                    case "s-maxage":
+                        cacheControl.sMaxAge(parseSeconds(parts));
+                        break;
+                    case "stale-while-revalidate":
+                        cacheControl.staleWhileRevalidate(parseSeconds(parts));
+                        break;
+                    case "stale-if-error":
+                        cacheControl.staleIfError(parseSeconds(parts));
+                        break;
+                    case "public":
+                        cacheControl.cachePublic();
+                        break;
+                    case "private":
+                        cacheControl.cachePrivate();
+                        break;
+                    case "must-revalidate":
+                        cacheControl.mustRevalidate();
+                        break;
+                    case "no-cache":
+                        noCache = true;
+                        break;
+                    case "no-store":
+                        noStore = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unsupported directive '" + directive.trim() + "'");
+                }
+            }
+            // max-age, no-cache and no-store are mutually exclusive in Spring's CacheControl builder
+            String prefix = null;
+            if (noStore) {
+                prefix = CacheControl.noStore().getHeaderValue();
+            } else if (noCache) {
+                prefix = CacheControl.noCache().getHeaderValue();
+            } else if (maxAge != null) {
+                prefix = CacheControl.maxAge(maxAge).getHeaderValue();
+            }
+            String other = cacheControl.getHeaderValue();
+            if (prefix == null) {
+                return (other == null ? DEFAULT_CACHE_CONTROL : other);
+            }
+            return (other == null ? prefix : prefix + ", " + other);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Ignoring invalid cache policy '{}': {}", policy, e.getMessage());
+            return DEFAULT_CACHE_CONTROL;
+        }
+    }
+
+    /**
+     * @param cacheControl Cache-Control header value
+     * @return true if the header allows shared caches (e.g. a CDN) to store the response
+     */
+    public static boolean isShared(String cacheControl) {
+        return StringUtils.containsAny(cacheControl.toLowerCase(Locale.ROOT), "s-maxage", "public");
+    }
+
+    private static Duration parseSeconds(String[] directive) {
+        if (directive.length != 2) {
+            throw new IllegalArgumentException("missing value for " + directive[0]);
+        }
+        long seconds = Long.parseLong(directive[1].trim());
+        if (seconds < 0) {
+            throw new IllegalArgumentException("negative value for " + directive[0]);
+        }
+        return Duration.ofSeconds(seconds);
+    }
+}
@@ -0,0 +1,76 @@
+package eu.europeana.iiif.config;
+
+import eu.europeana.iiif.service.FreshnessIndex;
+import eu.europeana.iiif.service.ManifestCache;
+import eu.europeana.iiif.service.SlowRequestSampler;
+import eu.europeana.iiif.web.ConditionalRequestFilter;
+import eu.europeana.iiif.web.StageMetricsFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+
+/**
+ * Registers the servlet filters of the application
+ */
+@Configuration
+@Profile("!reactive")
+public class FilterConfig {
+
+    /**
+     * Conditional request fast path, runs early so 304 responses can be sent without any further processing
+     * @param freshnessIndex index of recent ETags
+     * @param manifestCache cache with refused API keys
+     * @param settings application settings
+     * @param meterRegistry optional, registry for the fast path metric
+     * @return filter registration
+     */
+    @Bean
+    public FilterRegistrationBean<ConditionalRequestFilter> conditionalRequestFilter(FreshnessIndex freshnessIndex,
+            ManifestCache manifestCache, ManifestSettings settings, ObjectProvider<MeterRegistry> meterRegistry) {
+        FilterRegistrationBean<ConditionalRequestFilter> registration = new FilterRegistrationBean<>(
+                new ConditionalRequestFilter(freshnessIndex, manifestCache,
+                        Boolean.TRUE.equals(settings.getAcceptLanguageEnabled()), meterRegistry.getIfAvailable()));
+        registration.addUrlPatterns("/presentation/*");
+        // right after the stage metrics filter, so 304 responses from the fast path are in the access log as well
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+
+    /**
+     * Ring buffer with samples of slow manifest requests, exposed via the slowrequests actuator endpoint
+     * @param settings application settings
+     * @return slow request sampler
+     */
+    @Bean
+    public SlowRequestSampler slowRequestSampler(ManifestSettings settings) {
+        return new SlowRequestSampler(settings.getSlowRequestThresholdMs(), settings.getSlowRequestMaxSamples());
+    }
+
+    /**
+     * Per-stage latency metrics, Server-Timing header, access log and slow request samples. Runs right after the
+     * character encoding filter and before the conditional request fast path, so every request is logged (fast path
+     * responses have no stages to time)
+     * @param settings application settings
+     * @param meterRegistry optional, registry for the stage metrics
+     * @param slowRequestSampler sampler for slow requests
+     * @return filter registration
+     */
+    @Bean
+    public FilterRegistrationBean<StageMetricsFilter> stageMetricsFilter(ManifestSettings settings,
+                                                                         ObjectProvider<MeterRegistry> meterRegistry,
+                                                                         SlowRequestSampler slowRequestSampler) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        boolean serverTiming = Boolean.TRUE.equals(settings.getServerTimingEnabled());
+        boolean accessLog = Boolean.TRUE.equals(settings.getServerTimingAccessLog());
+        FilterRegistrationBean<StageMetricsFilter> registration = new FilterRegistrationBean<>(
+                new StageMetricsFilter(registry, serverTiming, accessLog, slowRequestSampler));
+        registration.addUrlPatterns("/presentation/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        registration.setEnabled(registry != null || serverTiming || accessLog || slowRequestSampler.isEnabled());
+        return registration;
+    }
+}
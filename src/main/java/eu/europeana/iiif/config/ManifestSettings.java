@@ -7,6 +7,8 @@ import eu.europeana.iiif.model.ManifestDefinitions;
 import eu.europeana.iiif.service.ValidateUtils;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Properties;
 import javax.annotation.PostConstruct;
 import org.apache.commons.lang3.StringUtils;
@@ -55,6 +57,12 @@ public class ManifestSettings {
     @Value("${record-api.path}")
     private String recordApiPath;
 
+    @Value("${search-api.baseurl:https://api.europeana.eu}")
+    private String searchApiBaseUrl;
+
+    @Value("${search-api.path:/record/v2/search.json}")
+    private String searchApiPath;
+
     @Value("${thumbnail-api.baseurl}")
     private String thumbnailApiBaseUrl;
 
@@ -67,6 +75,125 @@ public class ManifestSettings {
     @Value("${media.config}")
     private String mediaXMLConfig;
 
+    @Value("${accept-language.enabled:false}")
+    private final Boolean acceptLanguageEnabled = Boolean.FALSE;
+
+    @Value("${manifest-cache.max-size-mb:256}")
+    private long manifestCacheMaxSizeMb;
+
+    @Value("${manifest-cache.ttl:300}")
+    private long manifestCacheTtl;
+
+    @Value("${negative-cache.ttl:60}")
+    private long negativeCacheTtl;
+
+    @Value("${negative-cache.max-size:10000}")
+    private long negativeCacheMaxSize;
+
+    @Value("${conditional-fast-path.staleness:30}")
+    private long conditionalFastPathStaleness;
+
+    @Value("${conditional-fast-path.max-size:100000}")
+    private long conditionalFastPathMaxSize;
+
+    @Value("${cache-policy.normal:no-cache}")
+    private String cachePolicyNormal;
+
+    @Value("${cache-policy.degraded:no-cache}")
+    private String cachePolicyDegraded;
+
+    @Value("${cache-policy.error:no-cache}")
+    private String cachePolicyError;
+
+    private final Map<CachePolicy.ResponseClass, String> cacheControl = new EnumMap<>(CachePolicy.ResponseClass.class);
+
+    @Value("${virtual-threads.enabled:false}")
+    private final Boolean virtualThreadsEnabled = Boolean.FALSE;
+
+    @Value("${reactive.mapping.max-threads:8}")
+    private int reactiveMappingMaxThreads;
+
+    @Value("${reactive.mapping.max-queued:1000}")
+    private int reactiveMappingMaxQueued;
+
+    @Value("${admission.enabled:true}")
+    private final Boolean admissionEnabled = Boolean.TRUE;
+
+    @Value("${admission.min-limit:10}")
+    private int admissionMinLimit;
+
+    @Value("${admission.max-limit:200}")
+    private int admissionMaxLimit;
+
+    @Value("${admission.latency-threshold-ms:5000}")
+    private long admissionLatencyThresholdMs;
+
+    @Value("${admission.retry-after:5}")
+    private int admissionRetryAfter;
+
+    @Value("${fair-share.enabled:false}")
+    private final Boolean fairShareEnabled = Boolean.FALSE;
+
+    @Value("${fair-share.max-concurrent:150}")
+    private int fairShareMaxConcurrent;
+
+    @Value("${fair-share.key.max-concurrent:50}")
+    private int fairShareKeyMaxConcurrent;
+
+    @Value("${fair-share.key.rate:0}")
+    private double fairShareKeyRate;
+
+    @Value("${fair-share.key.max-queued:20}")
+    private int fairShareKeyMaxQueued;
+
+    @Value("${fair-share.max-wait-ms:5000}")
+    private long fairShareMaxWaitMs;
+
+    @Value("${fair-share.key-limits:}")
+    private String fairShareKeyLimits;
+
+    @Value("${priority-lanes.large-record-size-kb:1024}")
+    private int largeRecordSizeKb;
+
+    @Value("${priority-lanes.large.threads:4}")
+    private int largeLaneThreads;
+
+    @Value("${priority-lanes.large.max-queued:100}")
+    private int largeLaneMaxQueued;
+
+    @Value("${priority-lanes.large.timeout-ms:30000}")
+    private long largeLaneTimeoutMs;
+
+    @Value("${batch.max-size:1000}")
+    private int batchMaxSize;
+
+    @Value("${batch.parallelism:8}")
+    private int batchParallelism;
+
+    @Value("${batch.threads:32}")
+    private int batchThreads;
+
+    @Value("${batch.max-queued:100}")
+    private int batchMaxQueued;
+
+    @Value("${batch.max-wait-ms:5000}")
+    private long batchMaxWaitMs;
+
+    @Value("${collection.page-size:100}")
+    private int collectionPageSize;
+
+    @Value("${server-timing.enabled:false}")
+    private final Boolean serverTimingEnabled = Boolean.FALSE;
+
+    @Value("${server-timing.access-log:false}")
+    private final Boolean serverTimingAccessLog = Boolean.FALSE;
+
+    @Value("${slow-requests.threshold-ms:2000}")
+    private long slowRequestThresholdMs;
+
+    @Value("${slow-requests.max-samples:100}")
+    private int slowRequestMaxSamples;
+
     public String getMediaXMLConfig() {
         return mediaXMLConfig;
     }
@@ -187,6 +314,13 @@ public class ManifestSettings {
         return getRecordApiBaseUrlExternal() + getRecordApiPath();
     }
 
+    /**
+     * @return Search API url, concatenates base URL + path to endpoint; used to list the records of a dataset
+     */
+    public String getSearchApiUrl() {
+        return ValidateUtils.formatBaseUrl(searchApiBaseUrl) + ValidateUtils.formatResourcePath(searchApiPath);
+    }
+
     /**
      * @return Thumbnail url, concatenates base URL + path to endpoint; used to create canvas thumbnails
      */
@@ -202,6 +336,271 @@ public class ManifestSettings {
         return suppressParseException;
     }
 
+    /**
+     * If enabled, manifests are filtered on the languages in the Accept-Language request header (unless a lang
+     * parameter is provided). This is disabled by default because most IIIF viewers run in a browser (which always
+     * sends an Accept-Language header) and let users switch between all available languages.
+     */
+    public Boolean getAcceptLanguageEnabled() {
+        return acceptLanguageEnabled;
+    }
+
+    /**
+     * @return maximum total size (in MB) of the record data kept in the manifest cache, 0 means caching is disabled
+     */
+    public long getManifestCacheMaxSizeMb() {
+        return manifestCacheMaxSizeMb;
+    }
+
+    /**
+     * @return number of seconds record data is kept in the manifest cache
+     */
+    public long getManifestCacheTtl() {
+        return manifestCacheTtl;
+    }
+
+    /**
+     * @return number of seconds invalid API keys and missing records are remembered, 0 disables the negative cache
+     */
+    public long getNegativeCacheTtl() {
+        return negativeCacheTtl;
+    }
+
+    /**
+     * @return maximum number of invalid API keys and missing records to remember (each)
+     */
+    public long getNegativeCacheMaxSize() {
+        return negativeCacheMaxSize;
+    }
+
+    /**
+     * @return maximum number of seconds a known ETag is used to answer conditional requests without checking the
+     * record, 0 disables the conditional request fast path
+     */
+    public long getConditionalFastPathStaleness() {
+        return conditionalFastPathStaleness;
+    }
+
+    /**
+     * @return maximum number of ETags remembered for the conditional request fast path
+     */
+    public long getConditionalFastPathMaxSize() {
+        return conditionalFastPathMaxSize;
+    }
+
+    /**
+     * @return true if requests should be handled on virtual threads (requires Java 21 or higher)
+     */
+    public Boolean getVirtualThreadsEnabled() {
+        return virtualThreadsEnabled;
+    }
+
+    /**
+     * @return maximum number of threads used for mapping record data to manifests (reactive profile only)
+     */
+    public int getReactiveMappingMaxThreads() {
+        return reactiveMappingMaxThreads;
+    }
+
+    /**
+     * @return maximum number of mapping tasks that can wait for a mapping thread, per thread (reactive profile only)
+     */
+    public int getReactiveMappingMaxQueued() {
+        return reactiveMappingMaxQueued;
+    }
+
+    /**
+     * @return true if the number of concurrent Record API requests should be limited adaptively
+     */
+    public Boolean getAdmissionEnabled() {
+        return admissionEnabled;
+    }
+
+    /**
+     * @return the lowest value the concurrent Record API request limit can drop to
+     */
+    public int getAdmissionMinLimit() {
+        return admissionMinLimit;
+    }
+
+    /**
+     * @return the highest value the concurrent Record API request limit can grow to (also the initial limit)
+     */
+    public int getAdmissionMaxLimit() {
+        return admissionMaxLimit;
+    }
+
+    /**
+     * @return Record API response time (in ms) above which the concurrent request limit is lowered
+     */
+    public long getAdmissionLatencyThresholdMs() {
+        return admissionLatencyThresholdMs;
+    }
+
+    /**
+     * @return number of seconds sent in the Retry-After header when a request is refused
+     */
+    public int getAdmissionRetryAfter() {
+        return admissionRetryAfter;
+    }
+
+    /**
+     * @param responseClass the type of response
+     * @return Cache-Control header value for the provided type of response
+     */
+    public String getCacheControl(CachePolicy.ResponseClass responseClass) {
+        return cacheControl.get(responseClass);
+    }
+
+    /**
+     * @return true if requests should be scheduled fairly across API keys
+     */
+    public Boolean getFairShareEnabled() {
+        return fairShareEnabled;
+    }
+
+    /**
+     * @return maximum number of requests processed at the same time (all API keys together)
+     */
+    public int getFairShareMaxConcurrent() {
+        return fairShareMaxConcurrent;
+    }
+
+    /**
+     * @return default maximum number of requests processed at the same time for a single API key
+     */
+    public int getFairShareKeyMaxConcurrent() {
+        return fairShareKeyMaxConcurrent;
+    }
+
+    /**
+     * @return default maximum number of requests per second for a single API key, 0 means no limit
+     */
+    public double getFairShareKeyRate() {
+        return fairShareKeyRate;
+    }
+
+    /**
+     * @return maximum number of requests of a single API key that can wait for their turn
+     */
+    public int getFairShareKeyMaxQueued() {
+        return fairShareKeyMaxQueued;
+    }
+
+    /**
+     * @return maximum time (in ms) a request can wait for its turn
+     */
+    public long getFairShareMaxWaitMs() {
+        return fairShareMaxWaitMs;
+    }
+
+    /**
+     * @return limits for specific API keys, comma-separated list of wskey:max-concurrent:requests-per-second:weight
+     */
+    public String getFairShareKeyLimits() {
+        return fairShareKeyLimits;
+    }
+
+    /**
+     * @return minimum size (in kB) of the record json of records that are mapped on the large record lane, 0 means
+     * all records are mapped on the fast lane
+     */
+    public int getLargeRecordSizeKb() {
+        return largeRecordSizeKb;
+    }
+
+    /**
+     * @return number of threads that map large records
+     */
+    public int getLargeLaneThreads() {
+        return largeLaneThreads;
+    }
+
+    /**
+     * @return maximum number of large records waiting to be mapped
+     */
+    public int getLargeLaneMaxQueued() {
+        return largeLaneMaxQueued;
+    }
+
+    /**
+     * @return maximum time (in ms) a request waits for its large record to be mapped, including time in the queue
+     */
+    public long getLargeLaneTimeoutMs() {
+        return largeLaneTimeoutMs;
+    }
+
+    /**
+     * @return maximum number of record ids in a single batch request
+     */
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    /**
+     * @return maximum number of manifests of a single batch request that are generated at the same time
+     */
+    public int getBatchParallelism() {
+        return batchParallelism;
+    }
+
+    /**
+     * @return number of threads that generate manifests for all batch requests together
+     */
+    public int getBatchThreads() {
+        return batchThreads;
+    }
+
+    /**
+     * @return maximum number of records of all batch requests together that can wait for a batch thread
+     */
+    public int getBatchMaxQueued() {
+        return batchMaxQueued;
+    }
+
+    /**
+     * @return maximum time (in ms) a batch request waits for room in the batch thread pool queue before a record is
+     * refused
+     */
+    public long getBatchMaxWaitMs() {
+        return batchMaxWaitMs;
+    }
+
+    /**
+     * @return number of records that are retrieved per request when listing the records of a dataset
+     */
+    public int getCollectionPageSize() {
+        return collectionPageSize;
+    }
+
+    /**
+     * @return true if manifest responses should get a Server-Timing header with the duration of each processing stage
+     */
+    public Boolean getServerTimingEnabled() {
+        return serverTimingEnabled;
+    }
+
+    /**
+     * @return true if the duration of each processing stage of manifest requests should be written to the access log
+     */
+    public Boolean getServerTimingAccessLog() {
+        return serverTimingAccessLog;
+    }
+
+    /**
+     * @return manifest requests that take longer than this number of milliseconds are sampled, 0 means disabled
+     */
+    public long getSlowRequestThresholdMs() {
+        return slowRequestThresholdMs;
+    }
+
+    /**
+     * @return maximum number of slow request samples that are kept in memory
+     */
+    public int getSlowRequestMaxSamples() {
+        return slowRequestMaxSamples;
+    }
+
     /**
      * Base URL used for generation the various types of IDs
      */
@@ -243,6 +642,16 @@ public class ManifestSettings {
         return getManifestIdTemplate().replace(getManifestApiIdPlaceholder(), europeanaId);
     }
 
+    /**
+     * Create a collection ID
+     *
+     * @param datasetId id of the dataset
+     * @return url of the collection of all manifests in the dataset
+     */
+    public String getCollectionId(String datasetId) {
+        return getIIIFPresentationBaseUrl().replace(getManifestApiIdPlaceholder(), "/" + datasetId) + "/collection";
+    }
+
     /**
      * Create a canvas ID
      *
@@ -256,6 +665,20 @@ public class ManifestSettings {
             Integer.toString(order));
     }
 
+    /**
+     * Create the ID of a page of canvases (for manifests generated with paging)
+     *
+     * @param europeanaId consisting of dataset ID and record ID separated by a slash (string should have a leading
+     *                    slash and not trailing slash)
+     * @param page        page number (first page is 1)
+     * @param pageSize    number of canvases per page
+     * @return String containing the canvas page ID
+     */
+    public String getCanvasPageId(String europeanaId, int page, int pageSize) {
+        return getIIIFPresentationBaseUrl().replace(getManifestApiIdPlaceholder(), europeanaId)
+                + "/canvases/" + page + "?pageSize=" + pageSize;
+    }
+
     /**
      * Create a dataset ID (datasets information are part of the manifest)
      *
@@ -298,6 +721,18 @@ public class ManifestSettings {
         }
     }
 
+    @PostConstruct
+    private void initCachePolicies() {
+        cacheControl.put(CachePolicy.ResponseClass.NORMAL, CachePolicy.toCacheControl(cachePolicyNormal));
+        cacheControl.put(CachePolicy.ResponseClass.DEGRADED, CachePolicy.toCacheControl(cachePolicyDegraded));
+        cacheControl.put(CachePolicy.ResponseClass.ERROR, CachePolicy.toCacheControl(cachePolicyError));
+        if (CachePolicy.isShared(cacheControl.get(CachePolicy.ResponseClass.NORMAL))) {
+            LOG.warn("Cache policy '{}' allows shared caching. Responses may be served for up to s-maxage after an "
+                    + "API key is revoked or a record changes, and the cache key of the CDN must include the wskey "
+                    + "parameter", cachePolicyNormal);
+        }
+    }
+
     @PostConstruct
     private void logImportantSettings() {
         LOG.info("Manifest settings:");
@@ -315,8 +750,24 @@ public class ManifestSettings {
         }
         LOG.info("  Record API endpoint = {} ", getRecordApiEndpoint());
         LOG.info("  Thumbnail API Url = {} ", this.getThumbnailApiUrl());
+        LOG.info("  Search API Url = {} ", this.getSearchApiUrl());
         LOG.info("  Full-Text Summary Url = {}{} ", this.getFullTextApiBaseUrl(), getFulltextSummaryPath("/<collectionId>/<itemId>"));
         LOG.info("  Suppress parse exceptions = {}", this.getSuppressParseException());
+        LOG.info("  Filter languages on Accept-Language header = {}", this.getAcceptLanguageEnabled());
+        LOG.info("  Virtual threads enabled = {}", this.getVirtualThreadsEnabled());
+        LOG.info("  Admission control enabled = {}, limit between {} and {}, latency threshold = {} ms",
+                this.getAdmissionEnabled(), admissionMinLimit, admissionMaxLimit, admissionLatencyThresholdMs);
+        LOG.info("  Fair-share scheduling enabled = {}, max concurrent = {}, per key max concurrent = {}, rate = {}/s",
+                this.getFairShareEnabled(), fairShareMaxConcurrent, fairShareKeyMaxConcurrent, fairShareKeyRate);
+        LOG.info("  Cache policy normal = '{}', degraded = '{}', error = '{}'", cachePolicyNormal, cachePolicyDegraded,
+                cachePolicyError);
+        LOG.info("  Priority lanes large record size = {} kB, large lane threads = {}, max queued = {}, timeout = {} ms",
+                largeRecordSizeKb, largeLaneThreads, largeLaneMaxQueued, largeLaneTimeoutMs);
+        LOG.info("  Batch requests max size = {}, parallelism = {}, threads = {}, max queued = {}, max wait = {} ms",
+                batchMaxSize, batchParallelism, batchThreads, batchMaxQueued, batchMaxWaitMs);
+        LOG.info("  Collection page size = {}", collectionPageSize);
+        LOG.info("  Server-Timing header = {}, access log = {}", serverTimingEnabled, serverTimingAccessLog);
+        LOG.info("  Slow request threshold = {} ms, max samples = {}", slowRequestThresholdMs, slowRequestMaxSamples);
     }
 
 }
@@ -0,0 +1,40 @@
+package eu.europeana.iiif.config;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.config.CorsRegistry;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Web configuration used when running with the 'reactive' profile. Setup CORS in the same way as the WebMvcConfig
+ * and make sure we use Reactor Netty (Tomcat is on the classpath as well, and would otherwise be picked).
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveWebConfig implements WebFluxConfigurer {
+
+    /**
+     * @return factory for the Reactor Netty server
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * Setup CORS for all GET, HEAD and OPTIONS, requests.
+     */
+    @Override
+    public void addCorsMappings(CorsRegistry registry) {
+        registry.addMapping("/**")
+                .allowedOrigins("*")
+                .allowedMethods("*")
+                .allowedHeaders("*")
+                .exposedHeaders("Allow, Vary, ETag, Last-Modified")
+                .allowCredentials(false)
+                .maxAge(1000L); // in seconds
+    }
+
+}
@@ -0,0 +1,60 @@
+package eu.europeana.iiif.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Optionally lets the embedded Tomcat server handle requests on virtual threads. Manifest requests spend most of their
+ * time waiting for the Record API and Full-Text API, so with virtual threads the number of concurrent requests is only
+ * limited by the http client connection pools and not by the size of the Tomcat thread pool.
+ *
+ * Virtual threads require Java 21, but since we compile for Java 17 the executor is created using reflection. If it's
+ * not available we log a warning and keep using the Tomcat thread pool.
+ */
+@Configuration
+public class VirtualThreadConfig {
+
+    private static final Logger LOG = LogManager.getLogger(VirtualThreadConfig.class);
+
+    private final ManifestSettings settings;
+
+    public VirtualThreadConfig(ManifestSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * @return customizer that replaces the Tomcat request executor with a virtual thread executor (if enabled)
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (Boolean.TRUE.equals(settings.getVirtualThreadsEnabled())) {
+                ExecutorService executor = createVirtualThreadExecutor();
+                if (executor != null) {
+                    LOG.info("Handling requests on virtual threads");
+                    protocolHandler.setExecutor(executor);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return an executor that starts a new virtual thread for each task, or null if virtual threads are not supported
+     * by the Java runtime
+     */
+    static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LOG.warn("Virtual threads are enabled, but not supported by Java {}. Using platform threads instead",
+                    System.getProperty("java.version"));
+            return null;
+        }
+    }
+}
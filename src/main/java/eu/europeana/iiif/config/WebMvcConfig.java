@@ -1,6 +1,7 @@
 package eu.europeana.iiif.config;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -8,6 +9,7 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
  * Setup CORS for all requests and setup default Content-type
  */
 @Configuration
+@Profile("!reactive")
 public class WebMvcConfig implements WebMvcConfigurer {
 
     /**
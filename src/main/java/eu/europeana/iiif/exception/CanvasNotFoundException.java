@@ -0,0 +1,29 @@
+package eu.europeana.iiif.exception;
+
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Exception that is thrown when a requested canvas or page of canvases doesn't exist in a record
+ */
+public class CanvasNotFoundException extends EuropeanaApiException {
+
+    private static final long serialVersionUID = -4387920641374539512L;
+
+    public CanvasNotFoundException(String msg) {
+        super(msg);
+    }
+
+    /**
+     * @return false because we don't want to explicitly log this type of exception
+     */
+    @Override
+    public boolean doLog() {
+        return false;
+    }
+
+    @Override
+    public HttpStatus getResponseStatus() {
+        return HttpStatus.NOT_FOUND;
+    }
+}
@@ -1,16 +1,37 @@
 package eu.europeana.iiif.exception;
 
 import eu.europeana.api.commons.web.exception.EuropeanaGlobalExceptionHandler;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import javax.servlet.http.HttpServletRequest;
 
 /**
- * Global exception handler that catches all errors and logs the interesting ones
+ * Global exception handler that catches all errors and logs the interesting ones (servlet stack only, see
+ * ReactiveExceptionHandler for the reactive profile)
  * @author Patrick Ehlert
  * Created on 20-02-2018
  */
 @ControllerAdvice
+@Profile("!reactive")
 public class GlobalExceptionHandler extends EuropeanaGlobalExceptionHandler {
 
-
+    /**
+     * Same response as for other Europeana API exceptions, but with a Retry-After header
+     * @param e the exception that was thrown
+     * @param httpRequest the request that was refused
+     * @return error response
+     */
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<Object> handleServiceOverloaded(ServiceOverloadedException e, HttpServletRequest httpRequest) {
+        ResponseEntity<?> response = handleEuropeanaBaseException(e, httpRequest);
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter()))
+                .body(response.getBody());
+    }
 
 }
@@ -28,4 +28,13 @@ public class InvalidApiKeyException extends EuropeanaApiException {
     public HttpStatus getResponseStatus() {
         return HttpStatus.UNAUTHORIZED;
     }
+
+    /**
+     * Clients with a revoked key often keep retrying, so we skip the (expensive) stack trace; it's never logged anyway
+     * @return this exception
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
 }
@@ -0,0 +1,95 @@
+package eu.europeana.iiif.exception;
+
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.config.CachePolicy;
+import eu.europeana.iiif.config.ManifestSettings;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Exception handler used when running with the 'reactive' profile (the GlobalExceptionHandler only works for servlet
+ * requests). Error responses contain the same fields as the error responses of the servlet stack.
+ */
+@RestControllerAdvice
+@Profile("reactive")
+public class ReactiveExceptionHandler {
+
+    private static final Logger LOG = LogManager.getLogger(ReactiveExceptionHandler.class);
+
+    private final ManifestSettings settings;
+
+    public ReactiveExceptionHandler(ManifestSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Handle all Europeana API exceptions thrown while processing a request
+     * @param e the exception that was thrown
+     * @param request the request that failed
+     * @return error response
+     */
+    @ExceptionHandler(EuropeanaApiException.class)
+    public ResponseEntity<Map<String, Object>> handleEuropeanaApiException(EuropeanaApiException e,
+                                                                           ServerHttpRequest request) {
+        if (e.doLog()) {
+            if (e.doLogStacktrace()) {
+                LOG.error("Caught exception", e);
+            } else {
+                LOG.error("Caught exception: {}", e.getMessage());
+            }
+        }
+        ResponseEntity<Map<String, Object>> response = createResponse(e.getResponseStatus(),
+                (e.doExposeMessage() ? e.getMessage() : null), request);
+        if (e instanceof ServiceOverloadedException) {
+            return ResponseEntity.status(response.getStatusCode())
+                    .headers(response.getHeaders())
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(((ServiceOverloadedException) e).getRetryAfter()))
+                    .body(response.getBody());
+        }
+        return response;
+    }
+
+    /**
+     * Thrown when all mapping threads are busy and their queues are full
+     * @param e the exception that was thrown
+     * @param request the request that failed
+     * @return error response
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Map<String, Object>> handleRejectedExecution(RejectedExecutionException e,
+                                                                       ServerHttpRequest request) {
+        LOG.warn("Request {} refused: {}", request.getPath(), e.getMessage());
+        return createResponse(HttpStatus.SERVICE_UNAVAILABLE, "Server is too busy, please try again later", request);
+    }
+
+    private ResponseEntity<Map<String, Object>> createResponse(HttpStatus status, String message,
+                                                               ServerHttpRequest request) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("success", false);
+        body.put("status", status.value());
+        body.put("error", status.getReasonPhrase());
+        if (message != null) {
+            body.put("message", message);
+        }
+        body.put("timestamp", OffsetDateTime.now().toString());
+        body.put("path", request.getPath().value());
+        String cacheControl = settings.getCacheControl(CachePolicy.ResponseClass.ERROR);
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CACHE_CONTROL, (cacheControl == null ? CachePolicy.DEFAULT_CACHE_CONTROL : cacheControl))
+                .body(body);
+    }
+}
@@ -28,4 +28,13 @@ public class RecordNotFoundException extends EuropeanaApiException {
     public HttpStatus getResponseStatus() {
         return HttpStatus.NOT_FOUND;
     }
+
+    /**
+     * Bots keep requesting removed records, so we skip the (expensive) stack trace; it's never logged anyway
+     * @return this exception
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
 }
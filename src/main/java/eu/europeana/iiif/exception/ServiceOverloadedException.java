@@ -0,0 +1,53 @@
+package eu.europeana.iiif.exception;
+
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Exception that is thrown when a request is refused because too many requests are already waiting for the Record API
+ */
+public class ServiceOverloadedException extends EuropeanaApiException {
+
+    private static final long serialVersionUID = -2218569402384631052L;
+
+    private final int retryAfter;
+
+    /**
+     * Create a new exception
+     * @param msg error message
+     * @param retryAfter number of seconds after which the client can try again
+     */
+    public ServiceOverloadedException(String msg, int retryAfter) {
+        super(msg);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return number of seconds after which the client can try again
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @return false because when we're overloaded we don't want to log each refused request
+     */
+    @Override
+    public boolean doLog() {
+        return false;
+    }
+
+    @Override
+    public HttpStatus getResponseStatus() {
+        return HttpStatus.SERVICE_UNAVAILABLE;
+    }
+
+    /**
+     * Refusing a request should be as cheap as possible, so no stack trace
+     * @return this exception
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
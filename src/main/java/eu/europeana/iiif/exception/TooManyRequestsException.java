@@ -0,0 +1,26 @@
+package eu.europeana.iiif.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Exception that is thrown when a request is refused because the API key used has too many requests in progress or
+ * exceeded its request rate
+ */
+public class TooManyRequestsException extends ServiceOverloadedException {
+
+    private static final long serialVersionUID = 6119862205911378370L;
+
+    /**
+     * Create a new exception
+     * @param msg error message
+     * @param retryAfter number of seconds after which the client can try again
+     */
+    public TooManyRequestsException(String msg, int retryAfter) {
+        super(msg, retryAfter);
+    }
+
+    @Override
+    public HttpStatus getResponseStatus() {
+        return HttpStatus.TOO_MANY_REQUESTS;
+    }
+}
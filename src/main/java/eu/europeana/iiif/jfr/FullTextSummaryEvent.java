@@ -0,0 +1,39 @@
+package eu.europeana.iiif.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Retrieving the full-text summary of a record from the Full-Text API
+ */
+@Name("eu.europeana.iiif.FullTextSummary")
+@Label("Full-Text Summary Fetch")
+@Description("Retrieving the full-text summary of a record from the Full-Text API")
+@Category({"Europeana", "IIIF Manifest API"})
+@StackTrace(false)
+public class FullTextSummaryEvent extends Event {
+
+    @Label("Record Id")
+    public String recordId;
+
+    @Label("Url")
+    public String url;
+
+    @Label("Status")
+    @Description("Http status code of the Full-Text API response, 0 if no response was received")
+    public int status;
+
+    @Label("Canvas Count")
+    @Description("Number of canvases in the summary")
+    public int canvasCount;
+
+    @Label("Summary Size")
+    @Description("Size of the summary json")
+    @DataAmount(DataAmount.BYTES)
+    public long summarySize;
+}
@@ -0,0 +1,39 @@
+package eu.europeana.iiif.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Mapping record data to a IIIF v3 manifest
+ */
+@Name("eu.europeana.iiif.ManifestMapping")
+@Label("Manifest Mapping")
+@Description("Mapping record data to a IIIF v3 manifest")
+@Category({"Europeana", "IIIF Manifest API"})
+@StackTrace(false)
+public class ManifestMappingEvent extends Event {
+
+    @Label("Record Id")
+    public String recordId;
+
+    @Label("Record Size")
+    @Description("Size of the record json")
+    @DataAmount(DataAmount.BYTES)
+    public long recordSize;
+
+    @Label("Projection")
+    public String projection;
+
+    @Label("Canvas Page Size")
+    @Description("Maximum number of canvases in the manifest, 0 means no maximum")
+    public int canvasPageSize;
+
+    @Label("Canvas Count")
+    @Description("Number of canvases in the manifest")
+    public int canvasCount;
+}
@@ -0,0 +1,32 @@
+package eu.europeana.iiif.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Retrieving the data of a record from the Record API
+ */
+@Name("eu.europeana.iiif.RecordFetch")
+@Label("Record Fetch")
+@Description("Retrieving record data from the Record API")
+@Category({"Europeana", "IIIF Manifest API"})
+@StackTrace(false)
+public class RecordFetchEvent extends Event {
+
+    @Label("Record Id")
+    public String recordId;
+
+    @Label("Status")
+    @Description("Http status code of the Record API response, 0 if no response was received")
+    public int status;
+
+    @Label("Record Size")
+    @Description("Size of the record json")
+    @DataAmount(DataAmount.BYTES)
+    public long recordSize;
+}
@@ -0,0 +1,40 @@
+package eu.europeana.iiif.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Serializing a manifest, canvas page or canvas
+ */
+@Name("eu.europeana.iiif.Serialization")
+@Label("Manifest Serialization")
+@Description("Serializing a manifest, canvas page or canvas")
+@Category({"Europeana", "IIIF Manifest API"})
+@StackTrace(false)
+public class SerializationEvent extends Event {
+
+    @Label("Record Id")
+    @Description("Id of the record, only available for manifests")
+    public String recordId;
+
+    @Label("Type")
+    @Description("Class of the serialized object")
+    public String type;
+
+    @Label("Encoding")
+    public String encoding;
+
+    @Label("Canvas Count")
+    @Description("Number of canvases in the manifest, only available for manifests")
+    public int canvasCount;
+
+    @Label("Size")
+    @Description("Size of the serialized data (for JSON the number of characters)")
+    @DataAmount(DataAmount.BYTES)
+    public long size;
+}
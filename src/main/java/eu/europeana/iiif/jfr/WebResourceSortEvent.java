@@ -0,0 +1,29 @@
+package eu.europeana.iiif.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Sorting the web resources of a record in canvas order
+ */
+@Name("eu.europeana.iiif.WebResourceSort")
+@Label("Web Resource Sort")
+@Description("Sorting the web resources of a record in canvas order")
+@Category({"Europeana", "IIIF Manifest API"})
+@StackTrace(false)
+public class WebResourceSortEvent extends Event {
+
+    @Label("Record Id")
+    public String recordId;
+
+    @Label("Web Resource Count")
+    public int webResourceCount;
+
+    @Label("Inconsistent")
+    @Description("True if the web resources couldn't be sorted because the sequence data is inconsistent")
+    public boolean inconsistent;
+}
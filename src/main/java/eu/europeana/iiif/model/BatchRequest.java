@@ -0,0 +1,47 @@
+package eu.europeana.iiif.model;
+
+import java.util.List;
+
+/**
+ * Body of a batch request: the ids of the records for which a manifest should be generated, and the options that
+ * apply to all of them
+ */
+public class BatchRequest {
+
+    private List<String> ids;
+    private String format;
+    private Boolean fullText;
+
+    /**
+     * @return ids of the records in the form of "/datasetid/recordid"
+     */
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<String> ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * @return IIIF version to generate, either '2' or '3' (optional, default is '2')
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    /**
+     * @return whether links to full-text should be added (optional, default is true)
+     */
+    public Boolean getFullText() {
+        return fullText;
+    }
+
+    public void setFullText(Boolean fullText) {
+        this.fullText = fullText;
+    }
+}
@@ -0,0 +1,17 @@
+package eu.europeana.iiif.model;
+
+/**
+ * Implemented by generated manifests and canvases, so we can tell if full-text links could be added or not
+ */
+public interface FullTextLinked {
+
+    /**
+     * @return true if full-text links may be missing because there was a problem retrieving the full-text summary
+     */
+    boolean isFullTextIncomplete();
+
+    /**
+     * @param fullTextIncomplete set to true if there was a problem retrieving the full-text summary
+     */
+    void setFullTextIncomplete(boolean fullTextIncomplete);
+}
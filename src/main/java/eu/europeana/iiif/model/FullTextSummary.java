@@ -0,0 +1,45 @@
+package eu.europeana.iiif.model;
+
+import eu.europeana.iiif.model.info.FulltextSummaryCanvas;
+
+import java.util.Map;
+
+/**
+ * Full-text summary of a record (the available annotation pages per canvas). The summary is retrieved before a
+ * manifest is generated, so generating the manifest doesn't have to wait for the Full-Text API
+ */
+public final class FullTextSummary {
+
+    /** summary of a record for which the Full-Text API couldn't be reached */
+    public static final FullTextSummary UNAVAILABLE = new FullTextSummary(null, false);
+
+    private final Map<String, FulltextSummaryCanvas> canvases;
+    private final boolean available;
+
+    /**
+     * Create a new summary
+     * @param canvases summary per canvas (key is the annotation page id hash), null if the record has no full text
+     */
+    public FullTextSummary(Map<String, FulltextSummaryCanvas> canvases) {
+        this(canvases, true);
+    }
+
+    private FullTextSummary(Map<String, FulltextSummaryCanvas> canvases, boolean available) {
+        this.canvases = canvases;
+        this.available = available;
+    }
+
+    /**
+     * @return summary per canvas (key is the annotation page id hash), null if the record has no full text
+     */
+    public Map<String, FulltextSummaryCanvas> getCanvases() {
+        return canvases;
+    }
+
+    /**
+     * @return false if the summary couldn't be retrieved, so full-text links are missing
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+}
@@ -0,0 +1,182 @@
+package eu.europeana.iiif.model;
+
+import eu.europeana.iiif.exception.InvalidRequestParamException;
+import eu.europeana.iiif.model.v2.LanguageObject;
+import eu.europeana.iiif.model.v3.LanguageMap;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Describes which languages a client wants to receive in the textual fields (labels, summaries and metadata) of a
+ * manifest. Values without language ('@none') and English values are always kept as fallback. If a field has no
+ * value in any of the requested or fallback languages, the first available value is kept so no field ends up empty.
+ *
+ * Languages are compared using the primary language subtag only, so requesting 'en-GB' will match 'en' values and
+ * vice versa.
+ */
+public final class LanguageFilter {
+
+    private static final Logger LOG = LogManager.getLogger(LanguageFilter.class);
+
+    private static final Pattern LANGUAGE_TAG = Pattern.compile("[a-zA-Z]{2,3}(-[a-zA-Z0-9]{1,8})*");
+    private static final int MAX_LANGUAGES = 10;
+    private static final String WILDCARD = "*";
+
+    /**
+     * Filter that keeps all languages (the default)
+     */
+    public static final LanguageFilter ALL = new LanguageFilter(null);
+
+    private final Set<String> languages; // null means all languages
+    private final String key;
+
+    private LanguageFilter(Set<String> languages) {
+        if (languages == null) {
+            this.languages = null;
+            this.key = WILDCARD;
+        } else {
+            this.languages = Collections.unmodifiableSet(new TreeSet<>(languages));
+            this.key = String.join(",", this.languages);
+        }
+    }
+
+    /**
+     * Create a language filter based on the provided request parameter or header. The lang parameter takes precedence
+     * over the Accept-Language header.
+     * @param lang optional, comma-separated list of language codes (e.g. 'nl,de')
+     * @param acceptLanguage optional, value of the Accept-Language header (e.g. 'nl-NL,nl;q=0.9,de;q=0.5')
+     * @return LanguageFilter, or LanguageFilter.ALL if no (usable) language was provided
+     * @throws InvalidRequestParamException when the lang parameter contains an invalid language code
+     */
+    public static LanguageFilter of(String lang, String acceptLanguage) throws InvalidRequestParamException {
+        if (StringUtils.isNotBlank(lang)) {
+            return fromParameter(lang);
+        }
+        if (StringUtils.isNotBlank(acceptLanguage)) {
+            return fromHeader(acceptLanguage);
+        }
+        return ALL;
+    }
+
+    private static LanguageFilter fromParameter(String lang) throws InvalidRequestParamException {
+        Set<String> result = new TreeSet<>();
+        for (String language : StringUtils.split(lang, ',')) {
+            String tag = language.trim();
+            if (WILDCARD.equals(tag)) {
+                return ALL;
+            }
+            if (!LANGUAGE_TAG.matcher(tag).matches() || result.size() == MAX_LANGUAGES) {
+                throw new InvalidRequestParamException("lang", lang);
+            }
+            result.add(getPrimaryLanguage(tag));
+        }
+        return (result.isEmpty() ? ALL : new LanguageFilter(result));
+    }
+
+    private static LanguageFilter fromHeader(String acceptLanguage) {
+        // we don't want to fail requests because of a malformed header, so in that case we simply return everything
+        List<Locale.LanguageRange> ranges;
+        try {
+            ranges = Locale.LanguageRange.parse(acceptLanguage);
+        } catch (IllegalArgumentException e) {
+            LOG.debug("Ignoring invalid Accept-Language header {}", acceptLanguage, e);
+            return ALL;
+        }
+        Set<String> result = new TreeSet<>();
+        for (Locale.LanguageRange range : ranges) {
+            String tag = range.getRange();
+            if (WILDCARD.equals(tag)) {
+                return ALL;
+            }
+            if (range.getWeight() > 0 && result.size() < MAX_LANGUAGES) {
+                result.add(getPrimaryLanguage(tag));
+            }
+        }
+        return (result.isEmpty() ? ALL : new LanguageFilter(result));
+    }
+
+    private static String getPrimaryLanguage(String languageTag) {
+        return StringUtils.substringBefore(languageTag, "-").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return true if this filter keeps all languages
+     */
+    public boolean isAll() {
+        return languages == null;
+    }
+
+    /**
+     * Check if values in the provided language should be kept
+     * @param language the language of a value, can be null or '@none' for values without a language
+     * @return true if the value should be kept
+     */
+    public boolean includes(String language) {
+        if (languages == null || StringUtils.isEmpty(language) || LanguageMap.NO_LANGUAGE_KEY.equals(language)
+                || "def".equalsIgnoreCase(language)) {
+            return true;
+        }
+        String primary = getPrimaryLanguage(language);
+        return LanguageMap.DEFAULT_METADATA_KEY.equals(primary) || languages.contains(primary);
+    }
+
+    /**
+     * Removes all values that are not in one of the requested (or fallback) languages.
+     * @param map the language map to filter, can be null
+     * @return a new language map with only the requested languages, or the original map if nothing was filtered
+     */
+    public LanguageMap filter(LanguageMap map) {
+        if (languages == null || map == null || map.size() <= 1) {
+            return map;
+        }
+        LanguageMap result = new LanguageMap();
+        for (Map.Entry<String, String[]> entry : map.entrySet()) {
+            if (includes(entry.getKey())) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (result.isEmpty()) {
+            Map.Entry<String, String[]> first = map.entrySet().iterator().next();
+            result.put(first.getKey(), first.getValue());
+        }
+        return (result.size() == map.size() ? map : result);
+    }
+
+    /**
+     * Removes all language objects that are not in one of the requested (or fallback) languages.
+     * @param objects the language objects to filter, can be null
+     * @return a new array with only the requested languages, or the original array if nothing was filtered
+     */
+    public LanguageObject[] filter(LanguageObject[] objects) {
+        if (languages == null || objects == null || objects.length <= 1) {
+            return objects;
+        }
+        List<LanguageObject> result = new ArrayList<>(objects.length);
+        for (LanguageObject object : objects) {
+            if (includes(object.getLanguage())) {
+                result.add(object);
+            }
+        }
+        if (result.isEmpty()) {
+            result.add(objects[0]);
+        }
+        return (result.size() == objects.length ? objects : result.toArray(new LanguageObject[0]));
+    }
+
+    /**
+     * @return canonical textual representation of this filter (languages sorted alphabetically), used as part of
+     * the ETag so each language selection is cached separately
+     */
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
@@ -20,6 +20,12 @@ public final class ManifestDefinitions {
      */
     public static final String MEDIA_TYPE_RDF = "application/rdf+xml";
 
+    /**
+     * Media types of binary manifest encodings
+     */
+    public static final String MEDIA_TYPE_SMILE = "application/x-jackson-smile";
+    public static final String MEDIA_TYPE_CBOR = "application/cbor";
+
     /**
      * Location of the europeana logo (for v2 manifest)
      */
@@ -58,6 +64,11 @@ public final class ManifestDefinitions {
 
     public static final String ATTRIBUTION_STRING = "Attribution";
 
+    /**
+     * Profile of the seeAlso reference to the next page of canvases (for manifests generated with paging)
+     */
+    public static final String CANVAS_PAGE_PROFILE = "https://www.w3.org/ns/activitystreams#OrderedCollectionPage";
+
     private ManifestDefinitions() {
         // empty constructor to avoid initializationRE
     }
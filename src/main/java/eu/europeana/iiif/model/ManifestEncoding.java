@@ -0,0 +1,50 @@
+package eu.europeana.iiif.model;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Supported encodings of manifests. Next to the standard (JSON) encoding manifests can be serialized in binary JSON
+ * formats. These contain exactly the same data, but are smaller and faster to parse, so they are useful for internal
+ * consumers that harvest large numbers of manifests.
+ */
+public enum ManifestEncoding {
+
+    JSON(null),
+    SMILE(ManifestDefinitions.MEDIA_TYPE_SMILE),
+    CBOR(ManifestDefinitions.MEDIA_TYPE_CBOR);
+
+    private final String mediaType;
+
+    ManifestEncoding(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * @return the media type of this encoding, null for JSON (media type depends on JSON or JSON-LD request)
+     */
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * @return true if this is a binary encoding
+     */
+    public boolean isBinary() {
+        return mediaType != null;
+    }
+
+    /**
+     * Determine the encoding from an Accept header value
+     * @param accept value of the Accept header, can be null
+     * @return the binary encoding requested in the Accept header (Smile takes precedence), or JSON if there is none
+     */
+    public static ManifestEncoding fromAccept(String accept) {
+        if (StringUtils.containsIgnoreCase(accept, ManifestDefinitions.MEDIA_TYPE_SMILE)) {
+            return SMILE;
+        }
+        if (StringUtils.containsIgnoreCase(accept, ManifestDefinitions.MEDIA_TYPE_CBOR)) {
+            return CBOR;
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,92 @@
+package eu.europeana.iiif.model;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Intermediate model of a record from which (parts of) manifests are generated. It contains the parsed record data
+ * and, once determined, the web resources for which canvases are generated in canvas order.
+ *
+ * Models are cached, so pages of canvases or single canvases can be generated without retrieving the record again and
+ * without mapping the entire manifest.
+ */
+public class ManifestModel {
+
+    private final String europeanaId;
+    private final String isShownBy;
+    private final ZonedDateTime lastModified;
+    private final Object jsonDoc;
+    private final int jsonSize;
+
+    // canvas resources are determined lazily and only once (if 2 threads do this at the same time the result is the same)
+    private volatile List<WebResource> canvasResourcesV2;
+    private volatile List<WebResource> canvasResourcesV3;
+    private volatile MediaType euScreenTypeHack;
+
+    /**
+     * Create a new manifest model
+     * @param europeanaId consisting of dataset ID and record ID separated by a slash
+     * @param isShownBy optional, edmIsShownBy value of the record
+     * @param lastModified optional, timestamp when the record was last updated
+     * @param jsonDoc parsed record json
+     * @param jsonSize size of the original record json (used to limit the memory used by the cache)
+     */
+    public ManifestModel(String europeanaId, String isShownBy, ZonedDateTime lastModified, Object jsonDoc, int jsonSize) {
+        this.europeanaId = europeanaId;
+        this.isShownBy = isShownBy;
+        this.lastModified = lastModified;
+        this.jsonDoc = jsonDoc;
+        this.jsonSize = jsonSize;
+    }
+
+    public String getEuropeanaId() {
+        return europeanaId;
+    }
+
+    public String getIsShownBy() {
+        return isShownBy;
+    }
+
+    public ZonedDateTime getLastModified() {
+        return lastModified;
+    }
+
+    public Object getJsonDoc() {
+        return jsonDoc;
+    }
+
+    public int getJsonSize() {
+        return jsonSize;
+    }
+
+    /**
+     * @return the web resources for which a v2 canvas is generated (in canvas order), or null if not determined yet
+     */
+    public List<WebResource> getCanvasResourcesV2() {
+        return canvasResourcesV2;
+    }
+
+    public void setCanvasResourcesV2(List<WebResource> canvasResourcesV2) {
+        this.canvasResourcesV2 = canvasResourcesV2;
+    }
+
+    /**
+     * @return the web resources for which a v3 canvas is generated (in canvas order), or null if not determined yet
+     */
+    public List<WebResource> getCanvasResourcesV3() {
+        return canvasResourcesV3;
+    }
+
+    /**
+     * @return the media type to use for all v3 canvases of EUScreen records, null for other records
+     */
+    public MediaType getEuScreenTypeHack() {
+        return euScreenTypeHack;
+    }
+
+    public void setCanvasResourcesV3(List<WebResource> canvasResourcesV3, MediaType euScreenTypeHack) {
+        // set media type first, so it's available when the resources are
+        this.euScreenTypeHack = euScreenTypeHack;
+        this.canvasResourcesV3 = canvasResourcesV3;
+    }
+}
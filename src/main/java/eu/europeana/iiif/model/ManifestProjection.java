@@ -0,0 +1,196 @@
+package eu.europeana.iiif.model;
+
+import eu.europeana.iiif.exception.InvalidRequestParamException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Describes which parts of a manifest a client wants to receive. Sections that are not part of the projection are
+ * not extracted from the record data nor mapped, so a smaller projection also means less processing.
+ *
+ * Field names follow the IIIF v3 manifest (e.g. 'label', 'metadata', 'items'). Canvas fields are prefixed with
+ * 'items.' (e.g. 'items.width'). For v2 manifests the equivalent v2 fields are used (e.g. 'summary' is mapped to
+ * 'description' and 'items' to the canvases of the sequence). The most common v2 names are accepted as aliases.
+ */
+public final class ManifestProjection {
+
+    public static final String PROFILE_FULL    = "full";
+    public static final String PROFILE_MINIMAL = "minimal";
+
+    public static final String LABEL              = "label";
+    public static final String SUMMARY            = "summary";
+    public static final String METADATA           = "metadata";
+    public static final String THUMBNAIL          = "thumbnail";
+    public static final String NAV_DATE           = "navDate";
+    public static final String HOMEPAGE           = "homepage";
+    public static final String REQUIRED_STATEMENT = "requiredStatement";
+    public static final String RIGHTS             = "rights";
+    public static final String SEE_ALSO           = "seeAlso";
+    public static final String SERVICE            = "service";
+    public static final String START              = "start";
+    public static final String ITEMS              = "items";
+
+    public static final String CANVAS_PREFIX      = ITEMS + ".";
+    public static final String CANVAS_ID          = CANVAS_PREFIX + "id";
+    public static final String CANVAS_LABEL       = CANVAS_PREFIX + LABEL;
+    public static final String CANVAS_WIDTH       = CANVAS_PREFIX + "width";
+    public static final String CANVAS_HEIGHT      = CANVAS_PREFIX + "height";
+    public static final String CANVAS_DURATION    = CANVAS_PREFIX + "duration";
+    public static final String CANVAS_REQUIRED_STATEMENT = CANVAS_PREFIX + REQUIRED_STATEMENT;
+    public static final String CANVAS_RIGHTS      = CANVAS_PREFIX + RIGHTS;
+    public static final String CANVAS_THUMBNAIL   = CANVAS_PREFIX + THUMBNAIL;
+    public static final String CANVAS_ITEMS       = CANVAS_PREFIX + ITEMS;
+    public static final String CANVAS_RENDERING   = CANVAS_PREFIX + "rendering";
+    public static final String CANVAS_ANNOTATIONS = CANVAS_PREFIX + "annotations";
+
+    private static final Set<String> TOP_LEVEL_FIELDS = Set.of(LABEL, SUMMARY, METADATA, THUMBNAIL, NAV_DATE, HOMEPAGE,
+            REQUIRED_STATEMENT, RIGHTS, SEE_ALSO, SERVICE, START, ITEMS);
+
+    private static final Set<String> CANVAS_FIELDS = Set.of(CANVAS_ID, CANVAS_LABEL, CANVAS_WIDTH, CANVAS_HEIGHT,
+            CANVAS_DURATION, CANVAS_REQUIRED_STATEMENT, CANVAS_RIGHTS, CANVAS_THUMBNAIL, CANVAS_ITEMS, CANVAS_RENDERING,
+            CANVAS_ANNOTATIONS);
+
+    // v2 field names that we accept as alias for the v3 names
+    private static final Map<String, String> ALIASES = Map.of(
+            "description", SUMMARY,
+            "attribution", REQUIRED_STATEMENT,
+            "license", RIGHTS,
+            "sequences", ITEMS,
+            CANVAS_PREFIX + "attribution", CANVAS_REQUIRED_STATEMENT,
+            CANVAS_PREFIX + "license", CANVAS_RIGHTS,
+            CANVAS_PREFIX + "images", CANVAS_ITEMS,
+            CANVAS_PREFIX + "otherContent", CANVAS_ANNOTATIONS);
+
+    /**
+     * Projection that includes everything (the default)
+     */
+    public static final ManifestProjection FULL = new ManifestProjection(null);
+
+    /**
+     * Projection for thumbnail strips, page counters and previews: label, thumbnail and canvas ids and sizes
+     */
+    public static final ManifestProjection MINIMAL = new ManifestProjection(Set.of(LABEL, THUMBNAIL, ITEMS,
+            CANVAS_ID, CANVAS_WIDTH, CANVAS_HEIGHT));
+
+    private final Set<String> fields; // null means all fields
+    private final String key;
+
+    private ManifestProjection(Set<String> fields) {
+        if (fields == null) {
+            this.fields = null;
+            this.key = PROFILE_FULL;
+        } else {
+            this.fields = Collections.unmodifiableSet(new TreeSet<>(fields));
+            this.key = String.join(",", this.fields);
+        }
+    }
+
+    /**
+     * Create a projection based on the provided request parameters. If both are empty, the full projection is returned.
+     * Note that some fields depend on others; requesting 'start' or 'items.annotations' will also include 'items.items'
+     * because the painting annotation is needed to determine the start canvas and to link full texts.
+     * @param profile optional, either 'full' or 'minimal'
+     * @param fields optional, comma-separated list of fields to include
+     * @return ManifestProjection
+     * @throws InvalidRequestParamException when the profile or one of the fields isn't supported
+     */
+    public static ManifestProjection of(String profile, String fields) throws InvalidRequestParamException {
+        ManifestProjection result = FULL;
+        if (StringUtils.isNotBlank(profile)) {
+            if (PROFILE_MINIMAL.equalsIgnoreCase(profile.trim())) {
+                result = MINIMAL;
+            } else if (!PROFILE_FULL.equalsIgnoreCase(profile.trim())) {
+                throw new InvalidRequestParamException("profile", profile);
+            }
+        }
+        if (StringUtils.isBlank(fields)) {
+            return result;
+        }
+
+        Set<String> selected = new TreeSet<>();
+        if (!result.isFull()) {
+            selected.addAll(result.fields);
+        }
+        for (String field : StringUtils.split(fields, ',')) {
+            String name = ALIASES.getOrDefault(field.trim(), field.trim());
+            if (TOP_LEVEL_FIELDS.contains(name)) {
+                selected.add(name);
+            } else if (CANVAS_FIELDS.contains(name)) {
+                // canvas fields can only be output when canvases are generated
+                selected.add(ITEMS);
+                selected.add(name);
+            } else if (!name.isEmpty()) {
+                throw new InvalidRequestParamException("fields", field);
+            }
+        }
+        if (selected.contains(START) || selected.contains(CANVAS_ANNOTATIONS)) {
+            selected.add(ITEMS);
+            selected.add(CANVAS_ITEMS);
+        }
+        return new ManifestProjection(selected);
+    }
+
+    /**
+     * @return true if this projection includes all fields
+     */
+    public boolean isFull() {
+        return fields == null;
+    }
+
+    /**
+     * Check if a top-level manifest field should be generated
+     * @param field name of the (v3) manifest field
+     * @return true if the field is part of this projection
+     */
+    public boolean includes(String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    /**
+     * Check if a canvas field should be generated. If only 'items' was requested, then all canvas fields are included.
+     * @param canvasField name of the canvas field, including the 'items.' prefix
+     * @return true if the canvas field is part of this projection
+     */
+    public boolean includesCanvasField(String canvasField) {
+        if (fields == null) {
+            return true;
+        }
+        if (!fields.contains(ITEMS)) {
+            return false;
+        }
+        return fields.contains(canvasField) || !hasCanvasFieldSelection();
+    }
+
+    /**
+     * @return true if full-text annotation pages are part of this projection (so we need to contact the Fulltext API)
+     */
+    public boolean includesFullText() {
+        return includesCanvasField(CANVAS_ANNOTATIONS);
+    }
+
+    private boolean hasCanvasFieldSelection() {
+        for (String field : fields) {
+            if (field.startsWith(CANVAS_PREFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return canonical textual representation of this projection (fields sorted alphabetically), used as part of
+     * the ETag so each projection is cached separately
+     */
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
@@ -0,0 +1,69 @@
+package eu.europeana.iiif.model;
+
+import java.util.List;
+
+/**
+ * A single page of records of a dataset, as returned by a record listing client
+ */
+public class RecordListingPage {
+
+    private final List<Item> items;
+    private final String nextCursor;
+
+    /**
+     * Create a new page
+     * @param items the records on this page
+     * @param nextCursor cursor to retrieve the next page, null if this is the last page
+     */
+    public RecordListingPage(List<Item> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return the records on this page
+     */
+    public List<Item> getItems() {
+        return items;
+    }
+
+    /**
+     * @return cursor to retrieve the next page, null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Basic information about a single record
+     */
+    public static class Item {
+        private final String europeanaId;
+        private final String title;
+        private final String thumbnailUrl;
+
+        /**
+         * Create a new item
+         * @param europeanaId id of the record in the form of "/datasetid/recordid"
+         * @param title optional, title of the record
+         * @param thumbnailUrl optional, url of the thumbnail of the record
+         */
+        public Item(String europeanaId, String title, String thumbnailUrl) {
+            this.europeanaId = europeanaId;
+            this.title = title;
+            this.thumbnailUrl = thumbnailUrl;
+        }
+
+        public String getEuropeanaId() {
+            return europeanaId;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getThumbnailUrl() {
+            return thumbnailUrl;
+        }
+    }
+}
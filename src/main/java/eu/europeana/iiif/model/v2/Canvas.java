@@ -1,6 +1,9 @@
 package eu.europeana.iiif.model.v2;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import eu.europeana.iiif.model.FullTextLinked;
 import ioinformarics.oss.jackson.module.jsonld.annotation.JsonldType;
 
 /**
@@ -8,12 +11,18 @@ import ioinformarics.oss.jackson.module.jsonld.annotation.JsonldType;
  * Created on 06-02-2018
  */
 @JsonldType("sc:Canvas")
-public class Canvas extends JsonLdId {
+@JsonPropertyOrder({"context", "id"})
+public class Canvas extends JsonLdId implements FullTextLinked {
 
     private static final long serialVersionUID = 6160907015595073905L;
 
+    @JsonProperty("@context")
+    private String context; // only set when a canvas is served on its own
+
     @JsonIgnore
     private int pageNr; // for internal use
+    @JsonIgnore
+    private transient boolean fullTextIncomplete; // for internal use
 
     private String label;
     private Integer height;
@@ -53,6 +62,14 @@ public class Canvas extends JsonLdId {
         return pageNr;
     }
 
+    public String getContext() {
+        return context;
+    }
+
+    public void setContext(String context) {
+        this.context = context;
+    }
+
     public String getLabel() {
         return label;
     }
@@ -134,4 +151,15 @@ public class Canvas extends JsonLdId {
     public void setOtherContent(String[] otherContent) {
         this.otherContent = otherContent;
     }
+
+    @Override
+    @JsonIgnore
+    public boolean isFullTextIncomplete() {
+        return fullTextIncomplete;
+    }
+
+    @Override
+    public void setFullTextIncomplete(boolean fullTextIncomplete) {
+        this.fullTextIncomplete = fullTextIncomplete;
+    }
 }
@@ -3,6 +3,7 @@ package eu.europeana.iiif.model.v2;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import eu.europeana.iiif.model.FullTextLinked;
 import eu.europeana.iiif.model.ManifestDefinitions;
 import ioinformarics.oss.jackson.module.jsonld.annotation.JsonldType;
 
@@ -14,7 +15,7 @@ import ioinformarics.oss.jackson.module.jsonld.annotation.JsonldType;
  */
 @JsonPropertyOrder({"id", "context"})
 @JsonldType(value = "sc:Manifest")
-public class ManifestV2 extends JsonLdId {
+public class ManifestV2 extends JsonLdId implements FullTextLinked {
 
     private static final long serialVersionUID = -2645198128531918309L;
 
@@ -40,6 +41,8 @@ public class ManifestV2 extends JsonLdId {
     private String europeanaId; // for internal use only
     @JsonIgnore
     private String isShownBy; // for internal use only
+    @JsonIgnore
+    private transient boolean fullTextIncomplete; // for internal use only
 
     /**
      * Create a new empty manifest (only id is filled)
@@ -174,4 +177,15 @@ public class ManifestV2 extends JsonLdId {
     public void setService(Service service) {
         this.service = service;
     }
+
+    @Override
+    @JsonIgnore
+    public boolean isFullTextIncomplete() {
+        return fullTextIncomplete;
+    }
+
+    @Override
+    public void setFullTextIncomplete(boolean fullTextIncomplete) {
+        this.fullTextIncomplete = fullTextIncomplete;
+    }
 }
@@ -2,17 +2,25 @@ package eu.europeana.iiif.model.v3;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import eu.europeana.iiif.model.FullTextLinked;
 
 /**
  * @author Patrick Ehlert
  * Created on 24-01-2018
  */
-public class Canvas extends JsonLdIdType {
+@JsonPropertyOrder({"context", "id", "type"})
+public class Canvas extends JsonLdIdType implements FullTextLinked {
 
     private static final long serialVersionUID = 3925574023427671991L;
 
+    @JsonProperty("@context")
+    private String[] context; // only set when a canvas is served on its own
+
     @JsonIgnore
     private int pageNr; // for internal use
+    @JsonIgnore
+    private transient boolean fullTextIncomplete; // for internal use
 
     private LanguageMap label;
     private Integer height;
@@ -55,6 +63,14 @@ public class Canvas extends JsonLdIdType {
         return pageNr;
     }
 
+    public String[] getContext() {
+        return context;
+    }
+
+    public void setContext(String[] context) {
+        this.context = context;
+    }
+
     public LanguageMap getLabel() {
         return label;
     }
@@ -149,4 +165,15 @@ public class Canvas extends JsonLdIdType {
         // EA-3325
         this.thumbnail = thumbnail;
     }
+
+    @Override
+    @JsonIgnore
+    public boolean isFullTextIncomplete() {
+        return fullTextIncomplete;
+    }
+
+    @Override
+    public void setFullTextIncomplete(boolean fullTextIncomplete) {
+        this.fullTextIncomplete = fullTextIncomplete;
+    }
 }
@@ -0,0 +1,98 @@
+package eu.europeana.iiif.model.v3;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import eu.europeana.iiif.model.FullTextLinked;
+
+/**
+ * Page of canvases of a (large) manifest. Manifests that are generated with paging only contain the first page of
+ * canvases and refer to the next page via seeAlso. Paging follows the Activity Streams OrderedCollectionPage model
+ * (as is also used by the IIIF Change Discovery API).
+ */
+@JsonPropertyOrder({"context", "id", "type", "partOf", "startIndex", "totalItems", "prev", "next", "orderedItems"})
+public class CanvasPage extends JsonLdIdType implements FullTextLinked {
+
+    private static final long serialVersionUID = -2349284793372361427L;
+
+    public static final String TYPE = "OrderedCollectionPage";
+
+    private static final String[] context = {"http://iiif.io/api/presentation/3/context.json",
+                                             "https://www.w3.org/ns/activitystreams"};
+
+    private final JsonLdIdType partOf;
+    private final int startIndex;
+    private final int totalItems;
+    private JsonLdIdType prev;
+    private JsonLdIdType next;
+    private Canvas[] orderedItems;
+
+    @JsonIgnore
+    private transient boolean fullTextIncomplete; // for internal use
+
+    /**
+     * Create a new canvas page
+     * @param id id of this page
+     * @param manifestId id of the manifest the canvases belong to
+     * @param startIndex 0-based index of the first canvas on this page
+     * @param totalItems total number of canvases in the manifest
+     */
+    public CanvasPage(String id, String manifestId, int startIndex, int totalItems) {
+        super(id, TYPE);
+        this.partOf = new JsonLdIdType(manifestId, "Manifest");
+        this.startIndex = startIndex;
+        this.totalItems = totalItems;
+    }
+
+    @JsonProperty("@context")
+    public String[] getContext() {
+        return CanvasPage.context;
+    }
+
+    public JsonLdIdType getPartOf() {
+        return partOf;
+    }
+
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    public int getTotalItems() {
+        return totalItems;
+    }
+
+    public JsonLdIdType getPrev() {
+        return prev;
+    }
+
+    public void setPrev(String prevId) {
+        this.prev = (prevId == null ? null : new JsonLdIdType(prevId, TYPE));
+    }
+
+    public JsonLdIdType getNext() {
+        return next;
+    }
+
+    public void setNext(String nextId) {
+        this.next = (nextId == null ? null : new JsonLdIdType(nextId, TYPE));
+    }
+
+    public Canvas[] getOrderedItems() {
+        return orderedItems;
+    }
+
+    public void setOrderedItems(Canvas[] orderedItems) {
+        this.orderedItems = orderedItems;
+    }
+
+    @Override
+    @JsonIgnore
+    public boolean isFullTextIncomplete() {
+        return fullTextIncomplete;
+    }
+
+    @Override
+    public void setFullTextIncomplete(boolean fullTextIncomplete) {
+        this.fullTextIncomplete = fullTextIncomplete;
+    }
+}
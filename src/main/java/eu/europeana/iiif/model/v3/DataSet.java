@@ -21,6 +21,11 @@ public class DataSet extends JsonLdIdType {
         this.format = format;
     }
 
+    public DataSet(String id, String format, String profile) {
+        this(id, format);
+        this.profile = profile;
+    }
+
     public String getFormat() {
         return format;
     }
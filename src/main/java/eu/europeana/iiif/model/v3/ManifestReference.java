@@ -0,0 +1,35 @@
+package eu.europeana.iiif.model.v3;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Reference to a manifest, as listed in the items of a collection
+ */
+@JsonPropertyOrder({"id", "type"})
+public class ManifestReference extends JsonLdIdType {
+
+    private static final long serialVersionUID = 2395719046581217461L;
+
+    private LanguageMap label;
+    private Image[] thumbnail;
+
+    /**
+     * Create a new manifest reference
+     * @param manifestId id of the referenced manifest
+     * @param label optional, label of the referenced manifest
+     * @param thumbnail optional, thumbnail of the referenced manifest
+     */
+    public ManifestReference(String manifestId, LanguageMap label, Image[] thumbnail) {
+        super(manifestId, "Manifest");
+        this.label = label;
+        this.thumbnail = thumbnail;
+    }
+
+    public LanguageMap getLabel() {
+        return label;
+    }
+
+    public Image[] getThumbnail() {
+        return thumbnail;
+    }
+}
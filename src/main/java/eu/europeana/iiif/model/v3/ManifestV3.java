@@ -3,6 +3,7 @@ package eu.europeana.iiif.model.v3;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import eu.europeana.iiif.model.FullTextLinked;
 
 /**
  * Manifest v3 root document
@@ -12,7 +13,7 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
  * Modified to latest v3 developments on March 2020
  */
 @JsonPropertyOrder({"context", "id", "type"})
-public class ManifestV3 extends JsonLdIdType {
+public class ManifestV3 extends JsonLdIdType implements FullTextLinked {
 
     private static final long serialVersionUID = -4087877560219592406L;
 
@@ -39,6 +40,8 @@ public class ManifestV3 extends JsonLdIdType {
     private String europeanaId; // for internal use only
     @JsonIgnore
     private String isShownBy; // for internal use only
+    @JsonIgnore
+    private transient boolean fullTextIncomplete; // for internal use only
 
     /**
      * Create a new empty manifest (only id, context and logo ar filled in)
@@ -191,4 +194,15 @@ public class ManifestV3 extends JsonLdIdType {
     public void setService(Service[] service) {
         this.service = service;
     }
+
+    @Override
+    @JsonIgnore
+    public boolean isFullTextIncomplete() {
+        return fullTextIncomplete;
+    }
+
+    @Override
+    public void setFullTextIncomplete(boolean fullTextIncomplete) {
+        this.fullTextIncomplete = fullTextIncomplete;
+    }
 }
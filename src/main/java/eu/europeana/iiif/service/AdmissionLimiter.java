@@ -0,0 +1,139 @@
+package eu.europeana.iiif.service;
+
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.exception.ServiceOverloadedException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Adaptive limit on the number of concurrent requests to an upstream API (AIMD: additive increase, multiplicative
+ * decrease).
+ *
+ * Every request to the upstream API first has to acquire a permit. When the number of requests in flight has reached
+ * the current limit, new requests are refused immediately instead of waiting for a thread or connection, so a slow
+ * upstream API can't tie up all request threads. After a request finishes the limit is adjusted:
+ * <ul>
+ *     <li>if the request failed or was slower than the latency threshold the limit is multiplied by 0.9</li>
+ *     <li>otherwise the limit is increased by 1, but only if at least half of the limit was in use</li>
+ * </ul>
+ * The limit always stays between the configured minimum and maximum.
+ */
+public class AdmissionLimiter {
+
+    private static final Logger LOG = LogManager.getLogger(AdmissionLimiter.class);
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final String name;
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNs;
+    private final int retryAfter;
+
+    private double limit;
+    private int inFlight;
+    private long refused;
+
+    /**
+     * Create a new limiter for an upstream API using the admission settings
+     * @param name name of the upstream API (used for logging)
+     * @param settings application settings
+     */
+    public AdmissionLimiter(String name, ManifestSettings settings) {
+        this(name, Boolean.TRUE.equals(settings.getAdmissionEnabled()), settings.getAdmissionMinLimit(),
+                settings.getAdmissionMaxLimit(), settings.getAdmissionLatencyThresholdMs(), settings.getAdmissionRetryAfter());
+    }
+
+    AdmissionLimiter(String name, boolean enabled, int minLimit, int maxLimit, long latencyThresholdMs, int retryAfter) {
+        this.name = name;
+        this.enabled = enabled;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyThresholdNs = latencyThresholdMs * 1_000_000L;
+        this.retryAfter = retryAfter;
+        this.limit = this.maxLimit;
+    }
+
+    /**
+     * Try to acquire a permit for sending a request upstream. The returned permit should always be released when
+     * the request is done.
+     * @return permit
+     * @throws ServiceOverloadedException when the maximum number of concurrent requests is reached
+     */
+    public Permit acquire() throws ServiceOverloadedException {
+        if (!enabled) {
+            return new Permit(false);
+        }
+        synchronized (this) {
+            if (inFlight >= (int) limit) {
+                refused++;
+                LOG.debug("{} request refused, {} requests in flight, limit = {}", name, inFlight, (int) limit);
+                throw new ServiceOverloadedException("Too many concurrent requests, please try again later", retryAfter);
+            }
+            inFlight++;
+        }
+        return new Permit(true);
+    }
+
+    private synchronized void release(long durationNs, boolean success) {
+        int oldLimit = (int) limit;
+        if (!success || durationNs > latencyThresholdNs) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        } else if (inFlight * 2 >= oldLimit) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        inFlight--;
+        if ((int) limit != oldLimit) {
+            LOG.debug("{} concurrency limit changed from {} to {}", name, oldLimit, (int) limit);
+        }
+    }
+
+    /**
+     * @return the current maximum number of concurrent requests
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return the number of requests currently in flight
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return total number of refused requests
+     */
+    public synchronized long getRefused() {
+        return refused;
+    }
+
+    /**
+     * Permission to send one request upstream
+     */
+    public final class Permit {
+
+        private final boolean counted;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(boolean counted) {
+            this.counted = counted;
+        }
+
+        /**
+         * Release the permit and adjust the limit based on the outcome of the request. Calling this more than once has
+         * no effect, also when calls race (e.g. a cancel and a completion of a reactive request).
+         * @param success false if the upstream API failed (timeout, server error), true otherwise
+         */
+        public void release(boolean success) {
+            if (counted && released.compareAndSet(false, true)) {
+                AdmissionLimiter.this.release(System.nanoTime() - start, success);
+            }
+        }
+    }
+}
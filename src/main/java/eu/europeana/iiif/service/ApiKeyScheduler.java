@@ -0,0 +1,486 @@
+package eu.europeana.iiif.service;
+
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.exception.ServiceOverloadedException;
+import eu.europeana.iiif.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Schedules requests fairly across API keys, so a single heavy user (e.g. a harvester) can't monopolize the
+ * application and its upstream connections.
+ *
+ * Each API key has a maximum number of concurrent requests, an optional rate limit (token bucket, burst size is 1
+ * second of requests) and a weight. When an API key has reached its concurrency limit, or the total concurrency limit
+ * is reached, requests wait in a (bounded) queue per API key. Whenever a request finishes, the next request is taken
+ * from the queue of the API key that has the fewest requests in progress relative to its weight (weighted fair share).
+ *
+ * Refused requests result in a TooManyRequestsException (429) when the API key exceeds its rate or queue size, or in a
+ * ServiceOverloadedException (503) when a request has waited too long.
+ *
+ * Only API keys with requests in progress or waiting are tracked. The token bucket of an idle key is kept until it has
+ * refilled, so the rate limit can't be evaded by sending requests one at a time. Metrics are published per API key
+ * listed in fair-share.key-limits (tagged with a short hash, as the metrics are public), all other keys are reported
+ * together as 'other'.
+ */
+@Component
+public class ApiKeyScheduler {
+
+    private static final Logger LOG = LogManager.getLogger(ApiKeyScheduler.class);
+
+    private static final String METRIC_KEY_OTHER = "other";
+    private static final int METRIC_KEY_HASH_LENGTH = 8;
+    private static final String METRIC_QUEUED = "manifest.apikey.queued";
+    private static final String METRIC_REJECTED = "manifest.apikey.rejected";
+    private static final String TAG_WSKEY = "wskey";
+
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final long maxWaitNs;
+    private final int retryAfter;
+    private final int maxQueued;
+    private final KeyLimits defaultLimits;
+    private final Map<String, KeyLimits> keyLimits;
+    private final MeterRegistry meterRegistry;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, KeyState> keys = new HashMap<>();
+    // idle keys of which the token bucket isn't full yet, in the order they became idle
+    private final Map<String, KeyState> idleKeys = new LinkedHashMap<>();
+    private final Map<String, String> metricKeys;
+    private int inFlight;
+
+    /**
+     * Create a new scheduler
+     * @param settings application settings
+     * @param meterRegistry optional, registry for the per-key metrics
+     */
+    public ApiKeyScheduler(ManifestSettings settings, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.enabled = Boolean.TRUE.equals(settings.getFairShareEnabled());
+        this.maxConcurrent = Math.max(1, settings.getFairShareMaxConcurrent());
+        this.maxWaitNs = TimeUnit.MILLISECONDS.toNanos(settings.getFairShareMaxWaitMs());
+        this.retryAfter = settings.getAdmissionRetryAfter();
+        this.maxQueued = settings.getFairShareKeyMaxQueued();
+        this.defaultLimits = new KeyLimits(Math.max(1, settings.getFairShareKeyMaxConcurrent()),
+                settings.getFairShareKeyRate(), 1);
+        this.keyLimits = parseKeyLimits(settings.getFairShareKeyLimits());
+        this.meterRegistry = meterRegistry.getIfAvailable();
+        this.metricKeys = new HashMap<>();
+        for (String wskey : keyLimits.keySet()) {
+            metricKeys.put(wskey, hashKey(wskey));
+        }
+        if (enabled) {
+            LOG.info("Fair-share scheduling: specific limits for {} API keys", keyLimits.size());
+            registerQueuedGauges();
+        }
+    }
+
+    /**
+     * @return the first characters of the SHA-256 hash of an API key, to identify it in metrics without revealing it
+     */
+    static String hashKey(String wskey) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(wskey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash).substring(0, METRIC_KEY_HASH_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not supported", e);
+        }
+    }
+
+    /**
+     * Parse the configured key limits, in the form of wskey:max-concurrent:requests-per-second:weight (comma-separated)
+     */
+    static Map<String, KeyLimits> parseKeyLimits(String value) {
+        Map<String, KeyLimits> result = new HashMap<>();
+        if (StringUtils.isBlank(value)) {
+            return result;
+        }
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split(":");
+            try {
+                if (parts.length != 4) {
+                    throw new NumberFormatException("expected 4 values");
+                }
+                result.put(parts[0], new KeyLimits(Math.max(1, Integer.parseInt(parts[1])),
+                        Double.parseDouble(parts[2]), Math.max(1, Integer.parseInt(parts[3]))));
+            } catch (NumberFormatException e) {
+                LOG.warn("Ignoring invalid fair-share key limit '{}': {}", entry, e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Wait until a request of the provided API key may be processed. The returned permit should always be closed
+     * when processing is done.
+     * @param wskey API key of the request
+     * @return permit
+     * @throws ServiceOverloadedException when the request is refused (TooManyRequestsException if the API key has too
+     * many requests waiting or exceeds its rate)
+     */
+    public Permit acquire(String wskey) throws ServiceOverloadedException {
+        if (!enabled) {
+            return new Permit(null);
+        }
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            KeyState state = getState(wskey, now);
+            if (!state.takeToken(now)) {
+                removeIfIdle(state);
+                throw reject(state, "rate", new TooManyRequestsException("Request rate exceeded for this API key",
+                        (int) Math.ceil(1 / state.limits.rate)));
+            }
+            if (state.queue.isEmpty() && state.inFlight < state.limits.maxConcurrent && inFlight < maxConcurrent) {
+                start(state);
+                return new Permit(state);
+            }
+            if (state.queue.size() >= maxQueued) {
+                throw reject(state, "queue", new TooManyRequestsException(
+                        "Too many concurrent requests for this API key", retryAfter));
+            }
+            return new Permit(waitForTurn(state));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the state of an API key, taken from the idle keys (with its partially refilled token bucket) if the key
+     * was recently used
+     */
+    private KeyState getState(String wskey, long now) {
+        KeyState state = keys.get(wskey);
+        if (state == null) {
+            removeRefilled(now);
+            state = idleKeys.remove(wskey);
+            if (state == null) {
+                state = new KeyState(wskey, keyLimits.getOrDefault(wskey, defaultLimits), now);
+            }
+            keys.put(wskey, state);
+        }
+        return state;
+    }
+
+    private KeyState waitForTurn(KeyState state) throws ServiceOverloadedException {
+        Waiter waiter = new Waiter(lock.newCondition());
+        state.queue.addLast(waiter);
+        long remainingNs = maxWaitNs;
+        try {
+            while (!waiter.started && remainingNs > 0) {
+                remainingNs = waiter.condition.awaitNanos(remainingNs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!waiter.started) {
+            state.queue.remove(waiter);
+            removeIfIdle(state);
+            throw reject(state, "timeout", new ServiceOverloadedException(
+                    "Server is too busy, please try again later", retryAfter));
+        }
+        return state;
+    }
+
+    private void start(KeyState state) {
+        state.inFlight++;
+        inFlight++;
+    }
+
+    private void release(KeyState state) {
+        lock.lock();
+        try {
+            state.inFlight--;
+            inFlight--;
+            dispatch();
+            removeIfIdle(state);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeIfIdle(KeyState state) {
+        if (state.inFlight == 0 && state.queue.isEmpty()) {
+            keys.remove(state.key);
+            long now = System.nanoTime();
+            if (!state.isBucketFull(now)) {
+                idleKeys.put(state.key, state);
+            }
+            removeRefilled(now);
+        }
+    }
+
+    /**
+     * Forget idle keys with a full token bucket (a new state for the key would be the same)
+     */
+    private void removeRefilled(long now) {
+        Iterator<KeyState> oldest = idleKeys.values().iterator();
+        while (oldest.hasNext() && oldest.next().isBucketFull(now)) {
+            oldest.remove();
+        }
+    }
+
+    /**
+     * Start waiting requests as long as there's capacity, picking the API key with the lowest usage relative to its
+     * weight first
+     */
+    private void dispatch() {
+        while (inFlight < maxConcurrent) {
+            KeyState next = null;
+            for (KeyState state : keys.values()) {
+                if (!state.queue.isEmpty() && state.inFlight < state.limits.maxConcurrent
+                        && (next == null || state.share() < next.share())) {
+                    next = state;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            Waiter waiter = next.queue.removeFirst();
+            start(next);
+            waiter.started = true;
+            waiter.condition.signal();
+        }
+    }
+
+    private ServiceOverloadedException reject(KeyState state, String reason, ServiceOverloadedException e) {
+        LOG.debug("Refused request for API key {} ({}), {} in progress, {} waiting",
+                state.key, reason, state.inFlight, state.queue.size());
+        if (meterRegistry != null) {
+            Counter.builder(METRIC_REJECTED)
+                    .description("Number of requests refused by fair-share scheduling")
+                    .tag(TAG_WSKEY, getMetricKey(state.key))
+                    .tag("reason", reason)
+                    .register(meterRegistry)
+                    .increment();
+        }
+        return e;
+    }
+
+    private String getMetricKey(String wskey) {
+        return metricKeys.getOrDefault(wskey, METRIC_KEY_OTHER);
+    }
+
+    private void registerQueuedGauges() {
+        if (meterRegistry == null) {
+            return;
+        }
+        for (Map.Entry<String, String> metricKey : metricKeys.entrySet()) {
+            Gauge.builder(METRIC_QUEUED, () -> getQueued(metricKey.getKey()))
+                    .description("Number of requests waiting for their turn")
+                    .tag(TAG_WSKEY, metricKey.getValue())
+                    .register(meterRegistry);
+        }
+        Gauge.builder(METRIC_QUEUED, this::getQueuedOther)
+                .description("Number of requests waiting for their turn")
+                .tag(TAG_WSKEY, METRIC_KEY_OTHER)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param wskey API key
+     * @return number of requests of the API key that are waiting for their turn
+     */
+    public int getQueued(String wskey) {
+        lock.lock();
+        try {
+            KeyState state = keys.get(wskey);
+            return (state == null ? 0 : state.queue.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of waiting requests of API keys without specific limits
+     */
+    int getQueuedOther() {
+        lock.lock();
+        try {
+            int result = 0;
+            for (KeyState state : keys.values()) {
+                if (!metricKeys.containsKey(state.key)) {
+                    result += state.queue.size();
+                }
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of API keys with requests in progress or waiting
+     */
+    int getActiveKeys() {
+        lock.lock();
+        try {
+            return keys.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of idle API keys that are remembered because their token bucket isn't full yet
+     */
+    int getIdleKeys() {
+        lock.lock();
+        try {
+            return idleKeys.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return total number of requests of all API keys that are waiting for their turn
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            int result = 0;
+            for (KeyState state : keys.values()) {
+                result += state.queue.size();
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return total number of requests in progress
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Limits for a single API key
+     */
+    static final class KeyLimits {
+        private final int maxConcurrent;
+        private final double rate;
+        private final int weight;
+
+        KeyLimits(int maxConcurrent, double rate, int weight) {
+            this.maxConcurrent = maxConcurrent;
+            this.rate = rate;
+            this.weight = weight;
+        }
+
+        int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        double getRate() {
+            return rate;
+        }
+
+        int getWeight() {
+            return weight;
+        }
+    }
+
+    private static final class KeyState {
+        private final String key;
+        private final KeyLimits limits;
+        private final Deque<Waiter> queue = new ArrayDeque<>();
+        private int inFlight;
+        private double tokens;
+        private long lastRefill;
+
+        private KeyState(String key, KeyLimits limits, long now) {
+            this.key = key;
+            this.limits = limits;
+            this.tokens = Math.max(1, limits.rate);
+            this.lastRefill = now;
+        }
+
+        private double share() {
+            return (double) inFlight / limits.weight;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(Math.max(1, limits.rate), tokens + (now - lastRefill) * limits.rate / 1_000_000_000d);
+            lastRefill = now;
+        }
+
+        private boolean takeToken(long now) {
+            if (limits.rate <= 0) {
+                return true;
+            }
+            refill(now);
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+
+        private boolean isBucketFull(long now) {
+            if (limits.rate <= 0) {
+                return true;
+            }
+            refill(now);
+            return tokens >= Math.max(1, limits.rate);
+        }
+    }
+
+    private static final class Waiter {
+        private final Condition condition;
+        private boolean started;
+
+        private Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+
+    /**
+     * Permission to process a request, should be closed when processing is done. Closing is thread-safe and only the
+     * first close releases the permit.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final AtomicReference<KeyState> state;
+
+        private Permit(KeyState state) {
+            this.state = new AtomicReference<>(state);
+        }
+
+        @Override
+        public void close() {
+            KeyState released = state.getAndSet(null);
+            if (released != null) {
+                release(released);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package eu.europeana.iiif.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the load signals that Kubernetes uses to scale the application (via the custom metrics API, see the HPA in
+ * k8s/overlays/cloud). The application is mostly waiting for the Record API and Full-Text API, so CPU utilization
+ * rises too late when those slow down. Instead we scale on
+ * <ul>
+ *     <li>manifest.requests.in-flight: manifest, canvas page and canvas requests being processed (registered by the
+ *     StageMetricsFilter)</li>
+ *     <li>manifest.requests.queued: requests waiting for their turn, either in the fair-share queues or for a large
+ *     lane thread</li>
+ *     <li>manifest.upstream.pool.pending: upstream requests waiting for a connection from the http client pool</li>
+ * </ul>
+ * All gauges are without tags, so they can be averaged per pod directly.
+ */
+@Component
+@Profile("!reactive")
+public class AutoscalingMetrics {
+
+    public static final String METRIC_IN_FLIGHT = "manifest.requests.in-flight";
+    public static final String METRIC_QUEUED = "manifest.requests.queued";
+    public static final String METRIC_POOL_PENDING = "manifest.upstream.pool.pending";
+    public static final String METRIC_POOL_LEASED = "manifest.upstream.pool.leased";
+
+    private final ManifestService manifestService;
+    private final ApiKeyScheduler apiKeyScheduler;
+    private final PriorityLanes priorityLanes;
+
+    /**
+     * Create the autoscaling metrics
+     * @param manifestService service with the upstream connection pool
+     * @param apiKeyScheduler fair-share scheduler
+     * @param priorityLanes lanes for small and large records
+     * @param meterRegistry optional, registry for the metrics
+     */
+    public AutoscalingMetrics(ManifestService manifestService, ApiKeyScheduler apiKeyScheduler,
+                              PriorityLanes priorityLanes, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.manifestService = manifestService;
+        this.apiKeyScheduler = apiKeyScheduler;
+        this.priorityLanes = priorityLanes;
+
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        Gauge.builder(METRIC_QUEUED, this::getQueued)
+                .description("Number of manifest requests waiting for fair-share scheduling or a large lane thread")
+                .register(registry);
+        Gauge.builder(METRIC_POOL_PENDING, this::getPoolPending)
+                .description("Number of Record API and Full-Text API requests waiting for a connection")
+                .register(registry);
+        Gauge.builder(METRIC_POOL_LEASED, () -> manifestService.getConnectionPoolStats().getLeased())
+                .description("Number of Record API and Full-Text API connections in use")
+                .register(registry);
+    }
+
+    /**
+     * @return number of manifest requests waiting for their turn
+     */
+    public int getQueued() {
+        return apiKeyScheduler.getQueued() + priorityLanes.getQueued();
+    }
+
+    /**
+     * @return number of upstream requests waiting for a connection
+     */
+    public int getPoolPending() {
+        return manifestService.getConnectionPoolStats().getPending();
+    }
+}
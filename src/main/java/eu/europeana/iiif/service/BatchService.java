@@ -0,0 +1,257 @@
+package eu.europeana.iiif.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.exception.ServiceOverloadedException;
+import eu.europeana.iiif.model.LanguageFilter;
+import eu.europeana.iiif.model.ManifestModel;
+import eu.europeana.iiif.model.ManifestProjection;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Generates the manifests of a batch of records and writes them as newline-delimited JSON (one line per record).
+ * Records are retrieved and mapped on a thread pool that is shared by all batch requests, with a limited number of
+ * records of a single batch in progress at the same time. Lines are written in order of completion (not in the order
+ * of the requested ids) as soon as they are ready, so memory use depends on the parallelism and not on the batch size.
+ *
+ * Every record takes its own fair-share permit (see ApiKeyScheduler), so a batch is subject to the same concurrency
+ * and rate limits as separate requests of the API key. Records that are refused by the scheduler get an error line.
+ * When the queue of the thread pool is full, a batch waits for its own records in progress before it tries again, and
+ * only writes an error line when there is still no room after the configured maximum wait.
+ *
+ * A line contains either the manifest of a record
+ *   {"id":"/1/2","manifest":{...}}
+ * or the error that occurred for that record
+ *   {"id":"/1/3","status":404,"error":"..."}
+ */
+@Service
+@Profile("!reactive")
+public class BatchService {
+
+    /** media type of newline-delimited JSON */
+    public static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+
+    private static final Logger LOG = LogManager.getLogger(BatchService.class);
+
+    private static final byte NEWLINE = '\n';
+    private static final int LINE_INITIAL_SIZE = 16 * 1024;
+    private static final long RETRY_INTERVAL_MS = 10;
+
+    private final ManifestService manifestService;
+    private final ApiKeyScheduler apiKeyScheduler;
+    private final ThreadPoolExecutor executor;
+    private final int parallelism;
+    private final long maxWaitNs;
+    private final int retryAfter;
+
+    /**
+     * Create a new batch service
+     * @param manifestService service that retrieves records and generates manifests
+     * @param apiKeyScheduler scheduler that hands out a permit for every record
+     */
+    public BatchService(ManifestService manifestService, ApiKeyScheduler apiKeyScheduler) {
+        this.manifestService = manifestService;
+        this.apiKeyScheduler = apiKeyScheduler;
+        ManifestSettings settings = manifestService.getSettings();
+        int threads = Math.max(1, settings.getBatchThreads());
+        int maxQueued = Math.max(1, settings.getBatchMaxQueued());
+        this.parallelism = Math.max(1, settings.getBatchParallelism());
+        this.maxWaitNs = TimeUnit.MILLISECONDS.toNanos(settings.getBatchMaxWaitMs());
+        this.retryAfter = settings.getAdmissionRetryAfter();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxQueued), new CustomizableThreadFactory("manifest-batch-"));
+        this.executor.allowCoreThreadTimeOut(true);
+        LOG.info("Batch service threads = {}, max queued = {}, parallelism per batch = {}", threads, maxQueued,
+                parallelism);
+    }
+
+    /**
+     * Generate the manifests of the provided records and write them to the output stream, one line per record. The
+     * output is flushed after every line. Errors for individual records are written as error lines, so this method
+     * only fails when the output can't be written (e.g. because the client disconnected)
+     *
+     * @param ids         ids of the records in the form of "/datasetid/recordid"
+     * @param wsKey       api key to send to record API
+     * @param iiifVersion IIIF version to generate, either '2' or '3'
+     * @param addFullText if true then links to full-text are added
+     * @param out         stream to write the lines to
+     * @throws IOException when writing to the output stream fails
+     */
+    public void writeManifests(List<String> ids, String wsKey, String iiifVersion, boolean addFullText, OutputStream out)
+            throws IOException {
+        CompletionService<byte[]> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<byte[]>, ApiKeyScheduler.Permit> inProgress = new HashMap<>();
+        Iterator<String> remaining = ids.iterator();
+        try {
+            while (remaining.hasNext() || !inProgress.isEmpty()) {
+                if (remaining.hasNext() && inProgress.size() < parallelism) {
+                    String id = remaining.next();
+                    try {
+                        submit(completionService, inProgress, id, wsKey, iiifVersion, addFullText, out);
+                    } catch (ServiceOverloadedException e) {
+                        writeLine(out, generateErrorLine(manifestService.getJsonMapper(), id, e.getResponseStatus(),
+                                e.getMessage()));
+                    }
+                } else {
+                    Future<byte[]> done = completionService.take();
+                    inProgress.remove(done);
+                    writeLine(out, getLine(done));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating batch", e);
+        } finally {
+            // only when writing failed, permits of records that never started are released here
+            for (Map.Entry<Future<byte[]>, ApiKeyScheduler.Permit> entry : inProgress.entrySet()) {
+                entry.getKey().cancel(true);
+                entry.getValue().close();
+            }
+        }
+    }
+
+    /**
+     * Wait for a fair-share permit for the record and submit it to the thread pool. The permit is released when the
+     * record is done. When the thread pool queue is full, the lines of records of this batch that are done are written
+     * while waiting, so a batch slows down instead of refusing all its remaining records.
+     * @throws ServiceOverloadedException when the scheduler refuses the record or the thread pool queue is still full
+     * after the maximum wait
+     */
+    private void submit(CompletionService<byte[]> completionService,
+                        Map<Future<byte[]>, ApiKeyScheduler.Permit> inProgress, String id, String wsKey,
+                        String iiifVersion, boolean addFullText, OutputStream out)
+            throws ServiceOverloadedException, InterruptedException, IOException {
+        ApiKeyScheduler.Permit permit = apiKeyScheduler.acquire(wsKey);
+        Callable<byte[]> task = () -> {
+            try (permit) {
+                return generateLine(id, wsKey, iiifVersion, addFullText);
+            }
+        };
+        boolean submitted = false;
+        long deadline = System.nanoTime() + maxWaitNs;
+        try {
+            while (!submitted) {
+                try {
+                    inProgress.put(completionService.submit(task), permit);
+                    submitted = true;
+                } catch (RejectedExecutionException e) {
+                    waitForRoom(completionService, inProgress, deadline - System.nanoTime(), out);
+                }
+            }
+        } finally {
+            if (!submitted) {
+                permit.close();
+            }
+        }
+    }
+
+    /**
+     * Wait until a record of this batch is done (and write its line), or a short while if this batch has no records in
+     * progress
+     * @throws ServiceOverloadedException when there's no time left to wait
+     */
+    private void waitForRoom(CompletionService<byte[]> completionService,
+                             Map<Future<byte[]>, ApiKeyScheduler.Permit> inProgress, long remainingNs,
+                             OutputStream out) throws ServiceOverloadedException, InterruptedException, IOException {
+        if (remainingNs <= 0) {
+            LOG.warn("Batch thread pool is full, refusing record");
+            throw new ServiceOverloadedException("Server is too busy, please try again later", retryAfter);
+        }
+        if (inProgress.isEmpty()) {
+            TimeUnit.NANOSECONDS.sleep(Math.min(remainingNs, TimeUnit.MILLISECONDS.toNanos(RETRY_INTERVAL_MS)));
+            return;
+        }
+        Future<byte[]> done = completionService.poll(remainingNs, TimeUnit.NANOSECONDS);
+        if (done != null) {
+            inProgress.remove(done);
+            writeLine(out, getLine(done));
+        }
+    }
+
+    private static void writeLine(OutputStream out, byte[] line) throws IOException {
+        out.write(line);
+        out.write(NEWLINE);
+        out.flush();
+    }
+
+    private static byte[] getLine(Future<byte[]> done) throws InterruptedException {
+        try {
+            return done.get();
+        } catch (ExecutionException e) {
+            // generateLine handles all errors itself
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private byte[] generateLine(String id, String wsKey, String iiifVersion, boolean addFullText) throws IOException {
+        ObjectMapper mapper = manifestService.getJsonMapper();
+        ByteArrayOutputStream line = new ByteArrayOutputStream(LINE_INITIAL_SIZE);
+        try {
+            ValidateUtils.validateRecordIdFormat(id);
+            ManifestModel model = manifestService.getManifestModel(id, wsKey, null);
+            Object manifest;
+            if ("3".equalsIgnoreCase(iiifVersion)) {
+                manifest = manifestService.generateManifestV3(model, addFullText, null, ManifestProjection.FULL,
+                        LanguageFilter.ALL, 0);
+            } else {
+                manifest = manifestService.generateManifestV2(model, addFullText, null, ManifestProjection.FULL,
+                        LanguageFilter.ALL);
+            }
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(line)) {
+                generator.writeStartObject();
+                generator.writeStringField("id", id);
+                generator.writeFieldName("manifest");
+                mapper.writeValue(generator, manifest);
+                generator.writeEndObject();
+            }
+            return line.toByteArray();
+        } catch (EuropeanaApiException e) {
+            if (e.doLog()) {
+                LOG.warn("Error generating manifest for {} in batch: {}", id, e.getMessage());
+            }
+            return generateErrorLine(mapper, id, e.getResponseStatus(), e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Error generating manifest for {} in batch", id, e);
+            return generateErrorLine(mapper, id, HttpStatus.INTERNAL_SERVER_ERROR, "Error generating manifest");
+        }
+    }
+
+    private static byte[] generateErrorLine(ObjectMapper mapper, String id, HttpStatus status, String error)
+            throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(line)) {
+            generator.writeStartObject();
+            generator.writeStringField("id", id);
+            generator.writeNumberField("status", status.value());
+            generator.writeStringField("error", error);
+            generator.writeEndObject();
+        }
+        return line.toByteArray();
+    }
+
+    /**
+     * Stop the batch threads
+     */
+    @PreDestroy
+    public void close() {
+        LOG.info("Shutting down batch service");
+        executor.shutdownNow();
+    }
+}
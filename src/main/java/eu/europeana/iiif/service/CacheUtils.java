@@ -23,6 +23,9 @@ import java.util.Date;
  */
 public final class CacheUtils {
 
+    /** header used by CDNs to purge groups of cached responses */
+    public static final String SURROGATE_KEY = "Surrogate-Key";
+
     private static final String IF_MATCH = "If-Match";
     private static final String IF_NON_MATCH = "If-None-Match";
     private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
@@ -90,17 +93,32 @@ public final class CacheUtils {
      */
     public static ResponseEntity checkCached(HttpServletRequest request, HttpHeaders headers,
                                               ZonedDateTime lastModified, String eTag) {
+        return checkCached(request.getHeader(IF_MODIFIED_SINCE), request.getHeader(IF_NON_MATCH),
+                request.getHeader(IF_MATCH), headers, lastModified, eTag);
+    }
+
+    /**
+     * Same as checkCached(HttpServletRequest...) but using the values of the conditional request headers, so it can
+     * also be used for non-servlet (reactive) requests
+     * @param ifModifiedSince value of the If-Modified-Since request header (can be null)
+     * @param ifNoneMatch value of the If-None-Match request header (can be null)
+     * @param ifMatch value of the If-Match request header (can be null)
+     * @param headers headers that should be sent back in the response
+     * @param lastModified ZonedDateTime that indicates the lastModified date of the requested data
+     * @param eTag String with the calculated eTag of the requested data
+     * @return ResponseEntity with 304 or 312 status if requested object has not changed, otherwise null
+     */
+    public static ResponseEntity checkCached(String ifModifiedSince, String ifNoneMatch, String ifMatch,
+                                             HttpHeaders headers, ZonedDateTime lastModified, String eTag) {
         // chosen this implementation instead of the 'shallow' out-of-the-box spring boot version because that does not
         // offer the advantage of saving on processing time
-        ZonedDateTime requestLastModified = headerStringToDate(request.getHeader(IF_MODIFIED_SINCE));
+        ZonedDateTime requestLastModified = headerStringToDate(ifModifiedSince);
         if((requestLastModified !=null && requestLastModified.compareTo(lastModified) > 0) ||
-                (StringUtils.isNotEmpty(request.getHeader(IF_NON_MATCH)) &&
-                        StringUtils.equalsIgnoreCase(request.getHeader(IF_NON_MATCH), eTag))) {
-            // TODO Also we ignore possible multiple eTags for now
+                matchesIfNoneMatch(ifNoneMatch, eTag)) {
             return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
-        } else if (StringUtils.isNotEmpty(request.getHeader(IF_MATCH)) &&
-                (!StringUtils.equalsIgnoreCase(request.getHeader(IF_MATCH), eTag) &&
-                        !StringUtils.equalsIgnoreCase(request.getHeader(IF_MATCH), "*"))) {
+        } else if (StringUtils.isNotEmpty(ifMatch) &&
+                (!StringUtils.equalsIgnoreCase(ifMatch, eTag) &&
+                        !StringUtils.equalsIgnoreCase(ifMatch, "*"))) {
             // Note that according to the specification we have to use strong ETags here (but for now we just ignore that)
             // see https://www.w3.org/Protocols/rfc2616/rfc2616-sec14.html#sec14.24
             // TODO Also we ignore possible multiple eTags for now
@@ -109,6 +127,32 @@ public final class CacheUtils {
         return null;
     }
 
+    /**
+     * Checks if an If-None-Match header matches an ETag. The header can contain a comma-separated list of ETags or
+     * '*', and ETags are compared using the weak comparison function (a W/ prefix is ignored), as specified in
+     * RFC 7232 section 3.2
+     * @param ifNoneMatch value of the If-None-Match request header (can be null)
+     * @param eTag String with the calculated eTag of the requested data (can be null)
+     * @return true if one of the ETags in the header matches the eTag
+     */
+    public static boolean matchesIfNoneMatch(String ifNoneMatch, String eTag) {
+        if (StringUtils.isBlank(ifNoneMatch) || eTag == null) {
+            return false;
+        }
+        String opaqueTag = stripWeakPrefix(eTag.trim());
+        for (String candidate : StringUtils.split(ifNoneMatch, ',')) {
+            String value = candidate.trim();
+            if ("*".equals(value) || StringUtils.equalsIgnoreCase(stripWeakPrefix(value), opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeakPrefix(String eTag) {
+        return (eTag.startsWith("W/") || eTag.startsWith("w/") ? eTag.substring(2) : eTag);
+    }
+
     /**
      * Parses the date string received in a request header
      * @param dateString
@@ -0,0 +1,122 @@
+package eu.europeana.iiif.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.exception.RecordNotFoundException;
+import eu.europeana.iiif.model.RecordListingPage;
+import eu.europeana.iiif.model.v3.Image;
+import eu.europeana.iiif.model.v3.LanguageMap;
+import eu.europeana.iiif.model.v3.ManifestReference;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Generates IIIF v3 collections of all manifests in a dataset. The collection is written while paging through the
+ * records of the dataset, so only a single page of records is kept in memory regardless of the size of the dataset.
+ */
+@Service
+@Profile("!reactive")
+public class CollectionService {
+
+    private static final Logger LOG = LogManager.getLogger(CollectionService.class);
+
+    private static final String CONTEXT = "http://iiif.io/api/presentation/3/context.json";
+
+    private final ManifestService manifestService;
+    private final RecordListingClient listingClient;
+
+    /**
+     * Create a new collection service
+     * @param manifestService used for the settings and serialization of manifest references
+     * @param listingClient client to list the records of a dataset
+     */
+    public CollectionService(ManifestService manifestService, RecordListingClient listingClient) {
+        this.manifestService = manifestService;
+        this.listingClient = listingClient;
+    }
+
+    /**
+     * Retrieve the first page of records of a dataset. This is done before the response is started, so problems with
+     * the dataset or API key can still be reported with a proper error response.
+     * @param datasetId id of the dataset
+     * @param wsKey api key to send to the upstream API
+     * @return first page of records
+     * @throws EuropeanaApiException when the records can't be listed, RecordNotFoundException when the dataset doesn't
+     * exist or has no records
+     */
+    public RecordListingPage getFirstPage(String datasetId, String wsKey) throws EuropeanaApiException {
+        RecordListingPage result = listingClient.getPage(datasetId, RecordListingClient.FIRST_PAGE, getPageSize(), wsKey);
+        if (result.getItems() == null || result.getItems().isEmpty()) {
+            throw new RecordNotFoundException("No records found for dataset " + datasetId);
+        }
+        return result;
+    }
+
+    /**
+     * Write the collection of all manifests in a dataset, retrieving the remaining pages of records while writing
+     * @param datasetId id of the dataset
+     * @param wsKey api key to send to the upstream API
+     * @param firstPage first page of records, see getFirstPage
+     * @param out stream to write the collection to
+     * @throws IOException when writing fails or when a page of records can't be retrieved (the response is then
+     * incomplete)
+     */
+    public void writeCollection(String datasetId, String wsKey, RecordListingPage firstPage, OutputStream out)
+            throws IOException {
+        ManifestSettings settings = manifestService.getSettings();
+        try (JsonGenerator generator = manifestService.getJsonMapper().getFactory().createGenerator(out, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                // an incomplete collection should not end up as valid json
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT)) {
+            generator.writeStartObject();
+            generator.writeStringField("@context", CONTEXT);
+            generator.writeStringField("id", settings.getCollectionId(datasetId));
+            generator.writeStringField("type", "Collection");
+            generator.writeObjectField("label", new LanguageMap(datasetId));
+            generator.writeArrayFieldStart("items");
+            RecordListingPage page = firstPage;
+            long count = 0;
+            while (true) {
+                for (RecordListingPage.Item item : page.getItems()) {
+                    generator.writeObject(toReference(settings, item));
+                }
+                count = count + page.getItems().size();
+                // send every page to the client as soon as it is written
+                generator.flush();
+                if (page.getNextCursor() == null) {
+                    break;
+                }
+                page = getNextPage(datasetId, page.getNextCursor(), wsKey);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            LOG.debug("Collection for dataset {} contains {} manifests", datasetId, count);
+        }
+    }
+
+    private RecordListingPage getNextPage(String datasetId, String cursor, String wsKey) throws IOException {
+        try {
+            return listingClient.getPage(datasetId, cursor, getPageSize(), wsKey);
+        } catch (EuropeanaApiException e) {
+            LOG.error("Error listing records of dataset {}, collection is incomplete", datasetId, e);
+            throw new IOException("Error listing records of dataset " + datasetId, e);
+        }
+    }
+
+    private int getPageSize() {
+        return Math.max(1, manifestService.getSettings().getCollectionPageSize());
+    }
+
+    private static ManifestReference toReference(ManifestSettings settings, RecordListingPage.Item item) {
+        LanguageMap label = (item.getTitle() == null ? null : new LanguageMap(item.getTitle()));
+        Image[] thumbnail = (item.getThumbnailUrl() == null ? null : new Image[]{ new Image(item.getThumbnailUrl()) });
+        return new ManifestReference(settings.getManifestId(item.getEuropeanaId()), label, thumbnail);
+    }
+}
@@ -5,7 +5,10 @@ import com.jayway.jsonpath.JsonPath;
 import eu.europeana.iiif.AcceptUtils;
 import eu.europeana.iiif.config.ManifestSettings;
 import eu.europeana.iiif.config.MediaTypes;
+import eu.europeana.iiif.model.LanguageFilter;
 import eu.europeana.iiif.model.ManifestDefinitions;
+import eu.europeana.iiif.model.ManifestModel;
+import eu.europeana.iiif.model.ManifestProjection;
 import eu.europeana.iiif.model.MediaType;
 import eu.europeana.iiif.model.WebResource;
 import eu.europeana.iiif.model.v2.*;
@@ -54,25 +57,61 @@ public final class EdmManifestMappingV2 {
      * @return IIIF Manifest v2 object
      */
     static ManifestV2 getManifestV2(ManifestSettings settings, MediaTypes mediaTypes, Object jsonDoc) {
+        return getManifestV2(settings, mediaTypes, jsonDoc, ManifestProjection.FULL, LanguageFilter.ALL);
+    }
+
+    /**
+     * Generates a IIIF v2 manifest based on the provided (parsed) json document. Only the fields that are part of the
+     * provided projection are extracted from the json document.
+     * @param jsonDoc parsed json document
+     * @param projection the manifest fields to generate (using v3 field names)
+     * @param languages the languages to keep in labels, descriptions and metadata
+     * @return IIIF Manifest v2 object
+     */
+    static ManifestV2 getManifestV2(ManifestSettings settings, MediaTypes mediaTypes, Object jsonDoc, ManifestProjection projection,
+                                    LanguageFilter languages) {
         THUMBNAIL_API_URL = settings.getThumbnailApiUrl();
         String europeanaId = EdmManifestUtils.getEuropeanaId(jsonDoc);
         String isShownBy = EdmManifestUtils.getValueFromDataProviderAggregation(jsonDoc, europeanaId, "edmIsShownBy");
         ManifestV2 manifest = new ManifestV2(europeanaId, settings.getManifestId(europeanaId), isShownBy);
-        manifest.setService(getServiceDescriptionV2(settings, europeanaId));
+        if (projection.includes(ManifestProjection.SERVICE)) {
+            manifest.setService(getServiceDescriptionV2(settings, europeanaId));
+        }
         // EA-3325
 //        manifest.setWithin(getWithinV2(jsonDoc));
-        manifest.setLabel(getLabelsV2(jsonDoc));
-        manifest.setDescription(getDescriptionV2(jsonDoc));
-        manifest.setMetadata(getMetaDataV2(jsonDoc));
-        manifest.setThumbnail(getThumbnailImageV2(europeanaId, jsonDoc));
-        manifest.setNavDate(EdmManifestUtils.getNavDate(europeanaId, jsonDoc));
-        manifest.setAttribution(getAttributionV2(europeanaId, isShownBy, jsonDoc));
-        manifest.setLicense(getLicense(europeanaId, jsonDoc));
-        manifest.setSeeAlso(getDataSetsV2(settings, europeanaId));
-        Sequence [] sequences = getSequencesV2(settings, mediaTypes, europeanaId, isShownBy, jsonDoc);
+        if (projection.includes(ManifestProjection.LABEL)) {
+            manifest.setLabel(languages.filter(getLabelsV2(jsonDoc)));
+        }
+        if (projection.includes(ManifestProjection.SUMMARY)) {
+            manifest.setDescription(languages.filter(getDescriptionV2(jsonDoc)));
+        }
+        if (projection.includes(ManifestProjection.METADATA)) {
+            manifest.setMetadata(getMetaDataV2(jsonDoc, languages));
+        }
+        if (projection.includes(ManifestProjection.THUMBNAIL)) {
+            manifest.setThumbnail(getThumbnailImageV2(europeanaId, jsonDoc));
+        }
+        if (projection.includes(ManifestProjection.NAV_DATE)) {
+            manifest.setNavDate(EdmManifestUtils.getNavDate(europeanaId, jsonDoc));
+        }
+        if (projection.includes(ManifestProjection.REQUIRED_STATEMENT)) {
+            manifest.setAttribution(getAttributionV2(europeanaId, isShownBy, jsonDoc));
+        }
+        if (projection.includes(ManifestProjection.RIGHTS)) {
+            manifest.setLicense(getLicense(europeanaId, jsonDoc));
+        }
+        if (projection.includes(ManifestProjection.SEE_ALSO)) {
+            manifest.setSeeAlso(getDataSetsV2(settings, europeanaId));
+        }
+        if (!projection.includes(ManifestProjection.ITEMS)) {
+            return manifest;
+        }
+        Sequence [] sequences = getSequencesV2(settings, mediaTypes, europeanaId, isShownBy, jsonDoc, projection);
         if (sequences != null) {
             manifest.setSequences(sequences);
-            manifest.setStartCanvasPageNr(getStartCanvasV2(manifest.getSequences()[0].getCanvases(), isShownBy));
+            if (projection.includesCanvasField(ManifestProjection.CANVAS_ITEMS)) {
+                manifest.setStartCanvasPageNr(getStartCanvasV2(manifest.getSequences()[0].getCanvases(), isShownBy));
+            }
         } else {
             LOG.debug("No Canvas generated for europeanaId {}", europeanaId);
         }
@@ -138,6 +177,17 @@ public final class EdmManifestMappingV2 {
      * @return
      */
     static eu.europeana.iiif.model.v2.MetaData[] getMetaDataV2(Object jsonDoc) {
+        return getMetaDataV2(jsonDoc, LanguageFilter.ALL);
+    }
+
+    /**
+     * Reads the dcDate, dcFormat, dcRelation, dcType, dcLanguage and dcSource values from all proxies and puts them in a
+     * map with the appropriate label. Only values in one of the provided languages are kept.
+     * @param jsonDoc parsed json document
+     * @param languages the languages to keep
+     * @return
+     */
+    static eu.europeana.iiif.model.v2.MetaData[] getMetaDataV2(Object jsonDoc, LanguageFilter languages) {
         Map<String, List<LanguageObject>> data = new LinkedHashMap<>();
         addMetaDataV2(data, JsonPath.parse(jsonDoc).read("$.object.proxies[*].dcDate", LanguageMap[].class), "date");
         addMetaDataV2(data, JsonPath.parse(jsonDoc).read("$.object.proxies[*].dcFormat", LanguageMap[].class), "format");
@@ -150,7 +200,7 @@ public final class EdmManifestMappingV2 {
         for (Map.Entry<String, List<LanguageObject>> entry : data.entrySet()) {
             String label = entry.getKey();
             List<LanguageObject> values = entry.getValue();
-            result.add(new eu.europeana.iiif.model.v2.MetaData(label, values.toArray(new LanguageObject[0])));
+            result.add(new eu.europeana.iiif.model.v2.MetaData(label, languages.filter(values.toArray(new LanguageObject[0]))));
         }
 
         if (result.isEmpty()) {
@@ -253,16 +303,27 @@ public final class EdmManifestMappingV2 {
      * @return
      */
     static eu.europeana.iiif.model.v2.Sequence[] getSequencesV2(ManifestSettings settings, MediaTypes mediaTypes,String europeanaId, String isShownBy, Object jsonDoc) {
+        return getSequencesV2(settings, mediaTypes, europeanaId, isShownBy, jsonDoc, ManifestProjection.FULL);
+    }
+
+    /**
+     * Generates the sequence with canvases, but only with the canvas fields that are part of the provided projection
+     */
+    static eu.europeana.iiif.model.v2.Sequence[] getSequencesV2(ManifestSettings settings, MediaTypes mediaTypes, String europeanaId,
+                                                               String isShownBy, Object jsonDoc, ManifestProjection projection) {
         // generate canvases in a same order as the web resources
         List<WebResource> sortedResources = EdmManifestUtils.getSortedWebResources(europeanaId, isShownBy, jsonDoc);
         if (sortedResources.isEmpty()) {
             return null;
         }
         int order = 1;
-        Map<String, Object>[] services = JsonPath.parse(jsonDoc).read("$.object[?(@.services)].services[*]", Map[].class);
+        Map<String, Object>[] services = null;
+        if (projection.includesCanvasField(ManifestProjection.CANVAS_ITEMS)) {
+            services = JsonPath.parse(jsonDoc).read("$.object[?(@.services)].services[*]", Map[].class);
+        }
         List<eu.europeana.iiif.model.v2.Canvas> canvases = new ArrayList<>(sortedResources.size());
         for (WebResource webResource: sortedResources) {
-            Canvas canvas = getCanvasV2(settings, mediaTypes, europeanaId, order, webResource, services);
+            Canvas canvas = getCanvasV2(settings, mediaTypes, europeanaId, order, webResource, services, projection);
             // for non supported media types we do not create any canvas. Case-4 of media type handling : See-EA-3413
             if (canvas != null) {
                 canvases.add(canvas);
@@ -320,6 +381,74 @@ public final class EdmManifestMappingV2 {
         return result.getPageNr();
     }
 
+    /**
+     * Returns the web resources for which a canvas is generated, in canvas order (so the resource at index 0 is used
+     * for canvas p1). The result is stored in the model, so it's only determined once per model.
+     * @param model manifest model containing the parsed record data
+     * @return list of web resources
+     */
+    static List<WebResource> getCanvasResourcesV2(MediaTypes mediaTypes, ManifestModel model) {
+        List<WebResource> result = model.getCanvasResourcesV2();
+        if (result == null) {
+            result = new ArrayList<>();
+            for (WebResource webResource : EdmManifestUtils.getSortedWebResources(model.getEuropeanaId(),
+                    model.getIsShownBy(), model.getJsonDoc())) {
+                if (getCanvasMediaType(mediaTypes, webResource) != null) {
+                    result.add(webResource);
+                }
+            }
+            model.setCanvasResourcesV2(Collections.unmodifiableList(result));
+        }
+        return result;
+    }
+
+    /**
+     * Generates a single canvas from the model, without generating any of the other canvases
+     * @param model manifest model containing the parsed record data
+     * @param order number of the canvas to generate (first canvas is 1)
+     * @param projection the canvas fields to generate
+     * @return canvas, or null if the record doesn't have a canvas with the provided number
+     */
+    static eu.europeana.iiif.model.v2.Canvas getCanvasV2(ManifestSettings settings, MediaTypes mediaTypes, ManifestModel model,
+                                                         int order, ManifestProjection projection) {
+        List<WebResource> resources = getCanvasResourcesV2(mediaTypes, model);
+        if (order < 1 || order > resources.size()) {
+            return null;
+        }
+        Map<String, Object>[] services = null;
+        if (projection.includesCanvasField(ManifestProjection.CANVAS_ITEMS)) {
+            services = JsonPath.parse(model.getJsonDoc()).read("$.object[?(@.services)].services[*]", Map[].class);
+        }
+        return getCanvasV2(settings, mediaTypes, model.getEuropeanaId(), order, resources.get(order - 1), services, projection);
+    }
+
+    /**
+     * Determines the media type of the canvas that is generated for the provided web resource
+     * @return MediaType, or null if no canvas should be generated for this web resource
+     */
+    private static MediaType getCanvasMediaType(MediaTypes mediaTypes, WebResource webResource) {
+        // MEDIA TYPE HANDLING ....
+
+        // Fetch the mime type from the web resource
+        String ebuCoreMimeType = (String) webResource.get(EdmManifestUtils.EBUCORE_HAS_MIMETYPE);
+        MediaType mediaType = null;
+
+        // get the configured media type of the mimetype
+        Optional<MediaType> media = mediaTypes.getMediaType(ebuCoreMimeType);
+        if (media.isPresent()) {
+            mediaType = media.get();
+        }
+
+        // ignored cases CASE 4 for version 2
+        if (mediaType == null || ifSupportedMediaTypeIsVideoOrSound(mediaType)) {
+            LOG.debug("No canvas added for webresource {} as the media type - {} is invalid or not supported.",
+                    webResource.get(EdmManifestUtils.ABOUT),
+                    ebuCoreMimeType);
+            return null;
+        }
+        return mediaType;
+    }
+
     /**
      * Generates a new canvas, but note that we do not fill the otherContent (Full-Text) here. That is done later
      */
@@ -328,54 +457,68 @@ public final class EdmManifestMappingV2 {
                                                                  String europeanaId,
                                                                  int order,
                                                                  WebResource webResource,
-                                                                 Map<String, Object>[] services) {
+                                                                 Map<String, Object>[] services,
+                                                                 ManifestProjection projection) {
+        MediaType mediaType = getCanvasMediaType(mediaTypes, webResource);
+        if (mediaType == null) {
+            return null;
+        }
+
         eu.europeana.iiif.model.v2.Canvas c =
                 new eu.europeana.iiif.model.v2.Canvas(settings.getCanvasId(europeanaId, order), order);
 
-        c.setLabel("p. "+order);
+        if (projection.includesCanvasField(ManifestProjection.CANVAS_LABEL)) {
+            c.setLabel("p. " + order);
+        }
 
         setCanvasHeightAndWidth(webResource, c);
 
         String attributionText = (String) webResource.get(EdmManifestUtils.TEXT_ATTRIB_SNIPPET);
-        if (!StringUtils.isEmpty(attributionText)){
+        if (!StringUtils.isEmpty(attributionText) && projection.includesCanvasField(ManifestProjection.CANVAS_REQUIRED_STATEMENT)){
             c.setAttribution(attributionText);
         }
 
         //EA-3325: check if the webResource has a "svcsHasService"; if not, add a thumbnail
-        if (Objects.isNull(webResource.get(EdmManifestUtils.SVCS_HAS_SERVICE))){
+        // Note that for rendered media types the thumbnail is also used as annotation body id
+        if ((projection.includesCanvasField(ManifestProjection.CANVAS_THUMBNAIL) || projection.includesCanvasField(ManifestProjection.CANVAS_ITEMS))
+                && Objects.isNull(webResource.get(EdmManifestUtils.SVCS_HAS_SERVICE))){
             c.setThumbnail(getCanvasThumbnailImageV2(URLEncoder.encode(webResource.getId(), StandardCharsets.UTF_8), settings.getThumbnailApiUrl()));
         }
 
         LinkedHashMap<String, ArrayList<String>> license = (LinkedHashMap<String, ArrayList<String>>) webResource.get(EdmManifestUtils.WEB_RESOURCE_EDM_RIGHTS);
-        if (license != null && !license.values().isEmpty()) {
+        if (license != null && !license.values().isEmpty() && projection.includesCanvasField(ManifestProjection.CANVAS_RIGHTS)) {
             c.setLicense(license.values().iterator().next().get(0));
         }
 
-        // canvas has 1 annotation (image field)
-        c.setImages(new eu.europeana.iiif.model.v2.Annotation[1]);
-        c.getImages()[0] = new eu.europeana.iiif.model.v2.Annotation();
-        c.getImages()[0].setOn(c.getId());
-
-        // MEDIA TYPE HANDLING ....
-
-        // Fetch the mime type from the web resource
-        String ebuCoreMimeType = (String) webResource.get(EdmManifestUtils.EBUCORE_HAS_MIMETYPE);
-        MediaType mediaType = null;
-
-        // get the configured media type of the mimetype
-        Optional<MediaType> media = mediaTypes.getMediaType(ebuCoreMimeType);
-        if (media.isPresent()) {
-            mediaType = media.get();
+        if (projection.includesCanvasField(ManifestProjection.CANVAS_ITEMS)) {
+            // canvas has 1 annotation (image field)
+            c.setImages(new eu.europeana.iiif.model.v2.Annotation[1]);
+            c.getImages()[0] = new eu.europeana.iiif.model.v2.Annotation();
+            c.getImages()[0].setOn(c.getId());
+            c.getImages()[0].setResource(getAnnotationBody(europeanaId, webResource, services, mediaType, c));
+        } else if (mediaType.isRendered()) {
+            // update height and width (normally done when creating the annotation body)
+            setHeightWidthForRendered(c);
         }
 
-        // ignored cases CASE 4 for version 2
-        if (mediaType == null || ifSupportedMediaTypeIsVideoOrSound(mediaType)) {
-            LOG.debug("No canvas added for webresource {} as the media type - {} is invalid or not supported.",
-                    webResource.get(EdmManifestUtils.ABOUT),
-                    ebuCoreMimeType);
-            return null;
+        if (!projection.includesCanvasField(ManifestProjection.CANVAS_THUMBNAIL)) {
+            c.setThumbnail(null);
         }
+        if (!projection.includesCanvasField(ManifestProjection.CANVAS_RENDERING)) {
+            c.setRendering(null);
+        }
+        if (!projection.includesCanvasField(ManifestProjection.CANVAS_WIDTH)) {
+            c.setWidth(null);
+        }
+        if (!projection.includesCanvasField(ManifestProjection.CANVAS_HEIGHT)) {
+            c.setHeight(null);
+        }
+        return c;
+    }
 
+    private static eu.europeana.iiif.model.v2.AnnotationBody getAnnotationBody(String europeanaId, WebResource webResource,
+                                                                               Map<String, Object>[] services,
+                                                                               MediaType mediaType, Canvas c) {
         // Now create the annotation body based on the media type (annotation has 1 annotationBody)
         eu.europeana.iiif.model.v2.AnnotationBody annoBody = new eu.europeana.iiif.model.v2.AnnotationBody((String) webResource.get(EdmManifestUtils.ABOUT));
 
@@ -406,8 +549,7 @@ public final class EdmManifestMappingV2 {
         if(!mediaType.isRendered()) {
             setServiceForAnnotation(europeanaId, webResource, services, annoBody);
         }
-        c.getImages()[0].setResource(annoBody);
-        return c;
+        return annoBody;
     }
 
     private static void setServiceForAnnotation(String europeanaId, WebResource webResource,
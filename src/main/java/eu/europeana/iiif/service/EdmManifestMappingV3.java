@@ -5,7 +5,11 @@ import com.jayway.jsonpath.JsonPath;
 import eu.europeana.iiif.AcceptUtils;
 import eu.europeana.iiif.config.ManifestSettings;
 import eu.europeana.iiif.config.MediaTypes;
+import eu.europeana.iiif.jfr.ManifestMappingEvent;
+import eu.europeana.iiif.model.LanguageFilter;
 import eu.europeana.iiif.model.ManifestDefinitions;
+import eu.europeana.iiif.model.ManifestModel;
+import eu.europeana.iiif.model.ManifestProjection;
 import eu.europeana.iiif.model.MediaType;
 import eu.europeana.iiif.model.WebResource;
 import eu.europeana.iiif.model.WebResourceSorter;
@@ -41,7 +45,6 @@ public final class EdmManifestMappingV3 {
 
     private static final Logger LOG = LogManager.getLogger(EdmManifestMappingV3.class);
 
-    private static String thumbnailApiUrl;
 
     private EdmManifestMappingV3() {
     }
@@ -103,36 +106,235 @@ public final class EdmManifestMappingV3 {
      * @return IIIF Manifest v3 object
      */
     static ManifestV3 getManifestV3(ManifestSettings ms, MediaTypes mediaTypes, Object jsonDoc) {
-        thumbnailApiUrl = ms.getThumbnailApiUrl();
+        return getManifestV3(ms, mediaTypes, jsonDoc, ManifestProjection.FULL, LanguageFilter.ALL);
+    }
+
+    /**
+     * Generates a IIIF v3 manifest based on the provided (parsed) json document. Only the fields that are part of the
+     * provided projection are extracted from the json document.
+     * @param jsonDoc parsed json document
+     * @param projection the manifest fields to generate
+     * @param languages the languages to keep in labels, summaries and metadata
+     * @return IIIF Manifest v3 object
+     */
+    static ManifestV3 getManifestV3(ManifestSettings ms, MediaTypes mediaTypes, Object jsonDoc, ManifestProjection projection,
+                                    LanguageFilter languages) {
         String europeanaId = EdmManifestUtils.getEuropeanaId(jsonDoc);
         String isShownBy = EdmManifestUtils.getValueFromDataProviderAggregation(jsonDoc, europeanaId, "edmIsShownBy");
+        return getManifestV3(ms, mediaTypes, new ManifestModel(europeanaId, isShownBy, null, jsonDoc, 0),
+                projection, languages, 0);
+    }
+
+    /**
+     * Generates a IIIF v3 manifest based on the provided manifest model. Only the fields that are part of the
+     * provided projection are extracted from the record data.
+     * If a canvas page size is provided and there are more canvases than that, then only the first page of canvases is
+     * generated and a reference to the next page is added to seeAlso.
+     * @param model manifest model containing the parsed record data
+     * @param projection the manifest fields to generate
+     * @param languages the languages to keep in labels, summaries and metadata
+     * @param canvasPageSize maximum number of canvases to include, 0 means no maximum
+     * @return IIIF Manifest v3 object
+     */
+    static ManifestV3 getManifestV3(ManifestSettings ms, MediaTypes mediaTypes, ManifestModel model, ManifestProjection projection,
+                                    LanguageFilter languages, int canvasPageSize) {
+        ManifestMappingEvent event = new ManifestMappingEvent();
+        event.begin();
+        ManifestV3 manifest = null;
+        try {
+            manifest = mapManifestV3(ms, mediaTypes, model, projection, languages, canvasPageSize);
+            return manifest;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.recordId = model.getEuropeanaId();
+                event.recordSize = model.getJsonSize();
+                event.projection = String.valueOf(projection);
+                event.canvasPageSize = canvasPageSize;
+                event.canvasCount = (manifest == null || manifest.getItems() == null ? 0 : manifest.getItems().length);
+                event.commit();
+            }
+        }
+    }
+
+    private static ManifestV3 mapManifestV3(ManifestSettings ms, MediaTypes mediaTypes, ManifestModel model,
+                                            ManifestProjection projection, LanguageFilter languages, int canvasPageSize) {
+        Object jsonDoc = model.getJsonDoc();
+        String europeanaId = model.getEuropeanaId();
+        String isShownBy = model.getIsShownBy();
 
         // if Item is EU screen then get the mediaTypevalue and the isShownBy value is replaced with isShownAt if empty
-        MediaType euScreenTypeHack = ifEuScreenGetMediaType(mediaTypes, jsonDoc, europeanaId, isShownBy);
+        MediaType euScreenTypeHack = null;
+        if (projection.includes(ManifestProjection.ITEMS) && canvasPageSize <= 0) {
+            euScreenTypeHack = ifEuScreenGetMediaType(mediaTypes, jsonDoc, europeanaId, isShownBy);
+        }
         ManifestV3 manifest = new ManifestV3(europeanaId, ms.getManifestId(europeanaId), isShownBy);
-        manifest.setService(getServiceDescriptionV3(ms, europeanaId));
+        if (projection.includes(ManifestProjection.SERVICE)) {
+            manifest.setService(getServiceDescriptionV3(ms, europeanaId));
+        }
         // EA-3325
 //        manifest.setPartOf(getWithinV3(jsonDoc));
-        manifest.setLabel(getLabelsV3(jsonDoc));
-        manifest.setSummary(getDescriptionV3(jsonDoc));
-        manifest.setMetadata(getMetaDataV3(jsonDoc));
-        manifest.setThumbnail(getThumbnailImageV3(europeanaId, jsonDoc));
-        manifest.setNavDate(EdmManifestUtils.getNavDate(europeanaId, jsonDoc));
-        manifest.setHomePage(EdmManifestUtils.getHomePage(europeanaId, jsonDoc));
-        manifest.setRequiredStatement(getAttributionV3Root(europeanaId, isShownBy, jsonDoc));
-        manifest.setRights(getRights(europeanaId, jsonDoc));
-        manifest.setSeeAlso(getDataSetsV3(ms, europeanaId));
+        if (projection.includes(ManifestProjection.LABEL)) {
+            manifest.setLabel(languages.filter(getLabelsV3(jsonDoc)));
+        }
+        if (projection.includes(ManifestProjection.SUMMARY)) {
+            manifest.setSummary(languages.filter(getDescriptionV3(jsonDoc)));
+        }
+        if (projection.includes(ManifestProjection.METADATA)) {
+            manifest.setMetadata(getMetaDataV3(jsonDoc, languages));
+        }
+        if (projection.includes(ManifestProjection.THUMBNAIL)) {
+            manifest.setThumbnail(getThumbnailImageV3(europeanaId, jsonDoc));
+        }
+        if (projection.includes(ManifestProjection.NAV_DATE)) {
+            manifest.setNavDate(EdmManifestUtils.getNavDate(europeanaId, jsonDoc));
+        }
+        if (projection.includes(ManifestProjection.HOMEPAGE)) {
+            manifest.setHomePage(EdmManifestUtils.getHomePage(europeanaId, jsonDoc));
+        }
+        if (projection.includes(ManifestProjection.REQUIRED_STATEMENT)) {
+            manifest.setRequiredStatement(getAttributionV3Root(europeanaId, isShownBy, jsonDoc));
+        }
+        if (projection.includes(ManifestProjection.RIGHTS)) {
+            manifest.setRights(getRights(europeanaId, jsonDoc));
+        }
+        if (projection.includes(ManifestProjection.SEE_ALSO)) {
+            manifest.setSeeAlso(getDataSetsV3(ms, europeanaId));
+        }
+        if (!projection.includes(ManifestProjection.ITEMS)) {
+            return manifest;
+        }
         // get the canvas items and if present add to manifest
-        Canvas[] items = getItems(ms, mediaTypes, europeanaId, isShownBy, jsonDoc, euScreenTypeHack);
+        Canvas[] items;
+        if (canvasPageSize > 0) {
+            items = getFirstCanvasPageV3(ms, mediaTypes, model, manifest, projection, canvasPageSize);
+        } else {
+            items = getItems(ms, mediaTypes, europeanaId, isShownBy, jsonDoc, euScreenTypeHack, projection);
+        }
         if (items != null && items.length > 0) {
             manifest.setItems(items);
-            manifest.setStart(getStartCanvasV3(manifest.getItems(), isShownBy));
+            if (projection.includes(ManifestProjection.START)) {
+                manifest.setStart(getStartCanvasV3(manifest.getItems(), isShownBy));
+            }
         } else {
             LOG.debug("No Canvas generated for europeanaId {}", europeanaId);
         }
         return manifest;
     }
 
+    /**
+     * Generates the first page of canvases and, if there are more canvases, adds a reference to the next page
+     */
+    private static Canvas[] getFirstCanvasPageV3(ManifestSettings ms, MediaTypes mediaTypes, ManifestModel model,
+                                                 ManifestV3 manifest, ManifestProjection projection, int canvasPageSize) {
+        int total = getCanvasResourcesV3(mediaTypes, model).size();
+        if (total > canvasPageSize) {
+            List<DataSet> seeAlso = new ArrayList<>();
+            if (manifest.getSeeAlso() != null) {
+                seeAlso.addAll(Arrays.asList(manifest.getSeeAlso()));
+            }
+            seeAlso.add(new DataSet(ms.getCanvasPageId(model.getEuropeanaId(), 2, canvasPageSize),
+                    AcceptUtils.MEDIA_TYPE_JSONLD, ManifestDefinitions.CANVAS_PAGE_PROFILE));
+            manifest.setSeeAlso(seeAlso.toArray(new DataSet[0]));
+        }
+        return getCanvasesV3(ms, mediaTypes, model, 1, Math.min(total, canvasPageSize), projection);
+    }
+
+    /**
+     * Generates a page of canvases. Only the canvases on the requested page are generated.
+     * @param model manifest model containing the parsed record data
+     * @param page number of the page to generate (first page is 1)
+     * @param pageSize number of canvases per page
+     * @param projection the canvas fields to generate
+     * @return CanvasPage, or null if the requested page doesn't exist
+     */
+    static CanvasPage getCanvasPageV3(ManifestSettings ms, MediaTypes mediaTypes, ManifestModel model, int page,
+                                      int pageSize, ManifestProjection projection) {
+        if (page < 1) {
+            return null;
+        }
+        int total = getCanvasResourcesV3(mediaTypes, model).size();
+        // page is unbounded, so compute as long to prevent overflow
+        long start = (long) (page - 1) * pageSize;
+        if (start >= total && page > 1) {
+            return null;
+        }
+        int startIndex = (int) start;
+        String europeanaId = model.getEuropeanaId();
+        CanvasPage result = new CanvasPage(ms.getCanvasPageId(europeanaId, page, pageSize), ms.getManifestId(europeanaId),
+                startIndex, total);
+        if (page > 1) {
+            result.setPrev(ms.getCanvasPageId(europeanaId, page - 1, pageSize));
+        }
+        if (startIndex + pageSize < total) {
+            result.setNext(ms.getCanvasPageId(europeanaId, page + 1, pageSize));
+        }
+        result.setOrderedItems(getCanvasesV3(ms, mediaTypes, model, startIndex + 1, Math.min(total, startIndex + pageSize), projection));
+        return result;
+    }
+
+    /**
+     * Returns the web resources for which a canvas is generated, in canvas order (so the resource at index 0 is used
+     * for canvas p1). The result is stored in the model, so it's only determined once per model.
+     * @param model manifest model containing the parsed record data
+     * @return list of web resources
+     */
+    static List<WebResource> getCanvasResourcesV3(MediaTypes mediaTypes, ManifestModel model) {
+        List<WebResource> result = model.getCanvasResourcesV3();
+        if (result == null) {
+            Object jsonDoc = model.getJsonDoc();
+            MediaType euScreenTypeHack = ifEuScreenGetMediaType(mediaTypes, jsonDoc, model.getEuropeanaId(), model.getIsShownBy());
+            result = new ArrayList<>();
+            for (WebResource webResource : EdmManifestUtils.getSortedWebResources(model.getEuropeanaId(), model.getIsShownBy(), jsonDoc)) {
+                if (getCanvasMediaType(mediaTypes, webResource, euScreenTypeHack) != null) {
+                    result.add(webResource);
+                }
+            }
+            model.setCanvasResourcesV3(Collections.unmodifiableList(result), euScreenTypeHack);
+        }
+        return result;
+    }
+
+    /**
+     * Generates a single canvas from the model, without generating any of the other canvases
+     * @param model manifest model containing the parsed record data
+     * @param order number of the canvas to generate (first canvas is 1)
+     * @param projection the canvas fields to generate
+     * @return canvas, or null if the record doesn't have a canvas with the provided number
+     */
+    static Canvas getCanvasV3(ManifestSettings ms, MediaTypes mediaTypes, ManifestModel model, int order,
+                              ManifestProjection projection) {
+        if (order < 1) {
+            return null;
+        }
+        Canvas[] result = getCanvasesV3(ms, mediaTypes, model, order, order, projection);
+        return (result.length == 0 ? null : result[0]);
+    }
+
+    /**
+     * Generates the canvases with the provided page numbers from the model, without generating any other canvases
+     * @param model manifest model containing the parsed record data
+     * @param first number of the first canvas to generate (first canvas is 1)
+     * @param last number of the last canvas to generate (inclusive)
+     * @param projection the canvas fields to generate
+     * @return array of canvases
+     */
+    static Canvas[] getCanvasesV3(ManifestSettings ms, MediaTypes mediaTypes, ManifestModel model, int first, int last,
+                                  ManifestProjection projection) {
+        List<WebResource> resources = getCanvasResourcesV3(mediaTypes, model);
+        Map<String, Object>[] services = null;
+        if (projection.includesCanvasField(ManifestProjection.CANVAS_ITEMS)) {
+            services = JsonPath.parse(model.getJsonDoc()).read("$.object[?(@.services)].services[*]", Map[].class);
+        }
+        String thumbnailApiUrl = ms.getThumbnailApiUrl();
+        List<Canvas> result = new ArrayList<>(Math.max(0, last - first + 1));
+        for (int order = first; order <= last && order <= resources.size(); order++) {
+            result.add(getCanvasV3(ms, mediaTypes, model.getEuropeanaId(), order, resources.get(order - 1), services,
+                    model.getEuScreenTypeHack(), projection, thumbnailApiUrl));
+        }
+        return result.toArray(new Canvas[0]);
+    }
+
     /**
      * Generates Service descriptions for the manifest
      */
@@ -193,13 +395,24 @@ public final class EdmManifestMappingV3 {
      * @return
      */
     static eu.europeana.iiif.model.v3.MetaData[] getMetaDataV3(Object jsonDoc) {
+        return getMetaDataV3(jsonDoc, LanguageFilter.ALL);
+    }
+
+    /**
+     * Reads the dcDate, dcFormat, dcRelation, dcType, dcLanguage and dcSource values from all proxies and puts them in a
+     * LanguageMap with the appropriate label. Only values in one of the provided languages are kept.
+     * @param jsonDoc parsed json document
+     * @param languages the languages to keep
+     * @return
+     */
+    static eu.europeana.iiif.model.v3.MetaData[] getMetaDataV3(Object jsonDoc, LanguageFilter languages) {
         List<eu.europeana.iiif.model.v3.MetaData> metaData = new ArrayList<>();
-        addMetaDataV3(metaData, "date", jsonDoc, "$.object.proxies[*].dcDate");
-        addMetaDataV3(metaData, "format", jsonDoc, "$.object.proxies[*].dcFormat");
-        addMetaDataV3(metaData, "relation", jsonDoc, "$.object.proxies[*].dcRelation");
-        addMetaDataV3(metaData, "type", jsonDoc, "$.object.proxies[*].dcType");
-        addMetaDataV3(metaData, "language", jsonDoc,"$.object.proxies[*].dcLanguage");
-        addMetaDataV3(metaData, "source", jsonDoc, "$.object.proxies[*].dcSource");
+        addMetaDataV3(metaData, "date", jsonDoc, "$.object.proxies[*].dcDate", languages);
+        addMetaDataV3(metaData, "format", jsonDoc, "$.object.proxies[*].dcFormat", languages);
+        addMetaDataV3(metaData, "relation", jsonDoc, "$.object.proxies[*].dcRelation", languages);
+        addMetaDataV3(metaData, "type", jsonDoc, "$.object.proxies[*].dcType", languages);
+        addMetaDataV3(metaData, "language", jsonDoc,"$.object.proxies[*].dcLanguage", languages);
+        addMetaDataV3(metaData, "source", jsonDoc, "$.object.proxies[*].dcSource", languages);
         if (!metaData.isEmpty()) {
             return metaData.toArray(new eu.europeana.iiif.model.v3.MetaData[0]);
         }
@@ -207,7 +420,8 @@ public final class EdmManifestMappingV3 {
     }
 
 
-    private static void addMetaDataV3(List<eu.europeana.iiif.model.v3.MetaData> metaData, String fieldName, Object jsonDoc, String jsonPath) {
+    private static void addMetaDataV3(List<eu.europeana.iiif.model.v3.MetaData> metaData, String fieldName, Object jsonDoc,
+                                      String jsonPath, LanguageFilter languages) {
         // We go over all meta data values and check if it's an url or not.
         // Non-url values are always included as is. If it's an url then we wrap that with an html anchor tag.
         // Additionally we check if the url is also present in object.timespans, agents, concepts or places. If so we
@@ -244,7 +458,7 @@ public final class EdmManifestMappingV3 {
             }
             LOG.trace("FINISH '{}' value map = {}", fieldName, metaDataValue);
 
-            metaData.add(new eu.europeana.iiif.model.v3.MetaData(metaDataLabel, metaDataValue));
+            metaData.add(new eu.europeana.iiif.model.v3.MetaData(metaDataLabel, languages.filter(metaDataValue)));
         }
     }
 
@@ -328,9 +542,10 @@ public final class EdmManifestMappingV3 {
     /**
      * EA-3325 Return array with the id of the canvas-specific thumbnail created from the Webresource id
      * @param webresourceId hasview image ID
+     * @param thumbnailApiUrl base url of the thumbnail API
      * @return Image object, or null if either provided String was null
      */
-    static eu.europeana.iiif.model.v3.Image[] getCanvasThumbnailImageV3(String webresourceId) {
+    static eu.europeana.iiif.model.v3.Image[] getCanvasThumbnailImageV3(String webresourceId, String thumbnailApiUrl) {
         if (StringUtils.isAnyEmpty(thumbnailApiUrl, webresourceId)) {
             return new eu.europeana.iiif.model.v3.Image[] {};
         }
@@ -416,16 +631,33 @@ public final class EdmManifestMappingV3 {
      * @return array of Canvases
      */
     static eu.europeana.iiif.model.v3.Canvas[] getItems(ManifestSettings settings, MediaTypes mediaTypes, String europeanaId, String isShownBy, Object jsonDoc, MediaType euScreenTypeHack) {
+        return getItems(settings, mediaTypes, europeanaId, isShownBy, jsonDoc, euScreenTypeHack, ManifestProjection.FULL);
+    }
+
+    /**
+     * Generates an ordered array of {@link Canvas}es, but only with the canvas fields that are part of the provided
+     * projection. Note that we always need to determine the media type, because that decides if a canvas is generated
+     * (and hence the page numbers of all following canvases)
+     * @return array of Canvases
+     */
+    static eu.europeana.iiif.model.v3.Canvas[] getItems(ManifestSettings settings, MediaTypes mediaTypes, String europeanaId,
+                                                        String isShownBy, Object jsonDoc, MediaType euScreenTypeHack,
+                                                        ManifestProjection projection) {
         // generate canvases in a same order as the web resources
         List<WebResource> sortedResources = EdmManifestUtils.getSortedWebResources(europeanaId, isShownBy, jsonDoc);
         if (sortedResources.isEmpty()) {
             return null;
         }
         int order = 1;
-        Map<String, Object>[] services = JsonPath.parse(jsonDoc).read("$.object[?(@.services)].services[*]", Map[].class);
+        Map<String, Object>[] services = null;
+        if (projection.includesCanvasField(ManifestProjection.CANVAS_ITEMS)) {
+            services = JsonPath.parse(jsonDoc).read("$.object[?(@.services)].services[*]", Map[].class);
+        }
+        String thumbnailApiUrl = settings.getThumbnailApiUrl();
         List<eu.europeana.iiif.model.v3.Canvas> canvases = new ArrayList<>(sortedResources.size());
         for (WebResource webResource: sortedResources) {
-            Canvas canvas = getCanvasV3(settings, mediaTypes, europeanaId, order, webResource, services, euScreenTypeHack);
+            Canvas canvas = getCanvasV3(settings, mediaTypes, europeanaId, order, webResource, services, euScreenTypeHack,
+                    projection, thumbnailApiUrl);
             // for non supported media types we do not create any canvas. Case-4 of media type handling : See-EA-3413
             if (canvas != null) {
                 canvases.add(canvas);
@@ -437,39 +669,10 @@ public final class EdmManifestMappingV3 {
 
 
     /**
-     * Generates a new canvas, but note that we do not fill the otherContent (Full-Text) here. That's done later.
+     * Determines the media type of the canvas that is generated for the provided web resource
+     * @return MediaType, or null if no canvas should be generated for this web resource
      */
-    private static eu.europeana.iiif.model.v3.Canvas getCanvasV3(ManifestSettings settings,
-                                                                 MediaTypes mediaTypes,
-                                                                 String europeanaId,
-                                                                 int order,
-                                                                 WebResource webResource,
-                                                                 Map<String, Object>[] services,
-                                                                 MediaType euScreenTypeHack) {
-        eu.europeana.iiif.model.v3.Canvas c =
-                new eu.europeana.iiif.model.v3.Canvas(settings.getCanvasId(europeanaId, order), order);
-
-        c.setLabel(new LanguageMap(null, "p. "+order));
-
-        setHeightAndWidthForCanvas(webResource, c);
-        setDurationForCanvas(webResource, c);
-        setRequiredStatementForCanvas(webResource, c);
-        setRightsForCanvas(webResource, c);
-
-        //EA-3325: check if the webResource has a "svcsHasService"; if not, add a thumbnail
-        if (Objects.isNull(webResource.get(EdmManifestUtils.SVCS_HAS_SERVICE))){
-            c.setThumbnail(getCanvasThumbnailImageV3(URLEncoder.encode(webResource.getId(), StandardCharsets.UTF_8)));
-        }
-
-        // a canvas has 1 annotation page by default (an extra annotation page is added later if there is a full text available)
-        AnnotationPage annoPage = new AnnotationPage(null); // id is not really necessary in this case
-        c.setItems(new AnnotationPage[] {annoPage});
-
-        // Add annotation - annotation page has 1 annotation
-        Annotation anno = new Annotation(null);
-        annoPage.setItems(new Annotation[] { anno });
-        anno.setTarget(c.getId());
-
+    private static MediaType getCanvasMediaType(MediaTypes mediaTypes, WebResource webResource, MediaType euScreenTypeHack) {
         // Fetch the mime type from the web resource
         String ebucoreMimeType = (String) webResource.get(EdmManifestUtils.EBUCORE_HAS_MIMETYPE);
         MediaType mediaType = null;
@@ -478,7 +681,6 @@ public final class EdmManifestMappingV3 {
         if (euScreenTypeHack != null) {
             LOG.debug("Override mediaType {} with {} because of EUScreen hack", mediaType, euScreenTypeHack);
             mediaType = euScreenTypeHack;
-            anno.setTimeMode("trim"); // as it's AV
         } else {
             // get the mediaType from the mimetype fetched
             Optional<MediaType> media = mediaTypes.getMediaType(ebucoreMimeType);
@@ -497,16 +699,95 @@ public final class EdmManifestMappingV3 {
                     ebucoreMimeType);
             return null;
         }
+        return mediaType;
+    }
 
-        // Now create the annotation body with webresource url and media type
-        // EA- 3436 add technical metadata for case 2 and 3
-        AnnotationBody annoBody = getAnnotationBody(webResource, mediaType, anno,c);
-        // annotation has 1 annotationBody
-        anno.setBody(annoBody);
-        // body can have a service.
-        // EA-3475 Do not add service for specialized formats
-        if(!mediaType.isRendered()) {
-            setServiceIdForAnnotation(europeanaId, webResource, services, annoBody);
+    /**
+     * Generates a new canvas, but note that we do not fill the otherContent (Full-Text) here. That's done later.
+     */
+    private static eu.europeana.iiif.model.v3.Canvas getCanvasV3(ManifestSettings settings,
+                                                                 MediaTypes mediaTypes,
+                                                                 String europeanaId,
+                                                                 int order,
+                                                                 WebResource webResource,
+                                                                 Map<String, Object>[] services,
+                                                                 MediaType euScreenTypeHack,
+                                                                 ManifestProjection projection,
+                                                                 String thumbnailApiUrl) {
+        MediaType mediaType = getCanvasMediaType(mediaTypes, webResource, euScreenTypeHack);
+        if (mediaType == null) {
+            return null;
+        }
+
+        eu.europeana.iiif.model.v3.Canvas c =
+                new eu.europeana.iiif.model.v3.Canvas(settings.getCanvasId(europeanaId, order), order);
+
+        if (projection.includesCanvasField(ManifestProjection.CANVAS_LABEL)) {
+            c.setLabel(new LanguageMap(null, "p. " + order));
+        }
+
+        // size and duration are also copied to the annotation body, so we need them if either is requested
+        setHeightAndWidthForCanvas(webResource, c);
+        if (projection.includesCanvasField(ManifestProjection.CANVAS_DURATION) || projection.includesCanvasField(ManifestProjection.CANVAS_ITEMS)) {
+            setDurationForCanvas(webResource, c);
+        }
+        if (projection.includesCanvasField(ManifestProjection.CANVAS_REQUIRED_STATEMENT)) {
+            setRequiredStatementForCanvas(webResource, c);
+        }
+        if (projection.includesCanvasField(ManifestProjection.CANVAS_RIGHTS)) {
+            setRightsForCanvas(webResource, c);
+        }
+
+        //EA-3325: check if the webResource has a "svcsHasService"; if not, add a thumbnail
+        // Note that for rendered media types the thumbnail is also used as annotation body id
+        if ((projection.includesCanvasField(ManifestProjection.CANVAS_THUMBNAIL) || projection.includesCanvasField(ManifestProjection.CANVAS_ITEMS))
+                && Objects.isNull(webResource.get(EdmManifestUtils.SVCS_HAS_SERVICE))) {
+            c.setThumbnail(getCanvasThumbnailImageV3(URLEncoder.encode(webResource.getId(), StandardCharsets.UTF_8),
+                    thumbnailApiUrl));
+        }
+
+        if (projection.includesCanvasField(ManifestProjection.CANVAS_ITEMS)) {
+            // a canvas has 1 annotation page by default (an extra annotation page is added later if there is a full text available)
+            AnnotationPage annoPage = new AnnotationPage(null); // id is not really necessary in this case
+            c.setItems(new AnnotationPage[] {annoPage});
+
+            // Add annotation - annotation page has 1 annotation
+            Annotation anno = new Annotation(null);
+            annoPage.setItems(new Annotation[] { anno });
+            anno.setTarget(c.getId());
+            if (euScreenTypeHack != null) {
+                anno.setTimeMode("trim"); // as it's AV
+            }
+
+            // Now create the annotation body with webresource url and media type
+            // EA- 3436 add technical metadata for case 2 and 3
+            AnnotationBody annoBody = getAnnotationBody(webResource, mediaType, anno, c, thumbnailApiUrl);
+            // annotation has 1 annotationBody
+            anno.setBody(annoBody);
+            // body can have a service.
+            // EA-3475 Do not add service for specialized formats
+            if(!mediaType.isRendered()) {
+                setServiceIdForAnnotation(europeanaId, webResource, services, annoBody);
+            }
+        } else if (mediaType.isRendered()) {
+            // update the width and height (normally done when creating the annotation body)
+            setHeightWidthForRendered(c);
+        }
+
+        if (!projection.includesCanvasField(ManifestProjection.CANVAS_THUMBNAIL)) {
+            c.setThumbnail(null);
+        }
+        if (!projection.includesCanvasField(ManifestProjection.CANVAS_RENDERING)) {
+            c.setRendering(null);
+        }
+        if (!projection.includesCanvasField(ManifestProjection.CANVAS_WIDTH)) {
+            c.setWidth(null);
+        }
+        if (!projection.includesCanvasField(ManifestProjection.CANVAS_HEIGHT)) {
+            c.setHeight(null);
+        }
+        if (!projection.includesCanvasField(ManifestProjection.CANVAS_DURATION)) {
+            c.setDuration(null);
         }
         return c;
     }
@@ -519,7 +800,7 @@ public final class EdmManifestMappingV3 {
     }
 
     private static AnnotationBody getAnnotationBody(WebResource webResource, MediaType mediaType,
-        Annotation anno, Canvas c) {
+        Annotation anno, Canvas c, String thumbnailApiUrl) {
         AnnotationBody annoBody = new AnnotationBody((String) webResource.get(EdmManifestUtils.ABOUT), mediaType.getType());
         // case 2 - browser supported
         if (mediaType.isBrowserSupported() ) {
@@ -1,6 +1,7 @@
 package eu.europeana.iiif.service;
 
 import com.jayway.jsonpath.JsonPath;
+import eu.europeana.iiif.jfr.WebResourceSortEvent;
 import eu.europeana.iiif.model.MediaType;
 import eu.europeana.iiif.model.WebResource;
 import eu.europeana.iiif.model.WebResourceSorter;
@@ -177,12 +178,22 @@ public final class EdmManifestUtils {
             }
         }
 
+        StageTimings.current().setWebResourceCount(unsorted.size());
         List<WebResource> sorted;
+        WebResourceSortEvent event = new WebResourceSortEvent();
+        event.begin();
         try {
             sorted = WebResourceSorter.sort(unsorted, validWebResources);
         } catch (DataInconsistentException e) {
             LOG.error("Error trying to sort webresources for {}. Cause: {}", europeanaId, e);
             sorted = unsorted;
+            event.inconsistent = true;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.recordId = europeanaId;
+            event.webResourceCount = unsorted.size();
+            event.commit();
         }
         return sorted;
     }
@@ -202,7 +213,9 @@ public final class EdmManifestUtils {
                     if (doapImplements != null && doapImplements instanceof List) {
                         // check for empty list as there are many cases where we do get an empty list. See : EA-3227
                         if (((List<String>) doapImplements).isEmpty()) {
-                            LOG.warn("Record {} has service {} with empty doapImplements field value", europeanaId, serviceId);
+                            if (!StageTimings.current().addWarning(StageTimings.Warning.EMPTY_DOAP_IMPLEMENTS, serviceId)) {
+                                LOG.warn("Record {} has service {} with empty doapImplements field value", europeanaId, serviceId);
+                            }
                         } else {
                             result = ((List<String>) doapImplements).get(0);
                         }
@@ -210,7 +223,7 @@ public final class EdmManifestUtils {
                     break;
             }
         }
-        if (result == null) {
+        if (result == null && !StageTimings.current().addWarning(StageTimings.Warning.UNDEFINED_SERVICE, serviceId)) {
             LOG.warn("Record {} defined service {} in webresource, but no such service is defined (with a doapImplements field)", europeanaId, serviceId);
         }
         return result;
@@ -294,7 +307,21 @@ public final class EdmManifestUtils {
      * @return LocalDateTime object with the record's 'timestamp_update' value (UTC)
      */
     public static ZonedDateTime getRecordTimestampUpdate(String json) {
-        String date = JsonPath.parse(json).read("$.object.timestamp_update", String.class);
+        return toRecordTimestamp(JsonPath.parse(json).read("$.object.timestamp_update", String.class));
+    }
+
+    /**
+     * Same as getRecordTimestampUpdate(String), but for record data that was already parsed
+     * @param jsonDoc parsed record data
+     * @return ZonedDateTime containing the last update date, or null if there is no timestamp
+     */
+    public static ZonedDateTime getRecordTimestampUpdate(Object jsonDoc) {
+        // use a filter so we don't get an exception for records without timestamp
+        String[] dates = JsonPath.parse(jsonDoc).read("$.object[?(@.timestamp_update)].timestamp_update", String[].class);
+        return toRecordTimestamp(dates == null || dates.length == 0 ? null : dates[0]);
+    }
+
+    private static ZonedDateTime toRecordTimestamp(String date) {
         if (StringUtils.isEmpty(date)) {
             return null;
         }
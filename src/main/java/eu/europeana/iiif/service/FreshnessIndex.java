@@ -0,0 +1,134 @@
+package eu.europeana.iiif.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.europeana.iiif.config.ManifestSettings;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+
+/**
+ * Remembers the ETags (and other cache headers) of recent responses, so conditional requests can be answered without
+ * retrieving the record again. Entries are stored per record id and variant (everything else the response depends on,
+ * such as the requested resource, parameters and IIIF version, but not the API key) and expire after the configured
+ * staleness window.
+ *
+ * For every record we also keep the most recent timestamp_update (Last-Modified) we've seen. When a response shows that
+ * a record has changed, the entries of all other variants of that record are no longer used.
+ */
+@Component
+public class FreshnessIndex {
+
+    private static final Logger LOG = LogManager.getLogger(FreshnessIndex.class);
+
+    private static final char SEPARATOR = '\n';
+
+    private final Cache<String, Entry> entries;
+    private final Cache<String, ZonedDateTime> recordTimestamps;
+    private final boolean enabled;
+
+    /**
+     * Create a new freshness index
+     * @param settings read from properties file
+     */
+    public FreshnessIndex(ManifestSettings settings) {
+        long maxSize = settings.getConditionalFastPathMaxSize();
+        Duration staleness = Duration.ofSeconds(settings.getConditionalFastPathStaleness());
+        this.enabled = maxSize > 0 && !staleness.isZero();
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, maxSize))
+                .expireAfterWrite(staleness)
+                .build();
+        this.recordTimestamps = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, maxSize))
+                .expireAfterWrite(staleness)
+                .build();
+        LOG.info("Conditional request fast path enabled = {}, max size = {}, staleness = {} s", enabled, maxSize,
+                staleness.getSeconds());
+    }
+
+    /**
+     * @return true if ETags are remembered
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Return the remembered response headers of a variant of a record
+     * @param recordId id of the record
+     * @param variant normalised description of the requested variant
+     * @return the remembered entry, or null if there is none or if the record has changed since
+     */
+    public Entry get(String recordId, String variant) {
+        if (!enabled) {
+            return null;
+        }
+        String key = recordId + SEPARATOR + variant;
+        Entry entry = entries.getIfPresent(key);
+        if (entry != null && entry.lastModified != null) {
+            ZonedDateTime latest = recordTimestamps.getIfPresent(recordId);
+            if (latest != null && entry.lastModified.isBefore(latest)) {
+                entries.invalidate(key);
+                return null;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Remember the response headers of a variant of a record
+     * @param recordId id of the record the variant belongs to
+     * @param variant normalised description of the requested variant
+     * @param lastModified optional, last modified date of the record
+     * @param headers response headers (should include the ETag), these are sent back in 304 responses
+     */
+    public void put(String recordId, String variant, ZonedDateTime lastModified, HttpHeaders headers) {
+        if (!enabled || headers.getETag() == null) {
+            return;
+        }
+        if (lastModified != null) {
+            recordTimestamps.asMap().merge(recordId, lastModified, (old, value) -> value.isAfter(old) ? value : old);
+        }
+        entries.put(recordId + SEPARATOR + variant, new Entry(lastModified, HttpHeaders.readOnlyHttpHeaders(headers)));
+    }
+
+    /**
+     * Remove all remembered entries
+     */
+    public void clear() {
+        entries.invalidateAll();
+        recordTimestamps.invalidateAll();
+    }
+
+    /**
+     * Remembered response headers of a single variant
+     */
+    public static final class Entry {
+        private final ZonedDateTime lastModified;
+        private final HttpHeaders headers;
+
+        private Entry(ZonedDateTime lastModified, HttpHeaders headers) {
+            this.lastModified = lastModified;
+            this.headers = headers;
+        }
+
+        /**
+         * @return the ETag of the variant
+         */
+        public String getETag() {
+            return headers.getETag();
+        }
+
+        /**
+         * @return the (read-only) response headers of the variant
+         */
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
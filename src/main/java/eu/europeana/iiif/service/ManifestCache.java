@@ -0,0 +1,173 @@
+package eu.europeana.iiif.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.model.ManifestModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * In-memory cache of {@link ManifestModel}s so we don't have to retrieve and parse record data for every request.
+ * The cache size is limited by the total size of the cached record json. Entries expire after a configurable time so
+ * changes in the Record API are picked up.
+ *
+ * Since the Record API validates API keys, a cached model is only returned for API keys that were accepted by the
+ * Record API before (within the same expiry time).
+ *
+ * Additionally, API keys that were refused by the Record API and records that it couldn't find are remembered for a
+ * (short) while, so we don't need to ask the Record API again when clients keep repeating the same failing request.
+ *
+ * Cache statistics are available as metrics (cache.gets, cache.size, etc. with the cache name as tag).
+ */
+@Component
+public class ManifestCache implements MeterBinder {
+
+    private static final Logger LOG = LogManager.getLogger(ManifestCache.class);
+
+    private static final long BYTES_PER_MB = 1024L * 1024L;
+    private static final int MAX_WSKEYS = 10_000;
+
+    private final Cache<String, ManifestModel> models;
+    private final Cache<String, Boolean> validWskeys;
+    private final Cache<String, Boolean> invalidWskeys;
+    private final Cache<String, Boolean> missingRecords;
+    private final boolean enabled;
+    private final boolean negativeEnabled;
+
+    /**
+     * Create a new manifest cache using the provided settings
+     * @param settings read from properties file
+     */
+    public ManifestCache(ManifestSettings settings) {
+        long maxSizeMb = settings.getManifestCacheMaxSizeMb();
+        Duration ttl = Duration.ofSeconds(settings.getManifestCacheTtl());
+        this.enabled = maxSizeMb > 0 && !ttl.isZero();
+        this.models = Caffeine.newBuilder()
+                .maximumWeight(Math.max(0, maxSizeMb) * BYTES_PER_MB)
+                .weigher((String id, ManifestModel model) -> model.getJsonSize())
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.validWskeys = Caffeine.newBuilder()
+                .maximumSize(MAX_WSKEYS)
+                .expireAfterWrite(ttl)
+                .build();
+        LOG.info("Manifest cache enabled = {}, max size = {} MB, time-to-live = {} s", enabled, maxSizeMb, ttl.getSeconds());
+
+        long negativeMaxSize = settings.getNegativeCacheMaxSize();
+        Duration negativeTtl = Duration.ofSeconds(settings.getNegativeCacheTtl());
+        this.negativeEnabled = negativeMaxSize > 0 && !negativeTtl.isZero();
+        this.invalidWskeys = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, negativeMaxSize))
+                .expireAfterWrite(negativeTtl)
+                .recordStats()
+                .build();
+        this.missingRecords = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, negativeMaxSize))
+                .expireAfterWrite(negativeTtl)
+                .recordStats()
+                .build();
+        LOG.info("Negative cache enabled = {}, max size = {}, time-to-live = {} s", negativeEnabled, negativeMaxSize,
+                negativeTtl.getSeconds());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, models, "manifest-models");
+        CaffeineCacheMetrics.monitor(registry, invalidWskeys, "invalid-wskeys");
+        CaffeineCacheMetrics.monitor(registry, missingRecords, "missing-records");
+    }
+
+    /**
+     * @return true if models are cached
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Return a cached model
+     * @param europeanaId consisting of dataset ID and record ID separated by a slash
+     * @param wskey the API key used in the request
+     * @return the cached model, or null if it's not cached or if the API key wasn't validated before
+     */
+    public ManifestModel get(String europeanaId, String wskey) {
+        if (!enabled || validWskeys.getIfPresent(wskey) == null) {
+            return null;
+        }
+        return models.getIfPresent(europeanaId);
+    }
+
+    /**
+     * Add a model to the cache (replacing any existing model for the same record)
+     * @param wskey API key that was accepted by the Record API when retrieving the record data
+     * @param model the model to cache
+     */
+    public void put(String wskey, ManifestModel model) {
+        if (enabled) {
+            validWskeys.put(wskey, Boolean.TRUE);
+            models.put(model.getEuropeanaId(), model);
+        }
+    }
+
+    /**
+     * @param wskey the API key used in the request
+     * @return true if the Record API refused this API key recently
+     */
+    public boolean isInvalidWskey(String wskey) {
+        return negativeEnabled && invalidWskeys.getIfPresent(wskey) != null;
+    }
+
+    /**
+     * Remember that the Record API refused an API key
+     * @param wskey the refused API key
+     */
+    public void putInvalidWskey(String wskey) {
+        if (negativeEnabled) {
+            invalidWskeys.put(wskey, Boolean.TRUE);
+            validWskeys.invalidate(wskey);
+        }
+    }
+
+    /**
+     * @param europeanaId consisting of dataset ID and record ID separated by a slash
+     * @return true if the Record API couldn't find this record recently
+     */
+    public boolean isMissingRecord(String europeanaId) {
+        return negativeEnabled && missingRecords.getIfPresent(europeanaId) != null;
+    }
+
+    /**
+     * Remember that the Record API couldn't find a record
+     * @param europeanaId consisting of dataset ID and record ID separated by a slash
+     */
+    public void putMissingRecord(String europeanaId) {
+        if (negativeEnabled) {
+            missingRecords.put(europeanaId, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * @return approximate number of cached models
+     */
+    public long size() {
+        return models.estimatedSize();
+    }
+
+    /**
+     * Remove all cached models and API keys, including the ones refused by the Record API, and all missing records
+     */
+    public void clear() {
+        models.invalidateAll();
+        validWskeys.invalidateAll();
+        invalidWskeys.invalidateAll();
+        missingRecords.invalidateAll();
+    }
+}
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.jayway.jsonpath.Option;
 import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
@@ -11,16 +13,25 @@ import com.jayway.jsonpath.spi.json.JsonProvider;
 import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
 import com.jayway.jsonpath.spi.mapper.MappingProvider;
 import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.IIIFDefinitions;
 import eu.europeana.iiif.config.ManifestSettings;
 import eu.europeana.iiif.config.MediaTypes;
 import eu.europeana.iiif.exception.IllegalArgumentException;
+import eu.europeana.iiif.jfr.FullTextSummaryEvent;
+import eu.europeana.iiif.jfr.RecordFetchEvent;
+import eu.europeana.iiif.jfr.SerializationEvent;
+import eu.europeana.iiif.model.FullTextSummary;
 import eu.europeana.iiif.model.ManifestDefinitions;
+import eu.europeana.iiif.model.LanguageFilter;
+import eu.europeana.iiif.model.ManifestEncoding;
+import eu.europeana.iiif.model.ManifestModel;
+import eu.europeana.iiif.model.ManifestProjection;
 import eu.europeana.iiif.model.info.FulltextSummaryManifest;
 import eu.europeana.iiif.model.info.FulltextSummaryAnnoPage;
 import eu.europeana.iiif.model.info.FulltextSummaryCanvas;
 import eu.europeana.iiif.model.v2.ManifestV2;
-import eu.europeana.iiif.model.v2.Sequence;
 import eu.europeana.iiif.model.v3.AnnotationPage;
+import eu.europeana.iiif.model.v3.CanvasPage;
 import eu.europeana.iiif.model.v3.ManifestV3;
 import eu.europeana.iiif.exception.*;
 import ioinformarics.oss.jackson.module.jsonld.JsonldModule;
@@ -37,6 +48,7 @@ import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.client.cache.CacheConfig;
 import org.apache.http.impl.client.cache.CachingHttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -45,6 +57,7 @@ import org.springframework.stereotype.Service;
 import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
@@ -71,34 +84,44 @@ public class ManifestService {
     private static final int MAX_CACHED_ENTRIES       = 1000;
     private static final int MAX_CACHED_OBJECT_SIZE   = 65536;
 
-    private static final int RECORD_CONNECT_TIMEOUT = 10_000;
+    protected static final int RECORD_CONNECT_TIMEOUT = 10_000;
     protected static final int RECORD_SOCKET_TIMEOUT  = 30_000;
-    private static final int FULLTEXT_CONNECT_TIMEOUT = 8_000;
+    protected static final int FULLTEXT_CONNECT_TIMEOUT = 8_000;
     protected static final int FULLTEXT_SOCKET_TIMEOUT  = 20_000;
 
     // create a single objectMapper for efficiency purposes (see https://github.com/FasterXML/jackson-docs/wiki/Presentation:-Jackson-Performance)
     private static final ObjectMapper mapper = new ObjectMapper();
+    // mappers for binary encodings, configured in the same way as the json mapper
+    private static final ObjectMapper smileMapper = new SmileMapper();
+    private static final ObjectMapper cborMapper = new CBORMapper();
 
     private final ManifestSettings    settings;
     private final CloseableHttpClient recordHttpClient;
     private final CloseableHttpClient fulltextHttpClient;
     private HttpCacheContext    httpCacheContext = null;
     private final MediaTypes mediaTypes;
+    private final ManifestCache manifestCache;
+    private final AdmissionLimiter recordApiLimiter;
+    private final PoolingHttpClientConnectionManager connectionManager;
 
 
     /**
      * Creates an instance of the ManifestService bean with provided settings
      * @param settings read from properties file
      * @param mediaTypes
+     * @param manifestCache cache for parsed record data
      */
-    public ManifestService(ManifestSettings settings, MediaTypes mediaTypes) {
+    public ManifestService(ManifestSettings settings, MediaTypes mediaTypes, ManifestCache manifestCache) {
         this.settings = settings;
         this.mediaTypes = mediaTypes;
+        this.manifestCache = manifestCache;
+        this.recordApiLimiter = new AdmissionLimiter("Record API", settings);
 
         // configure http client
         PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
         cm.setMaxTotal(MAX_TOTAL_CONNECTIONS);
         cm.setDefaultMaxPerRoute(DEFAULT_MAX_PER_ROUTE);
+        this.connectionManager = cm;
 
         if (USE_HTTP_CLIENT_CACHING) {
             recordHttpClient = initCachingHttpClient(cm, true);
@@ -138,9 +161,15 @@ public class ManifestService {
         });
 
         // configure Jackson serialization
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
-        mapper.registerModule(new JsonldModule())
+        configureMapper(mapper);
+        configureMapper(smileMapper);
+        configureMapper(cborMapper);
+    }
+
+    private static void configureMapper(ObjectMapper objectMapper) {
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        objectMapper.registerModule(new JsonldModule())
               // add support for Java 8 Optionals
               .registerModule(new Jdk8Module())
               // ignore empty optionals
@@ -188,6 +217,7 @@ public class ManifestService {
      * @throws EuropeanaApiException (IllegalArgumentException if a parameter has an illegal format,
      *                       InvalidApiKeyException if the provide key is not valid,
      *                       RecordNotFoundException if there was a 404,
+     *                       ServiceOverloadedException if too many Record API requests are in progress,
      *                       RecordRetrieveException on all other problems)
      */
     public String getRecordJson(String recordId, String wsKey) throws EuropeanaApiException {
@@ -206,20 +236,103 @@ public class ManifestService {
      * @throws EuropeanaApiException (IllegalArgumentException if a parameter has an illegal format,
      *                       InvalidApiKeyException if the provide key is not valid,
      *                       RecordNotFoundException if there was a 404,
+     *                       ServiceOverloadedException if too many Record API requests are in progress,
      *                       RecordRetrieveException on all other problems)
      */
     public String getRecordJson(String recordId, String wsKey, URL recordApiUrl) throws EuropeanaApiException {
-        String recordUrl;
         if (null != recordApiUrl) {
-            recordUrl = buildRecordUrl(recordId, wsKey, recordApiUrl.toString());
-        } else {
+            return fetchRecordJson(recordId, buildRecordUrl(recordId, wsKey, recordApiUrl.toString()));
+        }
+        // we only remember refused API keys and missing records of the default Record API
+        checkNegativeCache(recordId, wsKey);
+        try {
+            return fetchRecordJson(recordId, buildRecordUrl(recordId, wsKey, settings.getRecordApiBaseUrlInternal()));
+        } catch (EuropeanaApiException e) {
+            rememberFailure(recordId, wsKey, e);
+            throw e;
+        }
+    }
 
-            recordUrl = buildRecordUrl(recordId, wsKey, settings.getRecordApiBaseUrlInternal());
+    /**
+     * Check if the API key was refused or the record couldn't be found by the (default) Record API recently
+     * @throws EuropeanaApiException InvalidApiKeyException or RecordNotFoundException if that was the case
+     */
+    void checkNegativeCache(String recordId, String wsKey) throws EuropeanaApiException {
+        if (manifestCache.isInvalidWskey(wsKey)) {
+            LOG.debug("API key {} refused before", wsKey);
+            throw new InvalidApiKeyException(APIKEY_NOT_VALID);
         }
-        return fetchRecordJson(recordId, recordUrl);
+        if (manifestCache.isMissingRecord(recordId)) {
+            LOG.debug("Record {} not found before", recordId);
+            throw new RecordNotFoundException(getRecordNotFoundMessage(recordId));
+        }
+    }
+
+    /**
+     * Remember refused API keys and missing records, so we don't have to ask the (default) Record API again
+     */
+    void rememberFailure(String recordId, String wsKey, Throwable e) {
+        if (e instanceof InvalidApiKeyException) {
+            manifestCache.putInvalidWskey(wsKey);
+        } else if (e instanceof RecordNotFoundException) {
+            manifestCache.putMissingRecord(recordId);
+        }
+    }
+
+    private static String getRecordNotFoundMessage(String recordId) {
+        return "Record with id '" + recordId + "' not found";
+    }
+
+    /**
+     * Return the parsed record data in a manifest model. If no alternative Record API url is provided, models are
+     * retrieved from (and stored in) the manifest cache, so for subsequent requests the record doesn't need to be
+     * retrieved and parsed again.
+     *
+     * @param recordId     Europeana record id in the form of "/datasetid/recordid" (with leading slash and without trailing slash)
+     * @param wsKey        api key to send to record API
+     * @param recordApiUrl optional, base URL of the Record API to use
+     * @return manifest model containing the parsed record data
+     * @throws EuropeanaApiException (IllegalArgumentException if a parameter has an illegal format,
+     *                       InvalidApiKeyException if the provide key is not valid,
+     *                       RecordNotFoundException if there was a 404,
+     *                       ServiceOverloadedException if too many Record API requests are in progress,
+     *                       RecordRetrieveException on all other problems)
+     */
+    public ManifestModel getManifestModel(String recordId, String wsKey, URL recordApiUrl) throws EuropeanaApiException {
+        StageTimings timings = StageTimings.current();
+        long start = timings.begin();
+        timings.setRecordId(recordId);
+        try {
+            if (recordApiUrl == null) {
+                ManifestModel cached = manifestCache.get(recordId, wsKey);
+                if (cached != null) {
+                    LOG.debug("Record {} retrieved from cache", recordId);
+                    timings.setRecordCacheHit();
+                    timings.setRecordSize(cached.getJsonSize());
+                    return cached;
+                }
+            }
+            ManifestModel result = createManifestModel(getRecordJson(recordId, wsKey, recordApiUrl));
+            timings.setRecordSize(result.getJsonSize());
+            // only cache data from the default Record API, data from other Record APIs may differ
+            if (recordApiUrl == null && recordId.equals(result.getEuropeanaId())) {
+                manifestCache.put(wsKey, result);
+            }
+            return result;
+        } finally {
+            timings.end(StageTimings.Stage.RECORD_FETCH, start);
+        }
+    }
+
+    ManifestModel createManifestModel(String json) {
+        Object document = com.jayway.jsonpath.Configuration.defaultConfiguration().jsonProvider().parse(json);
+        String europeanaId = EdmManifestUtils.getEuropeanaId(document);
+        String isShownBy = EdmManifestUtils.getValueFromDataProviderAggregation(document, europeanaId, "edmIsShownBy");
+        return new ManifestModel(europeanaId, isShownBy, EdmManifestUtils.getRecordTimestampUpdate(document),
+                document, json.length());
     }
 
-    private String buildRecordUrl(String recordId, String wsKey, String recordApiUrl) throws EuropeanaApiException {
+    String buildRecordUrl(String recordId, String wsKey, String recordApiUrl) throws EuropeanaApiException {
         if (StringUtils.isBlank(recordApiUrl)){
             throw new IllegalArgumentException("Record API base url should not be empty");
         }
@@ -234,18 +347,43 @@ public class ManifestService {
     }
 
     private String fetchRecordJson(String recordId, String recordUrl) throws EuropeanaApiException {
-        String result;
+        String result = null;
+        AdmissionLimiter.Permit permit = recordApiLimiter.acquire();
+        boolean success = false;
         Instant start = Instant.now();
+        StageTimings timings = StageTimings.current();
+        RecordFetchEvent event = new RecordFetchEvent();
+        event.begin();
         try (CloseableHttpResponse response = recordHttpClient.execute(new HttpGet(recordUrl), httpCacheContext)) {
             Instant finish = Instant.now();
 
             logCaching("Record", start, finish, (httpCacheContext == null ? null : httpCacheContext.getCacheResponseStatus()));
-            handleResponseCode(recordId,
-                               response.getStatusLine().getStatusCode(),
-                               response.getStatusLine().getReasonPhrase());
+            timings.setRecordApiStatus(response.getStatusLine().getStatusCode());
+            event.status = response.getStatusLine().getStatusCode();
+            try {
+                handleResponseCode(recordId,
+                                   response.getStatusLine().getStatusCode(),
+                                   response.getStatusLine().getReasonPhrase());
+            } catch (InvalidApiKeyException | RecordNotFoundException e) {
+                success = true; // the Record API itself is fine
+                throw e;
+            } catch (RecordRetrieveException e) {
+                timings.addUpstreamError(StageTimings.Upstream.RECORD_API, e);
+                throw e;
+            }
             result = consumeEntity(response.getEntity(), recordId);
+            success = true;
         } catch (IOException e) {
+            timings.addUpstreamError(StageTimings.Upstream.RECORD_API, e);
             throw new RecordRetrieveException("Error retrieving record", e);
+        } finally {
+            permit.release(success);
+            event.end();
+            if (event.shouldCommit()) {
+                event.recordId = recordId;
+                event.recordSize = (result == null ? 0 : result.length());
+                event.commit();
+            }
         }
         return result;
     }
@@ -274,13 +412,13 @@ public class ManifestService {
 
     }
 
-    private void handleResponseCode(String recordId, int responseCode, String reasonPhrase) throws EuropeanaApiException {
+    void handleResponseCode(String recordId, int responseCode, String reasonPhrase) throws EuropeanaApiException {
         LOG.debug("Record request {}, status code = {}", recordId, responseCode);
 
         if (responseCode == HttpStatus.SC_UNAUTHORIZED) {
             throw new InvalidApiKeyException(APIKEY_NOT_VALID);
         } else if (responseCode == HttpStatus.SC_NOT_FOUND) {
-            throw new RecordNotFoundException("Record with id '" + recordId + "' not found");
+            throw new RecordNotFoundException(getRecordNotFoundMessage(recordId));
         } else if (responseCode != HttpStatus.SC_OK) {
             LOG.error("Error retrieving record {}, reason {}", recordId, reasonPhrase);
             throw new RecordRetrieveException("Error retrieving record: " + reasonPhrase);
@@ -324,16 +462,46 @@ public class ManifestService {
      * @throws EuropeanaApiException when there is an error retrieving the fulltext AnnoPage summary
      */
     Map<String, FulltextSummaryCanvas> getFullTextSummary(String fullTextUrl) throws EuropeanaApiException {
+        try {
+            return requestFullTextSummary(null, fullTextUrl);
+        } catch (FullTextCheckException e) {
+            LOG.error("Error connecting to Fulltext API at {}", fullTextUrl, e);
+            return null;
+        }
+    }
 
+    /**
+     * Same as getFullTextSummary, but problems contacting the Full-Text API are thrown instead of logged
+     * @throws FullTextCheckException when the Full-Text API can't be reached or returns an unexpected response
+     */
+    private Map<String, FulltextSummaryCanvas> requestFullTextSummary(String europeanaId, String fullTextUrl)
+            throws EuropeanaApiException {
         FulltextSummaryManifest summary = null;
         Instant                 start   = Instant.now();
+        StageTimings            timings = StageTimings.current();
+        long                    begin   = timings.begin();
+        FullTextSummaryEvent    event   = new FullTextSummaryEvent();
+        event.begin();
 
         try (CloseableHttpResponse response = fulltextHttpClient.execute(new HttpGet(fullTextUrl), httpCacheContext)) {
             Instant finish = Instant.now();
             logCaching("Fulltext", start, finish, (httpCacheContext == null ? null : httpCacheContext.getCacheResponseStatus()));
-            summary = handleSummaryResponse(response, fullTextUrl);
-        } catch (FullTextCheckException|IOException e) {
-            LOG.error("Error connecting to Fulltext API at {}", fullTextUrl, e);
+            summary = handleSummaryResponse(response, fullTextUrl, event);
+        } catch (FullTextCheckException e) {
+            timings.addUpstreamError(StageTimings.Upstream.FULLTEXT_API, (e.getCause() == null ? e : e.getCause()));
+            throw e;
+        } catch (IOException e) {
+            timings.addUpstreamError(StageTimings.Upstream.FULLTEXT_API, e);
+            throw new FullTextCheckException("Error connecting to Fulltext API", e);
+        } finally {
+            timings.end(StageTimings.Stage.FULLTEXT_FETCH, begin);
+            event.end();
+            if (event.shouldCommit()) {
+                event.recordId = europeanaId;
+                event.url = fullTextUrl;
+                event.canvasCount = (summary == null || summary.getCanvases() == null ? 0 : summary.getCanvases().size());
+                event.commit();
+            }
         }
 
         if (null != summary) {
@@ -343,18 +511,24 @@ public class ManifestService {
         }
     }
 
-    private FulltextSummaryManifest handleSummaryResponse(CloseableHttpResponse response, String fullTextUrl) throws EuropeanaApiException {
+    private FulltextSummaryManifest handleSummaryResponse(CloseableHttpResponse response, String fullTextUrl,
+                                                         FullTextSummaryEvent event) throws EuropeanaApiException {
         boolean                 hasResult;
         FulltextSummaryManifest summary      = null;
         int                     responseCode = response.getStatusLine().getStatusCode();
         LOG.debug("Fulltext request {}, status code = {}", fullTextUrl, responseCode);
+        event.status = responseCode;
+        StageTimings.current().setFullTextApiStatus(responseCode);
 
         hasResult = checkResponseCode(responseCode);
         HttpEntity entity = response.getEntity();
 
         if (hasResult && entity != null) {
             try {
-                summary = getJsonMapper().readValue(EntityUtils.toString(entity), FulltextSummaryManifest.class);
+                String json = EntityUtils.toString(entity);
+                event.summarySize = json.length();
+                StageTimings.current().addSummarySize(json.length());
+                summary = getJsonMapper().readValue(json, FulltextSummaryManifest.class);
                 EntityUtils.consume(entity); // make sure entity is consumed fully so connection can be reused
             } catch (IOException ioe) {
                 throw new FullTextCheckException("Error reading answer from Fulltext API", ioe);
@@ -363,14 +537,19 @@ public class ManifestService {
         return summary;
     }
 
-    private boolean checkResponseCode(int responseCode) throws InvalidApiKeyException {
+    /**
+     * @return true if the Full-Text API response contains a summary, false if there is no full text for the record
+     * @throws EuropeanaApiException if the API key was refused or the Full-Text API returned an unexpected status
+     */
+    boolean checkResponseCode(int responseCode) throws EuropeanaApiException {
         if (responseCode == HttpStatus.SC_UNAUTHORIZED) {
             throw new InvalidApiKeyException(APIKEY_NOT_VALID);
         } else if (responseCode == HttpStatus.SC_NOT_FOUND) {
             return false;
-        } else {
-            return responseCode == HttpStatus.SC_OK;
+        } else if (responseCode != HttpStatus.SC_OK) {
+            throw new FullTextCheckException("Fulltext API returned status " + responseCode, null);
         }
+        return true;
     }
 
     /**
@@ -385,7 +564,7 @@ public class ManifestService {
      *
      * @return
      */
-    private Map<String, FulltextSummaryCanvas> createSummaryCanvasMap(FulltextSummaryManifest summary) {
+    Map<String, FulltextSummaryCanvas> createSummaryCanvasMap(FulltextSummaryManifest summary) {
         LinkedHashMap<String, FulltextSummaryCanvas> summaryCanvasMap = new LinkedHashMap<>();
         for (FulltextSummaryCanvas fulltextSummaryCanvas : summary.getCanvases()) {
             FulltextSummaryCanvas canvas = summaryCanvasMap.get(fulltextSummaryCanvas.getPageNumber());
@@ -409,14 +588,7 @@ public class ManifestService {
      * @return Manifest v2 object
      */
     public ManifestV2 generateManifestV2(String json) {
-        long start = System.currentTimeMillis();
-        Object document = com.jayway.jsonpath.Configuration.defaultConfiguration().jsonProvider().parse(json);
-        ManifestV2 result = EdmManifestMappingV2.getManifestV2(settings, mediaTypes, document);
-
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("Generated in {} ms", System.currentTimeMillis() - start);
-        }
-        return result;
+        return generateManifestV2(json, false, null, ManifestProjection.FULL, LanguageFilter.ALL);
     }
 
     /**
@@ -428,14 +600,70 @@ public class ManifestService {
      * @return Manifest v2 object
      */
     public ManifestV2 generateManifestV2(String json, URL fullTextApi) {
-        long start = System.currentTimeMillis();
-        Object document = com.jayway.jsonpath.Configuration.defaultConfiguration().jsonProvider().parse(json);
-        ManifestV2 result = EdmManifestMappingV2.getManifestV2(settings, mediaTypes, document);
+        return generateManifestV2(json, true, fullTextApi, ManifestProjection.FULL, LanguageFilter.ALL);
+    }
 
-        try {
-            fillInFullTextLinksV2(result, fullTextApi);
-        } catch (EuropeanaApiException ie) {
-            LOG.error("Error adding full text links", ie);
+    /**
+     * Generates a manifest object for IIIF v2 with only the fields and languages that were requested.
+     * If requested (and part of the projection) it checks for each canvas if a full text exists; and if so, adds the
+     * link to its annotation page
+     *
+     * @param json        record data in JSON format
+     * @param addFullText if true then we check if full texts are available
+     * @param fullTextApi optional, if provided this url will be used to check if a full text is available or not
+     * @param projection  the manifest fields to generate
+     * @param languages   the languages to keep in textual fields
+     * @return Manifest v2 object
+     */
+    public ManifestV2 generateManifestV2(String json, boolean addFullText, URL fullTextApi, ManifestProjection projection,
+                                         LanguageFilter languages) {
+        return generateManifestV2(createManifestModel(json), addFullText, fullTextApi, projection, languages);
+    }
+
+    /**
+     * Generates a manifest object for IIIF v2 with only the fields and languages that were requested.
+     * If requested (and part of the projection) it checks for each canvas if a full text exists; and if so, adds the
+     * link to its annotation page
+     *
+     * @param model       manifest model containing the parsed record data
+     * @param addFullText if true then we check if full texts are available
+     * @param fullTextApi optional, if provided this url will be used to check if a full text is available or not
+     * @param projection  the manifest fields to generate
+     * @param languages   the languages to keep in textual fields
+     * @return Manifest v2 object
+     */
+    public ManifestV2 generateManifestV2(ManifestModel model, boolean addFullText, URL fullTextApi, ManifestProjection projection,
+                                         LanguageFilter languages) {
+        return generateManifestV2(model, getFullTextSummary(model.getEuropeanaId(), addFullText, fullTextApi, projection),
+                projection, languages);
+    }
+
+    /**
+     * Generates a manifest object for IIIF v2 with only the fields and languages that were requested, using a
+     * full-text summary that was retrieved in advance (see getFullTextSummary)
+     *
+     * @param model      manifest model containing the parsed record data
+     * @param fullText   full-text summary of the record, null if no full-text links should be added
+     * @param projection the manifest fields to generate
+     * @param languages  the languages to keep in textual fields
+     * @return Manifest v2 object
+     */
+    public ManifestV2 generateManifestV2(ManifestModel model, FullTextSummary fullText, ManifestProjection projection,
+                                         LanguageFilter languages) {
+        long start = System.currentTimeMillis();
+        StageTimings timings = StageTimings.current();
+        long mappingStart = timings.begin();
+        ManifestV2 result = EdmManifestMappingV2.getManifestV2(settings, mediaTypes, model.getJsonDoc(), projection, languages);
+        timings.end(StageTimings.Stage.MAPPING, mappingStart);
+
+        if (fullText != null) {
+            if (result.getSequences() != null && result.getSequences().length > 0) {
+                // there is always only 1 sequence
+                result.setFullTextIncomplete(!addFullTextLinksV2(result.getEuropeanaId(),
+                        result.getSequences()[0].getCanvases(), fullText));
+            } else {
+                LOG.debug("Not checking for fulltext because record doesn't have any sequences");
+            }
         }
 
         if (LOG.isDebugEnabled()) {
@@ -451,13 +679,7 @@ public class ManifestService {
      * @return Manifest v3 object
      */
     public ManifestV3 generateManifestV3(String json) {
-        long start = System.currentTimeMillis();
-        Object document = com.jayway.jsonpath.Configuration.defaultConfiguration().jsonProvider().parse(json);
-        ManifestV3 result = EdmManifestMappingV3.getManifestV3(settings, mediaTypes, document);
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("Generated in {} ms ", System.currentTimeMillis() - start);
-        }
-        return result;
+        return generateManifestV3(json, false, null, ManifestProjection.FULL, LanguageFilter.ALL);
     }
 
     /**
@@ -469,13 +691,68 @@ public class ManifestService {
      * @return Manifest v3 object
      */
     public ManifestV3 generateManifestV3(String json, URL fullTextApi) {
+        return generateManifestV3(json, true, fullTextApi, ManifestProjection.FULL, LanguageFilter.ALL);
+    }
+
+    /**
+     * Generates a manifest object for IIIF v3 with only the fields and languages that were requested.
+     * If requested (and part of the projection) it checks for each canvas if a full text exists; and if so, adds the
+     * link to its annotation page
+     *
+     * @param json        record data in JSON format
+     * @param addFullText if true then we check if full texts are available
+     * @param fullTextApi optional, if provided this url will be used to check if a full text is available or not
+     * @param projection  the manifest fields to generate
+     * @param languages   the languages to keep in textual fields
+     * @return Manifest v3 object
+     */
+    public ManifestV3 generateManifestV3(String json, boolean addFullText, URL fullTextApi, ManifestProjection projection,
+                                         LanguageFilter languages) {
+        return generateManifestV3(createManifestModel(json), addFullText, fullTextApi, projection, languages, 0);
+    }
+
+    /**
+     * Generates a manifest object for IIIF v3 with only the fields and languages that were requested.
+     * If requested (and part of the projection) it checks for each canvas if a full text exists; and if so, adds the
+     * link to its annotation page
+     *
+     * @param model          manifest model containing the parsed record data
+     * @param addFullText    if true then we check if full texts are available
+     * @param fullTextApi    optional, if provided this url will be used to check if a full text is available or not
+     * @param projection     the manifest fields to generate
+     * @param languages      the languages to keep in textual fields
+     * @param canvasPageSize if larger than 0, then only the first canvasPageSize canvases are included in the manifest
+     *                       and the remaining canvases are available as separate pages
+     * @return Manifest v3 object
+     */
+    public ManifestV3 generateManifestV3(ManifestModel model, boolean addFullText, URL fullTextApi, ManifestProjection projection,
+                                         LanguageFilter languages, int canvasPageSize) {
+        return generateManifestV3(model, getFullTextSummary(model.getEuropeanaId(), addFullText, fullTextApi, projection),
+                projection, languages, canvasPageSize);
+    }
+
+    /**
+     * Generates a manifest object for IIIF v3 with only the fields and languages that were requested, using a
+     * full-text summary that was retrieved in advance (see getFullTextSummary)
+     *
+     * @param model          manifest model containing the parsed record data
+     * @param fullText       full-text summary of the record, null if no full-text links should be added
+     * @param projection     the manifest fields to generate
+     * @param languages      the languages to keep in textual fields
+     * @param canvasPageSize if larger than 0, then only the first canvasPageSize canvases are included in the manifest
+     *                       and the remaining canvases are available as separate pages
+     * @return Manifest v3 object
+     */
+    public ManifestV3 generateManifestV3(ManifestModel model, FullTextSummary fullText, ManifestProjection projection,
+                                         LanguageFilter languages, int canvasPageSize) {
         long start = System.currentTimeMillis();
-        Object document = com.jayway.jsonpath.Configuration.defaultConfiguration().jsonProvider().parse(json);
-        ManifestV3 result = EdmManifestMappingV3.getManifestV3(settings, mediaTypes, document);
-        try {
-            fillInFullTextLinksV3(result, fullTextApi);
-        } catch (EuropeanaApiException ie) {
-            LOG.error("Error adding full text links", ie);
+        StageTimings timings = StageTimings.current();
+        long mappingStart = timings.begin();
+        ManifestV3 result = EdmManifestMappingV3.getManifestV3(settings, mediaTypes, model, projection, languages, canvasPageSize);
+        timings.end(StageTimings.Stage.MAPPING, mappingStart);
+
+        if (fullText != null) {
+            result.setFullTextIncomplete(!addFullTextLinksV3(result.getEuropeanaId(), result.getItems(), fullText));
         }
 
         if (LOG.isDebugEnabled()) {
@@ -485,38 +762,244 @@ public class ManifestService {
     }
 
     /**
-     * We generate all full text links in one place, so we can raise a timeout if retrieving the necessary
-     * data for all full texts is too slow.
-     * From EA-2604 on, originalLanguage is available on the FulltextSummaryCanvas and copied to the AnnotationBody if
-     * motivation = 'sc:painting'
+     * Generates a page of IIIF v3 canvases
+     *
+     * @param model       manifest model containing the parsed record data
+     * @param page        the number of the page to generate (first page is 1)
+     * @param pageSize    the number of canvases per page
+     * @param addFullText if true then we check if full texts are available
+     * @param fullTextApi optional, if provided this url will be used to check if a full text is available or not
+     * @param projection  the canvas fields to generate
+     * @return page of canvases
+     * @throws CanvasNotFoundException if the requested page doesn't exist
+     */
+    public CanvasPage generateCanvasPageV3(ManifestModel model, int page, int pageSize, boolean addFullText,
+                                           URL fullTextApi, ManifestProjection projection) throws CanvasNotFoundException {
+        return generateCanvasPageV3(model, page, pageSize,
+                getFullTextSummary(model.getEuropeanaId(), addFullText, fullTextApi, projection), projection);
+    }
+
+    /**
+     * Generates a page of IIIF v3 canvases, using a full-text summary that was retrieved in advance
+     *
+     * @param model      manifest model containing the parsed record data
+     * @param page       the number of the page to generate (first page is 1)
+     * @param pageSize   the number of canvases per page
+     * @param fullText   full-text summary of the record, null if no full-text links should be added
+     * @param projection the canvas fields to generate
+     * @return page of canvases
+     * @throws CanvasNotFoundException if the requested page doesn't exist
+     */
+    public CanvasPage generateCanvasPageV3(ManifestModel model, int page, int pageSize, FullTextSummary fullText,
+                                           ManifestProjection projection) throws CanvasNotFoundException {
+        long start = System.currentTimeMillis();
+        StageTimings timings = StageTimings.current();
+        long mappingStart = timings.begin();
+        CanvasPage result = EdmManifestMappingV3.getCanvasPageV3(settings, mediaTypes, model, page, pageSize, projection);
+        timings.end(StageTimings.Stage.MAPPING, mappingStart);
+        if (result == null) {
+            throw new CanvasNotFoundException("Canvas page " + page + " not found for record '" + model.getEuropeanaId() + "'");
+        }
+
+        if (fullText != null) {
+            result.setFullTextIncomplete(!addFullTextLinksV3(model.getEuropeanaId(), result.getOrderedItems(), fullText));
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Generated canvas page in {} ms ", System.currentTimeMillis() - start);
+        }
+        return result;
+    }
+
+    /**
+     * Generates a single IIIF v2 canvas (including context so it can be served on its own)
+     *
+     * @param model       manifest model containing the parsed record data
+     * @param order       the number of the canvas to generate (first canvas is 1)
+     * @param addFullText if true then we check if a full text is available
+     * @param fullTextApi optional, if provided this url will be used to check if a full text is available or not
+     * @param projection  the canvas fields to generate
+     * @return canvas v2 object
+     * @throws CanvasNotFoundException if the record doesn't have a canvas with the provided number
+     */
+    public eu.europeana.iiif.model.v2.Canvas generateCanvasV2(ManifestModel model, int order, boolean addFullText,
+                                                              URL fullTextApi, ManifestProjection projection)
+            throws CanvasNotFoundException {
+        return generateCanvasV2(model, order, getFullTextSummary(model.getEuropeanaId(), addFullText, fullTextApi, projection),
+                projection);
+    }
+
+    /**
+     * Generates a single IIIF v2 canvas, using a full-text summary that was retrieved in advance
      *
+     * @param model      manifest model containing the parsed record data
+     * @param order      the number of the canvas to generate (first canvas is 1)
+     * @param fullText   full-text summary of the record, null if no full-text links should be added
+     * @param projection the canvas fields to generate
+     * @return canvas v2 object
+     * @throws CanvasNotFoundException if the record doesn't have a canvas with the provided number
      */
-    private void fillInFullTextLinksV2(ManifestV2 manifest, URL fullTextApi) throws EuropeanaApiException {
-        Map<String, FulltextSummaryCanvas> summaryCanvasMap;
-        if (manifest.getSequences() != null && manifest.getSequences().length > 0) {
-            // there is always only 1 sequence
-            Sequence sequence = manifest.getSequences()[0];
+    public eu.europeana.iiif.model.v2.Canvas generateCanvasV2(ManifestModel model, int order, FullTextSummary fullText,
+                                                              ManifestProjection projection)
+            throws CanvasNotFoundException {
+        StageTimings timings = StageTimings.current();
+        long mappingStart = timings.begin();
+        eu.europeana.iiif.model.v2.Canvas result = EdmManifestMappingV2.getCanvasV2(settings, mediaTypes, model, order, projection);
+        timings.end(StageTimings.Stage.MAPPING, mappingStart);
+        if (result == null) {
+            throw new CanvasNotFoundException("Canvas " + order + " not found for record '" + model.getEuropeanaId() + "'");
+        }
+        if (fullText != null) {
+            result.setFullTextIncomplete(!addFullTextLinksV2(model.getEuropeanaId(),
+                    new eu.europeana.iiif.model.v2.Canvas[]{result}, fullText));
+        }
+        result.setContext(IIIFDefinitions.MEDIA_TYPE_IIIF_V2);
+        return result;
+    }
+
+    /**
+     * Generates a single IIIF v3 canvas (including context so it can be served on its own)
+     *
+     * @param model       manifest model containing the parsed record data
+     * @param order       the number of the canvas to generate (first canvas is 1)
+     * @param addFullText if true then we check if a full text is available
+     * @param fullTextApi optional, if provided this url will be used to check if a full text is available or not
+     * @param projection  the canvas fields to generate
+     * @return canvas v3 object
+     * @throws CanvasNotFoundException if the record doesn't have a canvas with the provided number
+     */
+    public eu.europeana.iiif.model.v3.Canvas generateCanvasV3(ManifestModel model, int order, boolean addFullText,
+                                                              URL fullTextApi, ManifestProjection projection)
+            throws CanvasNotFoundException {
+        return generateCanvasV3(model, order, getFullTextSummary(model.getEuropeanaId(), addFullText, fullTextApi, projection),
+                projection);
+    }
+
+    /**
+     * Generates a single IIIF v3 canvas, using a full-text summary that was retrieved in advance
+     *
+     * @param model      manifest model containing the parsed record data
+     * @param order      the number of the canvas to generate (first canvas is 1)
+     * @param fullText   full-text summary of the record, null if no full-text links should be added
+     * @param projection the canvas fields to generate
+     * @return canvas v3 object
+     * @throws CanvasNotFoundException if the record doesn't have a canvas with the provided number
+     */
+    public eu.europeana.iiif.model.v3.Canvas generateCanvasV3(ManifestModel model, int order, FullTextSummary fullText,
+                                                              ManifestProjection projection)
+            throws CanvasNotFoundException {
+        StageTimings timings = StageTimings.current();
+        long mappingStart = timings.begin();
+        eu.europeana.iiif.model.v3.Canvas result = EdmManifestMappingV3.getCanvasV3(settings, mediaTypes, model, order, projection);
+        timings.end(StageTimings.Stage.MAPPING, mappingStart);
+        if (result == null) {
+            throw new CanvasNotFoundException("Canvas " + order + " not found for record '" + model.getEuropeanaId() + "'");
+        }
+        if (fullText != null) {
+            result.setFullTextIncomplete(!addFullTextLinksV3(model.getEuropeanaId(),
+                    new eu.europeana.iiif.model.v3.Canvas[]{result}, fullText));
+        }
+        result.setContext(new String[]{IIIFDefinitions.MEDIA_TYPE_W3ORG_JSONLD, IIIFDefinitions.MEDIA_TYPE_IIIF_V3});
+        return result;
+    }
+
+    /**
+     * Retrieves the full-text summary of a record, so it can be retrieved on the request thread before the manifest is
+     * generated. Problems contacting the Full-Text API are logged and result in an unavailable summary.
+     *
+     * @param europeanaId id of the record
+     * @param addFullText if false then no summary is retrieved
+     * @param fullTextApi optional, if provided this url will be used to check if a full text is available or not
+     * @param projection  the requested fields, no summary is retrieved if these don't include full-text links
+     * @return the summary, or null if no full-text links should be added
+     */
+    public FullTextSummary getFullTextSummary(String europeanaId, boolean addFullText, URL fullTextApi,
+                                              ManifestProjection projection) {
+        if (!addFullText || !projection.includesFullText()) {
+            return null;
+        }
+        try {
             // Get all the available AnnoPages incl translations from the summary endpoint of Fulltext
-            String fullTextSummaryUrl = generateFullTextSummaryUrl(manifest.getEuropeanaId(), fullTextApi);
-            summaryCanvasMap = getFullTextSummary(fullTextSummaryUrl);
-            if (null != summaryCanvasMap) {
-                // loop over canvases to add full-text link(s) to all
-                for (eu.europeana.iiif.model.v2.Canvas canvas : sequence.getCanvases()) {
-                    // we need to generate the same annopageId hash based on imageId
-                    String apHash = GenerateUtils.derivePageId(canvas.getStartImageAnnotation().getResource().getId());
-                    FulltextSummaryCanvas ftCanvas = summaryCanvasMap.get(apHash);
-                    if (ftCanvas == null) {
-                        // This warning can be logged for empty pages that do not have a fulltext, but if we get a lot
-                        // then Record API and Fulltext API are not in sync (or the hashing algorithm changed)
-                        LOG.warn("Possible inconsistent data. No fulltext annopage found for record {} page {}. Generated hash = {}",
-                               manifest.getEuropeanaId(), canvas.getPageNr(), apHash);
-                    } else {
-                        addFulltextLinkToCanvasV2(canvas, ftCanvas);
-                    }
+            return new FullTextSummary(requestFullTextSummary(europeanaId,
+                    generateFullTextSummaryUrl(europeanaId, fullTextApi)));
+        } catch (EuropeanaApiException ie) {
+            LOG.error("Error adding full text links", ie);
+            return FullTextSummary.UNAVAILABLE;
+        }
+    }
+
+    /**
+     * Adds the full-text links of a summary that was retrieved in advance.
+     * From EA-2604 on, originalLanguage is available on the FulltextSummaryCanvas and copied to the AnnotationBody if
+     * motivation = 'sc:painting'
+     * @return false if full-text links could not be added because of a problem retrieving the full-text summary
+     */
+    private boolean addFullTextLinksV2(String europeanaId, eu.europeana.iiif.model.v2.Canvas[] canvases,
+                                       FullTextSummary fullText) {
+        if (canvases == null) {
+            LOG.debug("Not checking for fulltext because record doesn't have any canvases");
+            return true;
+        }
+        if (!fullText.isAvailable()) {
+            return false;
+        }
+        StageTimings timings = StageTimings.current();
+        long start = timings.begin();
+        addFullTextSummaryV2(europeanaId, canvases, fullText.getCanvases());
+        timings.end(StageTimings.Stage.FULLTEXT_LINKING, start);
+        return true;
+    }
+
+    /**
+     * Adds the full-text links of a summary that was retrieved in advance.
+     * From EA-2604 on, originalLanguage is available on the FulltextSummaryCanvas and copied to the AnnotationBody if
+     * motivation = 'painting'
+     * @return false if full-text links could not be added because of a problem retrieving the full-text summary
+     */
+    private boolean addFullTextLinksV3(String europeanaId, eu.europeana.iiif.model.v3.Canvas[] canvases,
+                                       FullTextSummary fullText) {
+        if (canvases == null) {
+            LOG.debug("Not checking for fulltext because record doesn't have any canvases");
+            return true;
+        }
+        if (!fullText.isAvailable()) {
+            return false;
+        }
+        StageTimings timings = StageTimings.current();
+        long start = timings.begin();
+        addFullTextSummaryV3(europeanaId, canvases, fullText.getCanvases());
+        timings.end(StageTimings.Stage.FULLTEXT_LINKING, start);
+        return true;
+    }
+
+    /**
+     * Adds full-text links to all v2 canvases for which the provided summary contains annotation pages
+     * @param europeanaId      id of the record
+     * @param canvases         the canvases to update
+     * @param summaryCanvasMap retrieved summary, if null nothing is done
+     */
+    void addFullTextSummaryV2(String europeanaId, eu.europeana.iiif.model.v2.Canvas[] canvases,
+                              Map<String, FulltextSummaryCanvas> summaryCanvasMap) {
+        if (canvases == null || summaryCanvasMap == null) {
+            return;
+        }
+        // loop over canvases to add full-text link(s) to all
+        for (eu.europeana.iiif.model.v2.Canvas canvas : canvases) {
+            // we need to generate the same annopageId hash based on imageId
+            String apHash = GenerateUtils.derivePageId(canvas.getStartImageAnnotation().getResource().getId());
+            FulltextSummaryCanvas ftCanvas = summaryCanvasMap.get(apHash);
+            if (ftCanvas == null) {
+                // This warning can be logged for empty pages that do not have a fulltext, but if we get a lot
+                // then Record API and Fulltext API are not in sync (or the hashing algorithm changed). During a request
+                // the occurrences are summarized in one event
+                if (!StageTimings.current().addWarning(StageTimings.Warning.NO_FULLTEXT_ANNOPAGE,
+                        "page " + canvas.getPageNr() + ", hash " + apHash)) {
+                    LOG.warn("Possible inconsistent data. No fulltext annopage found for record {} page {}. Generated hash = {}",
+                            europeanaId, canvas.getPageNr(), apHash);
                 }
+            } else {
+                addFulltextLinkToCanvasV2(canvas, ftCanvas);
             }
-        } else {
-            LOG.debug("Not checking for fulltext because record doesn't have any sequences");
         }
     }
 
@@ -531,36 +1014,29 @@ public class ManifestService {
     }
 
     /**
-     * We generate all full text links in one place, so we can raise a timeout if retrieving the necessary
-     * data for all full texts is too slow.
-     * From EA-2604 on, originalLanguage is available on the FulltextSummaryCanvas and copied to the AnnotationBody if
-     * motivation = 'painting'
+     * Adds full-text links to all v3 canvases for which the provided summary contains annotation pages
+     * @param europeanaId      id of the record
+     * @param canvases         the canvases to update
+     * @param summaryCanvasMap retrieved summary, if null nothing is done
      */
-    private void fillInFullTextLinksV3(ManifestV3 manifest, URL fullTextApi) throws EuropeanaApiException {
-        Map<String, FulltextSummaryCanvas> summaryCanvasMap;
-        eu.europeana.iiif.model.v3.Canvas[] canvases = manifest.getItems();
-        if (canvases != null) {
-            // Get all the available AnnoPages incl translations from the summary endpoint of Fulltext
-            String fullTextSummaryUrl = generateFullTextSummaryUrl(manifest.getEuropeanaId(), fullTextApi);
-            summaryCanvasMap = getFullTextSummary(fullTextSummaryUrl);
-            if (null != summaryCanvasMap) {
-                // loop over canvases to add full-text link(s) to all
-                for (eu.europeana.iiif.model.v3.Canvas canvas : canvases) {
-                    // we need to generate the same annopageId hash based on imageId
-                    String apHash = GenerateUtils.derivePageId(canvas.getStartCanvasAnnotation().getBody().getId());
-                    FulltextSummaryCanvas ftCanvas = summaryCanvasMap.get(apHash);
-                    if (ftCanvas == null) {
-                        // This warning is logged for empty pages that do not have a fulltext
-                        // This happens quite often in production, so we lowered log severity from WARN to DEBUG
-                        LOG.debug("Inconsistent data! No fulltext annopage found for record {} page {}. Generated hash = {}",
-                                manifest.getEuropeanaId(), canvas.getPageNr(), apHash);
-                    } else {
-                        addFulltextLinkToCanvasV3(canvas, ftCanvas);
-                    }
-                }
+    void addFullTextSummaryV3(String europeanaId, eu.europeana.iiif.model.v3.Canvas[] canvases,
+                              Map<String, FulltextSummaryCanvas> summaryCanvasMap) {
+        if (canvases == null || summaryCanvasMap == null) {
+            return;
+        }
+        // loop over canvases to add full-text link(s) to all
+        for (eu.europeana.iiif.model.v3.Canvas canvas : canvases) {
+            // we need to generate the same annopageId hash based on imageId
+            String apHash = GenerateUtils.derivePageId(canvas.getStartCanvasAnnotation().getBody().getId());
+            FulltextSummaryCanvas ftCanvas = summaryCanvasMap.get(apHash);
+            if (ftCanvas == null) {
+                // This warning is logged for empty pages that do not have a fulltext
+                // This happens quite often in production, so we lowered log severity from WARN to DEBUG
+                LOG.debug("Inconsistent data! No fulltext annopage found for record {} page {}. Generated hash = {}",
+                        europeanaId, canvas.getPageNr(), apHash);
+            } else {
+                addFulltextLinkToCanvasV3(canvas, ftCanvas);
             }
-        } else {
-            LOG.debug("Not checking for fulltext because record doesn't have any canvases");
         }
     }
 
@@ -592,10 +1068,67 @@ public class ManifestService {
      * @throws RecordParseException when there is a problem parsing
      */
     public String serializeManifest(Object m) throws RecordParseException {
+        StageTimings timings = StageTimings.current();
+        long start = timings.begin();
+        SerializationEvent event = new SerializationEvent();
+        event.begin();
+        String result = null;
         try {
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(m);
+            result = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(m);
+            return result;
         } catch (IOException e) {
             throw new RecordParseException(String.format("Error serializing data: %s", e.getMessage()), e);
+        } finally {
+            timings.end(StageTimings.Stage.SERIALIZATION, start);
+            commitSerializationEvent(event, m, ManifestEncoding.JSON, (result == null ? 0 : result.length()));
+        }
+    }
+
+    /**
+     * Serialize manifest (or canvas) in the requested encoding
+     *
+     * @param m manifest
+     * @param encoding the encoding to use, for JSON the result is the UTF-8 encoded JSON-LD string
+     * @return serialized manifest
+     * @throws RecordParseException when there is a problem serializing
+     */
+    public byte[] serializeManifest(Object m, ManifestEncoding encoding) throws RecordParseException {
+        if (!encoding.isBinary()) {
+            return serializeManifest(m).getBytes(StandardCharsets.UTF_8);
+        }
+        StageTimings timings = StageTimings.current();
+        long start = timings.begin();
+        SerializationEvent event = new SerializationEvent();
+        event.begin();
+        byte[] result = null;
+        try {
+            result = (encoding == ManifestEncoding.SMILE ? smileMapper : cborMapper).writeValueAsBytes(m);
+            return result;
+        } catch (IOException e) {
+            throw new RecordParseException(String.format("Error serializing data: %s", e.getMessage()), e);
+        } finally {
+            timings.end(StageTimings.Stage.SERIALIZATION, start);
+            commitSerializationEvent(event, m, encoding, (result == null ? 0 : result.length));
+        }
+    }
+
+    private static void commitSerializationEvent(SerializationEvent event, Object m, ManifestEncoding encoding, long size) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.type = m.getClass().getSimpleName();
+            event.encoding = encoding.name();
+            event.size = size;
+            if (m instanceof ManifestV3) {
+                ManifestV3 manifest = (ManifestV3) m;
+                event.recordId = manifest.getEuropeanaId();
+                event.canvasCount = (manifest.getItems() == null ? 0 : manifest.getItems().length);
+            } else if (m instanceof ManifestV2) {
+                ManifestV2 manifest = (ManifestV2) m;
+                event.recordId = manifest.getEuropeanaId();
+                event.canvasCount = (manifest.getSequences() == null || manifest.getSequences().length == 0
+                        ? 0 : manifest.getSequences()[0].getCanvases().length);
+            }
+            event.commit();
         }
     }
 
@@ -606,6 +1139,21 @@ public class ManifestService {
         return settings;
     }
 
+    /**
+     * @return the adaptive limit on concurrent Record API requests
+     */
+    public AdmissionLimiter getRecordApiLimiter() {
+        return recordApiLimiter;
+    }
+
+    /**
+     * @return statistics of the connection pool shared by the Record API and Full-Text API clients, including the
+     * number of requests waiting for a connection
+     */
+    public PoolStats getConnectionPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
     @PreDestroy
     public void close() throws IOException {
         if (this.recordHttpClient != null) {
@@ -0,0 +1,244 @@
+package eu.europeana.iiif.service;
+
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.exception.ServiceOverloadedException;
+import eu.europeana.iiif.model.ManifestModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Separates cheap and expensive manifest work. Once a record is retrieved it is classified by the size of its json:
+ * full manifests of large records (e.g. newspapers with thousands of pages) are mapped and serialized on a separate,
+ * bounded thread pool (the large lane), while all other work (small records, single canvases and canvas pages) is
+ * processed directly on the request thread (the fast lane). This way a few large records can only occupy a limited
+ * number of CPUs and don't add latency to the many small records. Lane tasks should only do CPU work; data from other
+ * APIs (e.g. the full-text summary) is retrieved on the request thread before the task is submitted.
+ *
+ * When all large lane threads are busy and its queue is full, or when a large record isn't done within the configured
+ * timeout, requests for large records are refused with a ServiceOverloadedException (503).
+ */
+@Component
+@Profile("!reactive")
+public class PriorityLanes {
+
+    /**
+     * The lanes on which manifest work can be done
+     */
+    public enum Lane {
+        /** small records, processed on the request thread */
+        FAST,
+        /** large records, processed on the large lane thread pool */
+        LARGE
+    }
+
+    /**
+     * Work that is done on a lane, usually generating and serializing a manifest
+     * @param <T> type of the result
+     */
+    @FunctionalInterface
+    public interface LaneTask<T> {
+        /**
+         * @return the result of the work
+         * @throws EuropeanaApiException when the work fails
+         */
+        T call() throws EuropeanaApiException;
+    }
+
+    private static final Logger LOG = LogManager.getLogger(PriorityLanes.class);
+
+    private static final String METRIC_LATENCY = "manifest.lane.latency";
+    private static final String METRIC_IN_PROGRESS = "manifest.lane.in-progress";
+    private static final String METRIC_QUEUED = "manifest.lane.queued";
+    private static final String METRIC_REJECTED = "manifest.lane.rejected";
+    private static final String TAG_LANE = "lane";
+
+    private final long largeRecordSize;
+    private final int retryAfter;
+    private final long largeTimeout;
+    private final ThreadPoolExecutor largeLane;
+    private final AtomicInteger fastInProgress = new AtomicInteger();
+    private final Map<Lane, Timer> latency = new EnumMap<>(Lane.class);
+    private final Counter rejected;
+
+    /**
+     * Create new priority lanes
+     * @param settings application settings
+     * @param meterRegistry optional, registry for the per-lane metrics
+     */
+    public PriorityLanes(ManifestSettings settings, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.largeRecordSize = settings.getLargeRecordSizeKb() * 1024L;
+        this.retryAfter = settings.getAdmissionRetryAfter();
+        this.largeTimeout = settings.getLargeLaneTimeoutMs();
+        if (largeRecordSize > 0) {
+            int threads = Math.max(1, settings.getLargeLaneThreads());
+            this.largeLane = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, settings.getLargeLaneMaxQueued())),
+                    new CustomizableThreadFactory("manifest-large-"));
+            this.largeLane.allowCoreThreadTimeOut(true);
+            LOG.info("Large record lane: threads = {}, min record size = {} kB", threads, settings.getLargeRecordSizeKb());
+        } else {
+            this.largeLane = null;
+            LOG.info("Large record lane disabled");
+        }
+
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            this.rejected = null;
+            return;
+        }
+        for (Lane lane : Lane.values()) {
+            String tag = lane.name().toLowerCase(Locale.ROOT);
+            latency.put(lane, Timer.builder(METRIC_LATENCY)
+                    .description("Time to map and serialize a manifest, including time waiting for a thread")
+                    .tag(TAG_LANE, tag)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(registry));
+            Gauge.builder(METRIC_IN_PROGRESS, () -> getInProgress(lane))
+                    .description("Number of manifests being mapped")
+                    .tag(TAG_LANE, tag)
+                    .register(registry);
+        }
+        Gauge.builder(METRIC_QUEUED, this::getQueued)
+                .description("Number of large records waiting to be mapped")
+                .tag(TAG_LANE, Lane.LARGE.name().toLowerCase(Locale.ROOT))
+                .register(registry);
+        this.rejected = Counter.builder(METRIC_REJECTED)
+                .description("Number of large records refused because the large lane was full")
+                .tag(TAG_LANE, Lane.LARGE.name().toLowerCase(Locale.ROOT))
+                .register(registry);
+    }
+
+    /**
+     * @param model parsed record data
+     * @param allCanvases true if all canvases of the record are generated (i.e. a manifest without canvas paging),
+     *                    false if only a single canvas or a page of canvases is generated
+     * @return the lane on which the requested work for the record should be done
+     */
+    public Lane classify(ManifestModel model, boolean allCanvases) {
+        if (largeLane != null && allCanvases && model.getJsonSize() >= largeRecordSize) {
+            return Lane.LARGE;
+        }
+        return Lane.FAST;
+    }
+
+    /**
+     * Do manifest work for a record on the appropriate lane and wait for the result
+     * @param model parsed record data, used to determine the lane
+     * @param allCanvases true if the task generates all canvases of the record, used to determine the lane
+     * @param task the work to do
+     * @param <T> type of the result
+     * @return the result of the task
+     * @throws EuropeanaApiException when the task fails, or ServiceOverloadedException if the large lane is full or the
+     * task didn't finish in time
+     */
+    public <T> T execute(ManifestModel model, boolean allCanvases, LaneTask<T> task) throws EuropeanaApiException {
+        Lane lane = classify(model, allCanvases);
+        long start = System.nanoTime();
+        try {
+            if (lane == Lane.FAST) {
+                fastInProgress.incrementAndGet();
+                try {
+                    return task.call();
+                } finally {
+                    fastInProgress.decrementAndGet();
+                }
+            }
+            return executeLarge(model, task);
+        } finally {
+            Timer timer = latency.get(lane);
+            if (timer != null) {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private <T> T executeLarge(ManifestModel model, LaneTask<T> task) throws EuropeanaApiException {
+        Future<T> future;
+        // let the stages done on the large lane count for the request
+        StageTimings timings = StageTimings.current();
+        try {
+            future = largeLane.submit(() -> {
+                timings.attach();
+                try {
+                    return task.call();
+                } finally {
+                    timings.detach();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Large record lane is full, refusing request for {}", model.getEuropeanaId());
+            if (rejected != null) {
+                rejected.increment();
+            }
+            throw new ServiceOverloadedException("Server is too busy, please try again later", retryAfter);
+        }
+        try {
+            return future.get(largeTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            LOG.warn("Large record lane didn't finish {} within {} ms, refusing request", model.getEuropeanaId(),
+                    largeTimeout);
+            throw new ServiceOverloadedException("Server is too busy, please try again later", retryAfter);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceOverloadedException("Request interrupted, please try again later", retryAfter);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof EuropeanaApiException) {
+                throw (EuropeanaApiException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * @param lane the lane
+     * @return number of manifests that are being mapped on the provided lane
+     */
+    public int getInProgress(Lane lane) {
+        if (lane == Lane.FAST) {
+            return fastInProgress.get();
+        }
+        return (largeLane == null ? 0 : largeLane.getActiveCount());
+    }
+
+    /**
+     * @return number of large records waiting to be mapped
+     */
+    public int getQueued() {
+        return (largeLane == null ? 0 : largeLane.getQueue().size());
+    }
+
+    /**
+     * Stop the large lane threads
+     */
+    @PreDestroy
+    public void close() {
+        if (largeLane != null) {
+            largeLane.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package eu.europeana.iiif.service;
+
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.exception.FullTextCheckException;
+import eu.europeana.iiif.exception.RecordRetrieveException;
+import eu.europeana.iiif.model.FullTextLinked;
+import eu.europeana.iiif.model.LanguageFilter;
+import eu.europeana.iiif.model.ManifestEncoding;
+import eu.europeana.iiif.model.ManifestModel;
+import eu.europeana.iiif.model.ManifestProjection;
+import eu.europeana.iiif.model.info.FulltextSummaryCanvas;
+import eu.europeana.iiif.model.info.FulltextSummaryManifest;
+import eu.europeana.iiif.model.v2.ManifestV2;
+import eu.europeana.iiif.model.v3.CanvasPage;
+import eu.europeana.iiif.model.v3.ManifestV3;
+import io.netty.channel.ChannelOption;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking variant of the ManifestService, used when running with the 'reactive' profile. Record data and
+ * full-text summaries are retrieved with a (Reactor Netty) WebClient, so no thread is waiting while the Record API or
+ * Full-Text API is slow. Parsing, mapping and serialization is done by the ManifestService, but on a separate bounded
+ * scheduler so it never blocks the event loop.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveManifestService {
+
+    private static final Logger LOG = LogManager.getLogger(ReactiveManifestService.class);
+
+    private static final int MAX_CONNECTIONS = 1000;
+    private static final int MAX_RESPONSE_SIZE = 64 * 1024 * 1024;
+
+    private final ManifestService manifestService;
+    private final ManifestCache manifestCache;
+    private final ConnectionProvider connectionProvider;
+    private final WebClient recordWebClient;
+    private final WebClient fulltextWebClient;
+    private final Scheduler mappingScheduler;
+
+    /**
+     * Create a new reactive manifest service
+     * @param manifestService service that does the actual mapping and serialization
+     * @param manifestCache cache of parsed record data
+     */
+    public ReactiveManifestService(ManifestService manifestService, ManifestCache manifestCache) {
+        this.manifestService = manifestService;
+        this.manifestCache = manifestCache;
+        this.connectionProvider = ConnectionProvider.builder("manifest-api")
+                .maxConnections(MAX_CONNECTIONS)
+                .build();
+        this.recordWebClient = createWebClient(connectionProvider,
+                ManifestService.RECORD_CONNECT_TIMEOUT, ManifestService.RECORD_SOCKET_TIMEOUT);
+        this.fulltextWebClient = createWebClient(connectionProvider,
+                ManifestService.FULLTEXT_CONNECT_TIMEOUT, ManifestService.FULLTEXT_SOCKET_TIMEOUT);
+
+        ManifestSettings settings = manifestService.getSettings();
+        this.mappingScheduler = Schedulers.newBoundedElastic(settings.getReactiveMappingMaxThreads(),
+                settings.getReactiveMappingMaxQueued(), "manifest-mapping");
+        LOG.info("Reactive manifest service mapping threads = {}, max queued per thread = {}",
+                settings.getReactiveMappingMaxThreads(), settings.getReactiveMappingMaxQueued());
+    }
+
+    private static WebClient createWebClient(ConnectionProvider connectionProvider, int connectTimeout, int responseTimeout) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
+                .responseTimeout(Duration.ofMillis(responseTimeout));
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(MAX_RESPONSE_SIZE))
+                .build();
+    }
+
+    /**
+     * @return the settings used by this service
+     */
+    public ManifestSettings getSettings() {
+        return manifestService.getSettings();
+    }
+
+    /**
+     * Return the parsed record data in a manifest model. Same as ManifestService.getManifestModel, but non-blocking
+     *
+     * @param recordId     Europeana record id in the form of "/datasetid/recordid" (with leading slash and without trailing slash)
+     * @param wsKey        api key to send to record API
+     * @param recordApiUrl optional, base URL of the Record API to use
+     * @return manifest model containing the parsed record data, or an error (InvalidApiKeyException if the provide key
+     * is not valid, RecordNotFoundException if there was a 404, ServiceOverloadedException if too many Record API
+     * requests are in progress, RecordRetrieveException on all other problems)
+     */
+    public Mono<ManifestModel> getManifestModel(String recordId, String wsKey, URL recordApiUrl) {
+        if (recordApiUrl == null) {
+            ManifestModel cached = manifestCache.get(recordId, wsKey);
+            if (cached != null) {
+                LOG.debug("Record {} retrieved from cache", recordId);
+                return Mono.just(cached);
+            }
+        }
+        String recordUrl;
+        try {
+            if (recordApiUrl == null) {
+                manifestService.checkNegativeCache(recordId, wsKey);
+            }
+            recordUrl = manifestService.buildRecordUrl(recordId, wsKey, (recordApiUrl == null
+                    ? manifestService.getSettings().getRecordApiBaseUrlInternal() : recordApiUrl.toString()));
+        } catch (EuropeanaApiException e) {
+            return Mono.error(e);
+        }
+
+        // the permit is only taken on subscription and released exactly once when the request completes, fails or is
+        // cancelled; 401 and 404 responses mean the Record API itself is fine
+        return Mono.usingWhen(Mono.fromCallable(() -> manifestService.getRecordApiLimiter().acquire()),
+                        permit -> requestRecord(recordId, wsKey, recordApiUrl, recordUrl),
+                        permit -> Mono.fromRunnable(() -> permit.release(true)),
+                        (permit, e) -> Mono.fromRunnable(() -> permit.release(!(e instanceof RecordRetrieveException))),
+                        permit -> Mono.fromRunnable(() -> permit.release(true)))
+                .publishOn(mappingScheduler)
+                .map(json -> {
+                    ManifestModel result = manifestService.createManifestModel(json);
+                    // only cache data from the default Record API, data from other Record APIs may differ
+                    if (recordApiUrl == null && recordId.equals(result.getEuropeanaId())) {
+                        manifestCache.put(wsKey, result);
+                    }
+                    return result;
+                });
+    }
+
+    private Mono<String> requestRecord(String recordId, String wsKey, URL recordApiUrl, String recordUrl) {
+        return recordWebClient.get().uri(URI.create(recordUrl))
+                .exchangeToMono(response -> {
+                    HttpStatus status = HttpStatus.resolve(response.rawStatusCode());
+                    try {
+                        manifestService.handleResponseCode(recordId, response.rawStatusCode(),
+                                (status == null ? null : status.getReasonPhrase()));
+                    } catch (EuropeanaApiException e) {
+                        return response.releaseBody().then(Mono.error(e));
+                    }
+                    return response.bodyToMono(String.class);
+                })
+                .switchIfEmpty(Mono.error(() -> new RecordRetrieveException("Error retrieving record: empty response")))
+                .onErrorMap(e -> !(e instanceof EuropeanaApiException),
+                        e -> new RecordRetrieveException("Error retrieving record", e))
+                .doOnError(e -> {
+                    if (recordApiUrl == null) {
+                        manifestService.rememberFailure(recordId, wsKey, e);
+                    }
+                });
+    }
+
+    /**
+     * Retrieve the full-text summary of a record. An empty optional means the record has no full texts, problems
+     * contacting the Full-Text API are logged and emitted as error.
+     */
+    private Mono<Optional<Map<String, FulltextSummaryCanvas>>> getFullTextSummary(String europeanaId, URL fullTextApi) {
+        String fullTextUrl = manifestService.generateFullTextSummaryUrl(europeanaId, fullTextApi);
+        return fulltextWebClient.get().uri(URI.create(fullTextUrl))
+                .exchangeToMono(response -> {
+                    LOG.debug("Fulltext request {}, status code = {}", fullTextUrl, response.rawStatusCode());
+                    boolean hasResult;
+                    try {
+                        hasResult = manifestService.checkResponseCode(response.rawStatusCode());
+                    } catch (EuropeanaApiException e) {
+                        return response.releaseBody().then(Mono.error(e));
+                    }
+                    if (!hasResult) {
+                        return response.releaseBody().then(Mono.empty());
+                    }
+                    return response.bodyToMono(String.class);
+                })
+                .publishOn(mappingScheduler)
+                .<Map<String, FulltextSummaryCanvas>>handle((json, sink) -> {
+                    try {
+                        sink.next(manifestService.createSummaryCanvasMap(
+                                manifestService.getJsonMapper().readValue(json, FulltextSummaryManifest.class)));
+                    } catch (IOException e) {
+                        sink.error(new FullTextCheckException("Error reading answer from Fulltext API", e));
+                    }
+                })
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .doOnError(e -> LOG.error("Error retrieving full-text summary from {}", fullTextUrl, e));
+    }
+
+    /**
+     * Retrieves the full-text summary and (on the mapping scheduler) adds full-text links to the canvases. If the
+     * summary can't be retrieved the result is marked as incomplete, because a manifest without full-text links is
+     * better than no manifest at all.
+     */
+    private <T extends FullTextLinked> Mono<T> addFullTextLinks(T result, Object[] canvases, String europeanaId, URL fullTextApi,
+                                         Consumer<Map<String, FulltextSummaryCanvas>> addSummary) {
+        if (canvases == null) {
+            LOG.debug("Not checking for fulltext because record doesn't have any canvases");
+            return Mono.just(result);
+        }
+        return getFullTextSummary(europeanaId, fullTextApi)
+                .publishOn(mappingScheduler)
+                .map(summary -> {
+                    summary.ifPresent(addSummary);
+                    return result;
+                })
+                .onErrorResume(e -> {
+                    result.setFullTextIncomplete(true);
+                    return Mono.just(result);
+                });
+    }
+
+    private <T> Mono<T> onMappingScheduler(Callable<T> task) {
+        return Mono.fromCallable(task).subscribeOn(mappingScheduler);
+    }
+
+    /**
+     * Non-blocking version of ManifestService.generateManifestV2
+     */
+    public Mono<ManifestV2> generateManifestV2(ManifestModel model, boolean addFullText, URL fullTextApi,
+                                               ManifestProjection projection, LanguageFilter languages) {
+        return onMappingScheduler(() -> manifestService.generateManifestV2(model, false, null, projection, languages))
+                .flatMap(manifest -> {
+                    if (!addFullText || !projection.includesFullText()) {
+                        return Mono.just(manifest);
+                    }
+                    // there is always only 1 sequence
+                    eu.europeana.iiif.model.v2.Canvas[] canvases = (manifest.getSequences() == null
+                            || manifest.getSequences().length == 0 ? null : manifest.getSequences()[0].getCanvases());
+                    return addFullTextLinks(manifest, canvases, model.getEuropeanaId(), fullTextApi,
+                            summary -> manifestService.addFullTextSummaryV2(model.getEuropeanaId(), canvases, summary));
+                });
+    }
+
+    /**
+     * Non-blocking version of ManifestService.generateManifestV3
+     */
+    public Mono<ManifestV3> generateManifestV3(ManifestModel model, boolean addFullText, URL fullTextApi,
+                                               ManifestProjection projection, LanguageFilter languages, int canvasPageSize) {
+        return onMappingScheduler(() -> manifestService.generateManifestV3(model, false, null, projection, languages, canvasPageSize))
+                .flatMap(manifest -> {
+                    if (!addFullText || !projection.includesFullText()) {
+                        return Mono.just(manifest);
+                    }
+                    return addFullTextLinks(manifest, manifest.getItems(), model.getEuropeanaId(), fullTextApi,
+                            summary -> manifestService.addFullTextSummaryV3(model.getEuropeanaId(), manifest.getItems(), summary));
+                });
+    }
+
+    /**
+     * Non-blocking version of ManifestService.generateCanvasPageV3
+     */
+    public Mono<CanvasPage> generateCanvasPageV3(ManifestModel model, int page, int pageSize, boolean addFullText,
+                                                 URL fullTextApi, ManifestProjection projection) {
+        return onMappingScheduler(() -> manifestService.generateCanvasPageV3(model, page, pageSize, false, null, projection))
+                .flatMap(canvasPage -> {
+                    if (!addFullText || !projection.includesFullText()) {
+                        return Mono.just(canvasPage);
+                    }
+                    return addFullTextLinks(canvasPage, canvasPage.getOrderedItems(), model.getEuropeanaId(), fullTextApi,
+                            summary -> manifestService.addFullTextSummaryV3(model.getEuropeanaId(), canvasPage.getOrderedItems(), summary));
+                });
+    }
+
+    /**
+     * Non-blocking version of ManifestService.generateCanvasV2
+     */
+    public Mono<eu.europeana.iiif.model.v2.Canvas> generateCanvasV2(ManifestModel model, int order, boolean addFullText,
+                                                                    URL fullTextApi, ManifestProjection projection) {
+        return onMappingScheduler(() -> manifestService.generateCanvasV2(model, order, false, null, projection))
+                .flatMap(canvas -> {
+                    if (!addFullText || !projection.includesFullText()) {
+                        return Mono.just(canvas);
+                    }
+                    eu.europeana.iiif.model.v2.Canvas[] canvases = new eu.europeana.iiif.model.v2.Canvas[]{canvas};
+                    return addFullTextLinks(canvas, canvases, model.getEuropeanaId(), fullTextApi,
+                            summary -> manifestService.addFullTextSummaryV2(model.getEuropeanaId(), canvases, summary));
+                });
+    }
+
+    /**
+     * Non-blocking version of ManifestService.generateCanvasV3
+     */
+    public Mono<eu.europeana.iiif.model.v3.Canvas> generateCanvasV3(ManifestModel model, int order, boolean addFullText,
+                                                                    URL fullTextApi, ManifestProjection projection) {
+        return onMappingScheduler(() -> manifestService.generateCanvasV3(model, order, false, null, projection))
+                .flatMap(canvas -> {
+                    if (!addFullText || !projection.includesFullText()) {
+                        return Mono.just(canvas);
+                    }
+                    eu.europeana.iiif.model.v3.Canvas[] canvases = new eu.europeana.iiif.model.v3.Canvas[]{canvas};
+                    return addFullTextLinks(canvas, canvases, model.getEuropeanaId(), fullTextApi,
+                            summary -> manifestService.addFullTextSummaryV3(model.getEuropeanaId(), canvases, summary));
+                });
+    }
+
+    /**
+     * Serialize a manifest (or part of a manifest) on the mapping scheduler
+     * @param manifest the object to serialize
+     * @param encoding the encoding to use
+     * @return serialized data, for JSON this is UTF-8 encoded JSON-LD
+     */
+    public Mono<byte[]> serialize(Object manifest, ManifestEncoding encoding) {
+        return onMappingScheduler(() -> {
+            if (encoding.isBinary()) {
+                return manifestService.serializeManifest(manifest, encoding);
+            }
+            return manifestService.serializeManifest(manifest).getBytes(StandardCharsets.UTF_8);
+        });
+    }
+
+    /**
+     * Stop the mapping threads and close all connections
+     */
+    @PreDestroy
+    public void close() {
+        LOG.info("Shutting down reactive manifest service");
+        mappingScheduler.dispose();
+        connectionProvider.dispose();
+    }
+}
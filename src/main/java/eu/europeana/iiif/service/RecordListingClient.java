@@ -0,0 +1,27 @@
+package eu.europeana.iiif.service;
+
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.model.RecordListingPage;
+
+/**
+ * Client that lists the records of a dataset, page by page using a cursor. The default implementation uses the Search
+ * API (see SearchApiListingClient); other implementations (e.g. a local stub) can be used by registering them as
+ * primary RecordListingClient bean.
+ */
+public interface RecordListingClient {
+
+    /** cursor value to retrieve the first page */
+    String FIRST_PAGE = "*";
+
+    /**
+     * Retrieve a page of records of a dataset
+     * @param datasetId id of the dataset
+     * @param cursor cursor of the page to retrieve, FIRST_PAGE for the first page
+     * @param pageSize maximum number of records to retrieve
+     * @param wsKey api key to send to the upstream API
+     * @return page of records
+     * @throws EuropeanaApiException (InvalidApiKeyException if the provide key is not valid,
+     *                       RecordRetrieveException on all other problems)
+     */
+    RecordListingPage getPage(String datasetId, String cursor, int pageSize, String wsKey) throws EuropeanaApiException;
+}
@@ -0,0 +1,130 @@
+package eu.europeana.iiif.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.exception.InvalidApiKeyException;
+import eu.europeana.iiif.exception.RecordRetrieveException;
+import eu.europeana.iiif.model.RecordListingPage;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists the records of a dataset using the Search API (query on edm_datasetName with cursor-based paging). Only the
+ * minimal profile is requested, so every page only contains the id, title and preview (thumbnail) of the records.
+ */
+@Component
+@Profile("!reactive")
+public class SearchApiListingClient implements RecordListingClient {
+
+    private static final Logger LOG = LogManager.getLogger(SearchApiListingClient.class);
+
+    private static final int CONNECT_TIMEOUT = 10_000;
+    private static final int SOCKET_TIMEOUT  = 60_000;
+
+    private final ManifestSettings settings;
+    private final CloseableHttpClient httpClient;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Create a new Search API client
+     * @param settings read from properties file
+     */
+    public SearchApiListingClient(ManifestSettings settings) {
+        this.settings = settings;
+        this.httpClient = HttpClients.custom()
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(CONNECT_TIMEOUT)
+                        .setSocketTimeout(SOCKET_TIMEOUT)
+                        .build())
+                .build();
+    }
+
+    @Override
+    public RecordListingPage getPage(String datasetId, String cursor, int pageSize, String wsKey) throws EuropeanaApiException {
+        HttpGet request;
+        try {
+            request = new HttpGet(new URIBuilder(settings.getSearchApiUrl())
+                    .addParameter("query", "edm_datasetName:" + datasetId + "_*")
+                    .addParameter("profile", "minimal")
+                    .addParameter("rows", String.valueOf(pageSize))
+                    .addParameter("cursor", cursor)
+                    .addParameter("wskey", wsKey)
+                    .build());
+        } catch (URISyntaxException e) {
+            throw new RecordRetrieveException("Invalid Search API url", e);
+        }
+
+        LOG.debug("Search API request for dataset {}, cursor {}", datasetId, cursor);
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status == HttpStatus.SC_UNAUTHORIZED) {
+                EntityUtils.consume(response.getEntity());
+                throw new InvalidApiKeyException("API key is not valid");
+            } else if (status != HttpStatus.SC_OK) {
+                EntityUtils.consume(response.getEntity());
+                LOG.error("Error listing records of dataset {}, reason {}", datasetId, response.getStatusLine().getReasonPhrase());
+                throw new RecordRetrieveException("Error listing records: " + response.getStatusLine().getReasonPhrase());
+            }
+            try (InputStream in = response.getEntity().getContent()) {
+                return parsePage(mapper.readTree(in));
+            }
+        } catch (IOException e) {
+            throw new RecordRetrieveException("Error listing records", e);
+        }
+    }
+
+    /**
+     * Converts a Search API response into a page of records
+     */
+    static RecordListingPage parsePage(JsonNode response) {
+        List<RecordListingPage.Item> items = new ArrayList<>();
+        for (JsonNode item : response.path("items")) {
+            items.add(new RecordListingPage.Item(item.path("id").asText(),
+                    getFirst(item.path("title")), getFirst(item.path("edmPreview"))));
+        }
+        String nextCursor = response.path("nextCursor").asText(null);
+        // the Search API can return a cursor with an empty last page, we don't need to retrieve that
+        if (items.isEmpty()) {
+            nextCursor = null;
+        }
+        return new RecordListingPage(items, nextCursor);
+    }
+
+    private static String getFirst(JsonNode values) {
+        if (values.isArray() && !values.isEmpty()) {
+            return values.get(0).asText();
+        }
+        return null;
+    }
+
+    /**
+     * Close all connections
+     */
+    @PreDestroy
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            LOG.warn("Error closing Search API connections", e);
+        }
+    }
+}
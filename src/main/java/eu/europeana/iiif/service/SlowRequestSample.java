@@ -0,0 +1,167 @@
+package eu.europeana.iiif.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Snapshot of a slow manifest request: what was requested, how big the record and full-text summaries were, how long
+ * each stage took and how the upstream APIs and manifest cache behaved. Samples are collected by the
+ * {@link SlowRequestSampler} and serialized as json by the slowrequests actuator endpoint.
+ */
+public final class SlowRequestSample {
+
+    private final String timestamp;
+    private final String uri;
+    private final int status;
+    private final double durationMs;
+    private final String iiifVersion;
+    private final String recordId;
+    private final int webResourceCount;
+    private final int recordSize;
+    private final long summarySize;
+    private final int recordApiStatus;
+    private final int fullTextApiStatus;
+    private final String recordCache;
+    private final Map<String, Double> stagesMs;
+    private final List<String> upstreamErrors;
+
+    SlowRequestSample(Instant timestamp, String uri, int status, long durationNs, StageTimings timings) {
+        this.timestamp = timestamp.toString();
+        this.uri = uri;
+        this.status = status;
+        this.durationMs = toMillis(durationNs);
+        this.iiifVersion = timings.getIiifVersion();
+        this.recordId = timings.getRecordId();
+        this.webResourceCount = timings.getWebResourceCount();
+        this.recordSize = timings.getRecordSize();
+        this.summarySize = timings.getSummarySize();
+        this.recordApiStatus = timings.getRecordApiStatus();
+        this.fullTextApiStatus = timings.getFullTextApiStatus();
+        if (timings.isExecuted(StageTimings.Stage.RECORD_FETCH)) {
+            this.recordCache = (timings.isRecordCacheHit() ? "hit" : "miss");
+        } else {
+            this.recordCache = null;
+        }
+
+        Map<String, Double> stages = new LinkedHashMap<>();
+        for (StageTimings.Stage stage : StageTimings.Stage.values()) {
+            if (timings.isExecuted(stage)) {
+                stages.put(stage.name().toLowerCase(Locale.ROOT), toMillis(timings.getDuration(stage)));
+            }
+        }
+        this.stagesMs = Collections.unmodifiableMap(stages);
+
+        List<String> errors = new ArrayList<>(timings.getUpstreamErrors().size());
+        for (StageTimings.UpstreamError error : timings.getUpstreamErrors()) {
+            errors.add(error.getUpstream().name().toLowerCase(Locale.ROOT) + ": " + error.getException());
+        }
+        this.upstreamErrors = Collections.unmodifiableList(errors);
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1000d) / 1000d;
+    }
+
+    /**
+     * @return moment the request finished, in ISO-8601 format
+     */
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return request uri, without query string (so API keys are not included)
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * @return http status of the response
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return total duration of the request in milliseconds
+     */
+    public double getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * @return requested IIIF version, null if not known
+     */
+    public String getIiifVersion() {
+        return iiifVersion;
+    }
+
+    /**
+     * @return id of the requested record, null if not known
+     */
+    public String getRecordId() {
+        return recordId;
+    }
+
+    /**
+     * @return number of web resources that are candidates for a canvas, 0 if not determined during this request
+     */
+    public int getWebResourceCount() {
+        return webResourceCount;
+    }
+
+    /**
+     * @return size of the record json in characters, 0 if the record wasn't retrieved
+     */
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * @return total size of the retrieved full-text summaries in characters
+     */
+    public long getSummarySize() {
+        return summarySize;
+    }
+
+    /**
+     * @return http status of the Record API response, 0 if there was none
+     */
+    public int getRecordApiStatus() {
+        return recordApiStatus;
+    }
+
+    /**
+     * @return http status of the Full-Text API response, 0 if there was none
+     */
+    public int getFullTextApiStatus() {
+        return fullTextApiStatus;
+    }
+
+    /**
+     * @return 'hit' or 'miss' for the manifest cache, null if the record wasn't retrieved
+     */
+    public String getRecordCache() {
+        return recordCache;
+    }
+
+    /**
+     * @return duration in milliseconds of each executed stage, in processing order
+     */
+    public Map<String, Double> getStagesMs() {
+        return stagesMs;
+    }
+
+    /**
+     * @return errors that occurred while requesting data from the upstream APIs, e.g. 'fulltext_api: SocketTimeoutException'
+     */
+    public List<String> getUpstreamErrors() {
+        return upstreamErrors;
+    }
+}
@@ -0,0 +1,101 @@
+package eu.europeana.iiif.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the most recent samples of manifest requests that took longer than a threshold, so slow requests can be
+ * investigated afterwards (via the slowrequests actuator endpoint) without enabling debug logging. The samples are
+ * kept in a fixed-size ring buffer, so when it's full the oldest sample is overwritten and memory use stays bounded.
+ *
+ * Checking the threshold costs nothing more than a comparison, a sample is only created for slow requests.
+ */
+public class SlowRequestSampler {
+
+    private final long thresholdNs;
+    private final SlowRequestSample[] samples;
+    private int next;
+    private int size;
+
+    /**
+     * Create a new sampler
+     * @param thresholdMs requests that take longer than this number of milliseconds are sampled, 0 disables sampling
+     * @param maxSamples maximum number of samples to keep
+     */
+    public SlowRequestSampler(long thresholdMs, int maxSamples) {
+        if (thresholdMs < 0 || maxSamples < 1) {
+            throw new IllegalArgumentException("Slow request threshold can't be negative and max samples should be at least 1");
+        }
+        this.thresholdNs = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.samples = new SlowRequestSample[maxSamples];
+    }
+
+    /**
+     * @return true if requests are sampled
+     */
+    public boolean isEnabled() {
+        return thresholdNs > 0;
+    }
+
+    /**
+     * @return threshold in milliseconds above which requests are sampled
+     */
+    public long getThresholdMs() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNs);
+    }
+
+    /**
+     * @return maximum number of samples that are kept
+     */
+    public int getMaxSamples() {
+        return samples.length;
+    }
+
+    /**
+     * Stores a sample of the request if it took longer than the threshold
+     * @param uri request uri (without query string)
+     * @param status http status of the response
+     * @param durationNs total duration of the request in nanoseconds
+     * @param timings stage timings of the request
+     * @return true if the request was sampled
+     */
+    public boolean sample(String uri, int status, long durationNs, StageTimings timings) {
+        if (!isEnabled() || durationNs <= thresholdNs) {
+            return false;
+        }
+        SlowRequestSample sample = new SlowRequestSample(Instant.now(), uri, status, durationNs, timings);
+        synchronized (samples) {
+            samples[next] = sample;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+        return true;
+    }
+
+    /**
+     * @return all kept samples, most recent first
+     */
+    public List<SlowRequestSample> getSamples() {
+        synchronized (samples) {
+            List<SlowRequestSample> result = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) {
+                result.add(samples[(next - i + samples.length) % samples.length]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Removes all kept samples
+     */
+    public void clear() {
+        synchronized (samples) {
+            Arrays.fill(samples, null);
+            next = 0;
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package eu.europeana.iiif.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps track of how long each stage of processing a manifest request takes, plus some information about the upstream
+ * requests that were done. An instance is created for each request and bound to the request thread, so the different
+ * stages can be timed wherever they take place (e.g. in ManifestService) without passing the timings around.
+ *
+ * Code that runs outside a request (or in the reactive variant) gets a disabled instance that ignores everything, so
+ * timing a stage is always safe and costs next to nothing. Note that an instance is not thread-safe; it should only be
+ * used by one thread at a time (see attach and detach for handing it over to another thread).
+ */
+public final class StageTimings implements AutoCloseable {
+
+    /**
+     * The stages of processing a manifest request
+     */
+    public enum Stage {
+        VALIDATION,
+        RECORD_FETCH,
+        ETAG,
+        NOT_MODIFIED_CHECK,
+        MAPPING,
+        FULLTEXT_FETCH,
+        FULLTEXT_LINKING,
+        SERIALIZATION
+    }
+
+    /**
+     * The APIs we retrieve data from
+     */
+    public enum Upstream {
+        RECORD_API,
+        FULLTEXT_API
+    }
+
+    /**
+     * Data problems that can be found many times while processing one request (e.g. for every canvas). Instead of
+     * logging each occurrence, they are counted and logged once per request by the StageMetricsFilter.
+     */
+    public enum Warning {
+        /** No full-text annotation page found for a canvas, so the Record API and Full-Text API may be out of sync */
+        NO_FULLTEXT_ANNOPAGE,
+        /** A service referred to by a web resource has an empty doapImplements field */
+        EMPTY_DOAP_IMPLEMENTS,
+        /** A web resource refers to a service that isn't defined (or has no doapImplements field) */
+        UNDEFINED_SERVICE
+    }
+
+    /**
+     * An error that occurred while requesting data from an upstream API
+     */
+    public static final class UpstreamError {
+        private final Upstream upstream;
+        private final String exception;
+
+        UpstreamError(Upstream upstream, String exception) {
+            this.upstream = upstream;
+            this.exception = exception;
+        }
+
+        /**
+         * @return the API that failed
+         */
+        public Upstream getUpstream() {
+            return upstream;
+        }
+
+        /**
+         * @return simple class name of the exception
+         */
+        public String getException() {
+            return exception;
+        }
+    }
+
+    private static final ThreadLocal<StageTimings> CURRENT = new ThreadLocal<>();
+    private static final StageTimings DISABLED = new StageTimings(false);
+
+    private final boolean enabled;
+    private final long[] durations = new long[Stage.values().length];
+    private int executed;
+    private String iiifVersion;
+    private String recordId;
+    private int recordSize;
+    private long summarySize;
+    private int webResourceCount;
+    private int recordApiStatus;
+    private int fullTextApiStatus;
+    private boolean recordCacheHit;
+    private List<UpstreamError> upstreamErrors;
+    private int[] warningCounts;
+    private String[] warningDetails;
+
+    private StageTimings(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Creates new timings and binds them to the current thread. Use close() to unbind them when the request is done.
+     * @return the new timings
+     */
+    public static StageTimings start() {
+        StageTimings result = new StageTimings(true);
+        CURRENT.set(result);
+        return result;
+    }
+
+    /**
+     * @return the timings bound to the current thread, or a disabled instance if there are none
+     */
+    public static StageTimings current() {
+        StageTimings result = CURRENT.get();
+        return (result == null ? DISABLED : result);
+    }
+
+    /**
+     * Binds these timings to the current thread, so work for the same request can be timed on another thread
+     */
+    public void attach() {
+        if (enabled) {
+            CURRENT.set(this);
+        }
+    }
+
+    /**
+     * Unbinds the timings of the current thread
+     */
+    public void detach() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Unbinds the timings from the current thread
+     */
+    @Override
+    public void close() {
+        detach();
+    }
+
+    /**
+     * @return start time to pass to end(), or 0 if these timings are disabled
+     */
+    public long begin() {
+        return (enabled ? System.nanoTime() : 0);
+    }
+
+    /**
+     * Adds the time elapsed since begin to the duration of a stage. A stage can be timed multiple times, in which case
+     * the durations are summed.
+     * @param stage the stage that ended
+     * @param begin value returned by begin()
+     */
+    public void end(Stage stage, long begin) {
+        if (enabled) {
+            durations[stage.ordinal()] += System.nanoTime() - begin;
+            executed |= 1 << stage.ordinal();
+        }
+    }
+
+    /**
+     * @param stage the stage
+     * @return true if the stage was executed
+     */
+    public boolean isExecuted(Stage stage) {
+        return (executed & (1 << stage.ordinal())) != 0;
+    }
+
+    /**
+     * @param stage the stage
+     * @return total duration of the stage in nanoseconds, 0 if it wasn't executed
+     */
+    public long getDuration(Stage stage) {
+        return durations[stage.ordinal()];
+    }
+
+    /**
+     * @return true if these timings are bound to a request
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param iiifVersion the IIIF version of the requested manifest
+     */
+    public void setIiifVersion(String iiifVersion) {
+        if (enabled) {
+            this.iiifVersion = iiifVersion;
+        }
+    }
+
+    /**
+     * @return the IIIF version of the requested manifest, null if not known (yet)
+     */
+    public String getIiifVersion() {
+        return iiifVersion;
+    }
+
+    /**
+     * @param recordId id of the requested record
+     */
+    public void setRecordId(String recordId) {
+        if (enabled) {
+            this.recordId = recordId;
+        }
+    }
+
+    /**
+     * @return id of the requested record, null if not known (yet)
+     */
+    public String getRecordId() {
+        return recordId;
+    }
+
+    /**
+     * @param recordSize size of the record json (as retrieved from the Record API or cache) in characters
+     */
+    public void setRecordSize(int recordSize) {
+        if (enabled) {
+            this.recordSize = recordSize;
+        }
+    }
+
+    /**
+     * @return size of the record json in characters, 0 if the record wasn't retrieved
+     */
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Adds the size of a retrieved full-text summary to the total summary size
+     * @param summarySize size of the summary json in characters
+     */
+    public void addSummarySize(long summarySize) {
+        if (enabled) {
+            this.summarySize += summarySize;
+        }
+    }
+
+    /**
+     * @return total size of all retrieved full-text summaries in characters
+     */
+    public long getSummarySize() {
+        return summarySize;
+    }
+
+    /**
+     * @param webResourceCount number of web resources of the record that are candidates for a canvas
+     */
+    public void setWebResourceCount(int webResourceCount) {
+        if (enabled) {
+            this.webResourceCount = webResourceCount;
+        }
+    }
+
+    /**
+     * @return number of web resources that are candidates for a canvas, 0 if the web resources weren't sorted during
+     * this request (e.g. because the canvas resources of the cached record were reused)
+     */
+    public int getWebResourceCount() {
+        return webResourceCount;
+    }
+
+    /**
+     * @param status http status code of the Full-Text API response
+     */
+    public void setFullTextApiStatus(int status) {
+        if (enabled) {
+            this.fullTextApiStatus = status;
+        }
+    }
+
+    /**
+     * @return http status code of the (last) Full-Text API response, 0 if no response was received
+     */
+    public int getFullTextApiStatus() {
+        return fullTextApiStatus;
+    }
+
+    /**
+     * @param status http status code of the Record API response
+     */
+    public void setRecordApiStatus(int status) {
+        if (enabled) {
+            this.recordApiStatus = status;
+        }
+    }
+
+    /**
+     * @return http status code of the Record API response, 0 if no response was received
+     */
+    public int getRecordApiStatus() {
+        return recordApiStatus;
+    }
+
+    /**
+     * Marks that the record data was retrieved from the manifest cache
+     */
+    public void setRecordCacheHit() {
+        if (enabled) {
+            this.recordCacheHit = true;
+        }
+    }
+
+    /**
+     * @return true if the record data was retrieved from the manifest cache
+     */
+    public boolean isRecordCacheHit() {
+        return recordCacheHit;
+    }
+
+    /**
+     * Registers an error that occurred while requesting data from an upstream API
+     * @param upstream the API that failed
+     * @param e the error
+     */
+    public void addUpstreamError(Upstream upstream, Throwable e) {
+        if (enabled) {
+            if (upstreamErrors == null) {
+                upstreamErrors = new ArrayList<>(1);
+            }
+            upstreamErrors.add(new UpstreamError(upstream, e.getClass().getSimpleName()));
+        }
+    }
+
+    /**
+     * @return all errors that occurred while requesting data from an upstream API
+     */
+    public List<UpstreamError> getUpstreamErrors() {
+        return (upstreamErrors == null ? Collections.emptyList() : upstreamErrors);
+    }
+
+    /**
+     * Registers a warning, so it can be logged once for the whole request. Only the details of the first occurrence are
+     * kept.
+     * @param warning the type of warning
+     * @param detail details of this occurrence, e.g. the page number
+     * @return false if these timings are disabled, in which case the caller should log the warning itself
+     */
+    public boolean addWarning(Warning warning, String detail) {
+        if (!enabled) {
+            return false;
+        }
+        if (warningCounts == null) {
+            warningCounts = new int[Warning.values().length];
+            warningDetails = new String[warningCounts.length];
+        }
+        if (warningCounts[warning.ordinal()]++ == 0) {
+            warningDetails[warning.ordinal()] = detail;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if any warnings were registered
+     */
+    public boolean hasWarnings() {
+        return warningCounts != null;
+    }
+
+    /**
+     * @param warning the type of warning
+     * @return number of times the warning was registered
+     */
+    public int getWarningCount(Warning warning) {
+        return (warningCounts == null ? 0 : warningCounts[warning.ordinal()]);
+    }
+
+    /**
+     * @param warning the type of warning
+     * @return details of the first occurrence of the warning, null if it wasn't registered
+     */
+    public String getWarningDetail(Warning warning) {
+        return (warningDetails == null ? null : warningDetails[warning.ordinal()]);
+    }
+
+    /**
+     * Generates the value of a Server-Timing header with the duration of the record fetch, full-text fetch, mapping and
+     * serialization stages (if executed) and whether the record was retrieved from the manifest cache, e.g.
+     * <pre>record;dur=120.512, mapping;dur=3.020, serialization;dur=1.250, cache;desc=miss</pre>
+     * @return Server-Timing header value, empty if no stages were timed
+     */
+    public String toServerTiming() {
+        StringBuilder result = new StringBuilder(128);
+        appendServerTiming(result, "record", Stage.RECORD_FETCH);
+        appendServerTiming(result, "fulltext", Stage.FULLTEXT_FETCH);
+        appendServerTiming(result, "mapping", Stage.MAPPING);
+        appendServerTiming(result, "serialization", Stage.SERIALIZATION);
+        if (isExecuted(Stage.RECORD_FETCH)) {
+            result.append(result.length() == 0 ? "" : ", ").append("cache;desc=").append(recordCacheHit ? "hit" : "miss");
+        }
+        return result.toString();
+    }
+
+    private void appendServerTiming(StringBuilder sb, String name, Stage stage) {
+        if (isExecuted(stage)) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            appendMillis(sb.append(name).append(";dur="), getDuration(stage));
+        }
+    }
+
+    /**
+     * Appends a duration in milliseconds with 3 decimals (without String.format, which is relatively expensive)
+     * @param sb the string builder to append to
+     * @param nanos duration in nanoseconds
+     * @return the provided string builder
+     */
+    public static StringBuilder appendMillis(StringBuilder sb, long nanos) {
+        long micros = nanos / 1000;
+        long fraction = micros % 1000;
+        sb.append(micros / 1000).append('.');
+        if (fraction < 100) {
+            sb.append(fraction < 10 ? "00" : "0");
+        }
+        return sb.append(fraction);
+    }
+}
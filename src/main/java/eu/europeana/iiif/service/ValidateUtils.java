@@ -15,6 +15,8 @@ public final class ValidateUtils {
 
     private static final Pattern RECORD_ID = Pattern.compile("^/[a-zA-Z0-9_]*/[a-zA-Z0-9_]*$");
 
+    private static final Pattern DATASET_ID = Pattern.compile("^[a-zA-Z0-9_]+$");
+
     private static final Pattern WSKEY = Pattern.compile("^[a-zA-Z0-9]*$");
 
     private static final Pattern API_BASEURL = Pattern.compile("^(https?://)[a-zA-Z0-9_\\.\\-]+\\.(eanadev.org|europeana.eu)$");
@@ -41,6 +43,19 @@ public final class ValidateUtils {
         return true;
     }
 
+    /**
+     * Checks if the provided dataset id has the correct format (no illegal characters that may mess up the query)
+     * @param datasetId string that should consist of characters, numbers and underscores only
+     * @return true if it has a valid format
+     * @throws IllegalArgumentException thrown when the provided datasetId doesn't adhere to the expected format
+     */
+    public static final boolean validateDatasetIdFormat(String datasetId) throws IllegalArgumentException {
+        if (!DATASET_ID.matcher(datasetId).matches()) {
+            throw new IllegalArgumentException("Illegal dataset id "+ datasetId);
+        }
+        return true;
+    }
+
     /**
      * This checks if the provided API key has the correct format (no illegal characters that may mess up the query)
      * WARNING! This does not check if the API itself is a valid key!
@@ -0,0 +1,75 @@
+package eu.europeana.iiif.web;
+
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.exception.InvalidRequestParamException;
+import eu.europeana.iiif.model.BatchRequest;
+import eu.europeana.iiif.service.BatchService;
+import eu.europeana.iiif.service.ManifestService;
+import eu.europeana.iiif.service.ValidateUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+
+/**
+ * Rest controller that handles batch requests, returning the manifests of multiple records in a single response
+ */
+@RestController
+@Profile("!reactive")
+@RequestMapping("/presentation")
+public class BatchController {
+
+    private static final String IDS = "ids";
+
+    private final BatchService batchService;
+    private final ManifestService manifestService;
+
+    public BatchController(BatchService batchService, ManifestService manifestService) {
+        this.batchService = batchService;
+        this.manifestService = manifestService;
+    }
+
+    /**
+     * Handles batch requests. Manifests are streamed as newline-delimited JSON, one line per record, in the order in
+     * which they are ready. A line either contains the manifest ({"id":..., "manifest":...}) or the error that
+     * occurred for that record ({"id":..., "status":..., "error":...}). Every record counts as a request for the
+     * fair-share scheduling of the API key.
+     *
+     * @param wskey apikey (required field)
+     * @param batch list of record ids (required) and the IIIF version ('format', either '2' or '3') and whether to add
+     *              full-text links ('fullText') for all manifests
+     * @return stream of manifests in newline-delimited JSON
+     * @throws EuropeanaApiException when the request is invalid
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> batchRequest(
+            @RequestParam(value = "wskey", required = true) String wskey,
+            @RequestBody BatchRequest batch) throws EuropeanaApiException {
+        ValidateUtils.validateWskeyFormat(wskey);
+        String iiifVersion = StringUtils.defaultIfEmpty(batch.getFormat(), "2");
+        if (!"2".equals(iiifVersion) && !"3".equals(iiifVersion)) {
+            throw new InvalidRequestParamException("format", iiifVersion);
+        }
+        List<String> ids = batch.getIds();
+        if (ids == null || ids.isEmpty()) {
+            throw new InvalidRequestParamException(IDS, "no record ids");
+        }
+        int maxSize = manifestService.getSettings().getBatchMaxSize();
+        if (ids.size() > maxSize) {
+            throw new InvalidRequestParamException(IDS, ids.size() + " record ids, maximum is " + maxSize);
+        }
+        boolean addFullText = !Boolean.FALSE.equals(batch.getFullText());
+
+        StreamingResponseBody body = out -> batchService.writeManifests(ids, wskey, iiifVersion, addFullText, out);
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_TYPE, BatchService.MEDIA_TYPE_NDJSON);
+        headers.add(HttpHeaders.CACHE_CONTROL, "no-store");
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+}
@@ -0,0 +1,79 @@
+package eu.europeana.iiif.web;
+
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.AcceptUtils;
+import eu.europeana.iiif.config.CachePolicy;
+import eu.europeana.iiif.model.RecordListingPage;
+import eu.europeana.iiif.service.ApiKeyScheduler;
+import eu.europeana.iiif.service.CacheUtils;
+import eu.europeana.iiif.service.CollectionService;
+import eu.europeana.iiif.service.ValidateUtils;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+
+import static eu.europeana.iiif.AcceptUtils.ACCEPT;
+import static eu.europeana.iiif.web.ManifestRequestUtils.isJsonRequested;
+
+/**
+ * Rest controller that handles requests for (IIIF v3) collections of all manifests in a dataset
+ */
+@RestController
+@Profile("!reactive")
+@RequestMapping("/presentation")
+public class CollectionController {
+
+    private final CollectionService collectionService;
+    private final ApiKeyScheduler apiKeyScheduler;
+
+    public CollectionController(CollectionService collectionService, ApiKeyScheduler apiKeyScheduler) {
+        this.collectionService = collectionService;
+        this.apiKeyScheduler = apiKeyScheduler;
+    }
+
+    /**
+     * Handles dataset collection requests. The collection contains a reference (with label and thumbnail) to the
+     * manifest of every record in the dataset and is streamed while the records are listed. If listing fails halfway
+     * the response is aborted, so clients always receive either the complete collection or invalid json.
+     *
+     * @param collectionId (required field) id of the dataset
+     * @param wskey        apikey (required field)
+     * @return JSON-LD IIIF v3 collection
+     * @throws EuropeanaApiException when something goes wrong before the response is started
+     */
+    @GetMapping(value = "/{collectionId}/collection")
+    public ResponseEntity<StreamingResponseBody> collectionRequest(
+            @PathVariable String collectionId,
+            @RequestParam(value = "wskey", required = true) String wskey,
+            HttpServletRequest request) throws EuropeanaApiException {
+        ValidateUtils.validateWskeyFormat(wskey);
+        ValidateUtils.validateDatasetIdFormat(collectionId);
+
+        ApiKeyScheduler.Permit permit = apiKeyScheduler.acquire(wskey);
+        RecordListingPage firstPage;
+        try {
+            firstPage = collectionService.getFirstPage(collectionId, wskey);
+        } catch (EuropeanaApiException | RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+        StreamingResponseBody body = out -> {
+            try (permit) {
+                collectionService.writeCollection(collectionId, wskey, firstPage, out);
+            }
+        };
+
+        // a collection has no ETag or Last-Modified to revalidate with, so it doesn't get the manifest cache policy
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CACHE_CONTROL, CachePolicy.DEFAULT_CACHE_CONTROL);
+        headers.add(HttpHeaders.VARY, ACCEPT);
+        headers.add(CacheUtils.SURROGATE_KEY, "dataset/" + collectionId);
+        AcceptUtils.addContentTypeToResponseHeader(headers, "3", isJsonRequested(request.getHeader(ACCEPT)));
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+}
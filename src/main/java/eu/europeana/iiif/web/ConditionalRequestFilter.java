@@ -0,0 +1,194 @@
+package eu.europeana.iiif.web;
+
+import eu.europeana.iiif.exception.InvalidIIIFVersionException;
+import eu.europeana.iiif.model.ManifestEncoding;
+import eu.europeana.iiif.service.CacheUtils;
+import eu.europeana.iiif.service.FreshnessIndex;
+import eu.europeana.iiif.service.ManifestCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fast path for conditional requests. This filter runs before requests reach the DispatcherServlet and answers
+ * If-None-Match requests with a 304 when the ETag matches the ETag of a recent response for the same variant of the
+ * record, so no request parsing, validation or record retrieval is needed. All other requests are passed on, and the
+ * cache headers of their responses are remembered in the freshness index.
+ *
+ * The variant is normalised and doesn't include the API key, so a response to one client can be used to answer
+ * conditional requests of all other clients. API keys are checked separately: requests with an API key that was
+ * recently refused by the Record API always take the normal route.
+ */
+public class ConditionalRequestFilter extends OncePerRequestFilter {
+
+    private static final Logger LOG = LogManager.getLogger(ConditionalRequestFilter.class);
+
+    private static final Pattern RECORD_PATH = Pattern.compile("/presentation(/[^/]+/[^/]+)/(manifest|canvases/[^/]+|canvas/[^/]+)");
+    private static final List<String> REMEMBERED_HEADERS = List.of(HttpHeaders.CACHE_CONTROL, HttpHeaders.ETAG,
+            HttpHeaders.LAST_MODIFIED, HttpHeaders.VARY, CacheUtils.SURROGATE_KEY, HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN,
+            HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS);
+    private static final char SEPARATOR = '\n';
+    private static final String WSKEY_PARAM = "wskey=";
+
+    private final FreshnessIndex freshnessIndex;
+    private final ManifestCache manifestCache;
+    private final boolean acceptLanguageEnabled;
+    private final AtomicLong shortCircuited = new AtomicLong();
+    private final Counter shortCircuitedCounter;
+
+    /**
+     * Create a new filter
+     * @param freshnessIndex index to store and look up recent ETags
+     * @param manifestCache used to check for API keys that were refused by the Record API
+     * @param acceptLanguageEnabled true if responses depend on the Accept-Language header
+     * @param meterRegistry optional, if not null the number of short-circuited requests is registered as metric
+     */
+    public ConditionalRequestFilter(FreshnessIndex freshnessIndex, ManifestCache manifestCache,
+                                    boolean acceptLanguageEnabled, MeterRegistry meterRegistry) {
+        this.freshnessIndex = freshnessIndex;
+        this.manifestCache = manifestCache;
+        this.acceptLanguageEnabled = acceptLanguageEnabled;
+        this.shortCircuitedCounter = (meterRegistry == null ? null : Counter.builder("manifest.conditional.fast-path")
+                .description("Number of conditional requests answered with 304 without retrieving the record")
+                .register(meterRegistry));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !freshnessIndex.isEnabled() || !HttpMethod.GET.matches(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Matcher matcher = RECORD_PATH.matcher(request.getRequestURI().substring(request.getContextPath().length()));
+        String wskey = request.getParameter("wskey");
+        if (!matcher.matches() || StringUtils.isBlank(wskey)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String recordId = matcher.group(1);
+        String variant = getVariant(request, matcher.group(2));
+        if (variant == null) {
+            // invalid IIIF version, the controller will return the error
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (StringUtils.isNotEmpty(ifNoneMatch) && !manifestCache.isInvalidWskey(wskey)) {
+            FreshnessIndex.Entry entry = freshnessIndex.get(recordId, variant);
+            // same comparison as in CacheUtils.checkCached
+            if (entry != null && CacheUtils.matchesIfNoneMatch(ifNoneMatch, entry.getETag())) {
+                LOG.debug("Returning 304 response from freshness index");
+                shortCircuited.incrementAndGet();
+                if (shortCircuitedCounter != null) {
+                    shortCircuitedCounter.increment();
+                }
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                entry.getHeaders().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+                return;
+            }
+        }
+
+        filterChain.doFilter(request, response);
+        if (response.getStatus() == HttpServletResponse.SC_OK || response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED) {
+            remember(recordId, variant, response);
+        }
+    }
+
+    private void remember(String recordId, String variant, HttpServletResponse response) {
+        HttpHeaders headers = new HttpHeaders();
+        for (String name : REMEMBERED_HEADERS) {
+            for (String value : response.getHeaders(name)) {
+                headers.add(name, value);
+            }
+        }
+        freshnessIndex.put(recordId, variant, parseDate(headers.getFirst(HttpHeaders.LAST_MODIFIED)), headers);
+    }
+
+    /**
+     * The variant contains everything the response (and so its ETag) depends on, except the record id and API key: the
+     * requested resource, the other parameters (sorted by name), the IIIF version and encoding (instead of the full
+     * Accept header) and the Accept-Language header when that is used to filter languages.
+     * @return the variant, or null if the requested IIIF version is invalid
+     */
+    private String getVariant(HttpServletRequest request, String resource) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.put(HttpHeaders.ACCEPT, Collections.list(request.getHeaders(HttpHeaders.ACCEPT)));
+        String iiifVersion;
+        try {
+            iiifVersion = ManifestRequestUtils.getIIIFVersion(headers, request.getParameter("format"));
+        } catch (InvalidIIIFVersionException e) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(resource)
+                .append(SEPARATOR).append(getSortedParameters(request.getQueryString()))
+                .append(SEPARATOR).append(iiifVersion)
+                .append(SEPARATOR).append(ManifestEncoding.fromAccept(
+                        String.join(",", headers.getOrEmpty(HttpHeaders.ACCEPT))));
+        if (acceptLanguageEnabled) {
+            key.append(SEPARATOR).append(request.getHeader(HttpHeaders.ACCEPT_LANGUAGE));
+        }
+        // CORS headers are only added for cross-origin requests
+        return key.append(SEPARATOR).append(request.getHeader(HttpHeaders.ORIGIN) != null).toString();
+    }
+
+    /**
+     * @return the parameters of the query string without the wskey, sorted by name (the order of repeated parameters
+     * is kept)
+     */
+    static String getSortedParameters(String query) {
+        if (StringUtils.isEmpty(query)) {
+            return "";
+        }
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : StringUtils.split(query, '&')) {
+            if (!parameter.startsWith(WSKEY_PARAM)) {
+                parameters.add(parameter);
+            }
+        }
+        parameters.sort(Comparator.comparing(parameter -> StringUtils.substringBefore(parameter, "=")));
+        return String.join("&", parameters);
+    }
+
+    private static ZonedDateTime parseDate(String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME);
+        } catch (DateTimeParseException e) {
+            LOG.warn("Error parsing Last-Modified header {}", date);
+            return null;
+        }
+    }
+
+    /**
+     * @return number of requests that were answered by this filter
+     */
+    public long getShortCircuited() {
+        return shortCircuited.get();
+    }
+}
@@ -0,0 +1,49 @@
+package eu.europeana.iiif.web;
+
+import eu.europeana.iiif.config.CachePolicy;
+import eu.europeana.iiif.config.ManifestSettings;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Adds the Cache-Control header for error responses (servlet stack only, the ReactiveExceptionHandler does this for
+ * the reactive profile). Error responses are created by various exception handlers, so we add the header just before
+ * the error body is written.
+ */
+@ControllerAdvice
+@Profile("!reactive")
+public class ErrorCacheControlAdvice implements ResponseBodyAdvice<Object> {
+
+    private static final int FIRST_ERROR_STATUS = 400;
+
+    private final ManifestSettings settings;
+
+    public ErrorCacheControlAdvice(ManifestSettings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (response instanceof ServletServerHttpResponse
+                && ((ServletServerHttpResponse) response).getServletResponse().getStatus() >= FIRST_ERROR_STATUS
+                && response.getHeaders().getCacheControl() == null) {
+            response.getHeaders().setCacheControl(
+                    ManifestRequestUtils.getCacheControl(settings, CachePolicy.ResponseClass.ERROR));
+        }
+        return body;
+    }
+}
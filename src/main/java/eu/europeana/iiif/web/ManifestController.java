@@ -3,14 +3,21 @@ package eu.europeana.iiif.web;
 import eu.europeana.api.commons.error.EuropeanaApiException;
 import eu.europeana.iiif.AcceptUtils;
 import eu.europeana.iiif.exception.InvalidIIIFVersionException;
+import eu.europeana.iiif.exception.InvalidRequestParamException;
 import eu.europeana.iiif.exception.ManifestInvalidUrlException;
+import eu.europeana.iiif.model.FullTextSummary;
+import eu.europeana.iiif.model.LanguageFilter;
+import eu.europeana.iiif.model.ManifestEncoding;
+import eu.europeana.iiif.model.ManifestModel;
+import eu.europeana.iiif.model.ManifestProjection;
+import eu.europeana.iiif.service.ApiKeyScheduler;
 import eu.europeana.iiif.service.CacheUtils;
-import eu.europeana.iiif.service.EdmManifestUtils;
 import eu.europeana.iiif.service.ManifestService;
-import eu.europeana.iiif.service.ValidateUtils;
-import org.apache.commons.lang3.StringUtils;
+import eu.europeana.iiif.service.PriorityLanes;
+import eu.europeana.iiif.service.StageTimings;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -21,6 +28,9 @@ import java.net.URL;
 import java.time.ZonedDateTime;
 
 import static eu.europeana.iiif.AcceptUtils.*;
+import static eu.europeana.iiif.web.ManifestRequestUtils.*;
+import static eu.europeana.iiif.model.ManifestDefinitions.MEDIA_TYPE_CBOR;
+import static eu.europeana.iiif.model.ManifestDefinitions.MEDIA_TYPE_SMILE;
 
 /**
  * Rest controller that handles manifest requests
@@ -29,15 +39,21 @@ import static eu.europeana.iiif.AcceptUtils.*;
  * Created on 06-12-2017
  */
 @RestController
+@Profile("!reactive")
 @RequestMapping("/presentation")
 public class ManifestController {
 
     private static final Logger LOG = LogManager.getLogger(ManifestController.class);
 
     private ManifestService manifestService;
+    private ApiKeyScheduler apiKeyScheduler;
+    private PriorityLanes priorityLanes;
 
-    public ManifestController(ManifestService manifestService) {
+    public ManifestController(ManifestService manifestService, ApiKeyScheduler apiKeyScheduler,
+                              PriorityLanes priorityLanes) {
         this.manifestService = manifestService;
+        this.apiKeyScheduler = apiKeyScheduler;
+        this.priorityLanes = priorityLanes;
     }
 
     /**
@@ -62,13 +78,18 @@ public class ManifestController {
      * @param recordApi    (optional) alternative recordApi baseUrl to use for retrieving record data
      * @param addFullText  (optional) perform fulltext exists check or not`1
      * @param fullTextApi  (optional) alternative fullTextApi baseUrl to use for retrieving record data
+     * @param profile      (optional) predefined set of fields to return, either 'full' (default) or 'minimal'
+     * @param fields       (optional) comma-separated list of manifest fields to return, e.g. 'label,items.id,items.width'
+     * @param lang         (optional) comma-separated list of languages to keep in labels, summaries and metadata, e.g. 'nl,de'
+     * @param pageSize     (optional, v3 only) maximum number of canvases to include, remaining canvases can be
+     *                     retrieved in pages of the same size
      * @return JSON-LD string containing manifest
      * @throws EuropeanaApiException when something goes wrong during processing
      */
     @SuppressWarnings("squid:S00107") // too many parameters -> we cannot avoid it.
 
     @GetMapping(value = "/{collectionId}/{recordId}/manifest", headers = ACCEPT_JSON)
-    public ResponseEntity<String> manifestRequestJson(
+    public ResponseEntity<Object> manifestRequestJson(
             @PathVariable String collectionId,
             @PathVariable String recordId,
             @RequestParam(value = "wskey", required = true) String wskey,
@@ -76,8 +97,14 @@ public class ManifestController {
             @RequestParam(value = "recordApi", required = false) URL recordApi,
             @RequestParam(value = "fullText", required = false, defaultValue = "true") Boolean addFullText,
             @RequestParam(value = "fullTextApi", required = false) URL fullTextApi,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "lang", required = false) String lang,
+            @RequestParam(value = PAGE_SIZE, required = false) Integer pageSize,
             HttpServletRequest request) throws EuropeanaApiException {
-        return handleRequest(collectionId, recordId, wskey, version, recordApi, addFullText, fullTextApi, true, request);
+        return handleRequest(collectionId, recordId, wskey, version, recordApi, addFullText, fullTextApi,
+                ManifestProjection.of(profile, fields), getLanguageFilter(lang, request), getCanvasPageSize(pageSize),
+                ManifestEncoding.JSON, true, request);
     }
 
     @GetMapping(value = "/test/error")
@@ -86,7 +113,7 @@ public class ManifestController {
     }
 
     @GetMapping(value = "/{colId}/{recordId}/manifest", headers = ACCEPT_JSONLD)
-    public ResponseEntity<String> manifestRequestJsonLd(
+    public ResponseEntity<Object> manifestRequestJsonLd(
             @PathVariable String colId,
             @PathVariable String recordId,
             @RequestParam(value = "wskey", required = true) String wskey,
@@ -94,67 +121,252 @@ public class ManifestController {
             @RequestParam(value = "recordApi", required = false) URL recordApi,
             @RequestParam(value = "fullText", required = false, defaultValue = "true") Boolean addFullText,
             @RequestParam(value = "fullTextApi", required = false) URL fullTextApi,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "lang", required = false) String lang,
+            @RequestParam(value = PAGE_SIZE, required = false) Integer pageSize,
             HttpServletRequest request) throws EuropeanaApiException {
-        return handleRequest(colId, recordId, wskey, version, recordApi, addFullText, fullTextApi, false, request);
+        return handleRequest(colId, recordId, wskey, version, recordApi, addFullText, fullTextApi,
+                ManifestProjection.of(profile, fields), getLanguageFilter(lang, request), getCanvasPageSize(pageSize),
+                ManifestEncoding.JSON, false, request);
     }
 
-    private ResponseEntity<String> handleRequest( String collectionId,
+    /**
+     * Handles manifest requests for binary encodings (Smile or CBOR). The manifest contains exactly the same data as
+     * a JSON-LD manifest and supports the same parameters (see manifestRequestJson)
+     *
+     * @return binary encoded manifest
+     * @throws EuropeanaApiException when something goes wrong during processing
+     */
+    @SuppressWarnings("squid:S00107") // too many parameters -> we cannot avoid it.
+    @GetMapping(value = "/{collectionId}/{recordId}/manifest", produces = {MEDIA_TYPE_SMILE, MEDIA_TYPE_CBOR})
+    public ResponseEntity<Object> manifestRequestBinary(
+            @PathVariable String collectionId,
+            @PathVariable String recordId,
+            @RequestParam(value = "wskey", required = true) String wskey,
+            @RequestParam(value = "format", required = false) String version,
+            @RequestParam(value = "recordApi", required = false) URL recordApi,
+            @RequestParam(value = "fullText", required = false, defaultValue = "true") Boolean addFullText,
+            @RequestParam(value = "fullTextApi", required = false) URL fullTextApi,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "lang", required = false) String lang,
+            @RequestParam(value = PAGE_SIZE, required = false) Integer pageSize,
+            HttpServletRequest request) throws EuropeanaApiException {
+        return handleRequest(collectionId, recordId, wskey, version, recordApi, addFullText, fullTextApi,
+                ManifestProjection.of(profile, fields), getLanguageFilter(lang, request), getCanvasPageSize(pageSize),
+                ManifestEncoding.fromAccept(request.getHeader(ACCEPT)), false, request);
+    }
+
+    private ResponseEntity<Object> handleRequest( String collectionId,
             String recordId,
             String wskey,
             String version,
             URL recordApi,
             boolean addFullText,
             URL fullTextApi,
+            ManifestProjection projection,
+            LanguageFilter languages,
+            int canvasPageSize,
+            ManifestEncoding encoding,
             boolean isJson,
             HttpServletRequest request) throws EuropeanaApiException {
         String id = "/" + collectionId + "/" + recordId;
-        ValidateUtils.validateWskeyFormat(wskey);
-        ValidateUtils.validateRecordIdFormat(id);
+        StageTimings timings = StageTimings.current();
+        long start = timings.begin();
+        validateRequest(id, wskey, recordApi, fullTextApi);
+        String iiifVersion = getIIIFVersion(request, version);
+        timings.end(StageTimings.Stage.VALIDATION, start);
+        timings.setIiifVersion(iiifVersion);
+        try (ApiKeyScheduler.Permit permit = apiKeyScheduler.acquire(wskey)) {
 
-        if (recordApi != null) {
-            ValidateUtils.validateApiUrlFormat(recordApi);
-        }
-        if (fullTextApi != null) {
-            ValidateUtils.validateApiUrlFormat(fullTextApi);
-        }
+            // canvas paging is only supported for v3
+            if (!"3".equalsIgnoreCase(iiifVersion)) {
+                canvasPageSize = 0;
+            }
+
+            ManifestModel model = manifestService.getManifestModel(id, wskey, recordApi);
+            start = timings.begin();
+            ZonedDateTime lastModified = model.getLastModified();
+            String eTag = generateETag(manifestService.getSettings(), id, lastModified, iiifVersion, projection, languages,
+                    canvasPageSize, encoding);
+            HttpHeaders headers = generateCacheHeaders(manifestService.getSettings(), id, eTag, lastModified,
+                    getVary(manifestService.getSettings()));
+            timings.end(StageTimings.Stage.ETAG, start);
+            start = timings.begin();
+            ResponseEntity cached = CacheUtils.checkCached(request, headers, lastModified, eTag);
+            timings.end(StageTimings.Stage.NOT_MODIFIED_CHECK, start);
+            if (cached != null) {
+                LOG.debug("Returning 304 response");
+                return cached;
+            }
 
-        String iiifVersion = AcceptUtils.getRequestVersion(request, version);
-        if (StringUtils.isEmpty(iiifVersion)) {
-            throw new InvalidIIIFVersionException(ACCEPT_VERSION_INVALID);
+            // full text is retrieved here, so only mapping and serialization of large records is done on a separate lane
+            FullTextSummary fullText = manifestService.getFullTextSummary(model.getEuropeanaId(), addFullText, fullTextApi,
+                    projection);
+            int pageSize = canvasPageSize;
+            return priorityLanes.execute(model, pageSize <= 0, () -> {
+                Object manifest;
+                if ("3".equalsIgnoreCase(iiifVersion)) {
+                    manifest = manifestService.generateManifestV3(model, fullText, projection, languages, pageSize);
+                } else {
+                    manifest = manifestService.generateManifestV2(model, fullText, projection, languages); // fallback option
+                }
+                checkDegraded(manifestService.getSettings(), headers, manifest);
+                if (encoding.isBinary()) {
+                    headers.add(HttpHeaders.CONTENT_TYPE, getBinaryContentType(encoding, iiifVersion));
+                    return new ResponseEntity<>(manifestService.serializeManifest(manifest, encoding), headers, HttpStatus.OK);
+                }
+                AcceptUtils.addContentTypeToResponseHeader(headers, iiifVersion, isJson);
+                return new ResponseEntity<>(manifestService.serializeManifest(manifest), headers, HttpStatus.OK);
+            });
         }
+    }
 
-        String json = manifestService.getRecordJson(id, wskey, recordApi);
-        ZonedDateTime lastModified = EdmManifestUtils.getRecordTimestampUpdate(json);
-        String eTag = generateETag(id, lastModified, iiifVersion);
-        HttpHeaders headers = CacheUtils.generateCacheHeaders("no-cache", eTag, lastModified, ACCEPT);
-        ResponseEntity cached = CacheUtils.checkCached(request, headers, lastModified, eTag);
-        if (cached != null) {
-            LOG.debug("Returning 304 response");
-            return cached;
+    /**
+     * Handles requests for a page of (IIIF v3) canvases of a manifest. Links to these pages are included in manifests
+     * that are requested with a pageSize parameter.
+     *
+     * @param collectionId (required field)
+     * @param recordId     (required field)
+     * @param page         (required field) number of the page to return, first page is 1
+     * @param wskey        apikey (required field)
+     * @param pageSize     (optional) number of canvases per page
+     * @param addFullText  (optional) perform fulltext exists check or not
+     * @param fullTextApi  (optional) alternative fullTextApi baseUrl to use for retrieving record data
+     * @param profile      (optional) predefined set of fields to return, either 'full' (default) or 'minimal'
+     * @param fields       (optional) comma-separated list of canvas fields to return, e.g. 'items.id,items.width'
+     * @return JSON-LD string containing a page of canvases
+     * @throws EuropeanaApiException when something goes wrong during processing
+     */
+    @SuppressWarnings("squid:S00107") // too many parameters -> we cannot avoid it.
+    @GetMapping(value = "/{collectionId}/{recordId}/canvases/{page}")
+    public ResponseEntity<String> canvasPageRequest(
+            @PathVariable String collectionId,
+            @PathVariable String recordId,
+            @PathVariable int page,
+            @RequestParam(value = "wskey", required = true) String wskey,
+            @RequestParam(value = PAGE_SIZE, required = false, defaultValue = DEFAULT_CANVAS_PAGE_SIZE) Integer pageSize,
+            @RequestParam(value = "fullText", required = false, defaultValue = "true") Boolean addFullText,
+            @RequestParam(value = "fullTextApi", required = false) URL fullTextApi,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestParam(value = "fields", required = false) String fields,
+            HttpServletRequest request) throws EuropeanaApiException {
+        String id = "/" + collectionId + "/" + recordId;
+        StageTimings timings = StageTimings.current();
+        long start = timings.begin();
+        validateRequest(id, wskey, null, fullTextApi);
+        int canvasPageSize = getCanvasPageSize(pageSize);
+        if (canvasPageSize == 0) {
+            throw new InvalidRequestParamException(PAGE_SIZE, String.valueOf(pageSize));
         }
+        timings.end(StageTimings.Stage.VALIDATION, start);
+        timings.setIiifVersion("3");
+        try (ApiKeyScheduler.Permit permit = apiKeyScheduler.acquire(wskey)) {
+            ManifestProjection projection = ManifestProjection.of(profile, fields);
 
-        Object manifest;
-        if ("3".equalsIgnoreCase(iiifVersion)) {
-            if (addFullText){
-                manifest = manifestService.generateManifestV3(json, fullTextApi);
-            } else {
-                manifest = manifestService.generateManifestV3(json);
-            }
-        } else {
-            if (addFullText){
-                manifest = manifestService.generateManifestV2(json, fullTextApi); // fallback option
-            } else {
-                manifest = manifestService.generateManifestV2(json); // fallback option
+            ManifestModel model = manifestService.getManifestModel(id, wskey, null);
+            start = timings.begin();
+            ZonedDateTime lastModified = model.getLastModified();
+            String eTag = CacheUtils.generateETag(getETagData(manifestService.getSettings(), id, lastModified, "3",
+                    projection, LanguageFilter.ALL, canvasPageSize) + "canvases/" + page, true);
+            HttpHeaders headers = generateCacheHeaders(manifestService.getSettings(), id, eTag, lastModified, ACCEPT);
+            timings.end(StageTimings.Stage.ETAG, start);
+            start = timings.begin();
+            ResponseEntity cached = CacheUtils.checkCached(request, headers, lastModified, eTag);
+            timings.end(StageTimings.Stage.NOT_MODIFIED_CHECK, start);
+            if (cached != null) {
+                LOG.debug("Returning 304 response");
+                return cached;
             }
+
+            boolean isJson = isJsonRequested(request.getHeader(ACCEPT));
+            FullTextSummary fullText = manifestService.getFullTextSummary(model.getEuropeanaId(), addFullText, fullTextApi,
+                    projection);
+            return priorityLanes.execute(model, false, () -> {
+                Object canvasPage = manifestService.generateCanvasPageV3(model, page, canvasPageSize, fullText, projection);
+                checkDegraded(manifestService.getSettings(), headers, canvasPage);
+                AcceptUtils.addContentTypeToResponseHeader(headers, "3", isJson);
+                return new ResponseEntity<>(manifestService.serializeManifest(canvasPage), headers, HttpStatus.OK);
+            });
         }
-        AcceptUtils.addContentTypeToResponseHeader(headers, iiifVersion, isJson);
-        return new ResponseEntity<>(manifestService.serializeManifest(manifest), headers, HttpStatus.OK);
     }
 
+    /**
+     * Handles requests for a single canvas of a manifest, so canvas ids can be dereferenced without retrieving the
+     * entire manifest
+     *
+     * @param collectionId (required field)
+     * @param recordId     (required field)
+     * @param canvasId     (required field) canvas number, either with or without 'p' prefix (e.g. 'p1' or '1')
+     * @param wskey        apikey (required field)
+     * @param version      (optional) indicates which IIIF version to generate, either '2' or '3'
+     * @param addFullText  (optional) perform fulltext exists check or not
+     * @param fullTextApi  (optional) alternative fullTextApi baseUrl to use for retrieving record data
+     * @param profile      (optional) predefined set of fields to return, either 'full' (default) or 'minimal'
+     * @param fields       (optional) comma-separated list of canvas fields to return, e.g. 'items.id,items.width'
+     * @return JSON-LD string containing the canvas
+     * @throws EuropeanaApiException when something goes wrong during processing
+     */
+    @SuppressWarnings("squid:S00107") // too many parameters -> we cannot avoid it.
+    @GetMapping(value = "/{collectionId}/{recordId}/canvas/{canvasId}")
+    public ResponseEntity<String> canvasRequest(
+            @PathVariable String collectionId,
+            @PathVariable String recordId,
+            @PathVariable String canvasId,
+            @RequestParam(value = "wskey", required = true) String wskey,
+            @RequestParam(value = "format", required = false) String version,
+            @RequestParam(value = "fullText", required = false, defaultValue = "true") Boolean addFullText,
+            @RequestParam(value = "fullTextApi", required = false) URL fullTextApi,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestParam(value = "fields", required = false) String fields,
+            HttpServletRequest request) throws EuropeanaApiException {
+        String id = "/" + collectionId + "/" + recordId;
+        StageTimings timings = StageTimings.current();
+        long start = timings.begin();
+        validateRequest(id, wskey, null, fullTextApi);
+        int order = getCanvasNumber(canvasId);
+        String iiifVersion = getIIIFVersion(request, version);
+        timings.end(StageTimings.Stage.VALIDATION, start);
+        timings.setIiifVersion(iiifVersion);
+        try (ApiKeyScheduler.Permit permit = apiKeyScheduler.acquire(wskey)) {
+            ManifestProjection projection = ManifestProjection.of(profile, fields);
+
+            ManifestModel model = manifestService.getManifestModel(id, wskey, null);
+            start = timings.begin();
+            ZonedDateTime lastModified = model.getLastModified();
+            String eTag = CacheUtils.generateETag(getETagData(manifestService.getSettings(), id, lastModified, iiifVersion,
+                    projection, LanguageFilter.ALL, 0) + "canvas/" + order, true);
+            HttpHeaders headers = generateCacheHeaders(manifestService.getSettings(), id, eTag, lastModified, ACCEPT);
+            timings.end(StageTimings.Stage.ETAG, start);
+            start = timings.begin();
+            ResponseEntity cached = CacheUtils.checkCached(request, headers, lastModified, eTag);
+            timings.end(StageTimings.Stage.NOT_MODIFIED_CHECK, start);
+            if (cached != null) {
+                LOG.debug("Returning 304 response");
+                return cached;
+            }
+
+            boolean isJson = isJsonRequested(request.getHeader(ACCEPT));
+            FullTextSummary fullText = manifestService.getFullTextSummary(model.getEuropeanaId(), addFullText, fullTextApi,
+                    projection);
+            return priorityLanes.execute(model, false, () -> {
+                Object canvas;
+                if ("3".equalsIgnoreCase(iiifVersion)) {
+                    canvas = manifestService.generateCanvasV3(model, order, fullText, projection);
+                } else {
+                    canvas = manifestService.generateCanvasV2(model, order, fullText, projection);
+                }
+                checkDegraded(manifestService.getSettings(), headers, canvas);
+                AcceptUtils.addContentTypeToResponseHeader(headers, iiifVersion, isJson);
+                return new ResponseEntity<>(manifestService.serializeManifest(canvas), headers, HttpStatus.OK);
+            });
+        }
+    }
 
-    private String generateETag(String recordId, ZonedDateTime recordUpdated, String iiifVersion) {
-        String hashData = recordId + recordUpdated + manifestService.getSettings().getAppVersion() + iiifVersion;
-        return CacheUtils.generateETag(hashData, true);
+    private LanguageFilter getLanguageFilter(String lang, HttpServletRequest request) throws InvalidRequestParamException {
+        return ManifestRequestUtils.getLanguageFilter(manifestService.getSettings(), lang,
+                request.getHeader(HttpHeaders.ACCEPT_LANGUAGE));
     }
 
 }
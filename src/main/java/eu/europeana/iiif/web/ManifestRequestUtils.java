@@ -0,0 +1,211 @@
+package eu.europeana.iiif.web;
+
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.AcceptUtils;
+import eu.europeana.iiif.IIIFDefinitions;
+import eu.europeana.iiif.config.CachePolicy;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.exception.InvalidIIIFVersionException;
+import eu.europeana.iiif.exception.InvalidRequestParamException;
+import eu.europeana.iiif.model.FullTextLinked;
+import eu.europeana.iiif.model.LanguageFilter;
+import eu.europeana.iiif.model.ManifestEncoding;
+import eu.europeana.iiif.model.ManifestProjection;
+import eu.europeana.iiif.service.CacheUtils;
+import eu.europeana.iiif.service.ValidateUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpHeaders;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.URL;
+import java.time.ZonedDateTime;
+
+import static eu.europeana.iiif.AcceptUtils.*;
+
+/**
+ * Request handling shared by the servlet (ManifestController) and reactive (ReactiveManifestController) endpoints,
+ * so both return exactly the same responses
+ */
+final class ManifestRequestUtils {
+
+    static final String PAGE_SIZE = "pageSize";
+    static final int MAX_CANVAS_PAGE_SIZE = 1000;
+    static final String DEFAULT_CANVAS_PAGE_SIZE = "100";
+
+    private static final String VERSION_2 = "2";
+    private static final String VERSION_3 = "3";
+
+    private ManifestRequestUtils() {
+        // empty constructor to prevent initialization
+    }
+
+    /**
+     * Validates the record id, API key and optional alternative API urls of a request
+     */
+    static void validateRequest(String id, String wskey, URL recordApi, URL fullTextApi) throws EuropeanaApiException {
+        ValidateUtils.validateWskeyFormat(wskey);
+        ValidateUtils.validateRecordIdFormat(id);
+        if (recordApi != null) {
+            ValidateUtils.validateApiUrlFormat(recordApi);
+        }
+        if (fullTextApi != null) {
+            ValidateUtils.validateApiUrlFormat(fullTextApi);
+        }
+    }
+
+    /**
+     * Determine the requested IIIF version from the format parameter or Accept header
+     * @throws InvalidIIIFVersionException if the requested version isn't supported
+     */
+    static String getIIIFVersion(HttpServletRequest request, String format) throws InvalidIIIFVersionException {
+        String iiifVersion = AcceptUtils.getRequestVersion(request, format);
+        if (StringUtils.isEmpty(iiifVersion)) {
+            throw new InvalidIIIFVersionException(ACCEPT_VERSION_INVALID);
+        }
+        return iiifVersion;
+    }
+
+    /**
+     * Determine the requested IIIF version of a reactive request, in the same way as AcceptUtils does for servlet
+     * requests: the format parameter takes precedence, otherwise version 3 is returned only when its profile is in the
+     * Accept header, and version 2 in all other cases.
+     * @throws InvalidIIIFVersionException if the requested version isn't supported
+     */
+    static String getIIIFVersion(HttpHeaders headers, String format) throws InvalidIIIFVersionException {
+        String iiifVersion;
+        if (StringUtils.isNotEmpty(format)) {
+            iiifVersion = (VERSION_2.equals(format) || VERSION_3.equals(format) ? format : null);
+        } else {
+            String accept = String.join(",", headers.getOrEmpty(ACCEPT));
+            iiifVersion = (StringUtils.containsIgnoreCase(accept, IIIFDefinitions.MEDIA_TYPE_IIIF_V3) ? VERSION_3 : VERSION_2);
+        }
+        if (StringUtils.isEmpty(iiifVersion)) {
+            throw new InvalidIIIFVersionException(ACCEPT_VERSION_INVALID);
+        }
+        return iiifVersion;
+    }
+
+    /**
+     * Binary encodings don't have their own IIIF profile, so we add the profile of the IIIF version to the media type
+     */
+    static String getBinaryContentType(ManifestEncoding encoding, String iiifVersion) {
+        return encoding.getMediaType() + ";profile=\""
+                + ("3".equalsIgnoreCase(iiifVersion) ? IIIFDefinitions.MEDIA_TYPE_IIIF_V3 : IIIFDefinitions.MEDIA_TYPE_IIIF_V2) + "\"";
+    }
+
+    /**
+     * Canvas ids end with 'p' followed by the canvas number, but we also accept only the number
+     */
+    static int getCanvasNumber(String canvasId) throws InvalidRequestParamException {
+        String number = StringUtils.removeStartIgnoreCase(canvasId, "p");
+        if (!StringUtils.isNumeric(number) || number.length() > 9) {
+            throw new InvalidRequestParamException("canvasId", canvasId);
+        }
+        return Integer.parseInt(number);
+    }
+
+    /**
+     * Returns true unless the client explicitly asked for JSON-LD
+     */
+    static boolean isJsonRequested(String accept) {
+        return accept == null || !accept.contains(MEDIA_TYPE_JSONLD);
+    }
+
+    /**
+     * Validates the page size. Returns 0 if no page size was provided (meaning no paging)
+     */
+    static int getCanvasPageSize(Integer pageSize) throws InvalidRequestParamException {
+        if (pageSize == null) {
+            return 0;
+        }
+        if (pageSize < 1 || pageSize > MAX_CANVAS_PAGE_SIZE) {
+            throw new InvalidRequestParamException(PAGE_SIZE, String.valueOf(pageSize));
+        }
+        return pageSize;
+    }
+
+    /**
+     * The lang parameter always takes precedence. The Accept-Language header is only used if that's enabled
+     */
+    static LanguageFilter getLanguageFilter(ManifestSettings settings, String lang, String acceptLanguage)
+            throws InvalidRequestParamException {
+        return LanguageFilter.of(lang, isAcceptLanguageEnabled(settings) ? acceptLanguage : null);
+    }
+
+    private static boolean isAcceptLanguageEnabled(ManifestSettings settings) {
+        return Boolean.TRUE.equals(settings.getAcceptLanguageEnabled());
+    }
+
+    static String getVary(ManifestSettings settings) {
+        if (isAcceptLanguageEnabled(settings)) {
+            return ACCEPT + ", " + HttpHeaders.ACCEPT_LANGUAGE;
+        }
+        return ACCEPT;
+    }
+
+    /**
+     * Generates the caching headers for a (complete) response for a record, including a Surrogate-Key header with
+     * the record and dataset id so a CDN can purge all responses for a record or dataset
+     */
+    static HttpHeaders generateCacheHeaders(ManifestSettings settings, String recordId, String eTag,
+                                            ZonedDateTime lastModified, String vary) {
+        HttpHeaders headers = CacheUtils.generateCacheHeaders(getCacheControl(settings, CachePolicy.ResponseClass.NORMAL),
+                eTag, lastModified, vary);
+        headers.add(CacheUtils.SURROGATE_KEY, getSurrogateKey(recordId));
+        return headers;
+    }
+
+    /**
+     * @param recordId consisting of dataset ID and record ID separated by a slash (with leading slash)
+     * @return space-separated surrogate keys for the record and its dataset, e.g. 'record/1/2 dataset/1'
+     */
+    static String getSurrogateKey(String recordId) {
+        return "record" + recordId + " dataset/" + StringUtils.substringBetween(recordId, "/", "/");
+    }
+
+    static String getCacheControl(ManifestSettings settings, CachePolicy.ResponseClass responseClass) {
+        String cacheControl = settings.getCacheControl(responseClass);
+        return (cacheControl == null ? CachePolicy.DEFAULT_CACHE_CONTROL : cacheControl);
+    }
+
+    /**
+     * If full-text links are missing from a generated manifest or canvas, the response gets the caching policy for
+     * degraded responses. The ETag and Last-Modified headers are removed so clients and CDNs can't revalidate it, but
+     * have to retrieve the complete version.
+     */
+    static void checkDegraded(ManifestSettings settings, HttpHeaders headers, Object manifest) {
+        if (manifest instanceof FullTextLinked && ((FullTextLinked) manifest).isFullTextIncomplete()) {
+            headers.set(HttpHeaders.CACHE_CONTROL, getCacheControl(settings, CachePolicy.ResponseClass.DEGRADED));
+            headers.remove(HttpHeaders.ETAG);
+            headers.remove(HttpHeaders.LAST_MODIFIED);
+        }
+    }
+
+    static String generateETag(ManifestSettings settings, String recordId, ZonedDateTime recordUpdated,
+                               String iiifVersion, ManifestProjection projection, LanguageFilter languages,
+                               int canvasPageSize, ManifestEncoding encoding) {
+        String hashData = getETagData(settings, recordId, recordUpdated, iiifVersion, projection, languages, canvasPageSize);
+        // binary encodings contain the same data, but are a different representation so need a different eTag
+        if (encoding.isBinary()) {
+            hashData = hashData + encoding.name();
+        }
+        return CacheUtils.generateETag(hashData, true);
+    }
+
+    static String getETagData(ManifestSettings settings, String recordId, ZonedDateTime recordUpdated,
+                              String iiifVersion, ManifestProjection projection, LanguageFilter languages,
+                              int canvasPageSize) {
+        String hashData = recordId + recordUpdated + settings.getAppVersion() + iiifVersion;
+        // full manifests keep their original eTag, every other projection or language selection gets its own
+        if (!projection.isFull()) {
+            hashData = hashData + projection.getKey();
+        }
+        if (!languages.isAll()) {
+            hashData = hashData + "lang=" + languages.getKey();
+        }
+        if (canvasPageSize > 0) {
+            hashData = hashData + PAGE_SIZE + "=" + canvasPageSize;
+        }
+        return hashData;
+    }
+}
@@ -0,0 +1,295 @@
+package eu.europeana.iiif.web;
+
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.AcceptUtils;
+import eu.europeana.iiif.exception.InvalidRequestParamException;
+import eu.europeana.iiif.exception.ManifestInvalidUrlException;
+import eu.europeana.iiif.model.LanguageFilter;
+import eu.europeana.iiif.model.ManifestEncoding;
+import eu.europeana.iiif.model.ManifestProjection;
+import eu.europeana.iiif.service.CacheUtils;
+import eu.europeana.iiif.service.ReactiveManifestService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.net.URL;
+import java.time.ZonedDateTime;
+
+import static eu.europeana.iiif.AcceptUtils.*;
+import static eu.europeana.iiif.model.ManifestDefinitions.MEDIA_TYPE_CBOR;
+import static eu.europeana.iiif.model.ManifestDefinitions.MEDIA_TYPE_SMILE;
+import static eu.europeana.iiif.web.ManifestRequestUtils.*;
+
+/**
+ * Non-blocking (WebFlux) variant of the ManifestController, used when running with the 'reactive' profile. It
+ * supports exactly the same requests and returns the same responses. See ManifestController for documentation of the
+ * request parameters.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/presentation")
+public class ReactiveManifestController {
+
+    private static final Logger LOG = LogManager.getLogger(ReactiveManifestController.class);
+
+    private final ReactiveManifestService manifestService;
+
+    public ReactiveManifestController(ReactiveManifestService manifestService) {
+        this.manifestService = manifestService;
+    }
+
+    /**
+     * handles Invalid Urls like '/x/y/', '/x/manifest' , '/manifest'
+     * @throws ManifestInvalidUrlException always
+     */
+    @GetMapping(value = {"/{collectionId}/{recordId}", "/{Id}/manifest", "/manifest"})
+    public Mono<ResponseEntity<String>> invalidMappingUrls() throws ManifestInvalidUrlException {
+        throw new ManifestInvalidUrlException("Either recordId or collectionId is missing. Correct url is /{collectionId}/{recordId}/manifest");
+    }
+
+    /**
+     * Handles manifest requests
+     * @return JSON-LD manifest
+     * @throws EuropeanaApiException when there is a problem with the request parameters
+     */
+    @SuppressWarnings("squid:S00107") // too many parameters -> we cannot avoid it.
+    @GetMapping(value = "/{collectionId}/{recordId}/manifest", headers = ACCEPT_JSON)
+    public Mono<ResponseEntity<byte[]>> manifestRequestJson(
+            @PathVariable String collectionId,
+            @PathVariable String recordId,
+            @RequestParam(value = "wskey", required = true) String wskey,
+            @RequestParam(value = "format", required = false) String version,
+            @RequestParam(value = "recordApi", required = false) URL recordApi,
+            @RequestParam(value = "fullText", required = false, defaultValue = "true") Boolean addFullText,
+            @RequestParam(value = "fullTextApi", required = false) URL fullTextApi,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "lang", required = false) String lang,
+            @RequestParam(value = PAGE_SIZE, required = false) Integer pageSize,
+            ServerHttpRequest request) throws EuropeanaApiException {
+        return handleRequest(collectionId, recordId, wskey, version, recordApi, addFullText, fullTextApi,
+                ManifestProjection.of(profile, fields), getLanguageFilter(lang, request), getCanvasPageSize(pageSize),
+                ManifestEncoding.JSON, true, request);
+    }
+
+    /**
+     * Handles manifest requests for JSON-LD
+     * @return JSON-LD manifest
+     * @throws EuropeanaApiException when there is a problem with the request parameters
+     */
+    @SuppressWarnings("squid:S00107") // too many parameters -> we cannot avoid it.
+    @GetMapping(value = "/{collectionId}/{recordId}/manifest", headers = ACCEPT_JSONLD)
+    public Mono<ResponseEntity<byte[]>> manifestRequestJsonLd(
+            @PathVariable String collectionId,
+            @PathVariable String recordId,
+            @RequestParam(value = "wskey", required = true) String wskey,
+            @RequestParam(value = "format", required = false) String version,
+            @RequestParam(value = "recordApi", required = false) URL recordApi,
+            @RequestParam(value = "fullText", required = false, defaultValue = "true") Boolean addFullText,
+            @RequestParam(value = "fullTextApi", required = false) URL fullTextApi,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "lang", required = false) String lang,
+            @RequestParam(value = PAGE_SIZE, required = false) Integer pageSize,
+            ServerHttpRequest request) throws EuropeanaApiException {
+        return handleRequest(collectionId, recordId, wskey, version, recordApi, addFullText, fullTextApi,
+                ManifestProjection.of(profile, fields), getLanguageFilter(lang, request), getCanvasPageSize(pageSize),
+                ManifestEncoding.JSON, false, request);
+    }
+
+    /**
+     * Handles manifest requests for binary encodings (Smile or CBOR)
+     * @return binary encoded manifest
+     * @throws EuropeanaApiException when there is a problem with the request parameters
+     */
+    @SuppressWarnings("squid:S00107") // too many parameters -> we cannot avoid it.
+    @GetMapping(value = "/{collectionId}/{recordId}/manifest", produces = {MEDIA_TYPE_SMILE, MEDIA_TYPE_CBOR})
+    public Mono<ResponseEntity<byte[]>> manifestRequestBinary(
+            @PathVariable String collectionId,
+            @PathVariable String recordId,
+            @RequestParam(value = "wskey", required = true) String wskey,
+            @RequestParam(value = "format", required = false) String version,
+            @RequestParam(value = "recordApi", required = false) URL recordApi,
+            @RequestParam(value = "fullText", required = false, defaultValue = "true") Boolean addFullText,
+            @RequestParam(value = "fullTextApi", required = false) URL fullTextApi,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "lang", required = false) String lang,
+            @RequestParam(value = PAGE_SIZE, required = false) Integer pageSize,
+            ServerHttpRequest request) throws EuropeanaApiException {
+        return handleRequest(collectionId, recordId, wskey, version, recordApi, addFullText, fullTextApi,
+                ManifestProjection.of(profile, fields), getLanguageFilter(lang, request), getCanvasPageSize(pageSize),
+                ManifestEncoding.fromAccept(request.getHeaders().getFirst(ACCEPT)), false, request);
+    }
+
+    @SuppressWarnings("squid:S00107") // too many parameters -> we cannot avoid it.
+    private Mono<ResponseEntity<byte[]>> handleRequest(String collectionId,
+            String recordId,
+            String wskey,
+            String version,
+            URL recordApi,
+            boolean addFullText,
+            URL fullTextApi,
+            ManifestProjection projection,
+            LanguageFilter languages,
+            int pageSize,
+            ManifestEncoding encoding,
+            boolean isJson,
+            ServerHttpRequest request) throws EuropeanaApiException {
+        String id = "/" + collectionId + "/" + recordId;
+        validateRequest(id, wskey, recordApi, fullTextApi);
+        String iiifVersion = getIIIFVersion(request.getHeaders(), version);
+        boolean isV3 = "3".equalsIgnoreCase(iiifVersion);
+        // canvas paging is only supported for v3
+        int canvasPageSize = (isV3 ? pageSize : 0);
+
+        return manifestService.getManifestModel(id, wskey, recordApi).flatMap(model -> {
+            ZonedDateTime lastModified = model.getLastModified();
+            String eTag = generateETag(manifestService.getSettings(), id, lastModified, iiifVersion, projection,
+                    languages, canvasPageSize, encoding);
+            HttpHeaders headers = generateCacheHeaders(manifestService.getSettings(), id, eTag, lastModified,
+                    getVary(manifestService.getSettings()));
+            ResponseEntity<byte[]> cached = checkCached(request, headers, lastModified, eTag);
+            if (cached != null) {
+                LOG.debug("Returning 304 response");
+                return Mono.just(cached);
+            }
+
+            Mono<?> manifest;
+            if (isV3) {
+                manifest = manifestService.generateManifestV3(model, addFullText, fullTextApi, projection, languages, canvasPageSize);
+            } else {
+                manifest = manifestService.generateManifestV2(model, addFullText, fullTextApi, projection, languages); // fallback option
+            }
+            if (encoding.isBinary()) {
+                headers.add(HttpHeaders.CONTENT_TYPE, getBinaryContentType(encoding, iiifVersion));
+            } else {
+                AcceptUtils.addContentTypeToResponseHeader(headers, iiifVersion, isJson);
+            }
+            return manifest.flatMap(m -> {
+                        checkDegraded(manifestService.getSettings(), headers, m);
+                        return manifestService.serialize(m, encoding);
+                    })
+                    .map(body -> new ResponseEntity<>(body, headers, HttpStatus.OK));
+        });
+    }
+
+    /**
+     * Handles requests for a page of (IIIF v3) canvases of a manifest
+     * @return JSON-LD page of canvases
+     * @throws EuropeanaApiException when there is a problem with the request parameters
+     */
+    @SuppressWarnings("squid:S00107") // too many parameters -> we cannot avoid it.
+    @GetMapping(value = "/{collectionId}/{recordId}/canvases/{page}")
+    public Mono<ResponseEntity<byte[]>> canvasPageRequest(
+            @PathVariable String collectionId,
+            @PathVariable String recordId,
+            @PathVariable int page,
+            @RequestParam(value = "wskey", required = true) String wskey,
+            @RequestParam(value = PAGE_SIZE, required = false, defaultValue = DEFAULT_CANVAS_PAGE_SIZE) Integer pageSize,
+            @RequestParam(value = "fullText", required = false, defaultValue = "true") Boolean addFullText,
+            @RequestParam(value = "fullTextApi", required = false) URL fullTextApi,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestParam(value = "fields", required = false) String fields,
+            ServerHttpRequest request) throws EuropeanaApiException {
+        String id = "/" + collectionId + "/" + recordId;
+        validateRequest(id, wskey, null, fullTextApi);
+        int canvasPageSize = getCanvasPageSize(pageSize);
+        if (canvasPageSize == 0) {
+            throw new InvalidRequestParamException(PAGE_SIZE, String.valueOf(pageSize));
+        }
+        ManifestProjection projection = ManifestProjection.of(profile, fields);
+
+        return manifestService.getManifestModel(id, wskey, null).flatMap(model -> {
+            ZonedDateTime lastModified = model.getLastModified();
+            String eTag = CacheUtils.generateETag(getETagData(manifestService.getSettings(), id, lastModified, "3",
+                    projection, LanguageFilter.ALL, canvasPageSize) + "canvases/" + page, true);
+            HttpHeaders headers = generateCacheHeaders(manifestService.getSettings(), id, eTag, lastModified, ACCEPT);
+            ResponseEntity<byte[]> cached = checkCached(request, headers, lastModified, eTag);
+            if (cached != null) {
+                LOG.debug("Returning 304 response");
+                return Mono.just(cached);
+            }
+
+            AcceptUtils.addContentTypeToResponseHeader(headers, "3", isJsonRequested(request.getHeaders().getFirst(ACCEPT)));
+            return manifestService.generateCanvasPageV3(model, page, canvasPageSize, addFullText, fullTextApi, projection)
+                    .flatMap(canvasPage -> {
+                        checkDegraded(manifestService.getSettings(), headers, canvasPage);
+                        return manifestService.serialize(canvasPage, ManifestEncoding.JSON);
+                    })
+                    .map(body -> new ResponseEntity<>(body, headers, HttpStatus.OK));
+        });
+    }
+
+    /**
+     * Handles requests for a single canvas of a manifest
+     * @return JSON-LD canvas
+     * @throws EuropeanaApiException when there is a problem with the request parameters
+     */
+    @SuppressWarnings("squid:S00107") // too many parameters -> we cannot avoid it.
+    @GetMapping(value = "/{collectionId}/{recordId}/canvas/{canvasId}")
+    public Mono<ResponseEntity<byte[]>> canvasRequest(
+            @PathVariable String collectionId,
+            @PathVariable String recordId,
+            @PathVariable String canvasId,
+            @RequestParam(value = "wskey", required = true) String wskey,
+            @RequestParam(value = "format", required = false) String version,
+            @RequestParam(value = "fullText", required = false, defaultValue = "true") Boolean addFullText,
+            @RequestParam(value = "fullTextApi", required = false) URL fullTextApi,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestParam(value = "fields", required = false) String fields,
+            ServerHttpRequest request) throws EuropeanaApiException {
+        String id = "/" + collectionId + "/" + recordId;
+        validateRequest(id, wskey, null, fullTextApi);
+        int order = getCanvasNumber(canvasId);
+        String iiifVersion = getIIIFVersion(request.getHeaders(), version);
+        ManifestProjection projection = ManifestProjection.of(profile, fields);
+
+        return manifestService.getManifestModel(id, wskey, null).flatMap(model -> {
+            ZonedDateTime lastModified = model.getLastModified();
+            String eTag = CacheUtils.generateETag(getETagData(manifestService.getSettings(), id, lastModified, iiifVersion,
+                    projection, LanguageFilter.ALL, 0) + "canvas/" + order, true);
+            HttpHeaders headers = generateCacheHeaders(manifestService.getSettings(), id, eTag, lastModified, ACCEPT);
+            ResponseEntity<byte[]> cached = checkCached(request, headers, lastModified, eTag);
+            if (cached != null) {
+                LOG.debug("Returning 304 response");
+                return Mono.just(cached);
+            }
+
+            Mono<?> canvas;
+            if ("3".equalsIgnoreCase(iiifVersion)) {
+                canvas = manifestService.generateCanvasV3(model, order, addFullText, fullTextApi, projection);
+            } else {
+                canvas = manifestService.generateCanvasV2(model, order, addFullText, fullTextApi, projection);
+            }
+            AcceptUtils.addContentTypeToResponseHeader(headers, iiifVersion, isJsonRequested(request.getHeaders().getFirst(ACCEPT)));
+            return canvas.flatMap(c -> {
+                        checkDegraded(manifestService.getSettings(), headers, c);
+                        return manifestService.serialize(c, ManifestEncoding.JSON);
+                    })
+                    .map(body -> new ResponseEntity<>(body, headers, HttpStatus.OK));
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ResponseEntity<byte[]> checkCached(ServerHttpRequest request, HttpHeaders headers,
+                                                      ZonedDateTime lastModified, String eTag) {
+        HttpHeaders requestHeaders = request.getHeaders();
+        return CacheUtils.checkCached(requestHeaders.getFirst(HttpHeaders.IF_MODIFIED_SINCE),
+                requestHeaders.getFirst(HttpHeaders.IF_NONE_MATCH), requestHeaders.getFirst(HttpHeaders.IF_MATCH),
+                headers, lastModified, eTag);
+    }
+
+    private LanguageFilter getLanguageFilter(String lang, ServerHttpRequest request) throws InvalidRequestParamException {
+        return ManifestRequestUtils.getLanguageFilter(manifestService.getSettings(), lang,
+                request.getHeaders().getFirst(HttpHeaders.ACCEPT_LANGUAGE));
+    }
+
+}
@@ -0,0 +1,48 @@
+package eu.europeana.iiif.web;
+
+import eu.europeana.iiif.service.SlowRequestSample;
+import eu.europeana.iiif.service.SlowRequestSampler;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint (/actuator/slowrequests) that returns the most recent samples of slow manifest requests, most
+ * recent first. Samples contain record ids and timings, so the endpoint is not exposed by default; operators should
+ * only expose it on a separate, internal management port (see iiif.properties).
+ */
+@Component
+@Profile("!reactive")
+@Endpoint(id = "slowrequests")
+public class SlowRequestsEndpoint {
+
+    private final SlowRequestSampler sampler;
+
+    /**
+     * Create a new endpoint
+     * @param sampler the sampler that collects the slow requests
+     */
+    public SlowRequestsEndpoint(SlowRequestSampler sampler) {
+        this.sampler = sampler;
+    }
+
+    /**
+     * @return sampler settings and all kept samples
+     */
+    @ReadOperation
+    public Map<String, Object> slowRequests() {
+        List<SlowRequestSample> samples = sampler.getSamples();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", sampler.isEnabled());
+        result.put("thresholdMs", sampler.getThresholdMs());
+        result.put("maxSamples", sampler.getMaxSamples());
+        result.put("count", samples.size());
+        result.put("samples", samples);
+        return result;
+    }
+}
@@ -0,0 +1,324 @@
+package eu.europeana.iiif.web;
+
+import eu.europeana.iiif.service.AutoscalingMetrics;
+import eu.europeana.iiif.service.SlowRequestSampler;
+import eu.europeana.iiif.service.StageTimings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.StringMapMessage;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Times the stages of processing manifest, canvas page and canvas requests. For each request new StageTimings are bound
+ * to the request thread, so the controller and services can time their stages. When the request is done the duration
+ * of each executed stage is registered in the manifest.stage.latency timer, tagged with the stage, IIIF version,
+ * outcome of the request and the Record API status. Errors when requesting data from the Record API or Full-Text API
+ * are counted in manifest.upstream.errors, tagged with the API and exception type. The number of requests in progress
+ * is available as the {@link AutoscalingMetrics#METRIC_IN_FLIGHT} gauge.
+ *
+ * Optionally the durations of the main stages are also sent to the client in a Server-Timing header and/or written to
+ * the access log as separate fields, together with the request parameters (except the API key) and conditional
+ * headers, so a captured access log can be replayed. Nothing is formatted when both options are disabled. Requests that take longer
+ * than the threshold of the {@link SlowRequestSampler} are sampled with all their stage timings.
+ *
+ * Data warnings that were registered in the StageTimings (e.g. for each canvas of a large record) are logged as one
+ * event per type of warning when the request is done, with the number of occurrences and details of the first one.
+ */
+public class StageMetricsFilter extends OncePerRequestFilter {
+
+    static final String METRIC_STAGE_LATENCY = "manifest.stage.latency";
+    static final String METRIC_UPSTREAM_ERRORS = "manifest.upstream.errors";
+    static final String SERVER_TIMING = "Server-Timing";
+
+    private static final Logger ACCESS_LOG = LogManager.getLogger("eu.europeana.iiif.access");
+    private static final Logger EVENT_LOG = LogManager.getLogger("eu.europeana.iiif.events");
+
+    private static final Pattern RECORD_PATH = Pattern.compile("/presentation/[^/]+/[^/]+/(manifest|canvases/[^/]+|canvas/[^/]+)");
+    private static final String UNKNOWN = "unknown";
+    private static final String WSKEY_PARAM = "wskey=";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean serverTiming;
+    private final boolean accessLog;
+    private final SlowRequestSampler slowRequestSampler;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Create a new filter
+     * @param meterRegistry optional, registry for the stage metrics
+     * @param serverTiming if true a Server-Timing header is added to responses
+     * @param accessLog if true the stage durations of each request are written to the access log
+     */
+    public StageMetricsFilter(MeterRegistry meterRegistry, boolean serverTiming, boolean accessLog) {
+        this(meterRegistry, serverTiming, accessLog, null);
+    }
+
+    /**
+     * Create a new filter
+     * @param meterRegistry optional, registry for the stage metrics
+     * @param serverTiming if true a Server-Timing header is added to responses
+     * @param accessLog if true the stage durations of each request are written to the access log
+     * @param slowRequestSampler optional, sampler for requests that take longer than its threshold
+     */
+    public StageMetricsFilter(MeterRegistry meterRegistry, boolean serverTiming, boolean accessLog,
+                              SlowRequestSampler slowRequestSampler) {
+        this.meterRegistry = meterRegistry;
+        this.serverTiming = serverTiming;
+        this.accessLog = accessLog;
+        this.slowRequestSampler = (slowRequestSampler == null || !slowRequestSampler.isEnabled()
+                ? null : slowRequestSampler);
+        if (meterRegistry != null) {
+            Gauge.builder(AutoscalingMetrics.METRIC_IN_FLIGHT, inFlight, AtomicInteger::get)
+                    .description("Number of manifest, canvas page and canvas requests being processed")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.GET.matches(request.getMethod())
+                || !RECORD_PATH.matcher(request.getRequestURI().substring(request.getContextPath().length())).matches();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean completed = false;
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        try (StageTimings timings = StageTimings.start()) {
+            try {
+                if (serverTiming) {
+                    ServerTimingResponse wrapper = new ServerTimingResponse(response, timings);
+                    filterChain.doFilter(request, wrapper);
+                    wrapper.addServerTiming(); // in case nothing was written
+                } else {
+                    filterChain.doFilter(request, response);
+                }
+                completed = true;
+            } finally {
+                inFlight.decrementAndGet();
+                int status = (completed ? response.getStatus() : HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                if (meterRegistry != null) {
+                    record(timings, status);
+                }
+                if (accessLog) {
+                    log(request, timings, status);
+                }
+                if (timings.hasWarnings()) {
+                    logWarnings(request, timings);
+                }
+                if (slowRequestSampler != null) {
+                    slowRequestSampler.sample(request.getRequestURI(), status, System.nanoTime() - start, timings);
+                }
+            }
+        }
+    }
+
+    private void record(StageTimings timings, int status) {
+        String version = (timings.getIiifVersion() == null ? UNKNOWN : timings.getIiifVersion());
+        String outcome = getOutcome(status);
+        String upstreamStatus = getUpstreamStatus(timings);
+        for (StageTimings.Stage stage : StageTimings.Stage.values()) {
+            if (timings.isExecuted(stage)) {
+                Timer.builder(METRIC_STAGE_LATENCY)
+                        .description("Time spent in each stage of processing a manifest request")
+                        .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                        .tag("version", version)
+                        .tag("outcome", outcome)
+                        .tag("upstream_status", upstreamStatus)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(timings.getDuration(stage), TimeUnit.NANOSECONDS);
+            }
+        }
+        for (StageTimings.UpstreamError error : timings.getUpstreamErrors()) {
+            Counter.builder(METRIC_UPSTREAM_ERRORS)
+                    .description("Number of failed requests to the Record API and Full-Text API")
+                    .tag("upstream", error.getUpstream().name().toLowerCase(Locale.ROOT))
+                    .tag("exception", error.getException())
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    private static void log(HttpServletRequest request, StageTimings timings, int status) {
+        StringMapMessage message = new StringMapMessage(14)
+                .with("uri", request.getRequestURI())
+                .with("status", status)
+                .with("version", timings.getIiifVersion() == null ? UNKNOWN : timings.getIiifVersion())
+                .with("upstream_status", getUpstreamStatus(timings));
+        // request parameters and conditional headers, so the access log can be replayed (API keys are left out)
+        String query = removeWskey(request.getQueryString());
+        if (!query.isEmpty()) {
+            message.with("query", query);
+        }
+        addHeader(message, "if_none_match", request, HttpHeaders.IF_NONE_MATCH);
+        addHeader(message, "if_modified_since", request, HttpHeaders.IF_MODIFIED_SINCE);
+        addMillis(message, "record_ms", timings, StageTimings.Stage.RECORD_FETCH);
+        addMillis(message, "fulltext_ms", timings, StageTimings.Stage.FULLTEXT_FETCH);
+        addMillis(message, "mapping_ms", timings, StageTimings.Stage.MAPPING);
+        addMillis(message, "serialization_ms", timings, StageTimings.Stage.SERIALIZATION);
+        if (timings.isExecuted(StageTimings.Stage.RECORD_FETCH)) {
+            message.with("cache", timings.isRecordCacheHit() ? "hit" : "miss");
+        }
+        ACCESS_LOG.info(message);
+    }
+
+    private static void logWarnings(HttpServletRequest request, StageTimings timings) {
+        for (StageTimings.Warning warning : StageTimings.Warning.values()) {
+            int count = timings.getWarningCount(warning);
+            if (count > 0) {
+                EVENT_LOG.warn(new StringMapMessage(5)
+                        .with("warning", warning.name().toLowerCase(Locale.ROOT))
+                        .with("count", count)
+                        .with("record_id", timings.getRecordId() == null ? UNKNOWN : timings.getRecordId())
+                        .with("uri", request.getRequestURI())
+                        .with("first", timings.getWarningDetail(warning)));
+            }
+        }
+    }
+
+    private static void addHeader(StringMapMessage message, String field, HttpServletRequest request, String header) {
+        String value = request.getHeader(header);
+        if (value != null) {
+            message.with(field, value);
+        }
+    }
+
+    /**
+     * @return the query string without the wskey parameter, empty if there are no other parameters
+     */
+    static String removeWskey(String query) {
+        if (query == null || query.isEmpty()) {
+            return "";
+        }
+        StringBuilder result = new StringBuilder(query.length());
+        int start = 0;
+        while (start <= query.length()) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            if (end > start && !query.startsWith(WSKEY_PARAM, start)) {
+                if (result.length() > 0) {
+                    result.append('&');
+                }
+                result.append(query, start, end);
+            }
+            start = end + 1;
+        }
+        return result.toString();
+    }
+
+    private static void addMillis(StringMapMessage message, String field, StageTimings timings, StageTimings.Stage stage) {
+        if (timings.isExecuted(stage)) {
+            message.with(field, StageTimings.appendMillis(new StringBuilder(12), timings.getDuration(stage)).toString());
+        }
+    }
+
+    private static String getOutcome(int status) {
+        if (status == HttpServletResponse.SC_NOT_MODIFIED) {
+            return "not_modified";
+        }
+        if (status >= 500) {
+            return "server_error";
+        }
+        if (status >= 400) {
+            return "client_error";
+        }
+        return "success";
+    }
+
+    /**
+     * @return status code of the Record API response, 'cache' if the record was retrieved from the manifest cache,
+     * 'error' if the Record API couldn't be reached, or 'none' if the record wasn't retrieved at all
+     */
+    private static String getUpstreamStatus(StageTimings timings) {
+        if (timings.isRecordCacheHit()) {
+            return "cache";
+        }
+        if (timings.getRecordApiStatus() > 0) {
+            return String.valueOf(timings.getRecordApiStatus());
+        }
+        for (StageTimings.UpstreamError error : timings.getUpstreamErrors()) {
+            if (error.getUpstream() == StageTimings.Upstream.RECORD_API) {
+                return "error";
+            }
+        }
+        return "none";
+    }
+
+    /**
+     * Adds the Server-Timing header just before the response is committed, when all stages are done
+     */
+    static final class ServerTimingResponse extends HttpServletResponseWrapper {
+
+        private final StageTimings timings;
+        private boolean added;
+
+        ServerTimingResponse(HttpServletResponse response, StageTimings timings) {
+            super(response);
+            this.timings = timings;
+        }
+
+        void addServerTiming() {
+            if (!added && !isCommitted()) {
+                added = true;
+                String value = timings.toServerTiming();
+                if (!value.isEmpty()) {
+                    setHeader(SERVER_TIMING, value);
+                }
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addServerTiming();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addServerTiming();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addServerTiming();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addServerTiming();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addServerTiming();
+            super.sendError(sc);
+        }
+    }
+}
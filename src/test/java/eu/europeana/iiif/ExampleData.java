@@ -19,6 +19,9 @@ public class ExampleData {
     public static final String EXAMPLE_RECORD_MINIMAL_ID = "/x/y";
     public static String EXAMPLE_RECORD_MINIMAL_RESPONSE = "{\"object\": {\"about\":\"/x/y\", \"proxies\":[], \"europeanaAggregation\":{}, \"aggregations\":[] }}";
 
+    public static final String EXAMPLE_RECORD_MULTILINGUAL_ID = "/multi/lingual";
+    public static String EXAMPLE_RECORD_MULTILINGUAL_RESPONSE = "{\"object\":{\"about\":\"/multi/lingual\",\"proxies\":[{\"about\":\"/proxy/provider/multi/lingual\",\"proxyIn\":[\"/aggregation/provider/multi/lingual\"],\"dcTitle\":{\"bg\":[\"Title of the item (bg)\"],\"cs\":[\"Title of the item (cs)\"],\"da\":[\"Title of the item (da)\"],\"de\":[\"Title of the item (de)\"],\"el\":[\"Title of the item (el)\"],\"en\":[\"Title of the item (en)\"],\"es\":[\"Title of the item (es)\"],\"et\":[\"Title of the item (et)\"],\"fi\":[\"Title of the item (fi)\"],\"fr\":[\"Title of the item (fr)\"],\"ga\":[\"Title of the item (ga)\"],\"hr\":[\"Title of the item (hr)\"],\"hu\":[\"Title of the item (hu)\"],\"it\":[\"Title of the item (it)\"],\"lt\":[\"Title of the item (lt)\"],\"lv\":[\"Title of the item (lv)\"],\"mt\":[\"Title of the item (mt)\"],\"nl\":[\"Title of the item (nl)\"],\"pl\":[\"Title of the item (pl)\"],\"pt\":[\"Title of the item (pt)\"],\"ro\":[\"Title of the item (ro)\"],\"sk\":[\"Title of the item (sk)\"],\"sl\":[\"Title of the item (sl)\"],\"sv\":[\"Title of the item (sv)\"]},\"dcDescription\":{\"bg\":[\"A longer description of the item, translated into bg\"],\"cs\":[\"A longer description of the item, translated into cs\"],\"da\":[\"A longer description of the item, translated into da\"],\"de\":[\"A longer description of the item, translated into de\"],\"el\":[\"A longer description of the item, translated into el\"],\"en\":[\"A longer description of the item, translated into en\"],\"es\":[\"A longer description of the item, translated into es\"],\"et\":[\"A longer description of the item, translated into et\"],\"fi\":[\"A longer description of the item, translated into fi\"],\"fr\":[\"A longer description of the item, translated into fr\"],\"ga\":[\"A longer description of the item, translated into ga\"],\"hr\":[\"A longer description of the item, translated into hr\"],\"hu\":[\"A longer description of the item, translated into hu\"],\"it\":[\"A longer description of the item, translated into it\"],\"lt\":[\"A longer description of the item, translated into lt\"],\"lv\":[\"A longer description of the item, translated into lv\"],\"mt\":[\"A longer description of the item, translated into mt\"],\"nl\":[\"A longer description of the item, translated into nl\"],\"pl\":[\"A longer description of the item, translated into pl\"],\"pt\":[\"A longer description of the item, translated into pt\"],\"ro\":[\"A longer description of the item, translated into ro\"],\"sk\":[\"A longer description of the item, translated into sk\"],\"sl\":[\"A longer description of the item, translated into sl\"],\"sv\":[\"A longer description of the item, translated into sv\"],\"def\":[\"Description without language\"]},\"dcType\":{\"def\":[\"http://data.europeana.eu/concept/base/48\"]},\"dcFormat\":{\"bg\":[\"Format (bg)\"],\"cs\":[\"Format (cs)\"],\"da\":[\"Format (da)\"],\"de\":[\"Format (de)\"],\"el\":[\"Format (el)\"],\"en\":[\"Format (en)\"],\"es\":[\"Format (es)\"],\"et\":[\"Format (et)\"],\"fi\":[\"Format (fi)\"],\"fr\":[\"Format (fr)\"],\"ga\":[\"Format (ga)\"],\"hr\":[\"Format (hr)\"],\"hu\":[\"Format (hu)\"],\"it\":[\"Format (it)\"],\"lt\":[\"Format (lt)\"],\"lv\":[\"Format (lv)\"],\"mt\":[\"Format (mt)\"],\"nl\":[\"Format (nl)\"],\"pl\":[\"Format (pl)\"],\"pt\":[\"Format (pt)\"],\"ro\":[\"Format (ro)\"],\"sk\":[\"Format (sk)\"],\"sl\":[\"Format (sl)\"],\"sv\":[\"Format (sv)\"]}}],\"concepts\":[{\"about\":\"http://data.europeana.eu/concept/base/48\",\"prefLabel\":{\"bg\":[\"Photograph (bg)\"],\"cs\":[\"Photograph (cs)\"],\"da\":[\"Photograph (da)\"],\"de\":[\"Photograph (de)\"],\"el\":[\"Photograph (el)\"],\"en\":[\"Photograph (en)\"],\"es\":[\"Photograph (es)\"],\"et\":[\"Photograph (et)\"],\"fi\":[\"Photograph (fi)\"],\"fr\":[\"Photograph (fr)\"],\"ga\":[\"Photograph (ga)\"],\"hr\":[\"Photograph (hr)\"],\"hu\":[\"Photograph (hu)\"],\"it\":[\"Photograph (it)\"],\"lt\":[\"Photograph (lt)\"],\"lv\":[\"Photograph (lv)\"],\"mt\":[\"Photograph (mt)\"],\"nl\":[\"Photograph (nl)\"],\"pl\":[\"Photograph (pl)\"],\"pt\":[\"Photograph (pt)\"],\"ro\":[\"Photograph (ro)\"],\"sk\":[\"Photograph (sk)\"],\"sl\":[\"Photograph (sl)\"],\"sv\":[\"Photograph (sv)\"]}}],\"europeanaAggregation\":{},\"aggregations\":[{\"about\":\"/aggregation/provider/multi/lingual\"}]}}";
+
     public static final String EXAMPLE_FULLTEXT_ID = "/9200396/BibliographicResource_3000118436342";
     public static final String EXAMPLE_FULLTEXT_PAGENR = "1";
 
@@ -0,0 +1,151 @@
+package eu.europeana.iiif;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import eu.europeana.iiif.service.GenerateUtils;
+
+import java.io.UncheckedIOException;
+
+/**
+ * Generates Record API and Full-Text API responses of realistic size, derived from the example records in
+ * {@link ExampleData}. Used by the benchmarks and load tests.
+ */
+public final class ExampleRecords {
+
+    public static final String EUSCREEN_ID = "/2051942/data_euscreen_eu_EUS_1A1C8D2F8F0542B5B2DEBD9C6F0D2C51";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String PAGE_IMAGE = "https://iiif.europeana.eu/image%s/%05d/full/full/0/default.jpg";
+    private static final String PAGE_SERVICE = "https://iiif.europeana.eu/image%s/%05d";
+    private static final String PRESENTATION = "https://iiif.europeana.eu/presentation";
+    private static final String EUSCREEN_URL = "http://www.euscreen.eu/item.html?id=EUS_1A1C8D2F8F0542B5B2DEBD9C6F0D2C51";
+
+    private ExampleRecords() {
+        // empty constructor to prevent initialization
+    }
+
+    /**
+     * Scales the example newspaper record up to the provided number of pages. The first page is edmIsShownBy, all other
+     * pages are hasViews that are ordered with isNextInSequence, like in real newspaper records.
+     * @param europeanaId id of the generated record
+     * @param pages number of page images
+     * @return Record API response (json)
+     */
+    public static String newspaper(String europeanaId, int pages) {
+        ObjectNode record = readRecord(ExampleData.EXAMPLE_RECORD_PARENT_RESPONSE.replace(
+                ExampleData.EXAMPLE_RECORD_PARENT_ID, europeanaId));
+        ObjectNode object = (ObjectNode) record.get("object");
+        ObjectNode aggregation = (ObjectNode) object.get("aggregations").get(0);
+        ObjectNode template = (ObjectNode) aggregation.get("webResources").get(0);
+
+        ArrayNode webResources = MAPPER.createArrayNode();
+        ArrayNode hasView = MAPPER.createArrayNode();
+        ArrayNode services = MAPPER.createArrayNode();
+        String previous = null;
+        for (int page = 1; page <= pages; page++) {
+            String imageId = getPageImage(europeanaId, page);
+            String serviceId = String.format(PAGE_SERVICE, europeanaId, page);
+            ObjectNode webResource = template.deepCopy();
+            webResource.put("about", imageId);
+            webResource.put("ebucoreHasMimeType", "image/jpeg");
+            webResource.put("ebucoreWidth", 2500);
+            webResource.put("ebucoreHeight", 3500);
+            webResource.putArray("svcsHasService").add(serviceId);
+            if (previous == null) {
+                aggregation.put("edmIsShownBy", imageId);
+                aggregation.put("edmObject", imageId);
+            } else {
+                webResource.put("isNextInSequence", previous);
+                hasView.add(imageId);
+            }
+            webResources.add(webResource);
+            ObjectNode service = services.addObject();
+            service.put("about", serviceId);
+            service.putArray("dctermsConformsTo").add("http://iiif.io/api/image");
+            service.putArray("doapImplements").add("http://iiif.io/api/image/2/level1.json");
+            previous = imageId;
+        }
+        aggregation.set("webResources", webResources);
+        if (!hasView.isEmpty()) {
+            aggregation.set("hasView", hasView);
+        }
+        object.set("services", services);
+        return writeJson(record);
+    }
+
+    /**
+     * Generates the Full-Text API summary of a newspaper generated with {@link #newspaper(String, int)}. Every page
+     * has an original (Estonian) and a translated (English) annotation page.
+     * @param europeanaId id of the newspaper record
+     * @param pages number of page images of the newspaper
+     * @return Full-Text API summary response (json)
+     */
+    public static String newspaperSummary(String europeanaId, int pages) {
+        ObjectNode summary = MAPPER.createObjectNode();
+        ArrayNode items = summary.putArray("items");
+        for (int page = 1; page <= pages; page++) {
+            String pageId = GenerateUtils.derivePageId(getPageImage(europeanaId, page));
+            ObjectNode canvas = items.addObject();
+            canvas.put("id", PRESENTATION + europeanaId + "/canvas/" + pageId);
+            canvas.put("type", "Canvas");
+            canvas.put("originalLanguage", "et");
+            ArrayNode annotations = canvas.putArray("annotations");
+            for (String language : new String[]{"et", "en"}) {
+                ObjectNode annoPage = annotations.addObject();
+                annoPage.put("id", PRESENTATION + europeanaId + "/annopage/" + pageId + "?lang=" + language);
+                annoPage.put("type", "AnnotationPage");
+                annoPage.put("language", language);
+            }
+        }
+        return writeJson(summary);
+    }
+
+    /**
+     * Turns the example newspaper record into an EUScreen video item, for which the canvas refers to the EUScreen
+     * website
+     * @return Record API response (json)
+     */
+    public static String euScreenVideo() {
+        ObjectNode record = readRecord(ExampleData.EXAMPLE_RECORD_PARENT_RESPONSE);
+        ObjectNode object = (ObjectNode) record.get("object");
+        object.put("about", EUSCREEN_ID);
+        object.put("type", "VIDEO");
+        object.remove("services");
+        for (int i = 0; i < object.get("proxies").size(); i++) {
+            ((ObjectNode) object.get("proxies").get(i)).put("edmType", "VIDEO");
+        }
+        ObjectNode aggregation = (ObjectNode) object.get("aggregations").get(0);
+        aggregation.put("edmIsShownBy", EUSCREEN_URL);
+        aggregation.put("edmIsShownAt", EUSCREEN_URL);
+        aggregation.remove("edmObject");
+        ObjectNode webResource = (ObjectNode) aggregation.get("webResources").get(0);
+        webResource.put("about", EUSCREEN_URL);
+        webResource.put("ebucoreHasMimeType", "text/html");
+        webResource.put("ebucoreDuration", "1234567");
+        webResource.remove("svcsHasService");
+        return writeJson(record);
+    }
+
+    private static String getPageImage(String europeanaId, int page) {
+        return String.format(PAGE_IMAGE, europeanaId, page);
+    }
+
+    private static ObjectNode readRecord(String json) {
+        try {
+            return (ObjectNode) MAPPER.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String writeJson(ObjectNode node) {
+        try {
+            return MAPPER.writeValueAsString(node);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package eu.europeana.iiif;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(classes = {ManifestApplication.class}, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+public class ReactiveApplicationTest {
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    /**
+     * Check if the application starts on the reactive stack, without any (servlet-only) api-commons components
+     */
+    @Test
+    public void contextLoads() {
+        Assertions.assertTrue(context instanceof ReactiveWebServerApplicationContext);
+        for (String name : context.getBeanDefinitionNames()) {
+            String className = context.getBeanFactory().getBeanDefinition(name).getBeanClassName();
+            Assertions.assertFalse(className != null && className.startsWith("eu.europeana.api."),
+                    "Servlet-only api-commons bean " + name + " loaded");
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package eu.europeana.iiif.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests if configured caching policies are converted to valid Cache-Control header values
+ */
+public class CachePolicyTest {
+
+    @Test
+    public void testCdnPolicy() {
+        assertEquals("max-age=300, s-maxage=86400, stale-if-error=86400, stale-while-revalidate=300",
+                CachePolicy.toCacheControl("max-age=300, s-maxage=86400, stale-while-revalidate=300, stale-if-error=86400"));
+        assertEquals("max-age=0, public, s-maxage=60", CachePolicy.toCacheControl(" Public,S-MAXAGE=60 ,max-age=0"));
+        assertTrue(CachePolicy.isShared(CachePolicy.toCacheControl("max-age=300, s-maxage=86400")));
+        assertTrue(CachePolicy.isShared(CachePolicy.toCacheControl("public, max-age=60")));
+        assertFalse(CachePolicy.isShared(CachePolicy.toCacheControl("max-age=300")));
+        assertFalse(CachePolicy.isShared(CachePolicy.DEFAULT_CACHE_CONTROL));
+    }
+
+    @Test
+    public void testNoCachePolicy() {
+        assertEquals("no-cache", CachePolicy.toCacheControl("no-cache"));
+        assertEquals("no-cache, s-maxage=10", CachePolicy.toCacheControl("no-cache, s-maxage=10"));
+        assertEquals("no-store", CachePolicy.toCacheControl("no-store"));
+    }
+
+    @Test
+    public void testInvalidPolicy() {
+        assertEquals(CachePolicy.DEFAULT_CACHE_CONTROL, CachePolicy.toCacheControl(null));
+        assertEquals(CachePolicy.DEFAULT_CACHE_CONTROL, CachePolicy.toCacheControl(" "));
+        assertEquals(CachePolicy.DEFAULT_CACHE_CONTROL, CachePolicy.toCacheControl("max-age=abc"));
+        assertEquals(CachePolicy.DEFAULT_CACHE_CONTROL, CachePolicy.toCacheControl("max-age=-1"));
+        assertEquals(CachePolicy.DEFAULT_CACHE_CONTROL, CachePolicy.toCacheControl("s-maxage"));
+        assertEquals(CachePolicy.DEFAULT_CACHE_CONTROL, CachePolicy.toCacheControl("max-age=60, immutable"));
+    }
+}
@@ -0,0 +1,156 @@
+package eu.europeana.iiif.config;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import eu.europeana.iiif.ExampleData;
+import eu.europeana.iiif.ManifestApplication;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
+/**
+ * Load test comparing request handling on platform threads, on virtual threads and on the reactive (WebFlux) stack.
+ * The Record API is mocked with a fixed delay so request threads spend most of their time waiting for upstream I/O,
+ * which is the situation in which virtual threads and non-blocking I/O should help. The manifest cache is disabled so
+ * every request goes upstream.
+ *
+ * The servlet runs use the same (deliberately low) maximum number of Tomcat threads. With platform threads throughput
+ * is then limited to roughly max-threads / upstream-delay; with virtual threads the limit is the Record API connection
+ * pool instead. The reactive run only uses a few event loop threads plus the bounded mapping scheduler.
+ *
+ * The load tests take a while, so they only run when the 'loadtest' system property is set,
+ * e.g. <code>mvn test -Dtest=ServerStackLoadTest -Dloadtest=true</code>.
+ * The virtual thread run is skipped when the JVM doesn't support virtual threads (Java 21+ is required).
+ */
+public class ServerStackLoadTest {
+
+    private static final Logger LOG = LogManager.getLogger(ServerStackLoadTest.class);
+
+    private static final String EXAMPLE_WSKEY = "loadtest";
+    private static final int UPSTREAM_DELAY_MS = 200;
+    private static final int TOMCAT_MAX_THREADS = 50;
+    private static final int CONCURRENT_REQUESTS = 200;
+    private static final int TOTAL_REQUESTS = 2_000;
+    private static final int WARMUP_REQUESTS = 200;
+
+    @RegisterExtension
+    static WireMockExtension wmExtension = WireMockExtension.newInstance()
+            .options(wireMockConfig().dynamicPort()
+                    .containerThreads(CONCURRENT_REQUESTS + 50)
+                    .asynchronousResponseEnabled(true)
+                    .asynchronousResponseThreads(50))
+            .build();
+
+    @BeforeEach
+    public void setupApiStub() {
+        wmExtension.stubFor(get(urlEqualTo("/record/v2" + ExampleData.EXAMPLE_RECORD_PARENT_ID + ".json?wskey=" + EXAMPLE_WSKEY))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json;charset=UTF-8")
+                        .withFixedDelay(UPSTREAM_DELAY_MS)
+                        .withBody(ExampleData.EXAMPLE_RECORD_PARENT_RESPONSE)));
+    }
+
+    /**
+     * Creating the executor should never fail, not even on Java versions without virtual threads
+     */
+    @Test
+    public void testCreateVirtualThreadExecutor() {
+        ExecutorService executor = VirtualThreadConfig.createVirtualThreadExecutor();
+        if (Runtime.version().feature() >= 21) {
+            Assertions.assertNotNull(executor);
+            executor.shutdown();
+        } else {
+            Assertions.assertNull(executor);
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "loadtest", matches = "true")
+    public void loadTestPlatformThreads() throws InterruptedException {
+        double throughput = runLoadTest("--virtual-threads.enabled=false");
+        LOG.info("Platform threads: {} requests/s", String.format("%.1f", throughput));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "loadtest", matches = "true")
+    public void loadTestVirtualThreads() throws InterruptedException {
+        Assumptions.assumeTrue(VirtualThreadConfig.createVirtualThreadExecutor() != null,
+                "Virtual threads are not supported by this JVM");
+        double throughput = runLoadTest("--virtual-threads.enabled=true");
+        LOG.info("Virtual threads: {} requests/s", String.format("%.1f", throughput));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "loadtest", matches = "true")
+    public void loadTestReactive() throws InterruptedException {
+        double throughput = runLoadTest("--spring.profiles.active=reactive");
+        LOG.info("Reactive: {} requests/s", String.format("%.1f", throughput));
+    }
+
+    /**
+     * Start the application with the provided extra argument (selecting the server stack), fire requests at it and
+     * return the throughput
+     */
+    private double runLoadTest(String stackArgument) throws InterruptedException {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ManifestApplication.class).run(
+                        "--server.port=0",
+                        "--server.tomcat.threads.max=" + TOMCAT_MAX_THREADS,
+                        stackArgument,
+                        "--manifest-cache.max-size-mb=0",
+                        "--record-api.baseurl.internal=" + wmExtension.baseUrl())) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + "/presentation"
+                    + ExampleData.EXAMPLE_RECORD_PARENT_ID + "/manifest?format=3&fullText=false&wskey=" + EXAMPLE_WSKEY);
+            // HTTP/1.1 so each concurrent request uses its own connection (like most API clients do)
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10)).build();
+
+            fireRequests(client, uri, WARMUP_REQUESTS);
+            long start = System.nanoTime();
+            fireRequests(client, uri, TOTAL_REQUESTS);
+            long durationNs = System.nanoTime() - start;
+            return TOTAL_REQUESTS / (durationNs / 1_000_000_000d);
+        }
+    }
+
+    private void fireRequests(HttpClient client, URI uri, int nrRequests) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(CONCURRENT_REQUESTS);
+        AtomicInteger errors = new AtomicInteger();
+        List<CompletableFuture<?>> responses = new ArrayList<>(nrRequests);
+        for (int i = 0; i < nrRequests; i++) {
+            inFlight.acquire();
+            responses.add(client.sendAsync(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, e) -> {
+                        if (e != null || response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                        inFlight.release();
+                    }));
+        }
+        CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).join();
+        Assertions.assertEquals(0, errors.get(), "Not all requests were successful");
+    }
+}
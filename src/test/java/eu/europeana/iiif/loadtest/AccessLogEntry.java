@@ -0,0 +1,218 @@
+package eu.europeana.iiif.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A request from the access log written by the StageMetricsFilter (logger eu.europeana.iiif.access, enabled with
+ * server-timing.access-log = true). By default the access log is written as json, one object per line
+ * <pre>{"@timestamp":"2024-05-01T14:03:12.345Z","level":"INFO","logger":"eu.europeana.iiif.access",...,"uri":"/presentation/1/2/manifest","status":"304",...}</pre>
+ * Lines written with a pattern layout look like
+ * <pre>14:03:12.345 INFO ... - if_none_match="W/"1a2b"" query="format=3" status="304" uri="/presentation/1/2/manifest" version="3"</pre>
+ * where the time at the start of the line is either the time of day or an ISO-8601 date-time.
+ */
+public final class AccessLogEntry {
+
+    private static final Pattern FIELD = Pattern.compile("(\\w+)=\"(.*?)\"(?=\\s+\\w+=\"|\\s*$)");
+    private static final Pattern RECORD_URI = Pattern.compile("/presentation(/[^/]+/[^/]+)/(manifest|canvases/[^/]+|canvas/[^/]+)");
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private static final String ACCESS_LOGGER = "eu.europeana.iiif.access";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final long timeMs;
+    private long offsetMs;
+    private final String uri;
+    private final String recordId;
+    private final String query;
+    private final String version;
+    private final String ifNoneMatch;
+    private final String ifModifiedSince;
+    private final int status;
+
+    private AccessLogEntry(long timeMs, String uri, String recordId, Map<String, String> fields) {
+        this.timeMs = timeMs;
+        this.uri = uri;
+        this.recordId = recordId;
+        this.query = fields.get("query");
+        this.version = fields.get("version");
+        this.ifNoneMatch = fields.get("if_none_match");
+        this.ifModifiedSince = fields.get("if_modified_since");
+        this.status = Integer.parseInt(fields.getOrDefault("status", "0"));
+    }
+
+    /**
+     * Parses a line of the access log
+     * @param line the line to parse
+     * @return the request, or null if the line isn't an access log line of a manifest, canvas page or canvas request
+     */
+    public static AccessLogEntry parse(String line) {
+        if (line.startsWith("{")) {
+            return parseJson(line);
+        }
+        int space = line.indexOf(' ');
+        int message = line.indexOf(" - ");
+        if (space < 0 || message < 0) {
+            return null;
+        }
+        Long time = parseTime(line.substring(0, space));
+        if (time == null) {
+            return null;
+        }
+        Map<String, String> fields = new HashMap<>();
+        Matcher matcher = FIELD.matcher(line);
+        matcher.region(message + 3, line.length());
+        while (matcher.find()) {
+            fields.put(matcher.group(1), matcher.group(2));
+        }
+        return create(time, fields);
+    }
+
+    private static AccessLogEntry parseJson(String line) {
+        Map<String, String> fields = new HashMap<>();
+        try {
+            MAPPER.readTree(line).fields().forEachRemaining(field -> fields.put(field.getKey(), field.getValue().asText()));
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+        String logger = fields.get("logger");
+        Long time = (fields.containsKey("@timestamp") ? parseTime(fields.get("@timestamp")) : null);
+        if (time == null || (logger != null && !ACCESS_LOGGER.equals(logger))) {
+            return null;
+        }
+        return create(time, fields);
+    }
+
+    private static AccessLogEntry create(long time, Map<String, String> fields) {
+        String uri = fields.get("uri");
+        Matcher recordUri = (uri == null ? null : RECORD_URI.matcher(uri));
+        if (recordUri == null || !recordUri.matches()) {
+            return null;
+        }
+        return new AccessLogEntry(time, uri, recordUri.group(1), fields);
+    }
+
+    private static Long parseTime(String time) {
+        try {
+            if (time.indexOf('T') > 0) {
+                return OffsetDateTime.parse(time).toInstant().toEpochMilli();
+            }
+            return TimeUnit.NANOSECONDS.toMillis(LocalTime.parse(time).toNanoOfDay());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads all requests from an access log and determines their offset from the first request. With only the time of
+     * day available, a time much earlier than that of the previous requests is considered to be on the next day.
+     * @param file the access log, other log lines are ignored
+     * @return requests ordered by time
+     * @throws IOException when the file can't be read
+     */
+    public static List<AccessLogEntry> read(Path file) throws IOException {
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            List<AccessLogEntry> result = new ArrayList<>();
+            lines.map(AccessLogEntry::parse).forEach(entry -> {
+                if (entry != null) {
+                    result.add(entry);
+                }
+            });
+            setOffsets(result);
+            return result;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    static void setOffsets(List<AccessLogEntry> entries) {
+        long days = 0;
+        long first = 0;
+        long latest = Long.MIN_VALUE;
+        for (int i = 0; i < entries.size(); i++) {
+            AccessLogEntry entry = entries.get(i);
+            long time = entry.timeMs;
+            if (time < DAY_MS) {
+                time += days * DAY_MS;
+                // lines are written when requests finish, so a slightly earlier time doesn't mean a new day
+                if (time < latest - DAY_MS / 2) {
+                    days++;
+                    time += DAY_MS;
+                }
+            }
+            if (i == 0) {
+                first = time;
+            }
+            entry.offsetMs = Math.max(0, time - first);
+            latest = Math.max(latest, time);
+        }
+        entries.sort(Comparator.comparingLong(AccessLogEntry::getOffsetMs));
+    }
+
+    /**
+     * @return milliseconds between the first request of the access log and this request
+     */
+    public long getOffsetMs() {
+        return offsetMs;
+    }
+
+    /**
+     * @return request uri, e.g. /presentation/1/2/manifest
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * @return id of the requested record, e.g. /1/2
+     */
+    public String getRecordId() {
+        return recordId;
+    }
+
+    /**
+     * @return query string without API key, null if there were no other parameters
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * @return the IIIF version of the response, null or 'unknown' if not known
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public String getIfNoneMatch() {
+        return ifNoneMatch;
+    }
+
+    public String getIfModifiedSince() {
+        return ifModifiedSince;
+    }
+
+    /**
+     * @return original http status of the response
+     */
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,230 @@
+package eu.europeana.iiif.loadtest;
+
+import eu.europeana.iiif.ManifestApplication;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.layout.template.json.JsonTemplateLayout;
+import org.apache.logging.log4j.message.StringMapMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a captured access log against the application, with the Record API and Full-Text API replaced by an
+ * {@link UpstreamStub} serving recorded responses. This gives a realistic workload (including the ratio of conditional
+ * requests and the skew towards popular records) to evaluate caching and concurrency changes before deploying them.
+ *
+ * The access log is written by the application when server-timing.access-log = true (as json, but logs written with a
+ * pattern layout can be replayed as well). The replay only runs when the
+ * 'replay.log' system property is set, e.g.
+ * <code>mvn test -Dtest=AccessLogReplayTest -Dreplay.log=access.log -Dreplay.record=true -Dreplay.record-wskey=...</code>
+ * Other properties:
+ * <ul>
+ *     <li>replay.store: directory with the recorded responses (default target/replay-store)</li>
+ *     <li>replay.record: if true, records that are not in the store yet are retrieved from the real APIs first</li>
+ *     <li>replay.record-api and replay.fulltext-api: urls of the real APIs (default the production APIs)</li>
+ *     <li>replay.record-wskey: API key for recording from the Record API</li>
+ *     <li>replay.speed: factor applied to the original timing, e.g. 2 to replay twice as fast (default 1)</li>
+ *     <li>replay.upstream-latency: median response time in ms of the stubbed APIs (default 5)</li>
+ *     <li>replay.api-keys: number of different API keys to spread the requests over (default 100)</li>
+ *     <li>replay.warmup: the requests of the first seconds of the log (after scaling) are replayed once before the
+ *     measured replay, so the application is warmed up (default 10)</li>
+ *     <li>replay.logged-etags: if true the logged If-None-Match values are sent instead of ETags returned during the
+ *     replay (only useful when replaying against the same application version)</li>
+ * </ul>
+ * Application settings can be changed with system properties as well, e.g. -Dpriority-lanes.large.threads=8
+ */
+public class AccessLogReplayTest {
+
+    private static final Logger LOG = LogManager.getLogger(AccessLogReplayTest.class);
+
+    private static final int MAX_CONCURRENT = 200;
+
+    @TempDir
+    Path tempDir;
+
+    private static String logLine(String time, StringMapMessage message) {
+        // same format as the pattern layout in log4j2.xml
+        return time + " INFO eu.europeana.iiif.access [http-nio-8080-exec-1] - " + message.getFormattedMessage();
+    }
+
+    private static String jsonLine(String logger, long timeMillis, StringMapMessage message) {
+        // written with the same layout as the access log
+        JsonTemplateLayout layout = JsonTemplateLayout.newBuilder()
+                .setConfiguration(new DefaultConfiguration())
+                .setEventTemplateUri("classpath:log4j2-event-template.json")
+                .build();
+        return layout.toSerializable(Log4jLogEvent.newBuilder().setLoggerName(logger).setLevel(Level.INFO)
+                .setThreadName("http-nio-8080-exec-1").setTimeMillis(timeMillis).setMessage(message).build()).trim();
+    }
+
+    /**
+     * Checks if access log lines are parsed and requests get the right offset, also when the log passes midnight
+     */
+    @Test
+    public void testReadAccessLog() throws IOException {
+        Path log = tempDir.resolve("access.log");
+        Files.write(log, List.of(
+                logLine("23:59:59.500", new StringMapMessage().with("uri", "/presentation/1/2/manifest")
+                        .with("status", "200").with("version", "3").with("query", "format=3&profile=text")),
+                "23:59:59.700 INFO eu.europeana.iiif.config.ManifestSettings:1 [main] - Some other log line",
+                logLine("23:59:59.600", new StringMapMessage().with("uri", "/presentation/1/3/canvas/p1")
+                        .with("status", "304").with("version", "2").with("if_none_match", "W/\"1a2b\"")),
+                logLine("00:00:01.000", new StringMapMessage().with("uri", "/presentation/1/2/manifest")
+                        .with("status", "200").with("version", "unknown")),
+                logLine("00:00:02.000", new StringMapMessage().with("uri", "/presentation/1/collection")
+                        .with("status", "200"))));
+
+        List<AccessLogEntry> entries = AccessLogEntry.read(log);
+        Assertions.assertEquals(3, entries.size());
+        Assertions.assertEquals(0, entries.get(0).getOffsetMs());
+        Assertions.assertEquals(100, entries.get(1).getOffsetMs());
+        Assertions.assertEquals(1500, entries.get(2).getOffsetMs());
+
+        AccessLogEntry conditional = entries.get(1);
+        Assertions.assertEquals("/1/3", conditional.getRecordId());
+        Assertions.assertEquals("W/\"1a2b\"", conditional.getIfNoneMatch());
+        Assertions.assertEquals(304, conditional.getStatus());
+
+        AccessLogReplayer replayer = new AccessLogReplayer("http://localhost", 1, true);
+        Assertions.assertEquals("http://localhost/presentation/1/2/manifest?format=3&profile=text",
+                replayer.getUrl(entries.get(0)));
+        Assertions.assertEquals("http://localhost/presentation/1/3/canvas/p1?format=2", replayer.getUrl(conditional));
+        Assertions.assertEquals("http://localhost/presentation/1/2/manifest", replayer.getUrl(entries.get(2)));
+    }
+
+    /**
+     * Checks if lines of the json access log are parsed, and lines of other loggers are ignored
+     */
+    @Test
+    public void testReadJsonAccessLog() throws IOException {
+        String uri = "/presentation/1/2/manifest";
+        Path log = tempDir.resolve("access.json");
+        Files.write(log, List.of(
+                jsonLine("eu.europeana.iiif.access", 1_000_000L, new StringMapMessage().with("uri", uri)
+                        .with("status", "304").with("version", "3").with("if_none_match", "W/\"1a2b\"")),
+                jsonLine("eu.europeana.iiif.events", 1_000_100L, new StringMapMessage().with("uri", uri)
+                        .with("warning", "no_fulltext_annopage").with("count", 12)),
+                jsonLine("eu.europeana.iiif.access", 1_000_250L, new StringMapMessage().with("uri", uri)
+                        .with("status", "200").with("query", "format=2"))));
+
+        List<AccessLogEntry> entries = AccessLogEntry.read(log);
+        Assertions.assertEquals(2, entries.size());
+        Assertions.assertEquals(250, entries.get(1).getOffsetMs());
+        Assertions.assertEquals("/1/2", entries.get(0).getRecordId());
+        Assertions.assertEquals("W/\"1a2b\"", entries.get(0).getIfNoneMatch());
+        Assertions.assertEquals(304, entries.get(0).getStatus());
+        Assertions.assertEquals("format=2", entries.get(1).getQuery());
+    }
+
+    /**
+     * Checks if the stub serves the recorded responses
+     */
+    @Test
+    public void testRecordedResponseStore() throws IOException, InterruptedException {
+        RecordedResponseStore store = new RecordedResponseStore(tempDir.resolve("store"));
+        store.putRecord("/1/2", "{\"object\":{\"about\":\"/1/2\"}}");
+        Assertions.assertTrue(Files.exists(tempDir.resolve("store/record/1/2.json")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.putRecord("/../2", "{}"));
+
+        UpstreamStub upstream = new UpstreamStub(new RecordedResponseStore(tempDir.resolve("store")), 10);
+        upstream.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpResponse<String> record = client.send(HttpRequest.newBuilder(URI.create(upstream.getBaseUrl()
+                    + UpstreamStub.RECORD_API_PATH + "/1/2.json?wskey=test")).build(), HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(200, record.statusCode());
+            Assertions.assertTrue(record.body().contains("\"about\":\"/1/2\""));
+            Assertions.assertEquals(404, client.send(HttpRequest.newBuilder(URI.create(upstream.getBaseUrl()
+                    + "/presentation/1/2/annopage/")).build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+        } finally {
+            upstream.stop();
+        }
+    }
+
+    /**
+     * Replays the access log set in the replay.log system property
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "replay.log", matches = ".+")
+    public void replayAccessLog() throws IOException, InterruptedException {
+        List<AccessLogEntry> entries = AccessLogEntry.read(Path.of(System.getProperty("replay.log")));
+        Assertions.assertFalse(entries.isEmpty(), "No manifest requests found in access log");
+        RecordedResponseStore store = new RecordedResponseStore(Path.of(System.getProperty("replay.store",
+                "target/replay-store")));
+        if (Boolean.getBoolean("replay.record")) {
+            Set<String> recordIds = new LinkedHashSet<>();
+            entries.forEach(entry -> recordIds.add(entry.getRecordId()));
+            int recorded = store.record(recordIds,
+                    System.getProperty("replay.record-api", "https://api.europeana.eu/record/v2"),
+                    System.getProperty("replay.fulltext-api", "https://iiif.europeana.eu"),
+                    System.getProperty("replay.record-wskey"));
+            LOG.info("Recorded {} of {} records", recorded, recordIds.size());
+        }
+        logOriginal(entries);
+
+        UpstreamStub upstream = new UpstreamStub(store, MAX_CONCURRENT);
+        upstream.setRecordApi(UpstreamProfile.logNormal(Double.parseDouble(
+                System.getProperty("replay.upstream-latency", "5")), 0.3));
+        upstream.setFullTextApi(UpstreamProfile.logNormal(Double.parseDouble(
+                System.getProperty("replay.upstream-latency", "5")), 0.3));
+        upstream.start();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ManifestApplication.class).run(
+                "--server.port=0",
+                "--record-api.baseurl.internal=" + upstream.getBaseUrl(),
+                "--record-api.path=" + UpstreamStub.RECORD_API_PATH,
+                "--fulltext-api.baseurl=" + upstream.getBaseUrl())) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            double speed = Double.parseDouble(System.getProperty("replay.speed", "1"));
+            AccessLogReplayer replayer = new AccessLogReplayer("http://localhost:" + port,
+                    Integer.getInteger("replay.api-keys", 100), !Boolean.getBoolean("replay.logged-etags"));
+            // the JIT compiler needs some time before the application reaches its normal speed
+            long warmupMs = TimeUnit.SECONDS.toMillis(Integer.getInteger("replay.warmup", 10));
+            int warmupEntries = 0;
+            while (warmupEntries < entries.size() && entries.get(warmupEntries).getOffsetMs() / speed < warmupMs) {
+                warmupEntries++;
+            }
+            LOG.info("Warming up ({})", replayer.replay(entries.subList(0, warmupEntries), speed));
+            LoadResult result = replayer.replay(entries, speed);
+            LOG.info("Replay at speed {}: {} (Record API requests {}, Full-Text API requests {})", speed, result,
+                    upstream.getRecordRequests(), upstream.getFullTextRequests());
+        } finally {
+            upstream.stop();
+        }
+    }
+
+    private static void logOriginal(List<AccessLogEntry> entries) {
+        int notModified = 0;
+        int errors = 0;
+        for (AccessLogEntry entry : entries) {
+            if (entry.getStatus() == 304) {
+                notModified++;
+            } else if (entry.getStatus() != 200) {
+                errors++;
+            }
+        }
+        LOG.info("Original: {} requests in {} s, not modified {}%, errors {}%", entries.size(),
+                entries.get(entries.size() - 1).getOffsetMs() / 1000,
+                String.format("%.2f", 100d * notModified / entries.size()),
+                String.format("%.2f", 100d * errors / entries.size()));
+    }
+}
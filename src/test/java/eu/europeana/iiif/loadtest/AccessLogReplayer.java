@@ -0,0 +1,111 @@
+package eu.europeana.iiif.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays the requests of an access log against the application with the original inter-arrival times, or scaled by
+ * a speed factor (2 replays twice as fast). Like the open model of the {@link LoadGenerator}, requests are sent at
+ * their scheduled time regardless of how fast the application responds, and latencies are measured from that time.
+ *
+ * Conditional requests are replayed with their original If-None-Match and If-Modified-Since headers. ETags depend on
+ * the application version, so by default the If-None-Match header is replaced with the ETag the application returned
+ * for the same request earlier during the replay (if any). That way clients that revalidate a cached manifest still
+ * get a 304, and the ratio of 304 responses stays realistic.
+ */
+public class AccessLogReplayer {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final int apiKeys;
+    private final boolean localETags;
+    private final Map<String, String> eTags = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new replayer
+     * @param baseUrl url of the application, e.g. http://localhost:8080
+     * @param apiKeys number of different API keys to spread the requests over (API keys are not in the access log, and
+     *                using a single key would make the per-key limits of fair-share scheduling the bottleneck)
+     * @param localETags if true conditional requests use ETags returned during the replay instead of the logged ones
+     */
+    public AccessLogReplayer(String baseUrl, int apiKeys, boolean localETags) {
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10)).build();
+        this.baseUrl = baseUrl;
+        this.apiKeys = apiKeys;
+        this.localETags = localETags;
+    }
+
+    /**
+     * Replays the requests
+     * @param entries requests to replay, ordered by offset
+     * @param speed factor to apply to the original timing, e.g. 2 to send the requests twice as fast
+     * @return latencies, errors and number of 304 responses of all requests
+     */
+    public LoadResult replay(List<AccessLogEntry> entries, double speed) {
+        LoadResult result = new LoadResult();
+        List<CompletableFuture<?>> responses = new ArrayList<>(entries.size());
+        long start = System.nanoTime();
+        for (int i = 0; i < entries.size(); i++) {
+            AccessLogEntry entry = entries.get(i);
+            long intended = start + (long) (TimeUnit.MILLISECONDS.toNanos(entry.getOffsetMs()) / speed);
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            String url = getUrl(entry);
+            responses.add(client.sendAsync(newRequest(url, "replay" + (i % apiKeys), entry), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, e) -> {
+                        result.add(System.nanoTime() - intended, (e == null ? response.statusCode() : 0));
+                        if (e == null && localETags) {
+                            response.headers().firstValue("ETag").ifPresent(eTag -> eTags.put(url, eTag));
+                        }
+                    }));
+        }
+        // failed requests are already registered, so we ignore the exceptions here
+        CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+        result.finish(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * @return url of the request without API key. The IIIF version of the original response is requested explicitly
+     * when it was determined by the Accept header (which isn't logged)
+     */
+    String getUrl(AccessLogEntry entry) {
+        StringBuilder url = new StringBuilder(baseUrl).append(entry.getUri()).append('?');
+        if (entry.getQuery() != null) {
+            url.append(entry.getQuery()).append('&');
+        }
+        boolean knownVersion = entry.getVersion() != null && !"unknown".equals(entry.getVersion());
+        if (knownVersion && (entry.getQuery() == null || !entry.getQuery().contains("format="))) {
+            url.append("format=").append(entry.getVersion()).append('&');
+        }
+        return url.substring(0, url.length() - 1);
+    }
+
+    private HttpRequest newRequest(String url, String wskey, AccessLogEntry entry) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url + (url.indexOf('?') < 0 ? '?' : '&')
+                + "wskey=" + wskey)).timeout(REQUEST_TIMEOUT).GET();
+        if (entry.getIfNoneMatch() != null) {
+            String eTag = (localETags ? eTags.getOrDefault(url, entry.getIfNoneMatch()) : entry.getIfNoneMatch());
+            request.header("If-None-Match", eTag);
+        }
+        if (entry.getIfModifiedSince() != null) {
+            request.header("If-Modified-Since", entry.getIfModifiedSince());
+        }
+        return request.build();
+    }
+}
@@ -0,0 +1,117 @@
+package eu.europeana.iiif.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Sends GET requests to the application under test, using either
+ * <ul>
+ *     <li>a closed model: a fixed number of users that each send a new request as soon as they get a response, so the
+ *     load drops when the application slows down</li>
+ *     <li>an open model: requests arrive at a fixed rate regardless of how fast the application responds, like
+ *     independent clients on the internet. Latencies are measured from the moment a request should have been sent, so
+ *     a slow application doesn't hide its own queueing delay (coordinated omission).</li>
+ * </ul>
+ * Only responses with status 200 count as successful.
+ */
+public class LoadGenerator {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client;
+
+    /**
+     * Create a new load generator
+     */
+    public LoadGenerator() {
+        // HTTP/1.1 so each concurrent request uses its own connection (like most API clients do)
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10)).build();
+    }
+
+    /**
+     * Runs a closed model load test
+     * @param users number of concurrent users
+     * @param duration how long to send requests
+     * @param target supplies the url of each new request
+     * @return latencies and errors of all requests
+     * @throws InterruptedException when interrupted while waiting for the users to finish
+     */
+    public LoadResult runClosed(int users, Duration duration, Supplier<URI> target) throws InterruptedException {
+        LoadResult result = new LoadResult();
+        ExecutorService executor = Executors.newFixedThreadPool(users);
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        List<Future<?>> running = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            running.add(executor.submit(() -> {
+                while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                    long sent = System.nanoTime();
+                    boolean error;
+                    try {
+                        error = client.send(newRequest(target.get()), HttpResponse.BodyHandlers.discarding())
+                                .statusCode() != 200;
+                    } catch (IOException e) {
+                        error = true;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    result.add(System.nanoTime() - sent, error);
+                }
+            }));
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(duration.plus(REQUEST_TIMEOUT).toMillis(), TimeUnit.MILLISECONDS)) {
+            running.forEach(f -> f.cancel(true));
+        }
+        result.finish(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Runs an open model load test
+     * @param ratePerSecond number of requests to send per second
+     * @param duration how long to send requests
+     * @param target supplies the url of each new request
+     * @return latencies and errors of all requests
+     */
+    public LoadResult runOpen(int ratePerSecond, Duration duration, Supplier<URI> target) {
+        LoadResult result = new LoadResult();
+        long interval = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long total = duration.toNanos() / interval;
+        List<CompletableFuture<?>> responses = new ArrayList<>((int) total);
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long intended = start + i * interval;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            responses.add(client.sendAsync(newRequest(target.get()), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, e) ->
+                            result.add(System.nanoTime() - intended, e != null || response.statusCode() != 200)));
+        }
+        // failed requests are already registered, so we ignore the exceptions here
+        CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+        result.finish(System.nanoTime() - start);
+        return result;
+    }
+
+    private static HttpRequest newRequest(URI uri) {
+        return HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT).GET().build();
+    }
+}
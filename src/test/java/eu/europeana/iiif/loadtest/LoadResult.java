@@ -0,0 +1,97 @@
+package eu.europeana.iiif.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies and errors of all requests sent during a load test
+ */
+public class LoadResult {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private int errors;
+    private int notModified;
+    private long durationNs;
+
+    /**
+     * Registers a finished request. Can be called from multiple threads.
+     * @param latencyNs time between the moment the request should have been sent and the response, in nanoseconds
+     * @param error true if no response was received or the response status wasn't 200
+     */
+    public synchronized void add(long latencyNs, boolean error) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyNs;
+        if (error) {
+            errors++;
+        }
+    }
+
+    /**
+     * Registers a finished request with its response status. Can be called from multiple threads.
+     * @param latencyNs time between the moment the request should have been sent and the response, in nanoseconds
+     * @param status http status of the response, 0 if no response was received. Only 200 and 304 count as successful
+     */
+    public synchronized void add(long latencyNs, int status) {
+        if (status == 304) {
+            notModified++;
+        }
+        add(latencyNs, status != 200 && status != 304);
+    }
+
+    synchronized void finish(long durationNs) {
+        this.durationNs = durationNs;
+        Arrays.sort(latencies, 0, count);
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized int getErrors() {
+        return errors;
+    }
+
+    public synchronized int getNotModified() {
+        return notModified;
+    }
+
+    /**
+     * @return fraction of requests that failed (0 to 1)
+     */
+    public synchronized double getErrorRate() {
+        return (count == 0 ? 0 : (double) errors / count);
+    }
+
+    /**
+     * @return number of finished requests per second
+     */
+    public synchronized double getThroughput() {
+        return (durationNs == 0 ? 0 : count / (durationNs / 1_000_000_000d));
+    }
+
+    /**
+     * @param percentile percentile to return, e.g. 99
+     * @return latency in milliseconds of the provided percentile (nearest rank)
+     */
+    public synchronized double getPercentileMs(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return latencies[Math.max(0, Math.min(count, rank) - 1)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public synchronized String toString() {
+        String result = String.format("%d requests, %.1f requests/s, p50 %.1f ms, p99 %.1f ms, max %.1f ms, errors %.2f%%",
+                count, getThroughput(), getPercentileMs(50), getPercentileMs(99), getPercentileMs(100),
+                getErrorRate() * 100);
+        if (notModified > 0) {
+            result = result + String.format(", not modified %.2f%%", 100d * notModified / count);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,140 @@
+package eu.europeana.iiif.loadtest;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Directory with Record API and Full-Text API responses (record/{collectionId}/{recordId}.json and
+ * fulltext/{collectionId}/{recordId}.json), so an access log can be replayed with real data without depending on the
+ * availability and speed of the real APIs. Missing responses can be recorded from the real APIs; records without full
+ * text simply have no summary file.
+ */
+public class RecordedResponseStore {
+
+    private static final Logger LOG = LogManager.getLogger(RecordedResponseStore.class);
+
+    private static final Pattern RECORD_ID = Pattern.compile("/[\\w-]+/[\\w-]+");
+    private static final String RECORDS = "record";
+    private static final String SUMMARIES = "fulltext";
+    private static final String MISSING = "";
+
+    private final Path directory;
+    // responses are kept in memory once read, so serving them doesn't add disk access to the measured latency
+    private final Map<String, String> loaded = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new store
+     * @param directory directory containing the recorded responses, created when a response is recorded
+     */
+    public RecordedResponseStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param recordId id of the record, e.g. /9200396/BibliographicResource_3000118435009
+     * @return the recorded Record API response, or null if not recorded
+     */
+    public String getRecord(String recordId) {
+        return get(RECORDS, recordId);
+    }
+
+    /**
+     * @param recordId id of the record
+     * @return the recorded full-text summary, or null if not recorded (or the record has no full text)
+     */
+    public String getSummary(String recordId) {
+        return get(SUMMARIES, recordId);
+    }
+
+    public void putRecord(String recordId, String json) throws IOException {
+        put(RECORDS, recordId, json);
+    }
+
+    public void putSummary(String recordId, String json) throws IOException {
+        put(SUMMARIES, recordId, json);
+    }
+
+    private String get(String type, String recordId) {
+        if (!RECORD_ID.matcher(recordId).matches()) {
+            return null;
+        }
+        String result = loaded.computeIfAbsent(type + recordId, key -> {
+            Path file = getFile(type, recordId);
+            try {
+                return (Files.exists(file) ? Files.readString(file, StandardCharsets.UTF_8) : MISSING);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return (MISSING.equals(result) ? null : result);
+    }
+
+    private void put(String type, String recordId, String json) throws IOException {
+        if (!RECORD_ID.matcher(recordId).matches()) {
+            throw new IllegalArgumentException("Invalid record id " + recordId);
+        }
+        Path file = getFile(type, recordId);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, json, StandardCharsets.UTF_8);
+        loaded.put(type + recordId, json);
+    }
+
+    private Path getFile(String type, String recordId) {
+        return directory.resolve(type + recordId + ".json");
+    }
+
+    /**
+     * Retrieves the records (and their full-text summaries) that are not in the store yet from the real APIs
+     * @param recordIds ids of the records to record
+     * @param recordApiUrl Record API url, e.g. https://api.europeana.eu/record/v2
+     * @param fullTextApiUrl Full-Text API url, e.g. https://iiif.europeana.eu
+     * @param wskey API key for the Record API
+     * @return number of records that were added to the store
+     * @throws IOException when the APIs can't be reached or the store can't be written
+     * @throws InterruptedException when interrupted while waiting for a response
+     */
+    public int record(Collection<String> recordIds, String recordApiUrl, String fullTextApiUrl, String wskey)
+            throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        int result = 0;
+        for (String recordId : recordIds) {
+            if (!RECORD_ID.matcher(recordId).matches() || getRecord(recordId) != null) {
+                continue;
+            }
+            HttpResponse<String> record = client.send(HttpRequest.newBuilder(URI.create(recordApiUrl + recordId
+                    + ".json?wskey=" + wskey)).build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            if (record.statusCode() != 200) {
+                // the replayed requests for this record will get a 404, as they (probably) did originally
+                LOG.warn("Record API returned {} for record {}", record.statusCode(), recordId);
+                continue;
+            }
+            HttpResponse<String> summary = client.send(HttpRequest.newBuilder(URI.create(fullTextApiUrl
+                    + "/presentation" + recordId + "/annopage/")).build(),
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            if (summary.statusCode() == 200) {
+                putSummary(recordId, summary.body());
+            } else if (summary.statusCode() != 404) {
+                LOG.warn("Full-Text API returned {} for record {}", summary.statusCode(), recordId);
+            }
+            // the record is stored last, so an interrupted recording is resumed with the summary of this record
+            putRecord(recordId, record.body());
+            result++;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,198 @@
+package eu.europeana.iiif.loadtest;
+
+import eu.europeana.iiif.ManifestApplication;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Load tests of the complete application with the Record API and Full-Text API replaced by an {@link UpstreamStub}, so
+ * the behaviour under load can be studied locally for different upstream conditions. Each scenario starts a fresh
+ * application and reports throughput, median and 99th percentile latency and error rate.
+ *
+ * The load tests take a while, so they only run when the 'loadtest' system property is set, e.g.
+ * <code>mvn test -Dtest=UpstreamLoadTest -Dloadtest=true</code>. The load can be tuned with the following properties:
+ * <ul>
+ *     <li>loadtest.model: closed (default, fixed number of users) or open (fixed arrival rate)</li>
+ *     <li>loadtest.users: number of users for the closed model (default 50)</li>
+ *     <li>loadtest.rate: requests per second for the open model (default 100)</li>
+ *     <li>loadtest.duration: duration of each scenario in seconds (default 30)</li>
+ *     <li>loadtest.warmup: warmup time before each scenario in seconds (default 10)</li>
+ *     <li>loadtest.records: number of different records (default 1000)</li>
+ *     <li>loadtest.pages: number of pages per record, determines the record and summary size (default 20)</li>
+ * </ul>
+ */
+public class UpstreamLoadTest {
+
+    private static final Logger LOG = LogManager.getLogger(UpstreamLoadTest.class);
+
+    private static final boolean OPEN_MODEL = "open".equals(System.getProperty("loadtest.model", "closed"));
+    private static final int USERS = Integer.getInteger("loadtest.users", 50);
+    private static final int RATE = Integer.getInteger("loadtest.rate", 100);
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("loadtest.duration", 30));
+    private static final int RECORDS = Integer.getInteger("loadtest.records", 1000);
+    private static final int PAGES = Integer.getInteger("loadtest.pages", 20);
+    private static final Duration WARMUP = Duration.ofSeconds(Integer.getInteger("loadtest.warmup", 10));
+    private static final int WARMUP_USERS = 10;
+
+    // requests are spread over several API keys, so the per-key limits of fair-share scheduling are not the bottleneck
+    private static final int API_KEYS = 10;
+    private static final double HOT_RECORD_SHARE = 0.8;
+
+    private UpstreamStub upstream;
+
+    @AfterEach
+    public void stopUpstream() {
+        if (upstream != null) {
+            upstream.stop();
+        }
+    }
+
+    private void startUpstream(int nrRecords, int pages, int maxConcurrent) {
+        upstream = new UpstreamStub(nrRecords, pages, maxConcurrent);
+        upstream.start();
+    }
+
+    /**
+     * Checks if the stub serves records and summaries and applies the configured error rate
+     */
+    @Test
+    public void testUpstreamStub() throws IOException, InterruptedException {
+        startUpstream(2, 3, 10);
+        HttpClient client = HttpClient.newHttpClient();
+        String id = upstream.getRecordIds().get(0);
+        HttpResponse<String> record = client.send(HttpRequest.newBuilder(URI.create(upstream.getBaseUrl()
+                + UpstreamStub.RECORD_API_PATH + id + ".json?wskey=test")).build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, record.statusCode());
+        Assertions.assertTrue(record.body().contains("\"about\":\"" + id + "\""));
+
+        URI summary = URI.create(upstream.getBaseUrl() + "/presentation" + id + "/annopage/");
+        Assertions.assertEquals(200, client.send(HttpRequest.newBuilder(summary).build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode());
+        upstream.setFullTextApi(UpstreamProfile.HEALTHY.withErrors(1, 503));
+        Assertions.assertEquals(503, client.send(HttpRequest.newBuilder(summary).build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode());
+        Assertions.assertEquals(404, client.send(HttpRequest.newBuilder(URI.create(upstream.getBaseUrl()
+                + UpstreamStub.RECORD_API_PATH + "/unknown/record.json")).build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode());
+        Assertions.assertEquals(2, upstream.getRecordRequests());
+        Assertions.assertEquals(2, upstream.getFullTextRequests());
+    }
+
+    /**
+     * Both APIs respond quickly and without errors
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "loadtest", matches = "true")
+    public void loadTestBaseline() throws InterruptedException {
+        startUpstream(RECORDS, PAGES, Math.max(USERS, RATE));
+        LoadResult result = runScenario("Baseline", this::randomRecord, null);
+        Assertions.assertEquals(0, result.getErrors(), "Requests failed with healthy upstream APIs");
+    }
+
+    /**
+     * The Full-Text API takes a long time to respond, which delays every manifest with full-text links
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "loadtest", matches = "true")
+    public void loadTestSlowFullText() throws InterruptedException {
+        startUpstream(RECORDS, PAGES, Math.max(USERS, RATE));
+        upstream.setFullTextApi(UpstreamProfile.logNormal(800, 0.5));
+        runScenario("Slow Full-Text API", this::randomRecord, null);
+    }
+
+    /**
+     * During the middle third of the test the Record API gets slow and a third of its responses are errors
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "loadtest", matches = "true")
+    public void loadTestRecordApiBrownOut() throws InterruptedException {
+        startUpstream(RECORDS, PAGES, Math.max(USERS, RATE));
+        long third = DURATION.toMillis() / 3;
+        runScenario("Record API brown-out", this::randomRecord, scheduler -> {
+            scheduler.schedule(() -> upstream.setRecordApi(UpstreamProfile.logNormal(2000, 0.8).withErrors(0.3, 503)),
+                    third, TimeUnit.MILLISECONDS);
+            scheduler.schedule(() -> upstream.setRecordApi(UpstreamProfile.HEALTHY), 2 * third, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Halfway through the test most requests suddenly go to a single record (e.g. a record shared on social media)
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "loadtest", matches = "true")
+    public void loadTestHotRecordSpike() throws InterruptedException {
+        startUpstream(RECORDS, PAGES, Math.max(USERS, RATE));
+        AtomicBoolean spike = new AtomicBoolean();
+        String hotRecord = upstream.getRecordIds().get(0);
+        runScenario("Hot record spike", () -> {
+            if (spike.get() && ThreadLocalRandom.current().nextDouble() < HOT_RECORD_SHARE) {
+                return hotRecord;
+            }
+            return randomRecord();
+        }, scheduler -> scheduler.schedule(() -> spike.set(true), DURATION.toMillis() / 2, TimeUnit.MILLISECONDS));
+    }
+
+    private String randomRecord() {
+        List<String> ids = upstream.getRecordIds();
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    /**
+     * Starts the application, warms it up, sends requests for the records provided by the supplier and logs the results
+     * @param changes optional, used to schedule changes in upstream behaviour or traffic when the measurement starts
+     */
+    private LoadResult runScenario(String name, Supplier<String> recordIds,
+                                   Consumer<ScheduledExecutorService> changes)
+            throws InterruptedException {
+        LOG.info("Scenario {}: record size {} bytes, {}", name, upstream.getRecordSize(),
+                (OPEN_MODEL ? RATE + " requests/s" : USERS + " users"));
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ManifestApplication.class).run(
+                "--server.port=0",
+                "--record-api.baseurl.internal=" + upstream.getBaseUrl(),
+                "--record-api.path=" + UpstreamStub.RECORD_API_PATH,
+                "--fulltext-api.baseurl=" + upstream.getBaseUrl())) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            Supplier<URI> target = () -> URI.create("http://localhost:" + port + "/presentation" + recordIds.get()
+                    + "/manifest?format=3&wskey=loadtest" + ThreadLocalRandom.current().nextInt(API_KEYS));
+            LoadGenerator generator = new LoadGenerator();
+            // the JIT compiler needs some time before the application reaches its normal speed
+            LOG.info("Scenario {}: warming up ({})", name, generator.runClosed(WARMUP_USERS, WARMUP, target));
+
+            long recordRequests = upstream.getRecordRequests();
+            long fullTextRequests = upstream.getFullTextRequests();
+            if (changes != null) {
+                changes.accept(scheduler);
+            }
+            LoadResult result = (OPEN_MODEL ? generator.runOpen(RATE, DURATION, target)
+                    : generator.runClosed(USERS, DURATION, target));
+            LOG.info("Scenario {}: {} (Record API requests {}, Full-Text API requests {})", name, result,
+                    upstream.getRecordRequests() - recordRequests, upstream.getFullTextRequests() - fullTextRequests);
+            return result;
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
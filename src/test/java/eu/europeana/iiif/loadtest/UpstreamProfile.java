@@ -0,0 +1,68 @@
+package eu.europeana.iiif.loadtest;
+
+import com.github.tomakehurst.wiremock.http.DelayDistribution;
+import com.github.tomakehurst.wiremock.http.LogNormal;
+import com.github.tomakehurst.wiremock.http.UniformDistribution;
+
+/**
+ * Behaviour of a stubbed upstream API: how long responses take and how often it fails
+ */
+public final class UpstreamProfile {
+
+    /** Responses within a few milliseconds, no errors */
+    public static final UpstreamProfile HEALTHY = logNormal(5, 0.3);
+
+    private final DelayDistribution delay;
+    private final double errorRate;
+    private final int errorStatus;
+
+    private UpstreamProfile(DelayDistribution delay, double errorRate, int errorStatus) {
+        this.delay = delay;
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+    }
+
+    /**
+     * Response times with a long tail, which is what most real APIs have
+     * @param medianMs median response time in milliseconds
+     * @param sigma standard deviation, higher values give a longer tail (e.g. 0.1 is narrow, 1 is very wide)
+     * @return profile without errors
+     */
+    public static UpstreamProfile logNormal(double medianMs, double sigma) {
+        return new UpstreamProfile(new LogNormal(medianMs, sigma), 0, 0);
+    }
+
+    /**
+     * Response times spread evenly between a minimum and maximum
+     * @param minMs minimum response time in milliseconds
+     * @param maxMs maximum response time in milliseconds
+     * @return profile without errors
+     */
+    public static UpstreamProfile uniform(int minMs, int maxMs) {
+        return new UpstreamProfile(new UniformDistribution(minMs, maxMs), 0, 0);
+    }
+
+    /**
+     * @param rate fraction of requests that fail (0 to 1)
+     * @param status http status code of failed requests
+     * @return copy of this profile with the provided error rate
+     */
+    public UpstreamProfile withErrors(double rate, int status) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Error rate should be between 0 and 1");
+        }
+        return new UpstreamProfile(delay, rate, status);
+    }
+
+    public DelayDistribution getDelay() {
+        return delay;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public int getErrorStatus() {
+        return errorStatus;
+    }
+}
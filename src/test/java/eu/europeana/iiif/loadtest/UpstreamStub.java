@@ -0,0 +1,187 @@
+package eu.europeana.iiif.loadtest;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.common.FileSource;
+import com.github.tomakehurst.wiremock.extension.Parameters;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformer;
+import com.github.tomakehurst.wiremock.http.Request;
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+import eu.europeana.iiif.ExampleRecords;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
+/**
+ * Stand-in for the Record API and Full-Text API during load tests. It serves generated newspaper records (see
+ * {@link ExampleRecords}) and their full-text summaries, or the responses in a {@link RecordedResponseStore}. Records or
+ * summaries that aren't available get a 404 response. The response times and error rates of both APIs are set with
+ * an {@link UpstreamProfile} and can be changed while a load test is running, e.g. to simulate a brown-out.
+ */
+public class UpstreamStub {
+
+    public static final String RECORD_API_PATH = "/record/v2";
+
+    private static final String RECORD_PATH_PATTERN = RECORD_API_PATH + "/.+\\.json";
+    private static final String SUMMARY_PATH_PATTERN = "/presentation/.+/annopage/";
+    private static final String RECORD_ID_PREFIX = "/loadtest/record_";
+    private static final String TRANSFORMER = "loadtest-upstream";
+    private static final String JSON = "application/json;charset=UTF-8";
+
+    private final WireMockServer server;
+    private final Map<String, String> records = new ConcurrentHashMap<>();
+    private final Map<String, String> summaries = new ConcurrentHashMap<>();
+    private final List<String> recordIds = new ArrayList<>();
+    private final UnaryOperator<String> recordSource;
+    private final UnaryOperator<String> summarySource;
+    private final AtomicLong recordRequests = new AtomicLong();
+    private final AtomicLong fullTextRequests = new AtomicLong();
+
+    private volatile UpstreamProfile recordApi = UpstreamProfile.HEALTHY;
+    private volatile UpstreamProfile fullTextApi = UpstreamProfile.HEALTHY;
+
+    /**
+     * Create a new stub serving the provided number of generated newspaper records
+     * @param nrRecords number of different records
+     * @param pages number of pages per record, this determines the size of the record and summary responses
+     * @param maxConcurrent maximum number of concurrent requests the stub should be able to handle
+     */
+    public UpstreamStub(int nrRecords, int pages, int maxConcurrent) {
+        for (int i = 1; i <= nrRecords; i++) {
+            String id = RECORD_ID_PREFIX + i;
+            recordIds.add(id);
+            records.put(id, ExampleRecords.newspaper(id, pages));
+            summaries.put(id, ExampleRecords.newspaperSummary(id, pages));
+        }
+        this.recordSource = records::get;
+        this.summarySource = summaries::get;
+        this.server = createServer(maxConcurrent);
+    }
+
+    /**
+     * Create a new stub serving the records and full-text summaries in a store of recorded responses
+     * @param store the recorded responses
+     * @param maxConcurrent maximum number of concurrent requests the stub should be able to handle
+     */
+    public UpstreamStub(RecordedResponseStore store, int maxConcurrent) {
+        this.recordSource = store::getRecord;
+        this.summarySource = store::getSummary;
+        this.server = createServer(maxConcurrent);
+    }
+
+    private WireMockServer createServer(int maxConcurrent) {
+        return new WireMockServer(wireMockConfig().dynamicPort()
+                .containerThreads(maxConcurrent + 50)
+                .asynchronousResponseEnabled(true)
+                .asynchronousResponseThreads(maxConcurrent)
+                .extensions(new UpstreamTransformer()));
+    }
+
+    /**
+     * Starts the stub and registers the Record API and Full-Text API endpoints
+     */
+    public void start() {
+        server.start();
+        server.stubFor(get(urlPathMatching(RECORD_PATH_PATTERN)).willReturn(aResponse().withTransformers(TRANSFORMER)));
+        server.stubFor(get(urlPathMatching(SUMMARY_PATH_PATTERN)).willReturn(aResponse().withTransformers(TRANSFORMER)));
+    }
+
+    /**
+     * Stops the stub
+     */
+    public void stop() {
+        server.stop();
+    }
+
+    /**
+     * @return base url of the stub, to be used as both Record API and Full-Text API url
+     */
+    public String getBaseUrl() {
+        return server.baseUrl();
+    }
+
+    /**
+     * @return ids of all generated records served by this stub (empty when serving recorded responses)
+     */
+    public List<String> getRecordIds() {
+        return Collections.unmodifiableList(recordIds);
+    }
+
+    /**
+     * @return the size of a record response in bytes (all records have about the same size)
+     */
+    public int getRecordSize() {
+        return records.get(recordIds.get(0)).length();
+    }
+
+    public void setRecordApi(UpstreamProfile profile) {
+        this.recordApi = profile;
+    }
+
+    public void setFullTextApi(UpstreamProfile profile) {
+        this.fullTextApi = profile;
+    }
+
+    public long getRecordRequests() {
+        return recordRequests.get();
+    }
+
+    public long getFullTextRequests() {
+        return fullTextRequests.get();
+    }
+
+    /**
+     * Generates the responses, so the current profiles are used for each request
+     */
+    private final class UpstreamTransformer extends ResponseDefinitionTransformer {
+
+        @Override
+        public ResponseDefinition transform(Request request, ResponseDefinition responseDefinition, FileSource files,
+                                            Parameters parameters) {
+            String path = request.getUrl();
+            int queryStart = path.indexOf('?');
+            if (queryStart >= 0) {
+                path = path.substring(0, queryStart);
+            }
+            if (path.startsWith(RECORD_API_PATH)) {
+                recordRequests.incrementAndGet();
+                String id = path.substring(RECORD_API_PATH.length(), path.length() - ".json".length());
+                return respond(recordApi, recordSource.apply(id));
+            }
+            fullTextRequests.incrementAndGet();
+            String id = path.substring("/presentation".length(), path.length() - "/annopage/".length());
+            return respond(fullTextApi, summarySource.apply(id));
+        }
+
+        private ResponseDefinition respond(UpstreamProfile profile, String body) {
+            ResponseDefinitionBuilder response = aResponse().withRandomDelay(profile.getDelay());
+            if (profile.getErrorRate() > 0 && ThreadLocalRandom.current().nextDouble() < profile.getErrorRate()) {
+                response.withStatus(profile.getErrorStatus());
+            } else if (body == null) {
+                response.withStatus(404);
+            } else {
+                response.withStatus(200).withHeader("Content-Type", JSON).withBody(body);
+            }
+            return response.build();
+        }
+
+        @Override
+        public boolean applyGlobally() {
+            return false;
+        }
+
+        @Override
+        public String getName() {
+            return TRANSFORMER;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package eu.europeana.iiif.model;
+
+import eu.europeana.iiif.exception.InvalidRequestParamException;
+import eu.europeana.iiif.model.v2.LanguageObject;
+import eu.europeana.iiif.model.v3.LanguageMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests parsing the lang parameter and Accept-Language header and filtering language maps and objects
+ */
+public class LanguageFilterTest {
+
+    @Test
+    public void testDefaultIsAll() throws InvalidRequestParamException {
+        Assertions.assertSame(LanguageFilter.ALL, LanguageFilter.of(null, null));
+        Assertions.assertSame(LanguageFilter.ALL, LanguageFilter.of(" ", "*"));
+        Assertions.assertSame(LanguageFilter.ALL, LanguageFilter.of(null, "this is not a valid header;q=x"));
+        Assertions.assertTrue(LanguageFilter.ALL.includes("fr"));
+    }
+
+    @Test
+    public void testLangParameter() throws InvalidRequestParamException {
+        LanguageFilter filter = LanguageFilter.of("nl-BE, de", "fr");
+        Assertions.assertEquals("de,nl", filter.getKey());
+        Assertions.assertTrue(filter.includes("nl"));
+        Assertions.assertTrue(filter.includes("de-AT"));
+        Assertions.assertTrue(filter.includes("en"));
+        Assertions.assertTrue(filter.includes(LanguageMap.NO_LANGUAGE_KEY));
+        Assertions.assertTrue(filter.includes(null));
+        Assertions.assertFalse(filter.includes("fr"));
+    }
+
+    @Test
+    public void testAcceptLanguageHeader() throws InvalidRequestParamException {
+        LanguageFilter filter = LanguageFilter.of(null, "fr-CH, fr;q=0.9, de;q=0.7, it;q=0");
+        Assertions.assertEquals("de,fr", filter.getKey());
+        Assertions.assertFalse(filter.includes("it"));
+    }
+
+    @Test
+    public void testInvalid() {
+        Assertions.assertThrows(InvalidRequestParamException.class, () -> LanguageFilter.of("nl,<script>", null));
+        Assertions.assertThrows(InvalidRequestParamException.class,
+                () -> LanguageFilter.of("bg,cs,da,de,el,es,et,fi,fr,ga,hr,hu", null));
+    }
+
+    @Test
+    public void testFilterLanguageMap() throws InvalidRequestParamException {
+        LanguageMap map = new LanguageMap("de", "Titel");
+        map.put("nl", new String[]{"Titel"});
+        map.put("en", new String[]{"Title"});
+        map.put("fr", new String[]{"Titre"});
+
+        LanguageMap result = LanguageFilter.of("nl", null).filter(map);
+        Assertions.assertEquals(2, result.size());
+        Assertions.assertTrue(result.containsKey("nl"));
+        Assertions.assertTrue(result.containsKey("en"));
+        Assertions.assertEquals(4, map.size()); // original should be untouched
+
+        // if no language matches we keep the first value
+        LanguageMap noMatch = new LanguageMap("de", "Titel");
+        noMatch.put("fr", new String[]{"Titre"});
+        result = LanguageFilter.of("nl", null).filter(noMatch);
+        Assertions.assertEquals(1, result.size());
+        Assertions.assertTrue(result.containsKey("de"));
+
+        Assertions.assertSame(map, LanguageFilter.ALL.filter(map));
+        Assertions.assertNull(LanguageFilter.of("nl", null).filter((LanguageMap) null));
+    }
+
+    @Test
+    public void testFilterLanguageObjects() throws InvalidRequestParamException {
+        LanguageObject[] objects = new LanguageObject[]{
+                new LanguageObject("def", "No language"),
+                new LanguageObject("de", "Titel"),
+                new LanguageObject("nl", "Titel")};
+        LanguageObject[] result = LanguageFilter.of("nl", null).filter(objects);
+        Assertions.assertEquals(2, result.length);
+        Assertions.assertNull(result[0].getLanguage());
+        Assertions.assertEquals("nl", result[1].getLanguage());
+    }
+}
@@ -0,0 +1,54 @@
+package eu.europeana.iiif.model;
+
+import eu.europeana.iiif.exception.InvalidRequestParamException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests parsing the profile and fields request parameters into a manifest projection
+ */
+public class ManifestProjectionTest {
+
+    @Test
+    public void testDefaultIsFull() throws InvalidRequestParamException {
+        Assertions.assertSame(ManifestProjection.FULL, ManifestProjection.of(null, null));
+        Assertions.assertSame(ManifestProjection.FULL, ManifestProjection.of("full", " "));
+        Assertions.assertTrue(ManifestProjection.FULL.includes(ManifestProjection.METADATA));
+        Assertions.assertTrue(ManifestProjection.FULL.includesFullText());
+    }
+
+    @Test
+    public void testMinimalProfile() throws InvalidRequestParamException {
+        ManifestProjection minimal = ManifestProjection.of("minimal", null);
+        Assertions.assertTrue(minimal.includes(ManifestProjection.LABEL));
+        Assertions.assertTrue(minimal.includes(ManifestProjection.ITEMS));
+        Assertions.assertTrue(minimal.includesCanvasField(ManifestProjection.CANVAS_WIDTH));
+        Assertions.assertFalse(minimal.includes(ManifestProjection.METADATA));
+        Assertions.assertFalse(minimal.includesCanvasField(ManifestProjection.CANVAS_ITEMS));
+        Assertions.assertFalse(minimal.includesFullText());
+    }
+
+    @Test
+    public void testFields() throws InvalidRequestParamException {
+        ManifestProjection projection = ManifestProjection.of(null, "items.width, description");
+        Assertions.assertEquals("items,items.width,summary", projection.getKey());
+        Assertions.assertFalse(projection.includes(ManifestProjection.LABEL));
+        Assertions.assertFalse(projection.includesCanvasField(ManifestProjection.CANVAS_HEIGHT));
+
+        // only 'items' means all canvas fields
+        Assertions.assertTrue(ManifestProjection.of(null, "items").includesCanvasField(ManifestProjection.CANVAS_RENDERING));
+
+        // start canvas and full texts depend on the painting annotation
+        Assertions.assertTrue(ManifestProjection.of(null, "start").includesCanvasField(ManifestProjection.CANVAS_ITEMS));
+        Assertions.assertTrue(ManifestProjection.of(null, "items.otherContent").includesFullText());
+
+        // fields are added to the profile
+        Assertions.assertTrue(ManifestProjection.of("minimal", "metadata").includes(ManifestProjection.METADATA));
+    }
+
+    @Test
+    public void testInvalid() {
+        Assertions.assertThrows(InvalidRequestParamException.class, () -> ManifestProjection.of("small", null));
+        Assertions.assertThrows(InvalidRequestParamException.class, () -> ManifestProjection.of(null, "label,bla"));
+    }
+}
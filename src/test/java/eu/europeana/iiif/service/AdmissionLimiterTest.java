@@ -0,0 +1,122 @@
+package eu.europeana.iiif.service;
+
+import eu.europeana.iiif.exception.ServiceOverloadedException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests if the admission limiter refuses requests when the limit is reached and adjusts its limit
+ */
+public class AdmissionLimiterTest {
+
+    private static final long LATENCY_THRESHOLD_MS = 10_000;
+
+    private static List<AdmissionLimiter.Permit> acquire(AdmissionLimiter limiter, int nr) throws ServiceOverloadedException {
+        List<AdmissionLimiter.Permit> result = new ArrayList<>();
+        for (int i = 0; i < nr; i++) {
+            result.add(limiter.acquire());
+        }
+        return result;
+    }
+
+    @Test
+    public void testRefuse() throws ServiceOverloadedException {
+        AdmissionLimiter limiter = new AdmissionLimiter("test", true, 2, 4, LATENCY_THRESHOLD_MS, 3);
+        List<AdmissionLimiter.Permit> permits = acquire(limiter, 4);
+        Assertions.assertEquals(4, limiter.getInFlight());
+
+        ServiceOverloadedException e = Assertions.assertThrows(ServiceOverloadedException.class, limiter::acquire);
+        Assertions.assertEquals(3, e.getRetryAfter());
+        Assertions.assertEquals(1, limiter.getRefused());
+
+        // releasing twice should only count once
+        permits.get(0).release(true);
+        permits.get(0).release(true);
+        Assertions.assertEquals(3, limiter.getInFlight());
+        Assertions.assertNotNull(limiter.acquire());
+    }
+
+    /**
+     * Test if a permit that is released by several threads at the same time (e.g. a cancel racing with a completion)
+     * only counts once
+     */
+    @Test
+    public void testConcurrentRelease() throws ServiceOverloadedException, InterruptedException {
+        AdmissionLimiter limiter = new AdmissionLimiter("test", true, 10, 10, LATENCY_THRESHOLD_MS, 1);
+        // a permit that stays in use, so releasing too often is noticed
+        limiter.acquire();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 100; i++) {
+                AdmissionLimiter.Permit permit = limiter.acquire();
+                CountDownLatch go = new CountDownLatch(1);
+                CountDownLatch done = new CountDownLatch(4);
+                for (int t = 0; t < 4; t++) {
+                    executor.execute(() -> {
+                        try {
+                            go.await();
+                            permit.release(true);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            done.countDown();
+                        }
+                    });
+                }
+                go.countDown();
+                Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+                Assertions.assertEquals(1, limiter.getInFlight());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDecreaseAndIncrease() throws ServiceOverloadedException {
+        AdmissionLimiter limiter = new AdmissionLimiter("test", true, 5, 20, LATENCY_THRESHOLD_MS, 1);
+        Assertions.assertEquals(20, limiter.getLimit());
+
+        // failures lower the limit, but never below the minimum
+        for (AdmissionLimiter.Permit permit : acquire(limiter, 20)) {
+            permit.release(false);
+        }
+        Assertions.assertEquals(5, limiter.getLimit());
+
+        // successes only raise the limit when at least half of it was in use
+        limiter.acquire().release(true);
+        Assertions.assertEquals(5, limiter.getLimit());
+        for (AdmissionLimiter.Permit permit : acquire(limiter, 5)) {
+            permit.release(true);
+        }
+        Assertions.assertTrue(limiter.getLimit() > 5);
+        Assertions.assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testSlowRequests() throws ServiceOverloadedException {
+        AdmissionLimiter limiter = new AdmissionLimiter("test", true, 1, 10, 0, 1);
+        AdmissionLimiter.Permit permit = limiter.acquire();
+        long start = System.nanoTime();
+        while (System.nanoTime() == start) {
+            Thread.onSpinWait();
+        }
+        permit.release(true);
+        Assertions.assertEquals(9, limiter.getLimit());
+    }
+
+    @Test
+    public void testDisabled() throws ServiceOverloadedException {
+        AdmissionLimiter limiter = new AdmissionLimiter("test", false, 1, 1, LATENCY_THRESHOLD_MS, 1);
+        acquire(limiter, 10).forEach(p -> p.release(false));
+        Assertions.assertEquals(0, limiter.getInFlight());
+        Assertions.assertEquals(1, limiter.getLimit());
+    }
+}
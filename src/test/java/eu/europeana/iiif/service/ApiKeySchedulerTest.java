@@ -0,0 +1,161 @@
+package eu.europeana.iiif.service;
+
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.exception.ServiceOverloadedException;
+import eu.europeana.iiif.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests if the API key scheduler limits requests per API key and shares capacity fairly
+ */
+public class ApiKeySchedulerTest {
+
+    private static final String KEY_A = "keyA";
+    private static final String KEY_B = "keyB";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @SuppressWarnings("unchecked")
+    private ApiKeyScheduler createScheduler(int maxConcurrent, int keyMaxConcurrent, double keyRate, int maxQueued,
+                                            long maxWaitMs, String keyLimits) {
+        ManifestSettings settings = Mockito.mock(ManifestSettings.class);
+        Mockito.when(settings.getFairShareEnabled()).thenReturn(Boolean.TRUE);
+        Mockito.when(settings.getFairShareMaxConcurrent()).thenReturn(maxConcurrent);
+        Mockito.when(settings.getFairShareKeyMaxConcurrent()).thenReturn(keyMaxConcurrent);
+        Mockito.when(settings.getFairShareKeyRate()).thenReturn(keyRate);
+        Mockito.when(settings.getFairShareKeyMaxQueued()).thenReturn(maxQueued);
+        Mockito.when(settings.getFairShareMaxWaitMs()).thenReturn(maxWaitMs);
+        Mockito.when(settings.getFairShareKeyLimits()).thenReturn(keyLimits);
+        Mockito.when(settings.getAdmissionRetryAfter()).thenReturn(2);
+        ObjectProvider<MeterRegistry> provider = Mockito.mock(ObjectProvider.class);
+        Mockito.when(provider.getIfAvailable()).thenReturn(meterRegistry);
+        return new ApiKeyScheduler(settings, provider);
+    }
+
+    private static CompletableFuture<ApiKeyScheduler.Permit> acquireAsync(ApiKeyScheduler scheduler, String wskey) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return scheduler.acquire(wskey);
+            } catch (ServiceOverloadedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static void waitForQueued(ApiKeyScheduler scheduler, String wskey, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.getQueued(wskey) != expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertEquals(expected, scheduler.getQueued(wskey));
+    }
+
+    @Test
+    public void testKeyLimits() throws ServiceOverloadedException, InterruptedException {
+        ApiKeyScheduler scheduler = createScheduler(10, 1, 0, 1, 5_000, null);
+        ApiKeyScheduler.Permit permit = scheduler.acquire(KEY_A);
+        // other keys are not affected
+        scheduler.acquire(KEY_B).close();
+
+        CompletableFuture<ApiKeyScheduler.Permit> waiting = acquireAsync(scheduler, KEY_A);
+        waitForQueued(scheduler, KEY_A, 1);
+        TooManyRequestsException e = Assertions.assertThrows(TooManyRequestsException.class, () -> scheduler.acquire(KEY_A));
+        Assertions.assertEquals(2, e.getRetryAfter());
+        // keys without specific limits are not tagged separately
+        Assertions.assertEquals(1, meterRegistry.get("manifest.apikey.rejected").tag("wskey", "other")
+                .tag("reason", "queue").counter().count());
+        Assertions.assertEquals(1, meterRegistry.get("manifest.apikey.queued").tag("wskey", "other").gauge().value());
+
+        permit.close();
+        waiting.join().close();
+        Assertions.assertEquals(0, scheduler.getInFlight());
+    }
+
+    @Test
+    public void testFairShare() throws ServiceOverloadedException, InterruptedException {
+        ApiKeyScheduler scheduler = createScheduler(2, 2, 0, 10, 5_000, null);
+        ApiKeyScheduler.Permit permitA1 = scheduler.acquire(KEY_A);
+        ApiKeyScheduler.Permit permitA2 = scheduler.acquire(KEY_A);
+
+        CompletableFuture<ApiKeyScheduler.Permit> waitingA = acquireAsync(scheduler, KEY_A);
+        waitForQueued(scheduler, KEY_A, 1);
+        CompletableFuture<ApiKeyScheduler.Permit> waitingB = acquireAsync(scheduler, KEY_B);
+        waitForQueued(scheduler, KEY_B, 1);
+        Assertions.assertEquals(2, scheduler.getQueued());
+
+        // key B has nothing in progress, so it should go first even though key A was waiting longer
+        permitA1.close();
+        ApiKeyScheduler.Permit permitB = waitingB.join();
+        Assertions.assertFalse(waitingA.isDone());
+
+        permitA2.close();
+        waitingA.join().close();
+        permitB.close();
+        Assertions.assertEquals(0, scheduler.getInFlight());
+        Assertions.assertEquals(0, scheduler.getQueued());
+    }
+
+    @Test
+    public void testRateLimit() throws ServiceOverloadedException {
+        ApiKeyScheduler scheduler = createScheduler(10, 10, 0, 10, 5_000, KEY_A + ":10:1:1");
+        scheduler.acquire(KEY_A).close();
+        // the key is idle, but its token bucket is remembered until it has refilled
+        Assertions.assertEquals(0, scheduler.getActiveKeys());
+        Assertions.assertEquals(1, scheduler.getIdleKeys());
+        Assertions.assertThrows(TooManyRequestsException.class, () -> scheduler.acquire(KEY_A));
+        Assertions.assertEquals(0, scheduler.getActiveKeys());
+        Assertions.assertEquals(1, meterRegistry.get("manifest.apikey.rejected")
+                .tag("wskey", ApiKeyScheduler.hashKey(KEY_A)).tag("reason", "rate").counter().count());
+        // default limits don't have a rate limit
+        scheduler.acquire(KEY_B).close();
+        scheduler.acquire(KEY_B).close();
+        Assertions.assertEquals(1, scheduler.getIdleKeys());
+    }
+
+    @Test
+    public void testIdleKeysRemoved() throws ServiceOverloadedException, InterruptedException {
+        ApiKeyScheduler scheduler = createScheduler(10, 10, 20, 10, 5_000, null);
+        for (int i = 0; i < 100; i++) {
+            scheduler.acquire("key" + i).close();
+        }
+        Assertions.assertEquals(0, scheduler.getActiveKeys());
+        Assertions.assertEquals(100, scheduler.getIdleKeys());
+        // the buckets are refilled after 1 second
+        Thread.sleep(1_100);
+        scheduler.acquire(KEY_A).close();
+        Assertions.assertEquals(1, scheduler.getIdleKeys());
+        Assertions.assertEquals(8, ApiKeyScheduler.hashKey(KEY_A).length());
+        Assertions.assertNotEquals(KEY_A, ApiKeyScheduler.hashKey(KEY_A));
+    }
+
+    @Test
+    public void testTimeout() throws ServiceOverloadedException {
+        ApiKeyScheduler scheduler = createScheduler(1, 1, 0, 10, 50, null);
+        ApiKeyScheduler.Permit permit = scheduler.acquire(KEY_A);
+        ServiceOverloadedException e = Assertions.assertThrows(ServiceOverloadedException.class,
+                () -> scheduler.acquire(KEY_B));
+        Assertions.assertFalse(e instanceof TooManyRequestsException);
+        Assertions.assertEquals(0, scheduler.getQueued(KEY_B));
+        permit.close();
+    }
+
+    @Test
+    public void testParseKeyLimits() {
+        Map<String, ApiKeyScheduler.KeyLimits> limits = ApiKeyScheduler.parseKeyLimits(
+                "harvester:4:2.5:1, viewer:20:0:3,invalid:1");
+        Assertions.assertEquals(2, limits.size());
+        Assertions.assertEquals(4, limits.get("harvester").getMaxConcurrent());
+        Assertions.assertEquals(2.5, limits.get("harvester").getRate());
+        Assertions.assertEquals(3, limits.get("viewer").getWeight());
+        Assertions.assertTrue(ApiKeyScheduler.parseKeyLimits(" ").isEmpty());
+    }
+}
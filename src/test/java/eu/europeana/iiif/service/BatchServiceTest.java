@@ -0,0 +1,246 @@
+package eu.europeana.iiif.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.exception.RecordNotFoundException;
+import eu.europeana.iiif.model.LanguageFilter;
+import eu.europeana.iiif.model.ManifestModel;
+import eu.europeana.iiif.model.ManifestProjection;
+import eu.europeana.iiif.model.v2.ManifestV2;
+import eu.europeana.iiif.model.v3.ManifestV3;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests if the batch service writes one line per record and limits the number of records in progress, both per batch
+ * and per API key
+ */
+public class BatchServiceTest {
+
+    private static final String WSKEY = "test";
+    private static final int PARALLELISM = 3;
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new Jdk8Module());
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final AtomicInteger maxInProgress = new AtomicInteger();
+    private ManifestSettings settings;
+    private ManifestService manifestService;
+    private ApiKeyScheduler apiKeyScheduler;
+    private BatchService batchService;
+
+    @BeforeEach
+    public void setup() throws EuropeanaApiException {
+        settings = Mockito.mock(ManifestSettings.class);
+        Mockito.when(settings.getBatchThreads()).thenReturn(10);
+        Mockito.when(settings.getBatchMaxQueued()).thenReturn(100);
+        Mockito.when(settings.getBatchParallelism()).thenReturn(PARALLELISM);
+        manifestService = Mockito.mock(ManifestService.class);
+        Mockito.when(manifestService.getSettings()).thenReturn(settings);
+        Mockito.when(manifestService.getJsonMapper()).thenReturn(mapper);
+        Mockito.when(manifestService.getManifestModel(ArgumentMatchers.anyString(), ArgumentMatchers.eq(WSKEY),
+                ArgumentMatchers.isNull())).thenAnswer(invocation -> {
+                    String id = invocation.getArgument(0);
+                    int current = inProgress.incrementAndGet();
+                    maxInProgress.accumulateAndGet(current, Math::max);
+                    try {
+                        Thread.sleep(20);
+                    } finally {
+                        inProgress.decrementAndGet();
+                    }
+                    if (id.endsWith("missing")) {
+                        throw new RecordNotFoundException("Record with id " + id + " not found");
+                    }
+                    return new ManifestModel(id, null, null, null, 0);
+                });
+        Mockito.when(manifestService.generateManifestV2(ArgumentMatchers.any(ManifestModel.class),
+                ArgumentMatchers.anyBoolean(), ArgumentMatchers.isNull(), ArgumentMatchers.eq(ManifestProjection.FULL),
+                ArgumentMatchers.eq(LanguageFilter.ALL))).thenAnswer(invocation -> {
+                    ManifestModel model = invocation.getArgument(0);
+                    return new ManifestV2(model.getEuropeanaId(), "v2" + model.getEuropeanaId(), null);
+                });
+        Mockito.when(manifestService.generateManifestV3(ArgumentMatchers.any(ManifestModel.class),
+                ArgumentMatchers.anyBoolean(), ArgumentMatchers.isNull(), ArgumentMatchers.eq(ManifestProjection.FULL),
+                ArgumentMatchers.eq(LanguageFilter.ALL), ArgumentMatchers.eq(0))).thenAnswer(invocation -> {
+                    ManifestModel model = invocation.getArgument(0);
+                    return new ManifestV3(model.getEuropeanaId(), "v3" + model.getEuropeanaId(), null);
+                });
+        // fair-share scheduling disabled
+        createBatchService();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void createBatchService() {
+        if (batchService != null) {
+            batchService.close();
+        }
+        ObjectProvider<MeterRegistry> meterRegistry = Mockito.mock(ObjectProvider.class);
+        apiKeyScheduler = new ApiKeyScheduler(settings, meterRegistry);
+        batchService = new BatchService(manifestService, apiKeyScheduler);
+    }
+
+    private void enableFairShare(int keyMaxConcurrent, double keyRate) {
+        Mockito.when(settings.getFairShareEnabled()).thenReturn(Boolean.TRUE);
+        Mockito.when(settings.getFairShareMaxConcurrent()).thenReturn(100);
+        Mockito.when(settings.getFairShareKeyMaxConcurrent()).thenReturn(keyMaxConcurrent);
+        Mockito.when(settings.getFairShareKeyRate()).thenReturn(keyRate);
+        Mockito.when(settings.getFairShareKeyMaxQueued()).thenReturn(10);
+        Mockito.when(settings.getFairShareMaxWaitMs()).thenReturn(5_000L);
+        createBatchService();
+    }
+
+    private static List<String> createIds(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add("/1/" + i);
+        }
+        return ids;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        batchService.close();
+    }
+
+    private Map<String, JsonNode> writeManifests(List<String> ids, String iiifVersion) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchService.writeManifests(ids, WSKEY, iiifVersion, false, out);
+        Map<String, JsonNode> result = new HashMap<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            JsonNode node = mapper.readTree(line);
+            result.put(node.get("id").asText(), node);
+        }
+        return result;
+    }
+
+    /**
+     * Test if we get one line per record and never more records in progress than the configured parallelism
+     */
+    @Test
+    public void testBatch() throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ids.add("/1/" + i);
+        }
+        Map<String, JsonNode> result = writeManifests(ids, "3");
+
+        Assertions.assertEquals(ids.size(), result.size());
+        Assertions.assertEquals("v3/1/7", result.get("/1/7").get("manifest").get("id").asText());
+        Assertions.assertTrue(maxInProgress.get() <= PARALLELISM);
+    }
+
+    /**
+     * Test if every record of a batch takes a fair-share permit, so the concurrency limit of the API key applies
+     */
+    @Test
+    public void testKeyConcurrency() throws IOException {
+        enableFairShare(2, 0);
+        List<String> ids = createIds(20);
+        Map<String, JsonNode> result = writeManifests(ids, "2");
+
+        Assertions.assertEquals(ids.size(), result.size());
+        Assertions.assertTrue(result.get("/1/19").get("manifest").isObject());
+        Assertions.assertTrue(maxInProgress.get() <= 2);
+        Assertions.assertEquals(0, apiKeyScheduler.getInFlight());
+    }
+
+    /**
+     * Test if records that exceed the rate limit of the API key get an error line
+     */
+    @Test
+    public void testKeyRate() throws IOException {
+        enableFairShare(10, 1);
+        Map<String, JsonNode> result = writeManifests(createIds(3), "2");
+
+        long refused = result.values().stream().filter(node -> node.has("status")).count();
+        Assertions.assertEquals(2, refused);
+        Assertions.assertEquals(429, result.get("/1/2").get("status").asInt());
+        Assertions.assertTrue(result.get("/1/0").get("manifest").isObject());
+    }
+
+    /**
+     * Test if a batch waits for its own records when the queue of the batch thread pool is full
+     */
+    @Test
+    public void testQueueFull() throws IOException {
+        Mockito.when(settings.getBatchThreads()).thenReturn(1);
+        Mockito.when(settings.getBatchMaxQueued()).thenReturn(1);
+        Mockito.when(settings.getBatchMaxWaitMs()).thenReturn(5_000L);
+        enableFairShare(10, 0);
+        List<String> ids = createIds(10);
+        Map<String, JsonNode> result = writeManifests(ids, "2");
+
+        Assertions.assertEquals(ids.size(), result.size());
+        Assertions.assertTrue(result.values().stream().allMatch(node -> node.get("manifest").isObject()));
+        Assertions.assertEquals(0, apiKeyScheduler.getInFlight());
+    }
+
+    /**
+     * Test if records are refused when the queue of the batch thread pool is still full after the maximum wait
+     */
+    @Test
+    public void testQueueFullMaxWait() throws IOException {
+        Mockito.when(settings.getBatchThreads()).thenReturn(1);
+        Mockito.when(settings.getBatchMaxQueued()).thenReturn(1);
+        Mockito.when(settings.getBatchMaxWaitMs()).thenReturn(0L);
+        enableFairShare(10, 0);
+        Map<String, JsonNode> result = writeManifests(createIds(3), "2");
+
+        Assertions.assertTrue(result.get("/1/0").get("manifest").isObject());
+        Assertions.assertTrue(result.get("/1/1").get("manifest").isObject());
+        Assertions.assertEquals(503, result.get("/1/2").get("status").asInt());
+        Assertions.assertEquals(0, apiKeyScheduler.getInFlight());
+    }
+
+    /**
+     * Test if errors are reported per record without affecting the other records
+     */
+    @Test
+    public void testErrorLines() throws IOException {
+        Map<String, JsonNode> result = writeManifests(List.of("/1/2", "/1/missing", "invalid id"), "2");
+
+        Assertions.assertTrue(result.get("/1/2").get("manifest").isObject());
+        Assertions.assertEquals(404, result.get("/1/missing").get("status").asInt());
+        Assertions.assertEquals(400, result.get("invalid id").get("status").asInt());
+        Assertions.assertNotNull(result.get("invalid id").get("error"));
+    }
+
+    /**
+     * Test if we stop processing when the client disconnects
+     */
+    @Test
+    public void testWriteFails() throws EuropeanaApiException {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add("/1/" + i);
+        }
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Connection closed");
+            }
+        };
+        Assertions.assertThrows(IOException.class,
+                () -> batchService.writeManifests(ids, WSKEY, "2", false, failing));
+        Mockito.verify(manifestService, Mockito.atMost(2 * PARALLELISM))
+                .getManifestModel(ArgumentMatchers.anyString(), ArgumentMatchers.eq(WSKEY), ArgumentMatchers.isNull());
+    }
+}
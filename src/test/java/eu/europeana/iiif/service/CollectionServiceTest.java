@@ -0,0 +1,120 @@
+package eu.europeana.iiif.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.exception.RecordNotFoundException;
+import eu.europeana.iiif.exception.RecordRetrieveException;
+import eu.europeana.iiif.model.RecordListingPage;
+import eu.europeana.iiif.model.v3.LanguageMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests if dataset collections are generated correctly while paging through the records of a dataset
+ */
+public class CollectionServiceTest {
+
+    private static final String DATASET_ID = "123";
+    private static final String WSKEY = "test";
+    private static final int PAGE_SIZE = 2;
+    private static final int RECORDS = 5;
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new Jdk8Module())
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private final List<String> requestedCursors = new ArrayList<>();
+    private ManifestService manifestService;
+
+    /**
+     * Local stub that lists RECORDS records in pages, using the record index as cursor
+     */
+    private class StubListingClient implements RecordListingClient {
+        private final int failAtPage;
+
+        StubListingClient(int failAtPage) {
+            this.failAtPage = failAtPage;
+        }
+
+        @Override
+        public RecordListingPage getPage(String datasetId, String cursor, int pageSize, String wsKey)
+                throws EuropeanaApiException {
+            requestedCursors.add(cursor);
+            int start = (FIRST_PAGE.equals(cursor) ? 0 : Integer.parseInt(cursor));
+            if (start / pageSize == failAtPage) {
+                throw new RecordRetrieveException("Search API is down");
+            }
+            List<RecordListingPage.Item> items = new ArrayList<>();
+            for (int i = start; i < Math.min(start + pageSize, RECORDS); i++) {
+                items.add(new RecordListingPage.Item("/" + datasetId + "/" + i, "Title " + i,
+                        (i % 2 == 0 ? "https://thumbnail/" + i : null)));
+            }
+            String next = (start + pageSize < RECORDS ? String.valueOf(start + pageSize) : null);
+            return new RecordListingPage(items, next);
+        }
+    }
+
+    @BeforeEach
+    public void setup() {
+        ManifestSettings settings = Mockito.mock(ManifestSettings.class);
+        Mockito.when(settings.getCollectionPageSize()).thenReturn(PAGE_SIZE);
+        Mockito.when(settings.getCollectionId(ArgumentMatchers.anyString()))
+                .thenAnswer(invocation -> "https://iiif/presentation/" + invocation.getArgument(0) + "/collection");
+        Mockito.when(settings.getManifestId(ArgumentMatchers.anyString()))
+                .thenAnswer(invocation -> "https://iiif/presentation" + invocation.getArgument(0) + "/manifest");
+        manifestService = Mockito.mock(ManifestService.class);
+        Mockito.when(manifestService.getSettings()).thenReturn(settings);
+        Mockito.when(manifestService.getJsonMapper()).thenReturn(mapper);
+    }
+
+    @Test
+    public void testCollection() throws EuropeanaApiException, IOException {
+        CollectionService collectionService = new CollectionService(manifestService, new StubListingClient(-1));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        collectionService.writeCollection(DATASET_ID, WSKEY, collectionService.getFirstPage(DATASET_ID, WSKEY), out);
+
+        Assertions.assertEquals(List.of(RecordListingClient.FIRST_PAGE, "2", "4"), requestedCursors);
+        JsonNode collection = mapper.readTree(out.toByteArray());
+        Assertions.assertEquals("Collection", collection.get("type").asText());
+        Assertions.assertEquals("https://iiif/presentation/123/collection", collection.get("id").asText());
+        JsonNode items = collection.get("items");
+        Assertions.assertEquals(RECORDS, items.size());
+        Assertions.assertEquals("https://iiif/presentation/123/4/manifest", items.get(4).get("id").asText());
+        Assertions.assertEquals("Manifest", items.get(4).get("type").asText());
+        Assertions.assertEquals("Title 4", items.get(4).get("label").get(LanguageMap.NO_LANGUAGE_KEY).get(0).asText());
+        Assertions.assertEquals("https://thumbnail/4", items.get(4).get("thumbnail").get(0).get("id").asText());
+        Assertions.assertNull(items.get(3).get("thumbnail"));
+    }
+
+    /**
+     * Test if an unknown or empty dataset results in a 404 before the response is started
+     */
+    @Test
+    public void testEmptyDataset() {
+        CollectionService collectionService = new CollectionService(manifestService,
+                (datasetId, cursor, pageSize, wsKey) -> new RecordListingPage(List.of(), null));
+        Assertions.assertThrows(RecordNotFoundException.class, () -> collectionService.getFirstPage(DATASET_ID, WSKEY));
+    }
+
+    @Test
+    public void testListingFailsHalfway() throws EuropeanaApiException {
+        CollectionService collectionService = new CollectionService(manifestService, new StubListingClient(1));
+        RecordListingPage firstPage = collectionService.getFirstPage(DATASET_ID, WSKEY);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Assertions.assertThrows(IOException.class,
+                () -> collectionService.writeCollection(DATASET_ID, WSKEY, firstPage, out));
+        // partial output should never be valid json
+        Assertions.assertThrows(IOException.class, () -> mapper.readTree(out.toByteArray()));
+    }
+}
@@ -9,6 +9,8 @@ import eu.europeana.iiif.config.AppConfig;
 import eu.europeana.iiif.config.ManifestSettings;
 import eu.europeana.iiif.config.MediaTypes;
 import eu.europeana.iiif.config.SerializationConfig;
+import eu.europeana.iiif.model.ManifestModel;
+import eu.europeana.iiif.model.ManifestProjection;
 import eu.europeana.iiif.model.v2.*;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -30,7 +32,8 @@ import java.time.ZoneOffset;
 public class EdmManifestV2MappingTest {
 
     // Initialize the manifest service, because that will setup our default Jackson mapper configuration used in the tests
-    private static final ManifestService ms = new ManifestService(new ManifestSettings(), new MediaTypes());
+    private static final ManifestService ms = new ManifestService(new ManifestSettings(), new MediaTypes(),
+            new ManifestCache(new ManifestSettings()));
 
     @Autowired
     private ManifestSettings settings;
@@ -417,6 +420,26 @@ public class EdmManifestV2MappingTest {
         String profile;
     }
 
+    /**
+     * Test if generating a single canvas from the model gives the same canvas as generating the entire sequence
+     */
+    @Test
+    public void testSingleCanvas() {
+        Object document = Configuration.defaultConfiguration().jsonProvider().parse(EdmManifestData.TEST_SEQUENCE_3CANVAS_1SERVICE);
+        String edmIsShownBy = EdmManifestUtils.getValueFromDataProviderAggregation(document, null, "edmIsShownBy");
+        Sequence[] sequence = EdmManifestMappingV2.getSequencesV2(settings, mediaTypes,"/test-id", edmIsShownBy, document);
+        ManifestModel model = new ManifestModel("/test-id", edmIsShownBy, null, document, 0);
+
+        Canvas canvas = EdmManifestMappingV2.getCanvasV2(settings, mediaTypes, model, 1, ManifestProjection.FULL);
+        Assertions.assertNotNull(canvas);
+        Assertions.assertEquals(sequence[0].getCanvases()[0].getId(), canvas.getId());
+        Assertions.assertEquals(sequence[0].getCanvases()[0].getImages()[0].getResource().getId(),
+                canvas.getImages()[0].getResource().getId());
+        // canvas 2 of this record is AV, so not present in v2
+        Assertions.assertNull(EdmManifestMappingV2.getCanvasV2(settings, mediaTypes, model, 2, ManifestProjection.FULL));
+        Assertions.assertNull(EdmManifestMappingV2.getCanvasV2(settings, mediaTypes, model, 0, ManifestProjection.FULL));
+    }
+
     @Test
     public void testRetrieveRecordUpdate() {
         Assertions.assertEquals(LocalDateTime.of(2017, 6, 6, 19, 40, 18, 82000000).atZone(ZoneOffset.UTC),
@@ -9,6 +9,9 @@ import eu.europeana.iiif.config.AppConfig;
 import eu.europeana.iiif.config.ManifestSettings;
 import eu.europeana.iiif.config.MediaTypes;
 import eu.europeana.iiif.config.SerializationConfig;
+import eu.europeana.iiif.exception.RecordParseException;
+import eu.europeana.iiif.model.ManifestModel;
+import eu.europeana.iiif.model.ManifestProjection;
 import eu.europeana.iiif.model.v2.Sequence;
 import eu.europeana.iiif.model.v3.*;
 import org.apache.logging.log4j.LogManager;
@@ -32,7 +35,8 @@ public class EdmManifestV3MappingTest {
     private static final Logger LOG = LogManager.getLogger(EdmManifestV3MappingTest.class);
 
     // Initialize the manifest service, because that will setup our default Jackson mapper configuration used in the tests
-    private static final ManifestService ms = new ManifestService(new ManifestSettings(), new MediaTypes());
+    private static final ManifestService ms = new ManifestService(new ManifestSettings(), new MediaTypes(),
+            new ManifestCache(new ManifestSettings()));
     public static final String MIMETYPE_APPLICATION_JSON_OEMBED = "application/json+oembed";
 
     @Autowired
@@ -436,6 +440,102 @@ public class EdmManifestV3MappingTest {
         checkCanvas(expectedCanvas2, canvas2);
     }
 
+    /**
+     * Test if we only generate the requested fields when using the minimal projection
+     */
+    @Test
+    public void testMinimalProjection() {
+        Object document = Configuration.defaultConfiguration().jsonProvider().parse(EdmManifestData.TEST_SEQUENCE_3CANVAS_1SERVICE);
+        String edmIsShownBy = EdmManifestUtils.getValueFromDataProviderAggregation(document, null, "edmIsShownBy");
+        Canvas[] canvases = EdmManifestMappingV3.getItems(settings, mediaTypes, "/test-id", edmIsShownBy, document,
+                null, ManifestProjection.MINIMAL);
+
+        // same canvases as without projection, but only with id and size
+        Assertions.assertNotNull(canvases);
+        Assertions.assertEquals(2, canvases.length);
+        Assertions.assertTrue(canvases[1].getId().endsWith("/canvas/p2"));
+        for (Canvas canvas : canvases) {
+            Assertions.assertNull(canvas.getLabel());
+            Assertions.assertNull(canvas.getItems());
+            Assertions.assertNull(canvas.getRequiredStatement());
+            Assertions.assertNull(canvas.getRights());
+            Assertions.assertNull(canvas.getDuration());
+            Assertions.assertNull(canvas.getThumbnail());
+        }
+    }
+
+    /**
+     * Test if pages of canvases contain the same canvases as a full manifest and link to each other
+     */
+    @Test
+    public void testCanvasPage() {
+        Object document = Configuration.defaultConfiguration().jsonProvider().parse(EdmManifestData.TEST_SEQUENCE_3CANVAS_1SERVICE);
+        String edmIsShownBy = EdmManifestUtils.getValueFromDataProviderAggregation(document, null, "edmIsShownBy");
+        Canvas[] canvases = EdmManifestMappingV3.getItems(settings, mediaTypes, "/test-id", edmIsShownBy, document, null);
+        ManifestModel model = new ManifestModel("/test-id", edmIsShownBy, null, document, 0);
+
+        CanvasPage first = EdmManifestMappingV3.getCanvasPageV3(settings, mediaTypes, model, 1, 1, ManifestProjection.FULL);
+        Assertions.assertNotNull(first);
+        Assertions.assertEquals(canvases.length, first.getTotalItems());
+        Assertions.assertEquals(0, first.getStartIndex());
+        Assertions.assertNull(first.getPrev());
+        Assertions.assertTrue(first.getNext().getId().endsWith("/test-id/canvases/2?pageSize=1"));
+        Assertions.assertEquals(1, first.getOrderedItems().length);
+        Assertions.assertEquals(canvases[0].getId(), first.getOrderedItems()[0].getId());
+
+        CanvasPage last = EdmManifestMappingV3.getCanvasPageV3(settings, mediaTypes, model, 2, 1, ManifestProjection.FULL);
+        Assertions.assertNotNull(last);
+        Assertions.assertEquals(1, last.getStartIndex());
+        Assertions.assertTrue(last.getPrev().getId().endsWith("/test-id/canvases/1?pageSize=1"));
+        Assertions.assertNull(last.getNext());
+        Assertions.assertEquals(canvases[1].getId(), last.getOrderedItems()[0].getId());
+
+        Assertions.assertNull(EdmManifestMappingV3.getCanvasPageV3(settings, mediaTypes, model, 3, 1, ManifestProjection.FULL));
+        Assertions.assertNull(EdmManifestMappingV3.getCanvasPageV3(settings, mediaTypes, model, 0, 1, ManifestProjection.FULL));
+        // (page - 1) * pageSize doesn't fit in an int
+        Assertions.assertNull(EdmManifestMappingV3.getCanvasPageV3(settings, mediaTypes, model, 2_147_485, 1000,
+                ManifestProjection.FULL));
+    }
+
+    /**
+     * Test if canvases on a page get their thumbnail, without a full manifest being generated first
+     */
+    @Test
+    public void testCanvasPageWithThumbnail() {
+        Object document = Configuration.defaultConfiguration().jsonProvider().parse(EdmManifestData.TEST_SEQUENCE_1CANVAS_THUMB);
+        String edmIsShownBy = EdmManifestUtils.getValueFromDataProviderAggregation(document, null, "edmIsShownBy");
+        ManifestModel model = new ManifestModel("/test-id", edmIsShownBy, null, document, 0);
+
+        CanvasPage page = EdmManifestMappingV3.getCanvasPageV3(settings, mediaTypes, model, 1, 2, ManifestProjection.FULL);
+        Assertions.assertNotNull(page);
+        Canvas canvas = page.getOrderedItems()[1];
+        Assertions.assertNotNull(canvas.getThumbnail());
+        Assertions.assertEquals(settings.getThumbnailApiUrl() + CANVAS_THUMBNAIL_ENCODED_URL + CANVAS_THUMBNAIL_POSTFIX,
+                canvas.getThumbnail()[0].getId());
+    }
+
+    /**
+     * Test if generating a single canvas from the model gives the same canvas as generating all canvases
+     */
+    @Test
+    public void testSingleCanvas() throws RecordParseException {
+        Object document = Configuration.defaultConfiguration().jsonProvider().parse(EdmManifestData.TEST_SEQUENCE_3CANVAS_1SERVICE);
+        String edmIsShownBy = EdmManifestUtils.getValueFromDataProviderAggregation(document, null, "edmIsShownBy");
+        Canvas[] canvases = EdmManifestMappingV3.getItems(settings, mediaTypes, "/test-id", edmIsShownBy, document, null);
+        ManifestModel model = new ManifestModel("/test-id", edmIsShownBy, null, document, 0);
+
+        Canvas canvas = EdmManifestMappingV3.getCanvasV3(settings, mediaTypes, model, 2, ManifestProjection.FULL);
+        Assertions.assertNotNull(canvas);
+        Assertions.assertEquals(canvases[1].getId(), canvas.getId());
+        Assertions.assertEquals(ms.serializeManifest(canvases[1]), ms.serializeManifest(canvas));
+        Assertions.assertNull(EdmManifestMappingV3.getCanvasV3(settings, mediaTypes, model, 3, ManifestProjection.FULL));
+
+        // context is only serialized for canvases that are served on their own
+        Assertions.assertFalse(ms.serializeManifest(canvas).contains("@context"));
+        canvas.setContext(new String[]{"http://iiif.io/api/presentation/3/context.json"});
+        Assertions.assertTrue(ms.serializeManifest(canvas).startsWith("{\n  \"@context\""));
+    }
+
     private void checkCanvas(ExpectedCanvasAndAnnotationPageValues expected, Canvas canvas) {
         Assertions.assertNotNull(canvas);
         Assertions.assertTrue(canvas.getId().endsWith(expected.idEndsWith),
@@ -461,6 +561,23 @@ public class EdmManifestV3MappingTest {
         }
     }
 
+    /**
+     * Test if a single canvas gets its thumbnail, without a full manifest being generated first
+     */
+    @Test
+    public void testSingleCanvasWithThumbnail() {
+        Object document = Configuration.defaultConfiguration().jsonProvider().parse(EdmManifestData.TEST_SEQUENCE_1CANVAS_THUMB);
+        String edmIsShownBy = EdmManifestUtils.getValueFromDataProviderAggregation(document, null, "edmIsShownBy");
+        ManifestModel model = new ManifestModel("/test-id", edmIsShownBy, null, document, 0);
+
+        Canvas canvas = EdmManifestMappingV3.getCanvasV3(settings, mediaTypes, model, 2, ManifestProjection.FULL);
+        Assertions.assertNotNull(canvas);
+        Assertions.assertNotNull(canvas.getThumbnail());
+        Assertions.assertEquals(1, canvas.getThumbnail().length);
+        Assertions.assertEquals(settings.getThumbnailApiUrl() + CANVAS_THUMBNAIL_ENCODED_URL + CANVAS_THUMBNAIL_POSTFIX,
+                canvas.getThumbnail()[0].getId());
+    }
+
     /**
      * Test if canvas thumbnails are URLencoded properly
      */
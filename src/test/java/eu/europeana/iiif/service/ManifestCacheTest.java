@@ -0,0 +1,66 @@
+package eu.europeana.iiif.service;
+
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.model.ManifestModel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+/**
+ * Tests if the manifest cache only returns models for API keys that were accepted before
+ */
+public class ManifestCacheTest {
+
+    private static final String RECORD_ID = "/1/2";
+
+    private static ManifestCache createCache(long maxSizeMb) {
+        ManifestSettings settings = Mockito.mock(ManifestSettings.class);
+        Mockito.when(settings.getManifestCacheMaxSizeMb()).thenReturn(maxSizeMb);
+        Mockito.when(settings.getManifestCacheTtl()).thenReturn(60L);
+        Mockito.when(settings.getNegativeCacheMaxSize()).thenReturn(100L);
+        Mockito.when(settings.getNegativeCacheTtl()).thenReturn(60L);
+        return new ManifestCache(settings);
+    }
+
+    @Test
+    public void testGetPut() {
+        ManifestCache cache = createCache(1);
+        ManifestModel model = new ManifestModel(RECORD_ID, null, null, null, 100);
+        Assertions.assertNull(cache.get(RECORD_ID, "key1"));
+
+        cache.put("key1", model);
+        Assertions.assertSame(model, cache.get(RECORD_ID, "key1"));
+        // API key that wasn't validated by the Record API
+        Assertions.assertNull(cache.get(RECORD_ID, "key2"));
+
+        cache.clear();
+        Assertions.assertNull(cache.get(RECORD_ID, "key1"));
+    }
+
+    @Test
+    public void testDisabled() {
+        ManifestCache cache = createCache(0);
+        Assertions.assertFalse(cache.isEnabled());
+        cache.put("key1", new ManifestModel(RECORD_ID, null, null, null, 100));
+        Assertions.assertNull(cache.get(RECORD_ID, "key1"));
+    }
+
+    @Test
+    public void testNegativeCache() {
+        ManifestCache cache = createCache(1);
+        cache.put("key1", new ManifestModel(RECORD_ID, null, null, null, 100));
+        Assertions.assertFalse(cache.isInvalidWskey("key1"));
+        Assertions.assertFalse(cache.isMissingRecord("/1/3"));
+
+        // a refused key should no longer get cached models
+        cache.putInvalidWskey("key1");
+        cache.putMissingRecord("/1/3");
+        Assertions.assertTrue(cache.isInvalidWskey("key1"));
+        Assertions.assertNull(cache.get(RECORD_ID, "key1"));
+        Assertions.assertTrue(cache.isMissingRecord("/1/3"));
+
+        cache.clear();
+        Assertions.assertFalse(cache.isInvalidWskey("key1"));
+        Assertions.assertFalse(cache.isMissingRecord("/1/3"));
+    }
+}
@@ -0,0 +1,105 @@
+package eu.europeana.iiif.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.ExampleData;
+import eu.europeana.iiif.config.AppConfig;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.config.SerializationConfig;
+import eu.europeana.iiif.model.ManifestEncoding;
+import eu.europeana.iiif.model.v3.ManifestV3;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Tests binary manifest encodings and compares their size and encoding/decoding speed with JSON
+ */
+@TestPropertySource("classpath:iiif-test.properties")
+@SpringBootTest(classes = {ManifestService.class, ManifestCache.class, ManifestSettings.class, AppConfig.class,
+        SerializationConfig.class})
+public class ManifestEncodingTest {
+
+    private static final Logger LOG = LogManager.getLogger(ManifestEncodingTest.class);
+
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int ITERATIONS = 500;
+
+    private static final Map<ManifestEncoding, ObjectMapper> DECODERS = new EnumMap<>(Map.of(
+            ManifestEncoding.JSON, new ObjectMapper(),
+            ManifestEncoding.SMILE, new SmileMapper(),
+            ManifestEncoding.CBOR, new CBORMapper()));
+
+    @Autowired
+    private ManifestService ms;
+
+    @Test
+    public void testFromAccept() {
+        Assertions.assertEquals(ManifestEncoding.JSON, ManifestEncoding.fromAccept(null));
+        Assertions.assertEquals(ManifestEncoding.JSON, ManifestEncoding.fromAccept("application/ld+json"));
+        Assertions.assertEquals(ManifestEncoding.SMILE, ManifestEncoding.fromAccept("application/x-jackson-smile"));
+        Assertions.assertEquals(ManifestEncoding.CBOR,
+                ManifestEncoding.fromAccept("application/cbor;profile=\"http://iiif.io/api/presentation/3/context.json\""));
+    }
+
+    /**
+     * Binary encodings should contain exactly the same data as the JSON encoding
+     */
+    @Test
+    public void testSameData() throws EuropeanaApiException, IOException {
+        ManifestV3 manifest = ms.generateManifestV3(ExampleData.EXAMPLE_RECORD_PARENT_RESPONSE);
+        JsonNode json = decode(ManifestEncoding.JSON, ms.serializeManifest(manifest, ManifestEncoding.JSON));
+        for (ManifestEncoding encoding : new ManifestEncoding[]{ManifestEncoding.SMILE, ManifestEncoding.CBOR}) {
+            byte[] data = ms.serializeManifest(manifest, encoding);
+            Assertions.assertEquals(json, decode(encoding, data), "Different data for " + encoding);
+        }
+    }
+
+    /**
+     * Simple benchmark that reports size and average encoding and decoding time per manifest for each encoding.
+     * Note that timings are only indicative, for precise measurements use a proper benchmark harness.
+     */
+    @Test
+    public void benchmarkEncodings() throws EuropeanaApiException, IOException {
+        ManifestV3 manifest = ms.generateManifestV3(ExampleData.EXAMPLE_RECORD_MULTILINGUAL_RESPONSE);
+        Map<ManifestEncoding, Integer> sizes = new EnumMap<>(ManifestEncoding.class);
+        for (ManifestEncoding encoding : ManifestEncoding.values()) {
+            byte[] data = ms.serializeManifest(manifest, encoding);
+            sizes.put(encoding, data.length);
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                ms.serializeManifest(manifest, encoding);
+                decode(encoding, data);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                ms.serializeManifest(manifest, encoding);
+            }
+            long encodeNs = (System.nanoTime() - start) / ITERATIONS;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                decode(encoding, data);
+            }
+            long decodeNs = (System.nanoTime() - start) / ITERATIONS;
+            LOG.info("{} size = {} bytes ({}% of JSON), encode = {} us, decode = {} us", encoding, data.length,
+                    data.length * 100 / sizes.get(ManifestEncoding.JSON), encodeNs / 1000, decodeNs / 1000);
+        }
+        Assertions.assertTrue(sizes.get(ManifestEncoding.SMILE) < sizes.get(ManifestEncoding.JSON));
+        Assertions.assertTrue(sizes.get(ManifestEncoding.CBOR) < sizes.get(ManifestEncoding.JSON));
+    }
+
+    private static JsonNode decode(ManifestEncoding encoding, byte[] data) throws IOException {
+        return DECODERS.get(encoding).readTree(data);
+    }
+}
@@ -0,0 +1,72 @@
+package eu.europeana.iiif.service;
+
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.ExampleData;
+import eu.europeana.iiif.config.AppConfig;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.config.SerializationConfig;
+import eu.europeana.iiif.model.ManifestEncoding;
+import eu.europeana.iiif.model.v3.ManifestV3;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests if the JDK Flight Recorder events are recorded when generating a manifest
+ */
+@TestPropertySource("classpath:iiif-test.properties")
+@SpringBootTest(classes = {ManifestService.class, ManifestCache.class, ManifestSettings.class, AppConfig.class,
+        SerializationConfig.class})
+public class ManifestEventsTest {
+
+    @Autowired
+    private ManifestService ms;
+
+    @Test
+    public void testMappingAndSerializationEvents() throws EuropeanaApiException, IOException {
+        Path file = Files.createTempFile("manifest-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("eu.europeana.iiif.ManifestMapping");
+            recording.enable("eu.europeana.iiif.WebResourceSort");
+            recording.enable("eu.europeana.iiif.Serialization");
+            recording.start();
+            ManifestV3 manifest = ms.generateManifestV3(ExampleData.EXAMPLE_RECORD_PARENT_RESPONSE);
+            ms.serializeManifest(manifest, ManifestEncoding.SMILE);
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            RecordedEvent mapping = getEvent(events, "eu.europeana.iiif.ManifestMapping");
+            Assertions.assertEquals(ExampleData.EXAMPLE_RECORD_PARENT_ID, mapping.getString("recordId"));
+            Assertions.assertEquals(manifest.getItems() == null ? 0 : manifest.getItems().length,
+                    mapping.getInt("canvasCount"));
+            Assertions.assertEquals(ExampleData.EXAMPLE_RECORD_PARENT_ID,
+                    getEvent(events, "eu.europeana.iiif.WebResourceSort").getString("recordId"));
+            RecordedEvent serialization = getEvent(events, "eu.europeana.iiif.Serialization");
+            Assertions.assertEquals("SMILE", serialization.getString("encoding"));
+            Assertions.assertEquals("ManifestV3", serialization.getString("type"));
+            Assertions.assertTrue(serialization.getLong("size") > 0);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static RecordedEvent getEvent(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> result = events.stream()
+                .filter(e -> name.equals(e.getEventType().getName()))
+                .collect(Collectors.toList());
+        Assertions.assertFalse(result.isEmpty(), "No " + name + " event recorded");
+        return result.get(0);
+    }
+}
@@ -2,13 +2,18 @@ package eu.europeana.iiif.service;
 
 import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import com.jayway.jsonpath.Configuration;
 import eu.europeana.api.commons.error.EuropeanaApiException;
 import eu.europeana.iiif.ExampleData;
 import eu.europeana.iiif.config.ManifestSettings;
-import eu.europeana.iiif.config.MediaTypes;
+import eu.europeana.iiif.config.SerializationConfig;
+import eu.europeana.iiif.config.AppConfig;
 import eu.europeana.iiif.exception.InvalidApiKeyException;
 import eu.europeana.iiif.exception.RecordNotFoundException;
 import eu.europeana.iiif.exception.RecordRetrieveException;
+import eu.europeana.iiif.model.LanguageFilter;
+import eu.europeana.iiif.model.ManifestModel;
+import eu.europeana.iiif.model.ManifestProjection;
 import eu.europeana.iiif.model.info.FulltextSummaryCanvas;
 import eu.europeana.iiif.model.v2.ManifestV2;
 import eu.europeana.iiif.model.v3.ManifestV3;
@@ -19,6 +24,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.TestPropertySource;
 
 import java.net.MalformedURLException;
@@ -30,6 +37,7 @@ import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static eu.europeana.iiif.ExampleData.EXAMPLE_FULLTEXT_ID;
 import static eu.europeana.iiif.ExampleData.EXAMPLE_FULLTEXT_SUMMARY_FRAGMENT;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -44,7 +52,7 @@ import static org.junit.jupiter.api.Assertions.assertNull;
  */
 @WireMockTest(httpsEnabled = true)
 @TestPropertySource(locations = "classpath:iiif-test.properties")
-@SpringBootTest(classes = {ManifestService.class, ManifestSettings.class, MediaTypes.class})
+@SpringBootTest(classes = {ManifestService.class, ManifestSettings.class, AppConfig.class, SerializationConfig.class, ManifestCache.class})
 public class ManifestServiceTest {
 
     private static final String EXAMPLE_WSKEY = "junit";
@@ -64,9 +72,17 @@ public class ManifestServiceTest {
             .options(wireMockConfig().dynamicPort().dynamicHttpsPort())
             .build();
 
+    @DynamicPropertySource
+    static void setRecordApiUrl(DynamicPropertyRegistry registry) {
+        registry.add("record-api.baseurl.internal", () -> "http://localhost:" + wmExtension.getPort());
+    }
+
     @Autowired
     private ManifestService ms;
 
+    @Autowired
+    private ManifestCache cache;
+
     @Autowired
     private ManifestSettings settings;
 
@@ -259,6 +275,20 @@ public class ManifestServiceTest {
         assertNull(result);
     }
 
+    /**
+     * Test if generated manifests are marked as incomplete when the Full-Text API can't be reached
+     */
+    @Test
+    public void testFullTextIncomplete() throws EuropeanaApiException, MalformedURLException {
+        Object document = Configuration.defaultConfiguration().jsonProvider().parse(EdmManifestData.TEST_SEQUENCE_3CANVAS_1SERVICE);
+        String edmIsShownBy = EdmManifestUtils.getValueFromDataProviderAggregation(document, null, "edmIsShownBy");
+        ManifestModel model = new ManifestModel("/test-id", edmIsShownBy, null, document, 0);
+
+        assertFalse(ms.generateCanvasV2(model, 1, true, getFullTextApiUrl(), ManifestProjection.FULL).isFullTextIncomplete());
+        assertTrue(ms.generateCanvasV2(model, 1, true, new URL("http://localhost:1"), ManifestProjection.FULL).isFullTextIncomplete());
+        assertFalse(ms.generateCanvasV2(model, 1, false, new URL("http://localhost:1"), ManifestProjection.FULL).isFullTextIncomplete());
+    }
+
     /**
      * Test retrieval of record json data
      */
@@ -294,6 +324,29 @@ public class ManifestServiceTest {
             ms.getRecordJson(ExampleData.EXAMPLE_RECORD_CHILD_ID, "INVALID", getRecordApiUrl()));
     }
 
+    /**
+     * Test if refused API keys and missing records of the default Record API are remembered
+     */
+    @Test
+    public void testNegativeCache() {
+        cache.clear();
+        String missingId = "/NOTEXISTS/456";
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertThrows(RecordNotFoundException.class, () ->
+                    ms.getRecordJson(missingId, EXAMPLE_WSKEY, null));
+            Assertions.assertThrows(InvalidApiKeyException.class, () ->
+                    ms.getRecordJson(ExampleData.EXAMPLE_RECORD_CHILD_ID, "REVOKED", null));
+        }
+        wmExtension.verify(1, getRequestedFor(urlPathEqualTo(API_V2_RECORD + missingId + ".json")));
+        wmExtension.verify(1, getRequestedFor(urlPathMatching(API_V2_RECORD + "/.*"))
+                .withQueryParam("wskey", equalTo("REVOKED")));
+
+        // other Record APIs should still be asked
+        Assertions.assertThrows(RecordNotFoundException.class, () -> getRecord(missingId));
+        wmExtension.verify(2, getRequestedFor(urlPathEqualTo(API_V2_RECORD + missingId + ".json")));
+        cache.clear();
+    }
+
     /**
      * Test generation of Manifest for version 2
      */
@@ -338,4 +391,36 @@ public class ManifestServiceTest {
         assertTrue(jsonLd.contains("\"http://iiif.io/api/presentation/3/context.json\""));
     }
 
+    /**
+     * Test if filtering on language reduces the size of manifests of records with many translations
+     */
+    @Test
+    public void testLanguageFilterPayloadReduction() throws EuropeanaApiException {
+        String json = ExampleData.EXAMPLE_RECORD_MULTILINGUAL_RESPONSE;
+        LanguageFilter dutch = LanguageFilter.of("nl", null);
+
+        String fullV3 = ms.serializeManifest(ms.generateManifestV3(json, false, null, ManifestProjection.FULL, LanguageFilter.ALL));
+        String dutchV3 = ms.serializeManifest(ms.generateManifestV3(json, false, null, ManifestProjection.FULL, dutch));
+        String fullV2 = ms.serializeManifest(ms.generateManifestV2(json, false, null, ManifestProjection.FULL, LanguageFilter.ALL));
+        String dutchV2 = ms.serializeManifest(ms.generateManifestV2(json, false, null, ManifestProjection.FULL, dutch));
+        LogManager.getLogger(ManifestServiceTest.class).info("Multilingual manifest v3 size {} -> {} bytes, v2 size {} -> {} bytes",
+                fullV3.length(), dutchV3.length(), fullV2.length(), dutchV2.length());
+
+        // 24 languages in the record, we should only keep Dutch, English and values without language
+        for (String filtered : new String[]{dutchV3, dutchV2}) {
+            assertTrue(filtered.contains("Title of the item (nl)"));
+            assertTrue(filtered.contains("Title of the item (en)"));
+            assertTrue(filtered.contains("Description without language"));
+            assertTrue(filtered.contains("Format (nl)"));
+            assertFalse(filtered.contains("Title of the item (de)"));
+            assertFalse(filtered.contains("Format (fr)"));
+        }
+        // only v3 adds the prefLabels of contextual entities
+        assertTrue(dutchV3.contains("Photograph (nl)"));
+        assertFalse(dutchV3.contains("Photograph (fr)"));
+        // at least 60% smaller
+        assertTrue(dutchV3.length() * 5 < fullV3.length() * 2);
+        assertTrue(dutchV2.length() * 5 < fullV2.length() * 2);
+    }
+
 }
@@ -0,0 +1,230 @@
+package eu.europeana.iiif.service;
+
+import eu.europeana.iiif.ExampleData;
+import eu.europeana.iiif.ExampleRecords;
+import eu.europeana.iiif.config.AppConfig;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.config.MediaTypes;
+import eu.europeana.iiif.config.SerializationConfig;
+import eu.europeana.iiif.exception.DataInconsistentException;
+import eu.europeana.iiif.model.LanguageFilter;
+import eu.europeana.iiif.model.ManifestModel;
+import eu.europeana.iiif.model.ManifestProjection;
+import eu.europeana.iiif.model.WebResource;
+import eu.europeana.iiif.model.WebResourceSorter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guards against performance regressions in the mapping code. For each record in a small corpus (similar to the one
+ * used by the JMH benchmarks) the number of bytes allocated per v2 mapping, v3 mapping and web resource sort is measured
+ * with ThreadMXBean.getCurrentThreadAllocatedBytes, as well as the number of iterations per second. The test fails when
+ * an operation allocates more than perf.allocation-tolerance (a fraction, default 0.10 as set in the pom) above the
+ * checked-in baseline in performance-baseline.properties, and at least perf.allocation-floor bytes (default 4096) more,
+ * so small operations (e.g. sorting a few web resources) don't fail on JIT noise. Iterations per second are only
+ * checked when perf.throughput-tolerance is set, because they depend too much on the machine running the build.
+ *
+ * Measurements depend on the JVM and JIT, so the test only runs when the 'perftest' system property is set, e.g.
+ * <code>mvn test -Dtest=PerformanceRegressionTest -Dperftest=true</code>. After an intended change in allocation, update
+ * the baseline with <code>mvn test -Dtest=PerformanceRegressionTest -Dperftest=true -Dperf.update-baseline=true</code>
+ * and commit it.
+ */
+@EnabledIfSystemProperty(named = "perftest", matches = "true")
+@TestPropertySource("classpath:iiif-test.properties")
+@SpringBootTest(classes = {ManifestService.class, ManifestCache.class, ManifestSettings.class, AppConfig.class,
+        SerializationConfig.class})
+public class PerformanceRegressionTest {
+
+    private static final Logger LOG = LogManager.getLogger(PerformanceRegressionTest.class);
+
+    private static final String BASELINE_RESOURCE = "/performance-baseline.properties";
+    private static final String BASELINE_FILE = System.getProperty("perf.baseline-file",
+            "src/test/resources" + BASELINE_RESOURCE);
+    private static final boolean UPDATE_BASELINE = Boolean.getBoolean("perf.update-baseline");
+    private static final double ALLOCATION_TOLERANCE = Double.parseDouble(
+            System.getProperty("perf.allocation-tolerance", "0.10"));
+    private static final long ALLOCATION_FLOOR = Long.getLong("perf.allocation-floor", 4096);
+    private static final String THROUGHPUT_TOLERANCE = System.getProperty("perf.throughput-tolerance");
+
+    private static final long WARMUP_NS = TimeUnit.MILLISECONDS.toNanos(3000);
+    private static final long MEASURE_NS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int MIN_ITERATIONS = 10;
+    private static final int NEWSPAPER_PAGES = 1000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static Properties baseline;
+    private static final Map<String, String> measured = new TreeMap<>();
+
+    @Autowired
+    private ManifestService ms;
+    @Autowired
+    private ManifestSettings settings;
+    @Autowired
+    private MediaTypes mediaTypes;
+
+    // prevents the JIT compiler from optimizing the measured code away
+    private volatile Object sink;
+
+    @BeforeAll
+    public static void loadBaseline() throws IOException {
+        Assumptions.assumeTrue(THREADS.isThreadAllocatedMemorySupported(),
+                "Measuring allocated memory is not supported by this JVM");
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        baseline = new Properties();
+        try (InputStream in = PerformanceRegressionTest.class.getResourceAsStream(BASELINE_RESOURCE)) {
+            if (in != null) {
+                baseline.load(in);
+            }
+        }
+    }
+
+    @AfterAll
+    public static void saveBaseline() throws IOException {
+        if (UPDATE_BASELINE && !measured.isEmpty()) {
+            try (Writer writer = Files.newBufferedWriter(Path.of(BASELINE_FILE), StandardCharsets.UTF_8)) {
+                writer.write("# Bytes allocated and iterations per second of each operation, see PerformanceRegressionTest\n");
+                for (Map.Entry<String, String> entry : measured.entrySet()) {
+                    writer.write(entry.getKey() + " = " + entry.getValue() + "\n");
+                }
+            }
+            LOG.info("Baseline saved to {}", BASELINE_FILE);
+        }
+    }
+
+    @Test
+    public void testMappingV2() throws Exception {
+        for (Map.Entry<String, String> record : getCorpus().entrySet()) {
+            Object jsonDoc = ms.createManifestModel(record.getValue()).getJsonDoc();
+            check("mappingV2." + record.getKey(), () -> EdmManifestMappingV2.getManifestV2(settings, mediaTypes,
+                    jsonDoc, ManifestProjection.FULL, LanguageFilter.ALL));
+        }
+    }
+
+    @Test
+    public void testMappingV3() throws Exception {
+        for (Map.Entry<String, String> record : getCorpus().entrySet()) {
+            // a new model is created for every mapping, so canvas resources are not reused
+            Object jsonDoc = ms.createManifestModel(record.getValue()).getJsonDoc();
+            check("mappingV3." + record.getKey(), () -> EdmManifestMappingV3.getManifestV3(settings, mediaTypes,
+                    jsonDoc, ManifestProjection.FULL, LanguageFilter.ALL));
+        }
+    }
+
+    @Test
+    public void testWebResourceSort() throws Exception {
+        for (Map.Entry<String, String> record : getCorpus().entrySet()) {
+            ManifestModel model = ms.createManifestModel(record.getValue());
+            List<WebResource> sorted = EdmManifestUtils.getSortedWebResources(model.getEuropeanaId(),
+                    model.getIsShownBy(), model.getJsonDoc());
+            if (sorted.isEmpty()) {
+                continue;
+            }
+            List<String> orderViews = new ArrayList<>(sorted.size());
+            for (WebResource wr : sorted) {
+                orderViews.add(wr.getId());
+            }
+            List<WebResource> unsorted = new ArrayList<>(sorted);
+            Collections.shuffle(unsorted, new Random(42));
+            check("sort." + record.getKey(), () -> sortWebResources(unsorted, orderViews));
+        }
+    }
+
+    private static List<WebResource> sortWebResources(List<WebResource> webResources, List<String> orderViews) {
+        try {
+            return WebResourceSorter.sort(webResources, orderViews);
+        } catch (DataInconsistentException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, String> getCorpus() {
+        Map<String, String> result = new LinkedHashMap<>();
+        result.put("SMALL_IMAGE", ExampleRecords.newspaper(ExampleData.EXAMPLE_RECORD_PARENT_ID, 1));
+        result.put("AV_EUSCREEN", ExampleRecords.euScreenVideo());
+        result.put("NEWSPAPER_" + NEWSPAPER_PAGES, ExampleRecords.newspaper(ExampleData.EXAMPLE_RECORD_PARENT_ID,
+                NEWSPAPER_PAGES));
+        result.put("MULTILINGUAL", ExampleData.EXAMPLE_RECORD_MULTILINGUAL_RESPONSE);
+        return result;
+    }
+
+    /**
+     * Measures the operation and compares the result with the baseline
+     */
+    private void check(String name, Callable<Object> operation) throws Exception {
+        run(operation, WARMUP_NS);
+
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        long iterations = run(operation, MEASURE_NS);
+        long duration = System.nanoTime() - start;
+        long bytes = (THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore) / iterations;
+        long opsPerSecond = iterations * TimeUnit.SECONDS.toNanos(1) / duration;
+        LOG.info("{}: {} bytes/op, {} ops/s", name, bytes, opsPerSecond);
+        measured.put(name + ".bytes", String.valueOf(bytes));
+        measured.put(name + ".ops", String.valueOf(opsPerSecond));
+        if (UPDATE_BASELINE) {
+            return;
+        }
+
+        String baselineBytes = baseline.getProperty(name + ".bytes");
+        if (baselineBytes == null) {
+            LOG.warn("No baseline for {}, run with -Dperf.update-baseline=true to add it", name);
+            return;
+        }
+        long baselineValue = Long.parseLong(baselineBytes);
+        long maxBytes = Math.max((long) (baselineValue * (1 + ALLOCATION_TOLERANCE)), baselineValue + ALLOCATION_FLOOR);
+        Assertions.assertTrue(bytes <= maxBytes, String.format("%s allocates %d bytes per operation, baseline is %s " +
+                "(tolerance %.0f%%, at least %d bytes)", name, bytes, baselineBytes, ALLOCATION_TOLERANCE * 100,
+                ALLOCATION_FLOOR));
+
+        String baselineOps = baseline.getProperty(name + ".ops");
+        if (THROUGHPUT_TOLERANCE != null && baselineOps != null) {
+            long minOps = (long) (Long.parseLong(baselineOps) * (1 - Double.parseDouble(THROUGHPUT_TOLERANCE)));
+            Assertions.assertTrue(opsPerSecond >= minOps, String.format("%s does %d operations per second, " +
+                    "baseline is %s (tolerance %s)", name, opsPerSecond, baselineOps, THROUGHPUT_TOLERANCE));
+        }
+    }
+
+    /**
+     * Runs the operation repeatedly for at least the provided time and minimum number of iterations
+     * @return number of iterations
+     */
+    private long run(Callable<Object> operation, long minDurationNs) throws Exception {
+        long end = System.nanoTime() + minDurationNs;
+        long iterations = 0;
+        while (iterations < MIN_ITERATIONS || System.nanoTime() < end) {
+            sink = operation.call();
+            iterations++;
+        }
+        return iterations;
+    }
+}
@@ -0,0 +1,143 @@
+package eu.europeana.iiif.service;
+
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.exception.RecordNotFoundException;
+import eu.europeana.iiif.exception.ServiceOverloadedException;
+import eu.europeana.iiif.model.ManifestModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tests if large records are mapped on a separate, bounded lane
+ */
+public class PriorityLanesTest {
+
+    private static final ManifestModel SMALL_RECORD = new ManifestModel("/1/small", null, null, null, 10 * 1024);
+    private static final ManifestModel LARGE_RECORD = new ManifestModel("/1/large", null, null, null, 2048 * 1024);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PriorityLanes lanes;
+
+    @BeforeEach
+    public void setup() {
+        lanes = createLanes(5000);
+    }
+
+    @SuppressWarnings("unchecked")
+    private PriorityLanes createLanes(long timeoutMs) {
+        ManifestSettings settings = Mockito.mock(ManifestSettings.class);
+        Mockito.when(settings.getLargeRecordSizeKb()).thenReturn(1024);
+        Mockito.when(settings.getLargeLaneThreads()).thenReturn(1);
+        Mockito.when(settings.getLargeLaneMaxQueued()).thenReturn(1);
+        Mockito.when(settings.getLargeLaneTimeoutMs()).thenReturn(timeoutMs);
+        Mockito.when(settings.getAdmissionRetryAfter()).thenReturn(2);
+        ObjectProvider<MeterRegistry> provider = Mockito.mock(ObjectProvider.class);
+        Mockito.when(provider.getIfAvailable()).thenReturn(meterRegistry);
+        return new PriorityLanes(settings, provider);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        lanes.close();
+    }
+
+    @Test
+    public void testClassify() throws EuropeanaApiException {
+        Assertions.assertEquals(PriorityLanes.Lane.FAST, lanes.classify(SMALL_RECORD, true));
+        Assertions.assertEquals(PriorityLanes.Lane.LARGE, lanes.classify(LARGE_RECORD, true));
+        // single canvases and canvas pages of large records are cheap
+        Assertions.assertEquals(PriorityLanes.Lane.FAST, lanes.classify(LARGE_RECORD, false));
+
+        Thread requestThread = Thread.currentThread();
+        Assertions.assertSame(requestThread, lanes.execute(SMALL_RECORD, true, Thread::currentThread));
+        Assertions.assertNotSame(requestThread, lanes.execute(LARGE_RECORD, true, Thread::currentThread));
+        Assertions.assertEquals(1, meterRegistry.get("manifest.lane.latency").tag("lane", "fast").timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("manifest.lane.latency").tag("lane", "large").timer().count());
+    }
+
+    @Test
+    public void testExceptionFromLargeLane() {
+        Assertions.assertThrows(RecordNotFoundException.class, () -> lanes.execute(LARGE_RECORD, true, () -> {
+            throw new RecordNotFoundException("test");
+        }));
+    }
+
+    /**
+     * Test if small records are still processed while the large lane is full, and large records are refused
+     */
+    @Test
+    public void testLargeLaneFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PriorityLanes.LaneTask<Boolean> blocking = () -> {
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        };
+        CompletableFuture<Boolean> running = executeAsync(blocking);
+        waitFor(() -> lanes.getInProgress(PriorityLanes.Lane.LARGE) == 1);
+        CompletableFuture<Boolean> queued = executeAsync(blocking);
+        waitFor(() -> lanes.getQueued() == 1);
+
+        Assertions.assertThrows(ServiceOverloadedException.class, () -> lanes.execute(LARGE_RECORD, true, () -> true));
+        Assertions.assertEquals(1, meterRegistry.get("manifest.lane.rejected").counter().count());
+        Assertions.assertTrue(lanes.execute(SMALL_RECORD, true, () -> true));
+        Assertions.assertTrue(lanes.execute(LARGE_RECORD, false, () -> true));
+
+        release.countDown();
+        Assertions.assertTrue(running.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test if a request for a large record is refused and its task is interrupted when it takes too long
+     */
+    @Test
+    public void testLargeLaneTimeout() throws Exception {
+        lanes.close();
+        lanes = createLanes(100);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Assertions.assertThrows(ServiceOverloadedException.class, () -> lanes.execute(LARGE_RECORD, true, () -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }));
+        Assertions.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    private CompletableFuture<Boolean> executeAsync(PriorityLanes.LaneTask<Boolean> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return lanes.execute(LARGE_RECORD, true, task);
+            } catch (EuropeanaApiException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertTrue(condition.getAsBoolean());
+    }
+}
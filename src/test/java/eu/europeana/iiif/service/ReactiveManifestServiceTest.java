@@ -0,0 +1,182 @@
+package eu.europeana.iiif.service;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.iiif.ExampleData;
+import eu.europeana.iiif.config.AppConfig;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.config.SerializationConfig;
+import eu.europeana.iiif.exception.InvalidApiKeyException;
+import eu.europeana.iiif.exception.RecordNotFoundException;
+import eu.europeana.iiif.exception.RecordRetrieveException;
+import eu.europeana.iiif.model.LanguageFilter;
+import eu.europeana.iiif.model.ManifestEncoding;
+import eu.europeana.iiif.model.ManifestModel;
+import eu.europeana.iiif.model.ManifestProjection;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
+/**
+ * Tests the ReactiveManifestService against a mocked Record API and Full-Text API, and checks if it generates exactly
+ * the same output as the (blocking) ManifestService
+ */
+@TestPropertySource("classpath:iiif-test.properties")
+@ActiveProfiles("reactive")
+@SpringBootTest(classes = {ReactiveManifestService.class, ManifestService.class, ManifestCache.class,
+        ManifestSettings.class, AppConfig.class, SerializationConfig.class})
+public class ReactiveManifestServiceTest {
+
+    private static final String EXAMPLE_WSKEY = "junit";
+    private static final String API_V2_RECORD = "/record/v2";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String APPLICATION_JSON = "application/json;charset=UTF-8";
+
+    @RegisterExtension
+    static WireMockExtension wmExtension = WireMockExtension.newInstance()
+            .options(wireMockConfig().dynamicPort())
+            .build();
+
+    @DynamicPropertySource
+    static void setApiUrls(DynamicPropertyRegistry registry) {
+        registry.add("record-api.baseurl.internal", wmExtension::baseUrl);
+        registry.add("fulltext-api.baseurl", wmExtension::baseUrl);
+    }
+
+    @Autowired
+    private ReactiveManifestService rms;
+
+    @Autowired
+    private ManifestService ms;
+
+    @Autowired
+    private ManifestCache cache;
+
+    @BeforeEach
+    public void setupApiStub() {
+        cache.clear();
+        wmExtension.stubFor(get(urlPathMatching(API_V2_RECORD + "/.*"))
+                .willReturn(aResponse().withStatus(401).withHeader(CONTENT_TYPE, APPLICATION_JSON)
+                        .withBody("{\"error\": \"Invalid API key\"}")));
+        wmExtension.stubFor(get(urlPathMatching(API_V2_RECORD + "/.*")).withQueryParam("wskey", equalTo(EXAMPLE_WSKEY))
+                .willReturn(aResponse().withStatus(404).withHeader(CONTENT_TYPE, APPLICATION_JSON)
+                        .withBody("{\"error\": \"Invalid record identifier\"}")));
+        wmExtension.stubFor(get(urlEqualTo(API_V2_RECORD + ExampleData.EXAMPLE_RECORD_PARENT_ID + ".json?wskey=" + EXAMPLE_WSKEY))
+                .willReturn(aResponse().withStatus(200).withHeader(CONTENT_TYPE, APPLICATION_JSON)
+                        .withBody(ExampleData.EXAMPLE_RECORD_PARENT_RESPONSE)));
+        wmExtension.stubFor(get(urlEqualTo(API_V2_RECORD + "/server/error.json?wskey=" + EXAMPLE_WSKEY))
+                .willReturn(aResponse().withStatus(500)));
+        wmExtension.stubFor(get(urlEqualTo(API_V2_RECORD + ExampleData.EXAMPLE_RECORD_CHILD_ID + ".json?wskey=" + EXAMPLE_WSKEY))
+                .willReturn(aResponse().withStatus(200).withHeader(CONTENT_TYPE, APPLICATION_JSON)
+                        .withBody(ExampleData.EXAMPLE_RECORD_CHILD_RESPONSE)));
+        // Full-Text API returns a summary for all records
+        wmExtension.stubFor(get(urlPathMatching("/presentation/.*"))
+                .willReturn(aResponse().withStatus(200).withHeader(CONTENT_TYPE, APPLICATION_JSON)
+                        .withBody(ExampleData.EXAMPLE_FULLTEXT_SUMMARY_RESPONSE)));
+    }
+
+    private static <T> T block(Mono<T> mono) throws EuropeanaApiException {
+        try {
+            return mono.block();
+        } catch (RuntimeException e) {
+            Throwable cause = Exceptions.unwrap(e);
+            if (cause instanceof EuropeanaApiException) {
+                throw (EuropeanaApiException) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Test if record data is retrieved and cached
+     */
+    @Test
+    public void testGetManifestModel() throws EuropeanaApiException {
+        ManifestModel model = block(rms.getManifestModel(ExampleData.EXAMPLE_RECORD_PARENT_ID, EXAMPLE_WSKEY, null));
+        Assertions.assertEquals(ExampleData.EXAMPLE_RECORD_PARENT_ID, model.getEuropeanaId());
+        Assertions.assertNotNull(model.getLastModified());
+
+        // second time it should come from the cache
+        Assertions.assertSame(model, block(rms.getManifestModel(ExampleData.EXAMPLE_RECORD_PARENT_ID, EXAMPLE_WSKEY, null)));
+        wmExtension.verify(1, getRequestedFor(urlPathEqualTo(API_V2_RECORD + ExampleData.EXAMPLE_RECORD_PARENT_ID + ".json")));
+    }
+
+    /**
+     * Test if Record API errors result in the same exceptions as with the ManifestService
+     */
+    @Test
+    public void testRecordApiErrors() {
+        Assertions.assertThrows(InvalidApiKeyException.class,
+                () -> block(rms.getManifestModel(ExampleData.EXAMPLE_RECORD_PARENT_ID, "INVALID", null)));
+        Assertions.assertThrows(RecordNotFoundException.class,
+                () -> block(rms.getManifestModel("/not/found", EXAMPLE_WSKEY, null)));
+        Assertions.assertThrows(RecordRetrieveException.class,
+                () -> block(rms.getManifestModel("/server/error", EXAMPLE_WSKEY, null)));
+        Assertions.assertThrows(RecordRetrieveException.class,
+                () -> block(rms.getManifestModel(ExampleData.EXAMPLE_RECORD_PARENT_ID, EXAMPLE_WSKEY,
+                        new URL("http://localhost:1"))));
+    }
+
+    /**
+     * Test if a Record API permit is only taken when the request is subscribed to, and always returned afterwards
+     */
+    @Test
+    public void testRecordApiPermit() throws EuropeanaApiException {
+        AdmissionLimiter limiter = ms.getRecordApiLimiter();
+        Mono<ManifestModel> notSubscribed = rms.getManifestModel(ExampleData.EXAMPLE_RECORD_PARENT_ID, EXAMPLE_WSKEY, null);
+        Assertions.assertNotNull(notSubscribed);
+        Assertions.assertEquals(0, limiter.getInFlight());
+
+        block(rms.getManifestModel(ExampleData.EXAMPLE_RECORD_PARENT_ID, EXAMPLE_WSKEY, null));
+        Assertions.assertThrows(RecordNotFoundException.class,
+                () -> block(rms.getManifestModel("/not/found", EXAMPLE_WSKEY, null)));
+        Assertions.assertEquals(0, limiter.getInFlight());
+    }
+
+    /**
+     * The reactive service should generate exactly the same manifests as the blocking service
+     */
+    @Test
+    public void testSameOutput() throws EuropeanaApiException, MalformedURLException {
+        URL fullTextApi = new URL(wmExtension.baseUrl());
+        ManifestModel model = ms.getManifestModel(ExampleData.EXAMPLE_RECORD_CHILD_ID, EXAMPLE_WSKEY, null);
+
+        String expectedV2 = ms.serializeManifest(ms.generateManifestV2(model, true, fullTextApi,
+                ManifestProjection.FULL, LanguageFilter.ALL));
+        byte[] v2 = block(rms.generateManifestV2(model, true, fullTextApi, ManifestProjection.FULL, LanguageFilter.ALL)
+                .flatMap(m -> rms.serialize(m, ManifestEncoding.JSON)));
+        Assertions.assertEquals(expectedV2, new String(v2, StandardCharsets.UTF_8));
+
+        String expectedV3 = ms.serializeManifest(ms.generateManifestV3(model, true, fullTextApi,
+                ManifestProjection.FULL, LanguageFilter.ALL, 0));
+        byte[] v3 = block(rms.generateManifestV3(model, true, fullTextApi, ManifestProjection.FULL, LanguageFilter.ALL, 0)
+                .flatMap(m -> rms.serialize(m, ManifestEncoding.JSON)));
+        Assertions.assertEquals(expectedV3, new String(v3, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A Full-Text API that is down should not prevent manifests from being generated
+     */
+    @Test
+    public void testFullTextApiDown() throws EuropeanaApiException, MalformedURLException {
+        ManifestModel model = ms.getManifestModel(ExampleData.EXAMPLE_RECORD_CHILD_ID, EXAMPLE_WSKEY, null);
+        Assertions.assertNotNull(block(rms.generateManifestV3(model, true, new URL("http://localhost:1"),
+                ManifestProjection.FULL, LanguageFilter.ALL, 0)));
+    }
+}
@@ -0,0 +1,41 @@
+package eu.europeana.iiif.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europeana.iiif.model.RecordListingPage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+/**
+ * Tests if Search API responses are converted correctly
+ */
+public class SearchApiListingClientTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testParsePage() throws IOException {
+        RecordListingPage page = SearchApiListingClient.parsePage(mapper.readTree("{\"success\":true,\"itemsCount\":2,"
+                + "\"totalResults\":3,\"nextCursor\":\"AoE/abc\",\"items\":["
+                + "{\"id\":\"/123/1\",\"title\":[\"First\"],\"edmPreview\":[\"https://api.europeana.eu/thumbnail/v2/url.json?uri=x\"]},"
+                + "{\"id\":\"/123/2\"}]}"));
+
+        Assertions.assertEquals("AoE/abc", page.getNextCursor());
+        Assertions.assertEquals(2, page.getItems().size());
+        Assertions.assertEquals("/123/1", page.getItems().get(0).getEuropeanaId());
+        Assertions.assertEquals("First", page.getItems().get(0).getTitle());
+        Assertions.assertEquals("https://api.europeana.eu/thumbnail/v2/url.json?uri=x", page.getItems().get(0).getThumbnailUrl());
+        Assertions.assertNull(page.getItems().get(1).getTitle());
+        Assertions.assertNull(page.getItems().get(1).getThumbnailUrl());
+    }
+
+    @Test
+    public void testParseLastPage() throws IOException {
+        RecordListingPage page = SearchApiListingClient.parsePage(mapper.readTree(
+                "{\"success\":true,\"itemsCount\":0,\"totalResults\":3,\"nextCursor\":\"AoE/def\",\"items\":[]}"));
+
+        Assertions.assertTrue(page.getItems().isEmpty());
+        Assertions.assertNull(page.getNextCursor());
+    }
+}
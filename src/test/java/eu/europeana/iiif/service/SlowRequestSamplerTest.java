@@ -0,0 +1,87 @@
+package eu.europeana.iiif.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests if the slow request sampler only keeps the most recent samples above the threshold
+ */
+public class SlowRequestSamplerTest {
+
+    private static final long THRESHOLD_NS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void testThreshold() {
+        SlowRequestSampler sampler = new SlowRequestSampler(100, 10);
+        try (StageTimings timings = StageTimings.start()) {
+            Assertions.assertFalse(sampler.sample("/presentation/1/2/manifest", 200, THRESHOLD_NS, timings));
+            Assertions.assertTrue(sampler.sample("/presentation/1/2/manifest", 200, THRESHOLD_NS + 1, timings));
+        }
+        Assertions.assertEquals(1, sampler.getSamples().size());
+
+        SlowRequestSampler disabled = new SlowRequestSampler(0, 10);
+        Assertions.assertFalse(disabled.isEnabled());
+        try (StageTimings timings = StageTimings.start()) {
+            Assertions.assertFalse(disabled.sample("/presentation/1/2/manifest", 200, THRESHOLD_NS, timings));
+        }
+        Assertions.assertTrue(disabled.getSamples().isEmpty());
+    }
+
+    @Test
+    public void testRingBuffer() {
+        SlowRequestSampler sampler = new SlowRequestSampler(100, 3);
+        for (int i = 1; i <= 5; i++) {
+            try (StageTimings timings = StageTimings.start()) {
+                timings.setRecordId("/1/" + i);
+                sampler.sample("/presentation/1/" + i + "/manifest", 200, THRESHOLD_NS * 2, timings);
+            }
+        }
+        List<SlowRequestSample> samples = sampler.getSamples();
+        Assertions.assertEquals(3, samples.size());
+        Assertions.assertEquals("/1/5", samples.get(0).getRecordId());
+        Assertions.assertEquals("/1/4", samples.get(1).getRecordId());
+        Assertions.assertEquals("/1/3", samples.get(2).getRecordId());
+
+        sampler.clear();
+        Assertions.assertTrue(sampler.getSamples().isEmpty());
+    }
+
+    @Test
+    public void testSampleContents() {
+        SlowRequestSampler sampler = new SlowRequestSampler(100, 10);
+        try (StageTimings timings = StageTimings.start()) {
+            timings.setIiifVersion("3");
+            timings.setRecordId("/1/2");
+            timings.setRecordApiStatus(200);
+            timings.setRecordSize(12_345);
+            timings.end(StageTimings.Stage.RECORD_FETCH, timings.begin());
+            timings.setWebResourceCount(42);
+            timings.end(StageTimings.Stage.MAPPING, timings.begin());
+            timings.setFullTextApiStatus(503);
+            timings.addSummarySize(100);
+            timings.addSummarySize(200);
+            timings.addUpstreamError(StageTimings.Upstream.FULLTEXT_API, new SocketTimeoutException());
+            sampler.sample("/presentation/1/2/manifest", 200, 1_234_567_891L, timings);
+        }
+
+        SlowRequestSample sample = sampler.getSamples().get(0);
+        Assertions.assertEquals("/presentation/1/2/manifest", sample.getUri());
+        Assertions.assertEquals(200, sample.getStatus());
+        Assertions.assertEquals(1234.568, sample.getDurationMs());
+        Assertions.assertEquals("3", sample.getIiifVersion());
+        Assertions.assertEquals("/1/2", sample.getRecordId());
+        Assertions.assertEquals(42, sample.getWebResourceCount());
+        Assertions.assertEquals(12_345, sample.getRecordSize());
+        Assertions.assertEquals(300, sample.getSummarySize());
+        Assertions.assertEquals(200, sample.getRecordApiStatus());
+        Assertions.assertEquals(503, sample.getFullTextApiStatus());
+        Assertions.assertEquals("miss", sample.getRecordCache());
+        Assertions.assertEquals(List.of("record_fetch", "mapping"), List.copyOf(sample.getStagesMs().keySet()));
+        Assertions.assertEquals(List.of("fulltext_api: SocketTimeoutException"), sample.getUpstreamErrors());
+        Assertions.assertNotNull(sample.getTimestamp());
+    }
+}
@@ -23,6 +23,13 @@ class ValidationUtilsTest {
                 ValidateUtils.validateRecordIdFormat("/2023006/24062A51 priref_16913"));
     }
 
+    @Test
+    void testDatasetId() throws IllegalArgumentException {
+        Assertions.assertTrue(ValidateUtils.validateDatasetIdFormat("2023006"));
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+                ValidateUtils.validateDatasetIdFormat("2023006/24062A51"));
+    }
+
     @Test
     void testApiKey() throws IllegalArgumentException {
         Assertions.assertTrue(ValidateUtils.validateWskeyFormat("1aSd456"));
@@ -0,0 +1,157 @@
+package eu.europeana.iiif.web;
+
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.model.ManifestDefinitions;
+import eu.europeana.iiif.service.FreshnessIndex;
+import eu.europeana.iiif.service.ManifestCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests if the ConditionalRequestFilter answers If-None-Match requests from the freshness index
+ */
+public class ConditionalRequestFilterTest {
+
+    private static final String MANIFEST_PATH = "/presentation/1/2/manifest";
+    private static final String ETAG_1 = "W/\"1234\"";
+    private static final String ETAG_2 = "W/\"5678\"";
+    private static final String TIMESTAMP_UPDATE = "Wed, 28 Oct 2015 07:28:00 GMT";
+    private static final String TIMESTAMP_AFTER  = "Tue, 12 Jul 2016 11:07:32 GMT";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ManifestCache manifestCache;
+    private ConditionalRequestFilter filter;
+    private AtomicInteger chainCalls;
+
+    @BeforeEach
+    public void setup() {
+        ManifestSettings settings = Mockito.mock(ManifestSettings.class);
+        Mockito.when(settings.getConditionalFastPathStaleness()).thenReturn(60L);
+        Mockito.when(settings.getConditionalFastPathMaxSize()).thenReturn(100L);
+        manifestCache = Mockito.mock(ManifestCache.class);
+        filter = new ConditionalRequestFilter(new FreshnessIndex(settings), manifestCache, false, meterRegistry);
+        chainCalls = new AtomicInteger();
+    }
+
+    private static MockHttpServletRequest createRequest(String ifNoneMatch, String accept) {
+        return createRequest(ifNoneMatch, accept, "wskey=test&format=3&profile=minimal");
+    }
+
+    private static MockHttpServletRequest createRequest(String ifNoneMatch, String accept, String query) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", MANIFEST_PATH);
+        request.setQueryString(query);
+        for (String parameter : query.split("&")) {
+            String[] nameValue = parameter.split("=");
+            request.addParameter(nameValue[0], nameValue[1]);
+        }
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        if (accept != null) {
+            request.addHeader(HttpHeaders.ACCEPT, accept);
+        }
+        return request;
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request, String eTag, String lastModified)
+            throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> {
+            chainCalls.incrementAndGet();
+            HttpServletResponse httpResponse = (HttpServletResponse) res;
+            httpResponse.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            httpResponse.setHeader("eTag", eTag);
+            httpResponse.setHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+            httpResponse.addHeader(HttpHeaders.VARY, "Accept");
+            httpResponse.setStatus(HttpServletResponse.SC_OK);
+        };
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    @Test
+    public void testFastPath() throws ServletException, IOException {
+        perform(createRequest(null, null), ETAG_1, TIMESTAMP_UPDATE);
+        Assertions.assertEquals(1, chainCalls.get());
+
+        MockHttpServletResponse response = perform(createRequest(ETAG_1, null), ETAG_1, TIMESTAMP_UPDATE);
+        Assertions.assertEquals(1, chainCalls.get());
+        Assertions.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        Assertions.assertEquals(ETAG_1, response.getHeader(HttpHeaders.ETAG));
+        Assertions.assertEquals(TIMESTAMP_UPDATE, response.getHeader(HttpHeaders.LAST_MODIFIED));
+        Assertions.assertEquals("Accept", response.getHeader(HttpHeaders.VARY));
+        Assertions.assertEquals(1, filter.getShortCircuited());
+        Assertions.assertEquals(1, meterRegistry.get("manifest.conditional.fast-path").counter().count());
+
+        // other ETag
+        perform(createRequest(ETAG_2, null), ETAG_1, TIMESTAMP_UPDATE);
+        Assertions.assertEquals(2, chainCalls.get());
+    }
+
+    @Test
+    public void testOtherApiKeyAndParameterOrder() throws ServletException, IOException {
+        perform(createRequest(null, null), ETAG_1, TIMESTAMP_UPDATE);
+        MockHttpServletResponse response = perform(createRequest(ETAG_1, "application/json",
+                "profile=minimal&wskey=other&format=3"), ETAG_1, TIMESTAMP_UPDATE);
+        Assertions.assertEquals(1, chainCalls.get());
+        Assertions.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+    }
+
+    @Test
+    public void testIfNoneMatchList() throws ServletException, IOException {
+        perform(createRequest(null, null), ETAG_1, TIMESTAMP_UPDATE);
+        // weak comparison, so the strong version of the ETag matches as well
+        perform(createRequest(ETAG_2 + ", \"1234\"", null), ETAG_1, TIMESTAMP_UPDATE);
+        perform(createRequest("*", null), ETAG_1, TIMESTAMP_UPDATE);
+        Assertions.assertEquals(1, chainCalls.get());
+        Assertions.assertEquals(2, filter.getShortCircuited());
+    }
+
+    @Test
+    public void testOtherVariant() throws ServletException, IOException {
+        perform(createRequest(null, null), ETAG_1, TIMESTAMP_UPDATE);
+        perform(createRequest(ETAG_1, ManifestDefinitions.MEDIA_TYPE_SMILE), ETAG_2, TIMESTAMP_UPDATE);
+        perform(createRequest(ETAG_1, null, "wskey=test&format=2&profile=minimal"), ETAG_2, TIMESTAMP_UPDATE);
+        perform(createRequest(ETAG_1, null, "wskey=test&format=3"), ETAG_2, TIMESTAMP_UPDATE);
+        Assertions.assertEquals(4, chainCalls.get());
+        Assertions.assertEquals(0, filter.getShortCircuited());
+    }
+
+    @Test
+    public void testSortedParameters() {
+        Assertions.assertEquals("", ConditionalRequestFilter.getSortedParameters("wskey=test"));
+        Assertions.assertEquals("fields=a&fields=b&format=3&lang=nl",
+                ConditionalRequestFilter.getSortedParameters("wskey=test&lang=nl&fields=a&format=3&fields=b"));
+    }
+
+    @Test
+    public void testRecordChanged() throws ServletException, IOException {
+        perform(createRequest(null, null), ETAG_1, TIMESTAMP_UPDATE);
+        // another variant of the same record shows the record was updated
+        perform(createRequest(null, ManifestDefinitions.MEDIA_TYPE_SMILE), ETAG_2, TIMESTAMP_AFTER);
+
+        perform(createRequest(ETAG_1, null), ETAG_1, TIMESTAMP_AFTER);
+        Assertions.assertEquals(3, chainCalls.get());
+        Assertions.assertEquals(0, filter.getShortCircuited());
+    }
+
+    @Test
+    public void testRefusedApiKey() throws ServletException, IOException {
+        perform(createRequest(null, null), ETAG_1, TIMESTAMP_UPDATE);
+        Mockito.when(manifestCache.isInvalidWskey("test")).thenReturn(true);
+        perform(createRequest(ETAG_1, null), ETAG_1, TIMESTAMP_UPDATE);
+        Assertions.assertEquals(2, chainCalls.get());
+    }
+}
@@ -2,16 +2,27 @@ package eu.europeana.iiif.web;
 
 import eu.europeana.iiif.AcceptUtils;
 import eu.europeana.iiif.IIIFDefinitions;
+import eu.europeana.iiif.config.CachePolicy;
 import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.exception.CanvasNotFoundException;
+import eu.europeana.iiif.exception.ServiceOverloadedException;
+import eu.europeana.iiif.model.ManifestDefinitions;
+import eu.europeana.iiif.model.ManifestEncoding;
+import eu.europeana.iiif.model.ManifestModel;
 import eu.europeana.iiif.model.v2.ManifestV2;
+import eu.europeana.iiif.model.v3.CanvasPage;
 import eu.europeana.iiif.model.v3.ManifestV3;
+import eu.europeana.iiif.service.ApiKeyScheduler;
+import eu.europeana.iiif.service.EdmManifestUtils;
 import eu.europeana.iiif.service.ManifestService;
+import eu.europeana.iiif.service.PriorityLanes;
 import org.apache.logging.log4j.LogManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpHeaders;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
@@ -20,6 +31,7 @@ import org.springframework.test.web.servlet.MvcResult;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -34,11 +46,17 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  */
 @TestPropertySource("classpath:iiif-test.properties")
 @WebMvcTest(ManifestController.class)
+@Import({ApiKeyScheduler.class, PriorityLanes.class})
 public class ManifestControllerTest {
 
     private static final String JSON_RECORD = "{ \"object\": {\"timestamp_update\":\"2015-10-28T07:28:00Z\"} }";
     private static final String JSONLD_V2_OUTPUT = "{Manifest : JSONLD-V2}";
     private static final String JSONLD_V3_OUTPUT = "{Manifest : JSONLD-V3}";
+    private static final byte[] CBOR_V2_OUTPUT = {(byte) 0xbf, 0x01, (byte) 0xff};
+    private static final byte[] SMILE_V3_OUTPUT = {0x3a, 0x29, 0x0a, 0x03};
+    private static final String JSONLD_CANVAS_PAGE_OUTPUT = "{CanvasPage : JSONLD-V3}";
+    private static final String JSONLD_CANVAS_V2_OUTPUT = "{Canvas : JSONLD-V2}";
+    private static final String JSONLD_CANVAS_V3_OUTPUT = "{Canvas : JSONLD-V3}";
     private static final String TIMESTAMP_UPDATE = "Wed, 28 Oct 2015 07:28:00 GMT";
     private static final String TIMESTAMP_AFTER  = "Tue, 12 Jul 2016 11:07:32 GMT";
     private static final String TIMESTAMP_BEFORE = "Wed, 18 Apr 2012 04:54:16 GMT";
@@ -68,13 +86,40 @@ public class ManifestControllerTest {
         // mock v2 and v3 manifest responses
         ManifestV2 manifest2 = new ManifestV2("/1/2", "/1/2", "https://europeana.eu/test.jpg");
         ManifestV3 manifest3 = new ManifestV3("/1/2", "/1/2", "https://europeana.eu/test.jpg");
-        given(manifestService.getRecordJson("/1/2", "test")).willReturn(JSON_RECORD);
-        given(manifestService.getRecordJson("/1/2", "test", null)).willReturn(JSON_RECORD);
-        given(manifestService.generateManifestV2(eq(JSON_RECORD), any())).willReturn(manifest2);
-        given(manifestService.generateManifestV3(eq(JSON_RECORD), any())).willReturn(manifest3);
+        ManifestModel model = new ManifestModel("/1/2", null, EdmManifestUtils.getRecordTimestampUpdate(JSON_RECORD),
+                null, JSON_RECORD.length());
+        given(manifestService.getManifestModel("/1/2", "test", null)).willReturn(model);
+        given(manifestService.getManifestModel("/1/3", "test", null))
+                .willThrow(new ServiceOverloadedException("test", 5));
+        given(manifestService.generateManifestV2(eq(model), any(), any(), any())).willReturn(manifest2);
+        given(manifestService.generateManifestV3(eq(model), any(), any(), any(), anyInt())).willReturn(manifest3);
+        CanvasPage canvasPage = new CanvasPage("/1/2/canvases/2", "/1/2", 2, 3);
+        given(manifestService.generateCanvasPageV3(eq(model), eq(2), eq(2), any(), any())).willReturn(canvasPage);
+        given(manifestService.generateCanvasPageV3(eq(model), eq(3), eq(2), any(), any()))
+                .willThrow(new CanvasNotFoundException("test"));
+        given(manifestService.serializeManifest(canvasPage)).willReturn(JSONLD_CANVAS_PAGE_OUTPUT);
+        eu.europeana.iiif.model.v2.Canvas canvas2 = new eu.europeana.iiif.model.v2.Canvas("/1/2/canvas/p3", 3);
+        eu.europeana.iiif.model.v3.Canvas canvas3 = new eu.europeana.iiif.model.v3.Canvas("/1/2/canvas/p3", 3);
+        given(manifestService.generateCanvasV2(eq(model), eq(3), any(), any())).willReturn(canvas2);
+        given(manifestService.generateCanvasV3(eq(model), eq(3), any(), any())).willReturn(canvas3);
+        given(manifestService.generateCanvasV3(eq(model), eq(4), any(), any()))
+                .willThrow(new CanvasNotFoundException("test"));
+        given(manifestService.serializeManifest(canvas2)).willReturn(JSONLD_CANVAS_V2_OUTPUT);
+        given(manifestService.serializeManifest(canvas3)).willReturn(JSONLD_CANVAS_V3_OUTPUT);
         given(manifestService.serializeManifest(manifest2)).willReturn(JSONLD_V2_OUTPUT);
+        given(manifestService.serializeManifest(manifest2, ManifestEncoding.CBOR)).willReturn(CBOR_V2_OUTPUT);
+        given(manifestService.serializeManifest(manifest3, ManifestEncoding.SMILE)).willReturn(SMILE_V3_OUTPUT);
         given(manifestService.serializeManifest(manifest3)).willReturn(JSONLD_V3_OUTPUT);
         given(manifestService.getSettings()).willReturn(manifestSettings);
+
+        // manifest for which the full-text summary couldn't be retrieved
+        ManifestModel degradedModel = new ManifestModel("/1/4", null, EdmManifestUtils.getRecordTimestampUpdate(JSON_RECORD),
+                null, JSON_RECORD.length());
+        ManifestV2 degradedManifest = new ManifestV2("/1/4", "/1/4", "https://europeana.eu/test.jpg");
+        degradedManifest.setFullTextIncomplete(true);
+        given(manifestService.getManifestModel("/1/4", "test", null)).willReturn(degradedModel);
+        given(manifestService.generateManifestV2(eq(degradedModel), any(), any(), any())).willReturn(degradedManifest);
+        given(manifestService.serializeManifest(degradedManifest)).willReturn(JSONLD_V2_OUTPUT);
     }
 
     /**
@@ -98,6 +143,44 @@ public class ManifestControllerTest {
                     .andExpect(status().is4xxClientError());
     }
 
+    /**
+     * Test if requests refused by admission control get a 503 with Retry-After header
+     */
+    @Test
+    public void testManifestOverloaded() throws Exception {
+        this.mockMvc.perform(get("/presentation/1/3/manifest").param("wskey", "test"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "5"));
+    }
+
+    /**
+     * Test if responses get the Cache-Control header of their response class, and a Surrogate-Key header
+     */
+    @Test
+    public void testManifestCachePolicy() throws Exception {
+        given(manifestSettings.getCacheControl(CachePolicy.ResponseClass.NORMAL)).willReturn("max-age=300, s-maxage=86400");
+        given(manifestSettings.getCacheControl(CachePolicy.ResponseClass.DEGRADED)).willReturn("max-age=0, s-maxage=60");
+        given(manifestSettings.getCacheControl(CachePolicy.ResponseClass.ERROR)).willReturn("max-age=0, s-maxage=10");
+
+        this.mockMvc.perform(get("/presentation/1/2/manifest").param("wskey", "test"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Cache-Control", "max-age=300, s-maxage=86400"))
+                    .andExpect(header().string("Surrogate-Key", "record/1/2 dataset/1"))
+                    .andExpect(header().string("eTag", notNullValue()));
+
+        // no full-text links, so don't allow revalidation
+        this.mockMvc.perform(get("/presentation/1/4/manifest").param("wskey", "test"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Cache-Control", "max-age=0, s-maxage=60"))
+                    .andExpect(header().string("Surrogate-Key", "record/1/4 dataset/1"))
+                    .andExpect(header().doesNotExist("eTag"))
+                    .andExpect(header().doesNotExist("Last-Modified"));
+
+        this.mockMvc.perform(get("/presentation/1/3/manifest").param("wskey", "test"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Cache-Control", "max-age=0, s-maxage=10"));
+    }
+
     /**
      * Test if we handle accept headers properly
      */
@@ -248,10 +331,182 @@ public class ManifestControllerTest {
                     .andExpect(status().isPreconditionFailed());
     }
 
+    /**
+     * Check if each projection gets its own eTag and the full manifest keeps the original one
+     */
+    @Test
+    public void testManifestProjectionETag() throws Exception {
+        this.mockMvc.perform(get("/presentation/1/2/manifest").param("wskey", "test")
+                                                              .param("profile", "full")
+                                                              .header(AcceptUtils.ACCEPT, JSON_V2))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("eTag", equalTo(ETAG_HEADER_V2)));
+
+        MvcResult minimal = this.mockMvc.perform(get("/presentation/1/2/manifest").param("wskey", "test")
+                                                                                  .param("profile", "minimal")
+                                                                                  .header(AcceptUtils.ACCEPT, JSON_V2))
+                                        .andExpect(status().isOk())
+                                        .andExpect(header().string("eTag", not(equalTo(ETAG_HEADER_V2))))
+                                        .andReturn();
+
+        // same projection requested via the fields parameter (in different order) should result in the same eTag
+        this.mockMvc.perform(get("/presentation/1/2/manifest").param("wskey", "test")
+                                                              .param("fields", "items.height,items.width,thumbnail,label,items.id")
+                                                              .header(AcceptUtils.ACCEPT, JSON_V2))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("eTag", equalTo(minimal.getResponse().getHeader("eTag"))));
+    }
+
+    /**
+     * Check if we get a 400 for unsupported profiles or fields
+     */
+    @Test
+    public void testManifestProjectionInvalid() throws Exception {
+        this.mockMvc.perform(get("/presentation/1/2/manifest").param("wskey", "test")
+                                                              .param("profile", "tiny"))
+                    .andExpect(status().isBadRequest());
+        this.mockMvc.perform(get("/presentation/1/2/manifest").param("wskey", "test")
+                                                              .param("fields", "label,items.unknown"))
+                    .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Check if the lang parameter results in a different eTag and that the Accept-Language header is only used (and
+     * added to the Vary header) when enabled
+     */
+    @Test
+    public void testManifestLanguageFilter() throws Exception {
+        MvcResult dutch = this.mockMvc.perform(get("/presentation/1/2/manifest").param("wskey", "test")
+                                                                                .param("lang", "nl")
+                                                                                .header(AcceptUtils.ACCEPT, JSON_V2))
+                                      .andExpect(status().isOk())
+                                      .andExpect(header().string("eTag", not(equalTo(ETAG_HEADER_V2))))
+                                      .andExpect(header().stringValues("Vary", not(hasItem(containsString(HttpHeaders.ACCEPT_LANGUAGE)))))
+                                      .andReturn();
+
+        // header is ignored by default
+        this.mockMvc.perform(get("/presentation/1/2/manifest").param("wskey", "test")
+                                                              .header(AcceptUtils.ACCEPT, JSON_V2)
+                                                              .header(HttpHeaders.ACCEPT_LANGUAGE, "nl-NL,nl;q=0.9"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("eTag", equalTo(ETAG_HEADER_V2)));
+
+        given(manifestSettings.getAcceptLanguageEnabled()).willReturn(Boolean.TRUE);
+        this.mockMvc.perform(get("/presentation/1/2/manifest").param("wskey", "test")
+                                                              .header(AcceptUtils.ACCEPT, JSON_V2)
+                                                              .header(HttpHeaders.ACCEPT_LANGUAGE, "nl-NL,nl;q=0.9"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("eTag", equalTo(dutch.getResponse().getHeader("eTag"))))
+                    .andExpect(header().stringValues("Vary", hasItem(containsString(HttpHeaders.ACCEPT_LANGUAGE))));
+
+        this.mockMvc.perform(get("/presentation/1/2/manifest").param("wskey", "test")
+                                                              .param("lang", "n!"))
+                    .andExpect(status().isBadRequest());
+    }
+
     /**
      * A pre-flight request is an OPTIONS request using three HTTP request headers:
      * Access-Control-Request-Method, Access-Control-Request-Headers, and the Origin header.
      */
+    /**
+     * Test if we return binary encoded manifests when requested
+     */
+    @Test
+    public void testManifestBinaryEncoding() throws Exception {
+        this.mockMvc.perform(get("/presentation/1/2/manifest").param("wskey", "test")
+                        .header(AcceptUtils.ACCEPT, ManifestDefinitions.MEDIA_TYPE_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", containsString(ManifestDefinitions.MEDIA_TYPE_CBOR)))
+                .andExpect(header().string("Content-Type", containsString(PROFILE_V2)))
+                .andExpect(header().string("eTag", not(ETAG_HEADER_V2)))
+                .andExpect(content().bytes(CBOR_V2_OUTPUT));
+
+        this.mockMvc.perform(get("/presentation/1/2/manifest").param("wskey", "test").param("format", "3")
+                        .header(AcceptUtils.ACCEPT, ManifestDefinitions.MEDIA_TYPE_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", containsString(ManifestDefinitions.MEDIA_TYPE_SMILE)))
+                .andExpect(header().string("Content-Type", containsString(PROFILE_V3)))
+                .andExpect(header().string("eTag", not(ETAG_HEADER_V3)))
+                .andExpect(content().bytes(SMILE_V3_OUTPUT));
+    }
+
+    /**
+     * Test if the pageSize parameter is validated and results in a different eTag (for v3 only)
+     */
+    @Test
+    public void testManifestCanvasPageSize() throws Exception {
+        this.mockMvc.perform(get("/presentation/1/2/manifest").param("wskey", "test").param("format", "3")
+                        .param("pageSize", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("eTag", not(ETAG_HEADER_V3)))
+                .andExpect(content().json(JSONLD_V3_OUTPUT));
+
+        // v2 doesn't support paging, so the parameter is ignored
+        this.mockMvc.perform(get("/presentation/1/2/manifest").param("wskey", "test").param("pageSize", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("eTag", ETAG_HEADER_V2));
+
+        this.mockMvc.perform(get("/presentation/1/2/manifest").param("wskey", "test").param("format", "3")
+                        .param("pageSize", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test retrieving a page of canvases
+     */
+    @Test
+    public void testCanvasPage() throws Exception {
+        MvcResult result = this.mockMvc.perform(get("/presentation/1/2/canvases/2").param("wskey", "test")
+                        .param("pageSize", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", containsString(PROFILE_V3)))
+                .andExpect(header().string("Content-Type", containsString(AcceptUtils.MEDIA_TYPE_JSON)))
+                .andExpect(header().string("Last-Modified", TIMESTAMP_UPDATE))
+                .andExpect(content().json(JSONLD_CANVAS_PAGE_OUTPUT))
+                .andReturn();
+        String eTag = result.getResponse().getHeader("eTag");
+
+        this.mockMvc.perform(get("/presentation/1/2/canvases/2").param("wskey", "test").param("pageSize", "2")
+                        .header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+
+        this.mockMvc.perform(get("/presentation/1/2/canvases/3").param("wskey", "test").param("pageSize", "2"))
+                .andExpect(status().isNotFound());
+        this.mockMvc.perform(get("/presentation/1/2/canvases/2").param("wskey", "test").param("pageSize", "5000"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test retrieving a single canvas, both with and without 'p' prefix
+     */
+    @Test
+    public void testCanvas() throws Exception {
+        MvcResult result = this.mockMvc.perform(get("/presentation/1/2/canvas/p3").param("wskey", "test"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", containsString(PROFILE_V2)))
+                .andExpect(header().string("Last-Modified", TIMESTAMP_UPDATE))
+                .andExpect(content().json(JSONLD_CANVAS_V2_OUTPUT))
+                .andReturn();
+        String eTagV2 = result.getResponse().getHeader("eTag");
+
+        this.mockMvc.perform(get("/presentation/1/2/canvas/3").param("wskey", "test")
+                        .header(AcceptUtils.ACCEPT, JSONLD_V3))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", containsString(PROFILE_V3)))
+                .andExpect(header().string("Content-Type", containsString(AcceptUtils.MEDIA_TYPE_JSONLD)))
+                .andExpect(header().string("eTag", not(eTagV2)))
+                .andExpect(content().json(JSONLD_CANVAS_V3_OUTPUT));
+
+        this.mockMvc.perform(get("/presentation/1/2/canvas/p3").param("wskey", "test")
+                        .header("If-None-Match", eTagV2))
+                .andExpect(status().isNotModified());
+
+        this.mockMvc.perform(get("/presentation/1/2/canvas/p4").param("wskey", "test").param("format", "3"))
+                .andExpect(status().isNotFound());
+        this.mockMvc.perform(get("/presentation/1/2/canvas/x4").param("wskey", "test"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void testCorsPreFlight() throws Exception {
         mockMvc.perform(options("/presentation/1/2/manifest")
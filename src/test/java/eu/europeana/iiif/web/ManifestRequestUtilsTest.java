@@ -0,0 +1,65 @@
+package eu.europeana.iiif.web;
+
+import eu.europeana.iiif.AcceptUtils;
+import eu.europeana.iiif.IIIFDefinitions;
+import eu.europeana.iiif.exception.InvalidIIIFVersionException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+/**
+ * Tests if servlet and reactive requests get the same IIIF version
+ */
+public class ManifestRequestUtilsTest {
+
+    private static final String[] ACCEPTS = {
+            null,
+            AcceptUtils.MEDIA_TYPE_JSON,
+            AcceptUtils.MEDIA_TYPE_JSONLD,
+            AcceptUtils.MEDIA_TYPE_JSON + ";profile=X",
+            AcceptUtils.MEDIA_TYPE_JSON + ";profile=\"" + IIIFDefinitions.MEDIA_TYPE_IIIF_V2 + "\"",
+            AcceptUtils.MEDIA_TYPE_JSONLD + ";profile=\"" + IIIFDefinitions.MEDIA_TYPE_IIIF_V3 + "\"",
+            AcceptUtils.MEDIA_TYPE_JSON + ";profile=" + IIIFDefinitions.MEDIA_TYPE_IIIF_V3
+    };
+    private static final String[] FORMATS = {null, "", "2", "3", "4"};
+
+    @Test
+    public void testIIIFVersionSameForBothStacks() {
+        for (String accept : ACCEPTS) {
+            for (String format : FORMATS) {
+                MockHttpServletRequest request = new MockHttpServletRequest("GET", "/presentation/1/2/manifest");
+                HttpHeaders headers = new HttpHeaders();
+                if (accept != null) {
+                    request.addHeader(AcceptUtils.ACCEPT, accept);
+                    headers.add(AcceptUtils.ACCEPT, accept);
+                }
+                String message = "Accept " + accept + ", format " + format;
+                Assertions.assertEquals(getVersion(() -> ManifestRequestUtils.getIIIFVersion(request, format)),
+                        getVersion(() -> ManifestRequestUtils.getIIIFVersion(headers, format)), message);
+            }
+        }
+    }
+
+    @Test
+    public void testIIIFVersionFromHeaders() throws InvalidIIIFVersionException {
+        HttpHeaders headers = new HttpHeaders();
+        Assertions.assertEquals("2", ManifestRequestUtils.getIIIFVersion(headers, null));
+        headers.add(AcceptUtils.ACCEPT, AcceptUtils.MEDIA_TYPE_JSONLD + ";profile=\"" + IIIFDefinitions.MEDIA_TYPE_IIIF_V3 + "\"");
+        Assertions.assertEquals("3", ManifestRequestUtils.getIIIFVersion(headers, null));
+        Assertions.assertEquals("2", ManifestRequestUtils.getIIIFVersion(headers, "2"));
+        Assertions.assertThrows(InvalidIIIFVersionException.class, () -> ManifestRequestUtils.getIIIFVersion(headers, "4"));
+    }
+
+    private interface VersionSupplier {
+        String get() throws InvalidIIIFVersionException;
+    }
+
+    private static String getVersion(VersionSupplier supplier) {
+        try {
+            return supplier.get();
+        } catch (InvalidIIIFVersionException e) {
+            return "invalid";
+        }
+    }
+}
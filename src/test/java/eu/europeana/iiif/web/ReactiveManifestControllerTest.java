@@ -0,0 +1,191 @@
+package eu.europeana.iiif.web;
+
+import eu.europeana.iiif.AcceptUtils;
+import eu.europeana.iiif.IIIFDefinitions;
+import eu.europeana.iiif.config.ManifestSettings;
+import eu.europeana.iiif.exception.CanvasNotFoundException;
+import eu.europeana.iiif.exception.InvalidApiKeyException;
+import eu.europeana.iiif.exception.ReactiveExceptionHandler;
+import eu.europeana.iiif.model.ManifestDefinitions;
+import eu.europeana.iiif.model.ManifestEncoding;
+import eu.europeana.iiif.model.ManifestModel;
+import eu.europeana.iiif.model.v2.ManifestV2;
+import eu.europeana.iiif.model.v3.CanvasPage;
+import eu.europeana.iiif.model.v3.ManifestV3;
+import eu.europeana.iiif.service.EdmManifestUtils;
+import eu.europeana.iiif.service.ReactiveManifestService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * Tests if the ReactiveManifestController returns the same responses (and headers) as the ManifestController
+ */
+@TestPropertySource("classpath:iiif-test.properties")
+@ActiveProfiles("reactive")
+@WebFluxTest(ReactiveManifestController.class)
+@Import(ReactiveExceptionHandler.class)
+public class ReactiveManifestControllerTest {
+
+    private static final String JSON_RECORD = "{ \"object\": {\"timestamp_update\":\"2015-10-28T07:28:00Z\"} }";
+    private static final String JSONLD_V2_OUTPUT = "{\"Manifest\" : \"JSONLD-V2\"}";
+    private static final String JSONLD_V3_OUTPUT = "{\"Manifest\" : \"JSONLD-V3\"}";
+    private static final String JSONLD_CANVAS_PAGE_OUTPUT = "{\"CanvasPage\" : \"JSONLD-V3\"}";
+    private static final byte[] CBOR_V2_OUTPUT = {(byte) 0xbf, 0x01, (byte) 0xff};
+    private static final String TIMESTAMP_UPDATE = "Wed, 28 Oct 2015 07:28:00 GMT";
+    // same eTags as in ManifestControllerTest
+    private static final String ETAG_HEADER_V2 = "W/\"f0524d47eba1d4f83dbc02cd1786a4e12edfa2a187b0dab730ec9310fa01868d\"";
+    private static final String ETAG_HEADER_V3 = "W/\"545f96ddfbdef6a91d60d0176229e8a2abb73f20694b425bd428573f522e0bbe\"";
+
+    private static final String PROFILE_V2 = "profile=\""+ IIIFDefinitions.MEDIA_TYPE_IIIF_V2+"\"";
+    private static final String PROFILE_V3 = "profile=\""+ IIIFDefinitions.MEDIA_TYPE_IIIF_V3+"\"";
+    private static final String JSONLD_V3 = AcceptUtils.MEDIA_TYPE_JSONLD + AcceptUtils.ACCEPT_DELIMITER + PROFILE_V3;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactiveManifestService manifestService;
+    @MockBean
+    private ManifestSettings manifestSettings;
+
+    @BeforeEach
+    public void setup() {
+        given(manifestSettings.getAppVersion()).willReturn("v1.0-test");
+        given(manifestService.getSettings()).willReturn(manifestSettings);
+
+        ManifestV2 manifest2 = new ManifestV2("/1/2", "/1/2", "https://europeana.eu/test.jpg");
+        ManifestV3 manifest3 = new ManifestV3("/1/2", "/1/2", "https://europeana.eu/test.jpg");
+        ManifestModel model = new ManifestModel("/1/2", null, EdmManifestUtils.getRecordTimestampUpdate(JSON_RECORD),
+                null, JSON_RECORD.length());
+        given(manifestService.getManifestModel("/1/2", "test", null)).willReturn(Mono.just(model));
+        given(manifestService.getManifestModel("/1/2", "invalid", null))
+                .willReturn(Mono.error(new InvalidApiKeyException("API key is not valid")));
+        given(manifestService.getManifestModel("/1/3", "test", null))
+                .willReturn(Mono.error(new RejectedExecutionException("Task capacity reached")));
+        given(manifestService.generateManifestV2(eq(model), anyBoolean(), any(), any(), any())).willReturn(Mono.just(manifest2));
+        given(manifestService.generateManifestV3(eq(model), anyBoolean(), any(), any(), any(), anyInt())).willReturn(Mono.just(manifest3));
+        CanvasPage canvasPage = new CanvasPage("/1/2/canvases/2", "/1/2", 2, 3);
+        given(manifestService.generateCanvasPageV3(eq(model), eq(2), eq(2), anyBoolean(), any(), any())).willReturn(Mono.just(canvasPage));
+        given(manifestService.generateCanvasPageV3(eq(model), eq(3), eq(2), anyBoolean(), any(), any()))
+                .willReturn(Mono.error(new CanvasNotFoundException("test")));
+        given(manifestService.serialize(manifest2, ManifestEncoding.JSON)).willReturn(Mono.just(JSONLD_V2_OUTPUT.getBytes(StandardCharsets.UTF_8)));
+        given(manifestService.serialize(manifest3, ManifestEncoding.JSON)).willReturn(Mono.just(JSONLD_V3_OUTPUT.getBytes(StandardCharsets.UTF_8)));
+        given(manifestService.serialize(manifest2, ManifestEncoding.CBOR)).willReturn(Mono.just(CBOR_V2_OUTPUT));
+        given(manifestService.serialize(canvasPage, ManifestEncoding.JSON)).willReturn(Mono.just(JSONLD_CANVAS_PAGE_OUTPUT.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Basic manifest test (no parameters), default we expect a v2 manifest with the same headers as the servlet stack
+     */
+    @Test
+    public void testManifest() {
+        webTestClient.get().uri("/presentation/1/2/manifest?wskey=test").exchange()
+                .expectStatus().isOk()
+                .expectHeader().value("Content-Type", containsString(AcceptUtils.MEDIA_TYPE_JSON))
+                .expectHeader().value("Content-Type", containsString(PROFILE_V2))
+                .expectHeader().valueEquals("eTag", ETAG_HEADER_V2)
+                .expectHeader().valueEquals("Last-Modified", TIMESTAMP_UPDATE)
+                .expectHeader().valueEquals("Cache-Control", "no-cache")
+                .expectHeader().valueEquals("Surrogate-Key", "record/1/2 dataset/1")
+                .expectBody().json(JSONLD_V2_OUTPUT);
+    }
+
+    /**
+     * Test version negotiation using the Accept header and format parameter
+     */
+    @Test
+    public void testManifestVersion() {
+        webTestClient.get().uri("/presentation/1/2/manifest?wskey=test").header(AcceptUtils.ACCEPT, JSONLD_V3).exchange()
+                .expectStatus().isOk()
+                .expectHeader().value("Content-Type", containsString(AcceptUtils.MEDIA_TYPE_JSONLD))
+                .expectHeader().value("Content-Type", containsString(PROFILE_V3))
+                .expectHeader().valueEquals("eTag", ETAG_HEADER_V3)
+                .expectBody().json(JSONLD_V3_OUTPUT);
+
+        webTestClient.get().uri("/presentation/1/2/manifest?wskey=test&format=3").exchange()
+                .expectStatus().isOk()
+                .expectHeader().value("Content-Type", containsString(PROFILE_V3))
+                .expectBody().json(JSONLD_V3_OUTPUT);
+
+        webTestClient.get().uri("/presentation/1/2/manifest?wskey=test&format=4").exchange()
+                .expectStatus().is4xxClientError();
+    }
+
+    /**
+     * Test if we return a 304 when the eTag matches
+     */
+    @Test
+    public void testManifestIfNoneMatch() {
+        webTestClient.get().uri("/presentation/1/2/manifest?wskey=test").header("If-None-Match", ETAG_HEADER_V2).exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals("eTag", ETAG_HEADER_V2);
+    }
+
+    /**
+     * Test binary encodings
+     */
+    @Test
+    public void testManifestBinaryEncoding() {
+        webTestClient.get().uri("/presentation/1/2/manifest?wskey=test")
+                .header(AcceptUtils.ACCEPT, ManifestDefinitions.MEDIA_TYPE_CBOR).exchange()
+                .expectStatus().isOk()
+                .expectHeader().value("Content-Type", containsString(ManifestDefinitions.MEDIA_TYPE_CBOR))
+                .expectHeader().value("Content-Type", containsString(PROFILE_V2))
+                .expectBody(byte[].class).isEqualTo(CBOR_V2_OUTPUT);
+    }
+
+    /**
+     * Test canvas page requests
+     */
+    @Test
+    public void testCanvasPage() {
+        webTestClient.get().uri("/presentation/1/2/canvases/2?wskey=test&pageSize=2").exchange()
+                .expectStatus().isOk()
+                .expectHeader().value("Content-Type", containsString(PROFILE_V3))
+                .expectBody().json(JSONLD_CANVAS_PAGE_OUTPUT);
+
+        webTestClient.get().uri("/presentation/1/2/canvases/3?wskey=test&pageSize=2").exchange()
+                .expectStatus().isNotFound();
+
+        webTestClient.get().uri("/presentation/1/2/canvases/2?wskey=test&pageSize=0").exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    /**
+     * Test if errors are returned with the proper status
+     */
+    @Test
+    public void testErrors() {
+        webTestClient.get().uri("/presentation/1/2/manifest").exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.get().uri("/presentation/1/2/manifest?wskey=invalid").exchange()
+                .expectStatus().isUnauthorized()
+                .expectBody().jsonPath("$.success").isEqualTo(false)
+                .jsonPath("$.status").isEqualTo(401);
+
+        webTestClient.get().uri("/presentation/1/manifest?wskey=test").exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.get().uri("/presentation/1/3/manifest?wskey=test").exchange()
+                .expectStatus().isEqualTo(503);
+    }
+}
@@ -0,0 +1,152 @@
+package eu.europeana.iiif.web;
+
+import eu.europeana.iiif.service.AutoscalingMetrics;
+import eu.europeana.iiif.service.SlowRequestSample;
+import eu.europeana.iiif.service.SlowRequestSampler;
+import eu.europeana.iiif.service.StageTimings;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+/**
+ * Tests if the StageMetricsFilter registers the timed stages of a request
+ */
+public class StageMetricsFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StageMetricsFilter filter = new StageMetricsFilter(meterRegistry, false, false);
+
+    @Test
+    public void testStagesRecorded() throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/presentation/1/2/manifest"), response, (req, res) -> {
+            StageTimings timings = StageTimings.current();
+            Assertions.assertTrue(timings.isEnabled());
+            Assertions.assertEquals(1, meterRegistry.get(AutoscalingMetrics.METRIC_IN_FLIGHT).gauge().value());
+            timings.setIiifVersion("3");
+            timings.end(StageTimings.Stage.VALIDATION, timings.begin());
+            timings.setRecordApiStatus(200);
+            timings.end(StageTimings.Stage.RECORD_FETCH, timings.begin());
+            timings.addUpstreamError(StageTimings.Upstream.FULLTEXT_API, new SocketTimeoutException());
+            timings.end(StageTimings.Stage.MAPPING, timings.begin());
+        });
+
+        Timer mapping = meterRegistry.get(StageMetricsFilter.METRIC_STAGE_LATENCY).tag("stage", "mapping")
+                .tag("version", "3").tag("outcome", "success").tag("upstream_status", "200").timer();
+        Assertions.assertEquals(1, mapping.count());
+        Assertions.assertEquals(3, meterRegistry.get(StageMetricsFilter.METRIC_STAGE_LATENCY).timers().size());
+        Assertions.assertNull(meterRegistry.find(StageMetricsFilter.METRIC_STAGE_LATENCY)
+                .tag("stage", "serialization").timer());
+        Assertions.assertEquals(1, meterRegistry.get(StageMetricsFilter.METRIC_UPSTREAM_ERRORS)
+                .tag("upstream", "fulltext_api").tag("exception", "SocketTimeoutException").counter().count());
+        // timings should be unbound after the request
+        Assertions.assertFalse(StageTimings.current().isEnabled());
+        Assertions.assertEquals(0, meterRegistry.get(AutoscalingMetrics.METRIC_IN_FLIGHT).gauge().value());
+    }
+
+    @Test
+    public void testErrorOutcome() throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/presentation/1/2/canvas/p1"), response, (req, res) -> {
+            StageTimings timings = StageTimings.current();
+            timings.setRecordCacheHit();
+            timings.end(StageTimings.Stage.RECORD_FETCH, timings.begin());
+            ((HttpServletResponse) res).setStatus(HttpServletResponse.SC_NOT_FOUND);
+        });
+
+        Assertions.assertEquals(1, meterRegistry.get(StageMetricsFilter.METRIC_STAGE_LATENCY).tag("stage", "record_fetch")
+                .tag("version", "unknown").tag("outcome", "client_error").tag("upstream_status", "cache").timer().count());
+    }
+
+    @Test
+    public void testServerTimingHeader() throws ServletException, IOException {
+        StageMetricsFilter serverTimingFilter = new StageMetricsFilter(null, true, false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        serverTimingFilter.doFilter(new MockHttpServletRequest("GET", "/presentation/1/2/manifest"), response, (req, res) -> {
+            StageTimings timings = StageTimings.current();
+            timings.end(StageTimings.Stage.RECORD_FETCH, timings.begin());
+            timings.end(StageTimings.Stage.MAPPING, timings.begin());
+            res.getOutputStream().write('x');
+            // stages that end after the response is committed are not included
+            timings.end(StageTimings.Stage.SERIALIZATION, timings.begin());
+            res.flushBuffer();
+        });
+
+        String serverTiming = response.getHeader(StageMetricsFilter.SERVER_TIMING);
+        Assertions.assertNotNull(serverTiming);
+        Assertions.assertTrue(serverTiming.startsWith("record;dur="), serverTiming);
+        Assertions.assertTrue(serverTiming.contains(", mapping;dur="), serverTiming);
+        Assertions.assertTrue(serverTiming.endsWith(", cache;desc=miss"), serverTiming);
+        Assertions.assertFalse(serverTiming.contains("serialization"), serverTiming);
+        Assertions.assertEquals("0.001", StageTimings.appendMillis(new StringBuilder(), 1_999).toString());
+        Assertions.assertEquals("12.034", StageTimings.appendMillis(new StringBuilder(), 12_034_567).toString());
+    }
+
+    @Test
+    public void testSlowRequestSampled() throws ServletException, IOException {
+        SlowRequestSampler sampler = new SlowRequestSampler(1, 10);
+        StageMetricsFilter samplingFilter = new StageMetricsFilter(null, false, false, sampler);
+        samplingFilter.doFilter(new MockHttpServletRequest("GET", "/presentation/1/2/manifest"),
+                new MockHttpServletResponse(), (req, res) -> {
+            StageTimings timings = StageTimings.current();
+            timings.setRecordId("/1/2");
+            long start = timings.begin();
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            timings.end(StageTimings.Stage.RECORD_FETCH, start);
+        });
+
+        Assertions.assertEquals(1, sampler.getSamples().size());
+        SlowRequestSample sample = sampler.getSamples().get(0);
+        Assertions.assertEquals("/1/2", sample.getRecordId());
+        Assertions.assertTrue(sample.getDurationMs() >= 5, "Duration " + sample.getDurationMs());
+        Assertions.assertTrue(sample.getStagesMs().get("record_fetch") >= 5);
+    }
+
+    @Test
+    public void testWarningsAggregated() throws ServletException, IOException {
+        // without a request the caller has to log warnings itself
+        Assertions.assertFalse(StageTimings.current().addWarning(StageTimings.Warning.UNDEFINED_SERVICE, "x"));
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/presentation/1/2/manifest"), new MockHttpServletResponse(),
+                (req, res) -> {
+            StageTimings timings = StageTimings.current();
+            Assertions.assertFalse(timings.hasWarnings());
+            for (int page = 1; page <= 500; page++) {
+                Assertions.assertTrue(timings.addWarning(StageTimings.Warning.NO_FULLTEXT_ANNOPAGE, "page " + page));
+            }
+            Assertions.assertTrue(timings.hasWarnings());
+            Assertions.assertEquals(500, timings.getWarningCount(StageTimings.Warning.NO_FULLTEXT_ANNOPAGE));
+            Assertions.assertEquals("page 1", timings.getWarningDetail(StageTimings.Warning.NO_FULLTEXT_ANNOPAGE));
+            Assertions.assertEquals(0, timings.getWarningCount(StageTimings.Warning.UNDEFINED_SERVICE));
+            Assertions.assertNull(timings.getWarningDetail(StageTimings.Warning.UNDEFINED_SERVICE));
+        });
+    }
+
+    @Test
+    public void testRemoveWskey() {
+        Assertions.assertEquals("", StageMetricsFilter.removeWskey(null));
+        Assertions.assertEquals("", StageMetricsFilter.removeWskey("wskey=secret"));
+        Assertions.assertEquals("format=3&fullText=false",
+                StageMetricsFilter.removeWskey("format=3&wskey=secret&fullText=false"));
+        Assertions.assertEquals("format=3", StageMetricsFilter.removeWskey("wskey=secret&format=3&"));
+    }
+
+    @Test
+    public void testOtherRequestsIgnored() throws ServletException, IOException {
+        filter.doFilter(new MockHttpServletRequest("GET", "/presentation/1/collection"), new MockHttpServletResponse(),
+                (req, res) -> Assertions.assertFalse(StageTimings.current().isEnabled()));
+        Assertions.assertNull(meterRegistry.find(StageMetricsFilter.METRIC_STAGE_LATENCY).timer());
+    }
+}